@@ -103,6 +103,21 @@ public class ClientConfiguration {
     public static final String PROPERTY_CLIENT_CONNECT_LOCALVM_SERVER = "client.network.connect.localvm";
     public static final boolean PROPERTY_CLIENT_CONNECT_LOCALVM_SERVER_DEFAULT = true;
 
+    /**
+     * Number of chunks of a ResultSet which are fetched from the server while the application is still consuming
+     * the current one, 0 means that the next chunk is fetched only when the current one is exhausted.
+     * Scanners inside a transaction never prefetch
+     */
+    public static final String PROPERTY_SCANNER_PREFETCH_DEPTH = "client.scanner.prefetch.depth";
+    public static final int PROPERTY_SCANNER_PREFETCH_DEPTH_DEFAULT = 0;
+
+    /**
+     * Ask the server to send the chunks of a ResultSet laid out by column, servers which do not support the columnar
+     * layout will send the usual layout
+     */
+    public static final String PROPERTY_SCANNER_COLUMNAR_RESULTS = "client.scanner.columnarresults";
+    public static final boolean PROPERTY_SCANNER_COLUMNAR_RESULTS_DEFAULT = true;
+
 
     public ClientConfiguration(Properties properties) {
         this.properties = new Properties();
@@ -25,6 +25,7 @@ import herddb.client.impl.LeaderChangedException;
 import herddb.client.impl.RetryRequestException;
 import herddb.model.TransactionContext;
 import herddb.network.ServerHostData;
+import herddb.proto.PduCodec;
 import herddb.utils.Futures;
 import java.util.Arrays;
 import java.util.Collections;
@@ -386,9 +387,24 @@ public class HDBConnection implements AutoCloseable {
     public void dumpTableSpace(
             String tableSpace, TableSpaceDumpReceiver receiver, int fetchSize,
             boolean includeTransactionLog
+    ) throws ClientSideMetadataProviderException, HDBException, InterruptedException {
+        dumpTableSpace(tableSpace, receiver, fetchSize, includeTransactionLog, null);
+    }
+
+    /**
+     * Requests a dump of a TableSpace.
+     *
+     * @param options if not null the server streams many tables at the same
+     * time, the receiver must be able to handle chunks of data of different
+     * tables concurrently, see
+     * {@link TableSpaceDumpReceiver#receiveTableDataChunk(java.lang.String, java.util.List)}
+     */
+    public void dumpTableSpace(
+            String tableSpace, TableSpaceDumpReceiver receiver, int fetchSize,
+            boolean includeTransactionLog, PduCodec.DumpOptions options
     ) throws ClientSideMetadataProviderException, HDBException, InterruptedException {
         RoutedClientSideConnection route = getRouteToTableSpace(tableSpace);
-        route.dumpTableSpace(tableSpace, fetchSize, includeTransactionLog, receiver);
+        route.dumpTableSpace(tableSpace, fetchSize, includeTransactionLog, options, receiver);
     }
 
     protected RoutedClientSideConnection chooseConnection(RoutedClientSideConnection[] all) {
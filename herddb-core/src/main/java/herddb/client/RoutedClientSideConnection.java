@@ -41,6 +41,7 @@ import herddb.proto.PduCodec;
 import herddb.proto.PduCodec.ErrorResponse;
 import herddb.security.sasl.SaslNettyClient;
 import herddb.security.sasl.SaslUtils;
+import herddb.storage.DataPageCodec;
 import herddb.storage.DataStorageManagerException;
 import herddb.utils.Bytes;
 import herddb.utils.DataAccessor;
@@ -48,7 +49,9 @@ import herddb.utils.KeyValue;
 import herddb.utils.RawString;
 import herddb.utils.RecordsBatch;
 import io.netty.buffer.ByteBuf;
+import java.io.IOException;
 import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -56,6 +59,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -76,6 +81,8 @@ public class RoutedClientSideConnection implements ChannelEventListener {
     private final HDBConnection connection;
     private final String nodeId;
     private final long timeout;
+    private final int scannerPrefetchDepth;
+    private final boolean scannerColumnarResults;
     private final ServerHostData server;
     private final String clientId;
     private final ReentrantReadWriteLock connectionLock = new ReentrantReadWriteLock(true);
@@ -92,6 +99,8 @@ public class RoutedClientSideConnection implements ChannelEventListener {
 
         this.timeout = connection.getClient().getConfiguration().getLong(ClientConfiguration.PROPERTY_TIMEOUT, ClientConfiguration.PROPERTY_TIMEOUT_DEFAULT);
         this.clientId = connection.getClient().getConfiguration().getString(ClientConfiguration.PROPERTY_CLIENTID, ClientConfiguration.PROPERTY_CLIENTID_DEFAULT);
+        this.scannerPrefetchDepth = connection.getClient().getConfiguration().getInt(ClientConfiguration.PROPERTY_SCANNER_PREFETCH_DEPTH, ClientConfiguration.PROPERTY_SCANNER_PREFETCH_DEPTH_DEFAULT);
+        this.scannerColumnarResults = connection.getClient().getConfiguration().getBoolean(ClientConfiguration.PROPERTY_SCANNER_COLUMNAR_RESULTS, ClientConfiguration.PROPERTY_SCANNER_COLUMNAR_RESULTS_DEFAULT);
     }
 
     public String getNodeId() {
@@ -199,7 +208,7 @@ public class RoutedClientSideConnection implements ChannelEventListener {
                                 break;
                             }
                             case "endTable": {
-                                receiver.endTable();
+                                receiver.endTable(PduCodec.TablespaceDumpData.readTableName(message));
                                 break;
                             }
                             case "finish": {
@@ -214,7 +223,20 @@ public class RoutedClientSideConnection implements ChannelEventListener {
                                 PduCodec.TablespaceDumpData.readRecords(message, (key, value) -> {
                                     records.add(new Record(Bytes.from_array(key), Bytes.from_array(value)));
                                 });
-                                receiver.receiveTableDataChunk(records);
+                                receiver.receiveTableDataChunk(PduCodec.TablespaceDumpData.readTableName(message), records);
+                                break;
+                            }
+                            case "compressedData": {
+                                List<Record> records = new ArrayList<>();
+                                PduCodec.TablespaceDumpData.readRecords(message, (header, compressed) -> {
+                                    try {
+                                        records.addAll(DataPageCodec.decompressRecords(Bytes.toInt(header, 0),
+                                                compressed, 0, compressed.length, Bytes.toInt(header, 4)));
+                                    } catch (IOException err) {
+                                        throw new DataStorageManagerException(err);
+                                    }
+                                });
+                                receiver.receiveTableDataChunk(PduCodec.TablespaceDumpData.readTableName(message), records);
                                 break;
                             }
                             case "txlog": {
@@ -716,7 +738,7 @@ public class RoutedClientSideConnection implements ChannelEventListener {
             long statementId = usePreparedStatement ? prepareQuery(tableSpace, query) : 0;
             query = statementId > 0 ? "" : query;
             ByteBuf message = PduCodec.OpenScanner.write(requestId, tableSpace, query, scannerId, tx, params, statementId,
-                    fetchSize, maxRows, keepReadLocks);
+                    fetchSize, maxRows, keepReadLocks, scannerColumnarResults);
             LOGGER.log(Level.FINEST, "open scanner {0} for query {1}, params {2}", new Object[]{scannerId, query, params});
             reply = channel.sendMessageWithPduReply(requestId, message, timeout);
 
@@ -749,12 +771,15 @@ public class RoutedClientSideConnection implements ChannelEventListener {
         }
     }
 
-    void dumpTableSpace(String tableSpace, int fetchSize, boolean includeTransactionLog, TableSpaceDumpReceiver receiver) throws HDBException, ClientSideMetadataProviderException {
+    void dumpTableSpace(
+            String tableSpace, int fetchSize, boolean includeTransactionLog, PduCodec.DumpOptions options,
+            TableSpaceDumpReceiver receiver
+    ) throws HDBException, ClientSideMetadataProviderException {
         Channel channel = ensureOpen();
         try {
             String dumpId = this.clientId + ":" + scannerIdGenerator.incrementAndGet();
             long requestId = channel.generateRequestId();
-            ByteBuf message = PduCodec.RequestTablespaceDump.write(requestId, tableSpace, dumpId, fetchSize, includeTransactionLog);
+            ByteBuf message = PduCodec.RequestTablespaceDump.write(requestId, tableSpace, dumpId, fetchSize, includeTransactionLog, options);
             LOGGER.log(Level.SEVERE, "dumpTableSpace id {0} for tablespace {1}", new Object[]{dumpId, tableSpace});
             dumpReceivers.put(dumpId, receiver);
             try (Pdu reply = channel.sendMessageWithPduReply(requestId, message, timeout)) {
@@ -879,6 +904,16 @@ public class RoutedClientSideConnection implements ChannelEventListener {
         // in case of client death
         final Channel channel;
 
+        // chunks requested to the server and not yet consumed, in order of request,
+        // only one request at a time is sent to the server in order to preserve the order
+        private final ArrayDeque<CompletableFuture<Pdu>> pendingChunks = new ArrayDeque<>();
+        private boolean fetchInProgress;
+        // the server sent the last chunk (or an error), no more requests must be sent
+        private boolean serverFinished;
+        // no read-ahead inside a transaction: fetches would run on the server
+        // concurrently with the other statements of the same transaction
+        private final int prefetchDepth;
+
         private ScanResultSetImpl(
                 long scannerId, RecordsBatch firstFetchBuffer, int fetchSize, boolean onlyOneChunk, long tx,
                 Channel channel
@@ -897,6 +932,10 @@ public class RoutedClientSideConnection implements ChannelEventListener {
             if (onlyOneChunk) {
                 lastChunk = true;
             }
+            serverFinished = finished || lastChunk;
+            prefetchDepth = tx != 0 ? 0 : scannerPrefetchDepth;
+            // start fetching the next chunks while the application consumes the first one
+            requestNextChunk(prefetchDepth);
         }
 
         @Override
@@ -906,10 +945,18 @@ public class RoutedClientSideConnection implements ChannelEventListener {
 
         @Override
         public void close() {
-            finished = true;
+            boolean closeOnServer;
+            synchronized (this) {
+                finished = true;
+                closeOnServer = !noMoreData && !serverFinished;
+                for (CompletableFuture<Pdu> pending : pendingChunks) {
+                    pending.thenAccept(Pdu::close);
+                }
+                pendingChunks.clear();
+            }
             releaseBuffer();
 
-            if (!noMoreData) {
+            if (closeOnServer) {
                 // try to release resources on the server
                 // in case we did not consume the whole resultset
                 long requestId = channel.generateRequestId();
@@ -938,6 +985,54 @@ public class RoutedClientSideConnection implements ChannelEventListener {
             return ensureNext();
         }
 
+        /**
+         * Sends a request for the next chunk, unless there are already
+         * enough chunks requested and not consumed.
+         *
+         * @param maxPendingChunks
+         */
+        private void requestNextChunk(int maxPendingChunks) {
+            CompletableFuture<Pdu> chunk;
+            synchronized (this) {
+                if (fetchInProgress || serverFinished || finished
+                        || pendingChunks.size() >= maxPendingChunks) {
+                    return;
+                }
+                fetchInProgress = true;
+                chunk = new CompletableFuture<>();
+                pendingChunks.add(chunk);
+            }
+            long requestId = channel.generateRequestId();
+            ByteBuf message = PduCodec.FetchScannerData.write(requestId, scannerId, fetchSize);
+            channel.sendRequestWithAsyncReply(requestId, message, timeout, (Pdu reply, Throwable error) -> {
+                chunkReceived(chunk, reply, error);
+            });
+        }
+
+        private void chunkReceived(CompletableFuture<Pdu> chunk, Pdu reply, Throwable error) {
+            synchronized (this) {
+                fetchInProgress = false;
+                if (error != null
+                        || reply.type != Pdu.TYPE_RESULTSET_CHUNK
+                        || PduCodec.ResultSetChunk.readIsLast(reply)) {
+                    serverFinished = true;
+                }
+                if (finished) {
+                    // the scanner has been closed
+                    if (reply != null) {
+                        reply.close();
+                    }
+                    return;
+                }
+            }
+            if (error != null) {
+                chunk.completeExceptionally(error);
+            } else {
+                chunk.complete(reply);
+                requestNextChunk(prefetchDepth);
+            }
+        }
+
         private void fillBuffer() throws HDBException {
             releaseBuffer();
             if (lastChunk) {
@@ -945,11 +1040,21 @@ public class RoutedClientSideConnection implements ChannelEventListener {
                 return;
             }
 
+            CompletableFuture<Pdu> chunk;
+            synchronized (this) {
+                if (pendingChunks.isEmpty()) {
+                    requestNextChunk(1);
+                }
+                chunk = pendingChunks.poll();
+            }
+            if (chunk == null) {
+                // this should never happen
+                finished = true;
+                throw new HDBException("protocol error: no more data from scanner " + scannerId);
+            }
             Pdu result = null;
             try {
-                long requestId = channel.generateRequestId();
-                ByteBuf message = PduCodec.FetchScannerData.write(requestId, scannerId, fetchSize);
-                result = channel.sendMessageWithPduReply(requestId, message, timeout);
+                result = chunk.get(timeout, TimeUnit.MILLISECONDS);
 
                 //LOGGER.log(Level.SEVERE, "fillBuffer result " + result);
                 if (result.type == Pdu.TYPE_ERROR) {
@@ -984,7 +1089,11 @@ public class RoutedClientSideConnection implements ChannelEventListener {
                     result.close();
                 }
                 throw new HDBException(err);
+            } catch (ExecutionException err) {
+                throw new HDBException("Error while fetching data from " + channel.getRemoteAddress(), err.getCause());
             }
+            // keep the pipeline full while the application consumes this chunk
+            requestNextChunk(prefetchDepth);
         }
 
         private boolean ensureNext() throws HDBException {
@@ -48,6 +48,25 @@ public class TableSpaceDumpReceiver {
     public void endTable() throws DataStorageManagerException {
     }
 
+    /**
+     * Receives a chunk of data of a table, when the dump streams many tables
+     * at the same time chunks may be received concurrently.
+     *
+     * @param table name of the table, null if tables are dumped one at a time
+     */
+    public void receiveTableDataChunk(String table, List<Record> record) throws DataStorageManagerException {
+        receiveTableDataChunk(record);
+    }
+
+    /**
+     * End of the data of a table.
+     *
+     * @param table name of the table, null if tables are dumped one at a time
+     */
+    public void endTable(String table) throws DataStorageManagerException {
+        endTable();
+    }
+
     public void finish(LogSequenceNumber logSequenceNumber) throws DataStorageManagerException {
     }
 
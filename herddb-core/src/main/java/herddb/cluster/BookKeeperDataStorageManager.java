@@ -34,11 +34,13 @@ import herddb.model.Record;
 import herddb.model.Table;
 import herddb.model.Transaction;
 import herddb.server.ServerConfiguration;
+import herddb.storage.DataPageCodec;
 import herddb.storage.DataPageDoesNotExistException;
 import herddb.storage.DataStorageManager;
 import herddb.storage.DataStorageManagerException;
 import herddb.storage.FullTableScanConsumer;
 import herddb.storage.IndexStatus;
+import herddb.storage.IndexStatusDoesNotExistException;
 import herddb.storage.TableStatus;
 import herddb.utils.ByteArrayCursor;
 import herddb.utils.Bytes;
@@ -117,6 +119,8 @@ public class BookKeeperDataStorageManager extends DataStorageManager {
     private final OpStatsLogger dataPageWrites;
     private final OpStatsLogger indexPageReads;
     private final OpStatsLogger indexPageWrites;
+    private final Counter compressedPagesRawBytes;
+    private final Counter compressedPagesBytes;
     private final ZookeeperMetadataStorageManager zk;
     private final BookkeeperCommitLogManager bk;
     private final String nodeId;
@@ -283,6 +287,8 @@ public class BookKeeperDataStorageManager extends DataStorageManager {
         this.dataPageWrites = scope.getOpStatsLogger("data_pagewrites");
         this.indexPageReads = scope.getOpStatsLogger("index_pagereads");
         this.indexPageWrites = scope.getOpStatsLogger("index_pagewrites");
+        this.compressedPagesRawBytes = scope.getCounter("data_compressedpages_rawbytes");
+        this.compressedPagesBytes = scope.getCounter("data_compressedpages_bytes");
         this.zkReads = scope.getCounter("zkReads");
         this.zkWrites = scope.getCounter("zkWrites");
         this.zkGetChildren = scope.getCounter("zkGetChildren");
@@ -483,15 +489,20 @@ public class BookKeeperDataStorageManager extends DataStorageManager {
         try (ByteArrayCursor dataIn = ByteArrayCursor.wrap(dataPage)) {
             long version = dataIn.readVLong(); // version
             long flags = dataIn.readVLong(); // flags for future implementations
-            if (version != 1 || flags != 0) {
+            if (!DataPageCodec.isSupported(version, flags)) {
                 throw new DataStorageManagerException("corrupted data");
             }
-            int numRecords = dataIn.readInt();
-            List<Record> result = new ArrayList<>(numRecords);
-            for (int i = 0; i < numRecords; i++) {
-                Bytes key = dataIn.readBytesNoCopy();
-                Bytes value = dataIn.readBytesNoCopy();
-                result.add(new Record(key, value));
+            List<Record> result;
+            if (version == DataPageCodec.FORMAT_V2) {
+                result = DataPageCodec.readCompressedRecords(dataIn);
+            } else {
+                int numRecords = dataIn.readInt();
+                result = new ArrayList<>(numRecords);
+                for (int i = 0; i < numRecords; i++) {
+                    Bytes key = dataIn.readBytesNoCopy();
+                    Bytes value = dataIn.readBytesNoCopy();
+                    result.add(new Record(key, value));
+                }
             }
             int pos = dataIn.getPosition();
             long hashFromFile = dataIn.readLong();
@@ -611,16 +622,22 @@ public class BookKeeperDataStorageManager extends DataStorageManager {
         String dir = getIndexDirectory(tableSpace, indexName);
         String checkpointFile = getCheckPointsFile(dir, sequenceNumber);
 
-        checkExistsZNode(checkpointFile, "no such index checkpoint: " + checkpointFile);
+        if (!existsZNode(checkpointFile)) {
+            throw new IndexStatusDoesNotExistException("no such index checkpoint: " + checkpointFile);
+        }
 
         return readIndexStatusFromFile(checkpointFile);
     }
 
     private void checkExistsZNode(String checkpointFile, String message) throws DataStorageManagerException {
+        if (!existsZNode(checkpointFile)) {
+            throw new DataStorageManagerException(message);
+        }
+    }
+
+    private boolean existsZNode(String checkpointFile) throws DataStorageManagerException {
         try {
-            if (zk.ensureZooKeeper().exists(checkpointFile, false) == null) {
-                throw new DataStorageManagerException(message);
-            }
+            return zk.ensureZooKeeper().exists(checkpointFile, false) != null;
         } catch (IOException | KeeperException err) {
             throw new DataStorageManagerException(err);
         } catch (InterruptedException err) {
@@ -1076,19 +1093,28 @@ public class BookKeeperDataStorageManager extends DataStorageManager {
      * @param file managed file used for sync operations
      * @param stream output stream related to given managed file for write
      * operations
+     * @param pageCompression compression of the page
      * @return
      * @throws IOException
      */
-    private static long writePage(Collection<Record> newPage, VisibleByteArrayOutputStream oo) throws IOException {
+    private long writePage(Collection<Record> newPage, VisibleByteArrayOutputStream oo, int pageCompression) throws IOException {
 
         try (ExtendedDataOutputStream dataOutput = new ExtendedDataOutputStream(oo)) {
 
-            dataOutput.writeVLong(1); // version
-            dataOutput.writeVLong(0); // flags for future implementations
-            dataOutput.writeInt(newPage.size());
-            for (Record record : newPage) {
-                dataOutput.writeArray(record.key);
-                dataOutput.writeArray(record.value);
+            if (pageCompression == Table.PAGE_COMPRESSION_LZ4) {
+                dataOutput.writeVLong(DataPageCodec.FORMAT_V2); // version
+                dataOutput.writeVLong(DataPageCodec.CODEC_LZ4); // flags
+                VisibleByteArrayOutputStream raw = DataPageCodec.serializeRecords(newPage);
+                int compressedSize = DataPageCodec.writeCompressedRecords(newPage.size(), raw, dataOutput);
+                pageCompressed(raw.size(), compressedSize);
+            } else {
+                dataOutput.writeVLong(DataPageCodec.FORMAT_V1); // version
+                dataOutput.writeVLong(DataPageCodec.CODEC_NONE); // flags for future implementations
+                dataOutput.writeInt(newPage.size());
+                for (Record record : newPage) {
+                    dataOutput.writeArray(record.key);
+                    dataOutput.writeArray(record.value);
+                }
             }
             dataOutput.flush();
             long hash = XXHash64Utils.hash(oo.getBuffer(), 0, oo.size());
@@ -1101,6 +1127,11 @@ public class BookKeeperDataStorageManager extends DataStorageManager {
 
     @Override
     public void writePage(String tableSpace, String tableName, long pageId, Collection<Record> newPage) throws DataStorageManagerException {
+        writePage(tableSpace, tableName, pageId, newPage, Table.PAGE_COMPRESSION_NONE);
+    }
+
+    @Override
+    public void writePage(String tableSpace, String tableName, long pageId, Collection<Record> newPage, int pageCompression) throws DataStorageManagerException {
         // synch on table is done by the TableManager
         long _start = System.currentTimeMillis();
 
@@ -1108,7 +1139,7 @@ public class BookKeeperDataStorageManager extends DataStorageManager {
         long ledgerId;
         try {
             try (VisibleByteArrayOutputStream buffer = new VisibleByteArrayOutputStream()) {
-                size = writePage(newPage, buffer);
+                size = writePage(newPage, buffer, pageCompression);
                 Map<String, byte[]> metadata = new HashMap<>();
                 metadata.put("tablespaceuuid", tableSpace.getBytes(StandardCharsets.UTF_8));
                 metadata.put("node", nodeId.getBytes(StandardCharsets.UTF_8));
@@ -1152,6 +1183,13 @@ public class BookKeeperDataStorageManager extends DataStorageManager {
         dataPageWrites.registerSuccessfulEvent(delta, TimeUnit.MILLISECONDS);
     }
 
+    @Override
+    protected void pageCompressed(long rawBytes, long compressedBytes) {
+        super.pageCompressed(rawBytes, compressedBytes);
+        compressedPagesRawBytes.add(rawBytes);
+        compressedPagesBytes.add(compressedBytes);
+    }
+
     private static long writeIndexPage(DataWriter writer, VisibleByteArrayOutputStream stream) throws IOException {
         try (
                 ExtendedDataOutputStream dataOutput = new ExtendedDataOutputStream(stream)) {
@@ -35,6 +35,7 @@ import io.netty.buffer.ByteBufInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -96,6 +97,9 @@ public class BookkeeperCommitLog extends CommitLog {
     private long maxLedgerSizeBytes = 1024 * 1024 * 1024;
     private long maxIdleTime = 0;
     private boolean writeLedgerHeader = true;
+    private boolean groupWrite = false;
+    private int groupWriteMaxEntries = 1000;
+    private int groupWriteMaxBytes = 1024 * 1024;
     private boolean startWritingCalled = false;
     private volatile boolean closed = false;
     private volatile boolean failed = false;
@@ -134,15 +138,27 @@ public class BookkeeperCommitLog extends CommitLog {
         private volatile boolean errorOccurredDuringWrite;
         private final AtomicLong pendingAdds = new AtomicLong();
         private final AtomicReference<Throwable> writeError = new AtomicReference<>();
+        // the layout of the entries is fixed for the whole life of the ledger
+        private final boolean batchEntries;
+        private final int maxEntriesPerBatch;
+        private final int maxBytesPerBatch;
+        private final List<PendingEntry> pendingBatch = new ArrayList<>();
+        private boolean batchInFlight;
 
         private CommitFileWriter() throws LogNotAvailableException {
             try {
+                this.batchEntries = groupWrite;
+                this.maxEntriesPerBatch = Math.max(1, Math.min(groupWriteMaxEntries, LogEntryBatch.MAX_ENTRIES_PER_BATCH));
+                this.maxBytesPerBatch = groupWriteMaxBytes;
                 Map<String, byte[]> metadata = new HashMap<>();
                 metadata.put("tablespaceuuid", tableSpaceUUID.getBytes(StandardCharsets.UTF_8));
                 metadata.put("tablespacename", tableSpaceName.getBytes(StandardCharsets.UTF_8));
                 metadata.put("leader", localNodeId.getBytes(StandardCharsets.UTF_8));
                 metadata.put("application", "herddb".getBytes(StandardCharsets.UTF_8));
                 metadata.put("component", "commitlog".getBytes(StandardCharsets.UTF_8));
+                if (batchEntries) {
+                    metadata.put(LogEntryBatch.METADATA_ENTRY_FORMAT, LogEntryBatch.ENTRY_FORMAT_BATCH.getBytes(StandardCharsets.UTF_8));
+                }
                 int actualEnsembleSize = Math.max(expectedReplicaCount, ensemble);
                 int actualWriteQuorumSize = Math.max(expectedReplicaCount, writeQuorumSize);
                 int actualAckQuorumSize = Math.max(expectedReplicaCount, ackQuorumSize);
@@ -157,8 +173,8 @@ public class BookkeeperCommitLog extends CommitLog {
                         .withCustomMetadata(metadata)
                         .execute(), BKException.HANDLER);
                 this.ledgerId = this.out.getId();
-                LOGGER.log(Level.INFO, "{0} created ledger {1} (" + actualEnsembleSize + "/" + actualWriteQuorumSize + "/" + actualAckQuorumSize + ") bookies: {2}",
-                        new Object[]{tableSpaceDescription(), ledgerId, this.out.getLedgerMetadata().getAllEnsembles()});
+                LOGGER.log(Level.INFO, "{0} created ledger {1} (" + actualEnsembleSize + "/" + actualWriteQuorumSize + "/" + actualAckQuorumSize + ") bookies: {2}, group write: {3}",
+                        new Object[]{tableSpaceDescription(), ledgerId, this.out.getLedgerMetadata().getAllEnsembles(), batchEntries});
                 lastLedgerId = ledgerId;
                 lastSequenceNumber.set(-1);
             } catch (BKException err) {
@@ -171,6 +187,9 @@ public class BookkeeperCommitLog extends CommitLog {
         }
 
         public CompletableFuture<LogSequenceNumber> writeEntry(LogEntry edit) {
+            if (batchEntries) {
+                return writeEntryInBatch(edit);
+            }
             // BK will release the buffer after handling the entry
             ByteBuf serialize = edit.serializeAsByteBuf();
             pendingAdds.incrementAndGet();
@@ -193,6 +212,74 @@ public class BookkeeperCommitLog extends CommitLog {
             return res;
         }
 
+        private CompletableFuture<LogSequenceNumber> writeEntryInBatch(LogEntry edit) {
+            PendingEntry entry = new PendingEntry(edit, edit.serializeAsByteBuf());
+            pendingAdds.incrementAndGet();
+            synchronized (pendingBatch) {
+                pendingBatch.add(entry);
+            }
+            flushBatch();
+            return entry.result;
+        }
+
+        /**
+         * Writes all of the entries accumulated while the previous batch was
+         * in flight as a single BookKeeper entry. Only one batch is in flight
+         * at a time, so the order of the entries is preserved.
+         */
+        private void flushBatch() {
+            List<PendingEntry> batch;
+            synchronized (pendingBatch) {
+                if (batchInFlight || pendingBatch.isEmpty()) {
+                    return;
+                }
+                int count = 0;
+                long size = 0;
+                while (count < pendingBatch.size() && count < maxEntriesPerBatch) {
+                    size += pendingBatch.get(count).data.readableBytes();
+                    if (count > 0 && size > maxBytesPerBatch) {
+                        break;
+                    }
+                    count++;
+                }
+                List<PendingEntry> head = pendingBatch.subList(0, count);
+                batch = new ArrayList<>(head);
+                head.clear();
+                batchInFlight = true;
+            }
+            List<ByteBuf> serialized = new ArrayList<>(batch.size());
+            for (PendingEntry entry : batch) {
+                serialized.add(entry.data);
+            }
+            // BK will release the buffer after handling the entry
+            ByteBuf data = LogEntryBatch.frame(serialized);
+            this.out.appendAsync(data)
+                    .whenComplete((entryId, error) -> {
+                        if (error == null) {
+                            for (int i = 0; i < batch.size(); i++) {
+                                PendingEntry entry = batch.get(i);
+                                pendingAdds.decrementAndGet();
+                                if (entry.edit.type != LogEntryType.NOOP) { // do not take into account NOOPs
+                                    lastApplicationWriteTs = System.currentTimeMillis();
+                                }
+                                entry.result.complete(new LogSequenceNumber(ledgerId, LogEntryBatch.toOffset(entryId, i)));
+                            }
+                        } else {
+                            writeError.set(error);
+                            errorOccurredDuringWrite = true;
+                            handleBookKeeperFailure(error, batch.get(0).edit);
+                            for (PendingEntry entry : batch) {
+                                pendingAdds.decrementAndGet();
+                                entry.result.completeExceptionally(new LogNotAvailableException(error));
+                            }
+                        }
+                        synchronized (pendingBatch) {
+                            batchInFlight = false;
+                        }
+                        flushBatch();
+                    });
+        }
+
         public void waitForAllPendingWrites() throws LogNotAvailableException {
             try {
                 while (pendingAdds.get() > 0) {
@@ -266,6 +353,18 @@ public class BookkeeperCommitLog extends CommitLog {
 
     }
 
+    private static final class PendingEntry {
+
+        private final LogEntry edit;
+        private final ByteBuf data;
+        private final CompletableFuture<LogSequenceNumber> result = new CompletableFuture<>();
+
+        PendingEntry(LogEntry edit, ByteBuf data) {
+            this.edit = edit;
+            this.data = data;
+        }
+    }
+
     public BookkeeperCommitLog(
             String tableSpaceUUID, String tableSpaceName, String localNodeId,
             ZookeeperMetadataStorageManager metadataStorageManager, BookKeeper bookkeeper,
@@ -339,6 +438,34 @@ public class BookkeeperCommitLog extends CommitLog {
         this.writeLedgerHeader = writeLedgerHeader;
     }
 
+    public boolean isGroupWrite() {
+        return groupWrite;
+    }
+
+    /**
+     * Coalesce concurrent writes into a single BookKeeper entry. The setting is
+     * applied to the next ledger.
+     */
+    public void setGroupWrite(boolean groupWrite) {
+        this.groupWrite = groupWrite;
+    }
+
+    public int getGroupWriteMaxEntries() {
+        return groupWriteMaxEntries;
+    }
+
+    public void setGroupWriteMaxEntries(int groupWriteMaxEntries) {
+        this.groupWriteMaxEntries = groupWriteMaxEntries;
+    }
+
+    public int getGroupWriteMaxBytes() {
+        return groupWriteMaxBytes;
+    }
+
+    public void setGroupWriteMaxBytes(int groupWriteMaxBytes) {
+        this.groupWriteMaxBytes = groupWriteMaxBytes;
+    }
+
     private CommitFileWriter getValidWriter() {
         lock.readLock().lock();
         try {
@@ -585,9 +712,10 @@ public class BookkeeperCommitLog extends CommitLog {
                     throw new LogNotAvailableException("Cannot open ledger " + ledgerId + " (fencing " + fencing + "): " + errorDuringOpen, errorDuringOpen);
                 }
                 try {
+                    boolean batchLedger = LogEntryBatch.isBatchLedger(handle.getLedgerMetadata().getCustomMetadata());
                     long first;
                     if (ledgerId == snapshotSequenceNumber.ledgerId) {
-                        first = snapshotSequenceNumber.offset;
+                        first = batchLedger ? LogEntryBatch.toEntryId(snapshotSequenceNumber.offset) : snapshotSequenceNumber.offset;
                         if (first == -1) {
                             // this can happen if checkpoint  happened while starting to follow a new ledger but actually no entry was ever read
                             LOGGER.log(Level.INFO, "Tablespace " + tableSpaceDescription
@@ -610,7 +738,8 @@ public class BookkeeperCommitLog extends CommitLog {
                     long lastAddConfirmed = handle.getLastAddConfirmed();
                     String ledgerLeader = extractLeaderFromMetadata(handle.getLedgerMetadata().getCustomMetadata());
                     LOGGER.log(Level.INFO, "Tablespace " + tableSpaceDescription + ", Recovering from ledger "
-                            + ledgerId + ", first=" + first + " lastAddConfirmed=" + lastAddConfirmed + " written by " + ledgerLeader);
+                            + ledgerId + ", first=" + first + " lastAddConfirmed=" + lastAddConfirmed + " written by " + ledgerLeader
+                            + (batchLedger ? " (group write)" : ""));
 
                     if (lastAddConfirmed >= 0) {
 
@@ -630,24 +759,30 @@ public class BookkeeperCommitLog extends CommitLog {
                             long _start = System.currentTimeMillis();
 
                             int localEntryCount = 0;
+                            long lastOffset = -1;
                             try (LedgerEntries entries = handle.read(start, end);) {
                                 for (org.apache.bookkeeper.client.api.LedgerEntry entry : entries) {
                                     long entryId = entry.getEntryId();
-                                    LogSequenceNumber number = new LogSequenceNumber(ledgerId, entryId);
-                                    LogEntry statusEdit = readLogEntry(entry);
-                                    lastLedgerId = ledgerId;
-                                    currentLedgerId = ledgerId;
-                                    lastSequenceNumber.set(entryId);
-                                    if (number.after(snapshotSequenceNumber)) {
-                                        if (LOGGER.isLoggable(Level.FINEST)) {
-                                            LOGGER.log(Level.FINEST, "rec " + tableSpaceName + " #" + localEntryCount + " {0}, {1}",
-                                                    new Object[]{number, statusEdit});
-                                        }
-                                        consumer.accept(number, statusEdit);
-                                    } else {
-                                        if (LOGGER.isLoggable(Level.FINEST)) {
-                                            LOGGER.log(Level.FINEST, "skip " + tableSpaceName + " #" + localEntryCount + " {0}<{1}, {2}",
-                                                    new Object[]{number, snapshotSequenceNumber, statusEdit});
+                                    List<LogEntry> statusEdits = readLogEntries(entry, batchLedger);
+                                    for (int i = 0; i < statusEdits.size(); i++) {
+                                        LogEntry statusEdit = statusEdits.get(i);
+                                        long offset = batchLedger ? LogEntryBatch.toOffset(entryId, i) : entryId;
+                                        LogSequenceNumber number = new LogSequenceNumber(ledgerId, offset);
+                                        lastLedgerId = ledgerId;
+                                        currentLedgerId = ledgerId;
+                                        lastSequenceNumber.set(offset);
+                                        lastOffset = offset;
+                                        if (number.after(snapshotSequenceNumber)) {
+                                            if (LOGGER.isLoggable(Level.FINEST)) {
+                                                LOGGER.log(Level.FINEST, "rec " + tableSpaceName + " #" + localEntryCount + " {0}, {1}",
+                                                        new Object[]{number, statusEdit});
+                                            }
+                                            consumer.accept(number, statusEdit);
+                                        } else {
+                                            if (LOGGER.isLoggable(Level.FINEST)) {
+                                                LOGGER.log(Level.FINEST, "skip " + tableSpaceName + " #" + localEntryCount + " {0}<{1}, {2}",
+                                                        new Object[]{number, snapshotSequenceNumber, statusEdit});
+                                            }
                                         }
                                     }
                                     localEntryCount++;
@@ -661,7 +796,7 @@ public class BookkeeperCommitLog extends CommitLog {
                                         + entriesToRead);
                             }
                             lastLedgerId = ledgerId;
-                            lastSequenceNumber.set(end);
+                            lastSequenceNumber.set(batchLedger ? lastOffset : end);
                             long _stop = System.currentTimeMillis();
                             LOGGER.log(Level.INFO, "{4} From entry {0}, to entry {1} ({2} %) read time {3}",
                                     new Object[]{start, end, percent, (_stop - _start) + " ms", tableSpaceDescription});
@@ -804,8 +939,11 @@ public class BookkeeperCommitLog extends CommitLog {
     private final class BKFollowerContext implements FollowerContext {
 
         volatile ReadHandle currentLedger;
+        volatile boolean currentLedgerIsBatch;
         volatile long nextEntryToRead;
         volatile long ledgerToTail;
+        // position of the last LogEntry of the last BookKeeper entry consumed as a whole
+        volatile LogSequenceNumber lastEntryEnd;
 
         BKFollowerContext(LogSequenceNumber lastPosition) {
             ledgerToTail = lastPosition.ledgerId;
@@ -822,7 +960,7 @@ public class BookkeeperCommitLog extends CommitLog {
             // we are alreading tailing the good ledger, but it may not be the same of "currentPosition"
             if (currentLedger != null && currentLedger.getId() == ledgerToTail) {
                 if (currentPosition.ledgerId == ledgerToTail) {
-                    nextEntryToRead = currentPosition.offset + 1;
+                    nextEntryToRead = nextEntryAfter(currentPosition);
                 } else {
                     // not the same ledger of currentPosition, need to read from 0
                     nextEntryToRead = 0;
@@ -869,11 +1007,12 @@ public class BookkeeperCommitLog extends CommitLog {
             if (currentLedger == null) {
                 currentLedger = bookKeeper.openLedgerNoRecovery(ledgerToTail,
                         BookKeeper.DigestType.CRC32C, SHARED_SECRET.getBytes(StandardCharsets.UTF_8));
+                currentLedgerIsBatch = LogEntryBatch.isBatchLedger(currentLedger.getLedgerMetadata().getCustomMetadata());
                 String ledgerLeader = extractLeaderFromMetadata(currentLedger.getLedgerMetadata().getCustomMetadata());
                 if (LOGGER.isLoggable(Level.FINER)) {
                     LOGGER.log(Level.FINER, "{0} opened direct ledger {1} was created by {2}", new Object[]{tableSpaceDescription(), ledgerToTail, ledgerLeader});
                 }
-                nextEntryToRead = currentPosition.offset + 1;
+                nextEntryToRead = currentPosition.ledgerId == ledgerToTail ? nextEntryAfter(currentPosition) : 0;
                 return;
             }
 
@@ -903,6 +1042,7 @@ public class BookkeeperCommitLog extends CommitLog {
             }
             currentLedger = bookKeeper.openLedgerNoRecovery(ledgerToTail,
                     BookKeeper.DigestType.CRC32C, SHARED_SECRET.getBytes(StandardCharsets.UTF_8));
+            currentLedgerIsBatch = LogEntryBatch.isBatchLedger(currentLedger.getLedgerMetadata().getCustomMetadata());
 
             String ledgerLeader = extractLeaderFromMetadata(currentLedger.getLedgerMetadata().getCustomMetadata());
             LOGGER.log(Level.INFO, "{0} ledger {1} was created by {2}", new Object[]{tableSpaceDescription(), ledgerToTail, ledgerLeader});
@@ -910,6 +1050,20 @@ public class BookkeeperCommitLog extends CommitLog {
             nextEntryToRead = 0;
         }
 
+        private long nextEntryAfter(LogSequenceNumber position) {
+            if (!currentLedgerIsBatch) {
+                return position.offset + 1;
+            }
+            long entryId = LogEntryBatch.toEntryId(position.offset);
+            if (position.equals(lastEntryEnd)) {
+                return entryId + 1;
+            }
+            // the position may be in the middle of a batch (for instance when
+            // we start from a dump or when the consumer stopped before the end of the batch),
+            // read the entry again, the LogEntries up to the position are skipped
+            return entryId;
+        }
+
         @Override
         public void close() {
             if (currentLedger != null) {
@@ -971,7 +1125,7 @@ public class BookkeeperCommitLog extends CommitLog {
                     readLastAddConfirmedAndEntry(nextEntry, LONG_POLL_TIMEOUT, false)) {
                 if (entryAndLac.hasEntry()) {
                     org.apache.bookkeeper.client.api.LedgerEntry e = entryAndLac.getEntry();
-                    boolean canContinue = acceptEntryForFollower(e, consumer);
+                    boolean canContinue = acceptEntryForFollower(e, lastPosition, fContext, consumer);
                     if (!canContinue) {
                         LOGGER.log(Level.INFO, "exit follower {0}", tableSpaceDescription());
                         return;
@@ -989,7 +1143,7 @@ public class BookkeeperCommitLog extends CommitLog {
                     }
                     try (LedgerEntries entries = lh.read(startEntry, endEntry)) {
                         for (org.apache.bookkeeper.client.api.LedgerEntry ee : entries) {
-                            acceptEntryForFollower(ee, consumer);
+                            acceptEntryForFollower(ee, lastPosition, fContext, consumer);
                         }
                     }
                 }
@@ -1016,27 +1170,47 @@ public class BookkeeperCommitLog extends CommitLog {
 
     private boolean acceptEntryForFollower(
             org.apache.bookkeeper.client.api.LedgerEntry e,
+            LogSequenceNumber lastPosition,
+            BKFollowerContext context,
             EntryAcceptor consumer
     ) throws Exception {
+        boolean batchLedger = context.currentLedgerIsBatch;
         long entryId = e.getEntryId();
-        LogEntry statusEdit = readLogEntry(e);
-
-        LogSequenceNumber number = new LogSequenceNumber(e.getLedgerId(), entryId);
-        if (LOGGER.isLoggable(Level.FINER)) {
-            LOGGER.log(Level.FINER, "{0} follow entry {1}", new Object[]{tableSpaceDescription(), number});
-        }
-        if (lastLedgerId == number.ledgerId) {
-            lastSequenceNumber.accumulateAndGet(number.offset, EnsureLongIncrementAccumulator.INSTANCE);
-        } else {
-            lastSequenceNumber.set(number.offset);
+        List<LogEntry> statusEdits = readLogEntries(e, batchLedger);
+        LogSequenceNumber number = null;
+        for (int i = 0; i < statusEdits.size(); i++) {
+            long offset = batchLedger ? LogEntryBatch.toOffset(entryId, i) : entryId;
+            number = new LogSequenceNumber(e.getLedgerId(), offset);
+            if (!number.after(lastPosition)) {
+                // already consumed
+                continue;
+            }
+            if (LOGGER.isLoggable(Level.FINER)) {
+                LOGGER.log(Level.FINER, "{0} follow entry {1}", new Object[]{tableSpaceDescription(), number});
+            }
+            if (lastLedgerId == number.ledgerId) {
+                lastSequenceNumber.accumulateAndGet(number.offset, EnsureLongIncrementAccumulator.INSTANCE);
+            } else {
+                lastSequenceNumber.set(number.offset);
+            }
+            lastLedgerId = number.ledgerId;
+            currentLedgerId = number.ledgerId;
+            if (!consumer.accept(number, statusEdits.get(i))) {
+                return false;
+            }
         }
-        lastLedgerId = number.ledgerId;
-        currentLedgerId = number.ledgerId;
-        return consumer.accept(number, statusEdit);
+        context.lastEntryEnd = number;
+        return true;
+    }
 
+    private static List<LogEntry> readLogEntries(org.apache.bookkeeper.client.api.LedgerEntry e, boolean batchLedger) throws IOException {
+        if (batchLedger) {
+            return LogEntryBatch.read(e.getEntryBuffer());
+        }
+        return Collections.singletonList(readLogEntry(e));
     }
 
-    private LogEntry readLogEntry(org.apache.bookkeeper.client.api.LedgerEntry e) throws IOException {
+    private static LogEntry readLogEntry(org.apache.bookkeeper.client.api.LedgerEntry e) throws IOException {
         LogEntry statusEdit;
         try (InputStream entryData = new ByteBufInputStream(e.getEntryBuffer(), false /*
          * releaseOnClose
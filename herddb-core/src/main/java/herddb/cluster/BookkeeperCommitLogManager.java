@@ -28,6 +28,7 @@ import herddb.server.ServerConfiguration;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -62,6 +63,9 @@ public class BookkeeperCommitLogManager extends CommitLogManager {
     private long ledgersRetentionPeriod = 1000 * 60 * 60 * 24;
     private long maxLedgerSizeBytes = 100 * 1024 * 1024 * 1024;
     private long maxIdleTime = 0;
+    private boolean groupWrite = false;
+    private int groupWriteMaxEntries = 1000;
+    private int groupWriteMaxBytes = 1024 * 1024;
     private ConcurrentHashMap<String, BookkeeperCommitLog> activeLogs = new ConcurrentHashMap<>();
 
     public BookkeeperCommitLogManager(ZookeeperMetadataStorageManager metadataStorageManager, ServerConfiguration serverConfiguration, StatsLogger statsLogger) {
@@ -204,6 +208,30 @@ public class BookkeeperCommitLogManager extends CommitLogManager {
         this.maxIdleTime = maxIdleTime;
     }
 
+    public boolean isGroupWrite() {
+        return groupWrite;
+    }
+
+    public void setGroupWrite(boolean groupWrite) {
+        this.groupWrite = groupWrite;
+    }
+
+    public int getGroupWriteMaxEntries() {
+        return groupWriteMaxEntries;
+    }
+
+    public void setGroupWriteMaxEntries(int groupWriteMaxEntries) {
+        this.groupWriteMaxEntries = groupWriteMaxEntries;
+    }
+
+    public int getGroupWriteMaxBytes() {
+        return groupWriteMaxBytes;
+    }
+
+    public void setGroupWriteMaxBytes(int groupWriteMaxBytes) {
+        this.groupWriteMaxBytes = groupWriteMaxBytes;
+    }
+
     @Override
     public BookkeeperCommitLog createCommitLog(String tableSpaceUUID, String tableSpaceName, String localNodeId) throws LogNotAvailableException {
         BookkeeperCommitLog res = new BookkeeperCommitLog(tableSpaceUUID, tableSpaceName, localNodeId, metadataStorageManager, bookKeeper, this);
@@ -213,6 +241,9 @@ public class BookkeeperCommitLogManager extends CommitLogManager {
         res.setLedgersRetentionPeriod(ledgersRetentionPeriod);
         res.setMaxIdleTime(maxIdleTime);
         res.setWriteQuorumSize(writeQuorumSize);
+        res.setGroupWrite(groupWrite);
+        res.setGroupWriteMaxEntries(groupWriteMaxEntries);
+        res.setGroupWriteMaxBytes(groupWriteMaxBytes);
         activeLogs.put(tableSpaceUUID, res);
         return res;
     }
@@ -243,15 +274,25 @@ public class BookkeeperCommitLogManager extends CommitLogManager {
                 if (toId < 0) {
                     toId = lastAddConfirmed;
                 }
-                LOG.log(Level.INFO, "Scanning Ledger {0} from {1} to {2} LAC {3}", new Object[]{ledgerId, fromId, toId, lastAddConfirmed});
+                boolean batchLedger = LogEntryBatch.isBatchLedger(lh.getLedgerMetadata().getCustomMetadata());
+                LOG.log(Level.INFO, "Scanning Ledger {0} from {1} to {2} LAC {3}, group write {4}", new Object[]{ledgerId, fromId, toId, lastAddConfirmed, batchLedger});
                 for (long id = fromId; id <= toId; id++) {
                     try (LedgerEntries entries = lh.readUnconfirmed(id, id);) {
                         LedgerEntry entry = entries.getEntry(id);
-                        LogEntry lEntry = LogEntry.deserialize(entry.getEntryBytes());
-                        LogEntryWithSequenceNumber e = new LogEntryWithSequenceNumber(
-                                new LogSequenceNumber(ledgerId, id),
-                                lEntry);
-                        consumer.accept(e);
+                        if (batchLedger) {
+                            List<LogEntry> lEntries = LogEntryBatch.read(entry.getEntryBuffer());
+                            for (int i = 0; i < lEntries.size(); i++) {
+                                consumer.accept(new LogEntryWithSequenceNumber(
+                                        new LogSequenceNumber(ledgerId, LogEntryBatch.toOffset(id, i)),
+                                        lEntries.get(i)));
+                            }
+                        } else {
+                            LogEntry lEntry = LogEntry.deserialize(entry.getEntryBytes());
+                            LogEntryWithSequenceNumber e = new LogEntryWithSequenceNumber(
+                                    new LogSequenceNumber(ledgerId, id),
+                                    lEntry);
+                            consumer.accept(e);
+                        }
                     }
                 }
             }
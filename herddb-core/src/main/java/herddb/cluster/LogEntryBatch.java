@@ -0,0 +1,112 @@
+/*
+ * Licensed to Diennea S.r.l. under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Diennea S.r.l. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package herddb.cluster;
+
+import herddb.log.LogEntry;
+import herddb.utils.ExtendedDataInputStream;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.PooledByteBufAllocator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Layout of ledgers written in "group write" mode: every BookKeeper entry
+ * contains a batch of {@link LogEntry}.
+ * <p>
+ * Each LogEntry keeps its own {@link herddb.log.LogSequenceNumber}, the offset
+ * is built from the id of the BookKeeper entry and from the position of the
+ * LogEntry inside the batch. The layout is recorded in the custom metadata of
+ * the ledger, so readers can handle ledgers written with both layouts.
+ */
+final class LogEntryBatch {
+
+    static final String METADATA_ENTRY_FORMAT = "entryformat";
+    static final String ENTRY_FORMAT_BATCH = "batch";
+
+    private static final int POSITION_BITS = 16;
+    static final int MAX_ENTRIES_PER_BATCH = 1 << POSITION_BITS;
+    private static final long POSITION_MASK = MAX_ENTRIES_PER_BATCH - 1;
+
+    private LogEntryBatch() {
+    }
+
+    static boolean isBatchLedger(Map<String, byte[]> metadata) {
+        byte[] format = metadata.get(METADATA_ENTRY_FORMAT);
+        return format != null && ENTRY_FORMAT_BATCH.equals(new String(format, StandardCharsets.UTF_8));
+    }
+
+    static long toOffset(long entryId, int position) {
+        return (entryId << POSITION_BITS) | position;
+    }
+
+    static long toEntryId(long offset) {
+        // -1 (no entry) is mapped to -1
+        return offset >> POSITION_BITS;
+    }
+
+    static int toPosition(long offset) {
+        return (int) (offset & POSITION_MASK);
+    }
+
+    /**
+     * Frames a list of already serialized LogEntries, the buffers are released.
+     */
+    static ByteBuf frame(List<ByteBuf> serializedEntries) {
+        int size = 4;
+        for (ByteBuf entry : serializedEntries) {
+            size += 4 + entry.readableBytes();
+        }
+        ByteBuf buffer = PooledByteBufAllocator.DEFAULT.directBuffer(size);
+        buffer.writeInt(serializedEntries.size());
+        for (ByteBuf entry : serializedEntries) {
+            buffer.writeInt(entry.readableBytes());
+            buffer.writeBytes(entry);
+            entry.release();
+        }
+        return buffer;
+    }
+
+    /**
+     * Reads all of the LogEntries contained in a BookKeeper entry, the buffer
+     * is not released.
+     */
+    static List<LogEntry> read(ByteBuf buffer) throws IOException {
+        ByteBuf data = buffer.duplicate();
+        int count = data.readInt();
+        List<LogEntry> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int length = data.readInt();
+            ByteBuf entryData = data.readSlice(length);
+            try (InputStream in = new ByteBufInputStream(entryData, false /*
+                     * releaseOnClose
+                     */);
+                    ExtendedDataInputStream din = new ExtendedDataInputStream(in)) {
+                result.add(LogEntry.deserialize(din));
+            }
+        }
+        return result;
+    }
+
+}
@@ -142,13 +142,8 @@ public class DataAccessorForFullRecord extends AbstractDataAccessor {
                 }
             }
 
-            try (ByteArrayCursor din = record.value.newCursor()) {
-                while (!din.isEof()) {
-                    int serialPosition;
-                    serialPosition = din.readVIntNoEOFException();
-                    if (din.isEof()) {
-                        break;
-                    }
+            try {
+                RecordSerializer.visitValue(record.value, (serialPosition, din) -> {
                     Column col = table.getColumnBySerialPosition(serialPosition);
                     if (col != null) {
                         Object value = RecordSerializer.deserializeTypeAndValue(din);
@@ -157,7 +152,7 @@ public class DataAccessorForFullRecord extends AbstractDataAccessor {
                         // we have to deserialize always the value, even the column is no more present
                         RecordSerializer.skipTypeAndValue(din);
                     }
-                }
+                });
             } catch (IOException err) {
                 throw new IllegalStateException("bad data:" + err, err);
             }
@@ -62,6 +62,17 @@ public final class RecordSerializer {
 
     private static final int INITIAL_BUFFER_SIZE = SystemProperties.getIntSystemProperty("herddb.serializer.initbufsize", 1024);
 
+    /**
+     * Leading bytes of a value written using {@link Table#VALUE_FORMAT_V2}.
+     * This is a non canonical encoding of VInt 0, that the sequential writer
+     * never produces, so we can tell the two layouts apart record by record.
+     */
+    private static final byte VALUE_FORMAT_V2_MARKER_0 = (byte) 0x80;
+    private static final byte VALUE_FORMAT_V2_MARKER_1 = 0x00;
+    private static final int VALUE_FORMAT_V2_SHORT_OFFSETS = 2;
+    private static final int VALUE_FORMAT_V2_INT_OFFSETS = 4;
+    private static final int VALUE_FORMAT_V2_ABSENT_SHORT_OFFSET = 0xFFFF;
+
     public static Object deserialize(Bytes data, int type) {
         switch (type) {
             case ColumnTypes.BYTEARRAY:
@@ -679,9 +690,13 @@ public final class RecordSerializer {
     }
 
     static Object accessRawDataFromValue(String property, Bytes value, Table table) throws IOException {
-        if (table.getColumn(property) == null) {
+        Column column = table.getColumn(property);
+        if (column == null) {
             throw new herddb.utils.IllegalDataAccessException("table " + table.tablespace + "." + table.name + " does not define column " + property);
         }
+        if (isValueFormatV2(value)) {
+            return accessRawDataFromValueV2(column, value);
+        }
         try (ByteArrayCursor din = value.newCursor()) {
             while (!din.isEof()) {
                 int serialPosition;
@@ -703,6 +718,9 @@ public final class RecordSerializer {
 
     static Object accessRawDataFromValue(int index, Bytes value, Table table) throws IOException {
         Column column = table.getColumn(index);
+        if (isValueFormatV2(value)) {
+            return accessRawDataFromValueV2(column, value);
+        }
         try (ByteArrayCursor din = value.newCursor()) {
             while (!din.isEof()) {
                 int serialPosition;
@@ -724,6 +742,15 @@ public final class RecordSerializer {
 
     static SQLRecordPredicateFunctions.CompareResult compareRawDataFromValue(int index, Bytes value, Table table, Object cvalue) throws IOException {
         Column column = table.getColumn(index);
+        if (isValueFormatV2(value)) {
+            int position = locateColumnInValueV2(value, column.serialPosition);
+            if (position < 0) {
+                return CompareResult.NULL;
+            }
+            try (ByteArrayCursor din = cursorAt(value, position)) {
+                return compareDeserializeTypeAndValue(din, cvalue);
+            }
+        }
         try (ByteArrayCursor din = value.newCursor()) {
             while (!din.isEof()) {
                 int serialPosition;
@@ -743,6 +770,157 @@ public final class RecordSerializer {
         return CompareResult.NULL;
     }
 
+    private static Object accessRawDataFromValueV2(Column column, Bytes value) throws IOException {
+        int position = locateColumnInValueV2(value, column.serialPosition);
+        if (position < 0) {
+            return null;
+        }
+        try (ByteArrayCursor din = cursorAt(value, position)) {
+            return deserializeTypeAndValue(din);
+        }
+    }
+
+    private static ByteArrayCursor cursorAt(Bytes value, int position) {
+        return ByteArrayCursor.wrap(value.getBuffer(), position, value.getOffset() + value.getLength() - position);
+    }
+
+    /**
+     * Tells whether a value has been written using
+     * {@link Table#VALUE_FORMAT_V2}. The format of the value does not depend
+     * on the current definition of the table, because records are not
+     * rewritten when the table is altered.
+     *
+     * @param value
+     * @return true if the value starts with the offset directory
+     */
+    static boolean isValueFormatV2(Bytes value) {
+        if (value.getLength() < 2) {
+            return false;
+        }
+        byte[] array = value.getBuffer();
+        int offset = value.getOffset();
+        return array[offset] == VALUE_FORMAT_V2_MARKER_0
+                && array[offset + 1] == VALUE_FORMAT_V2_MARKER_1;
+    }
+
+    /**
+     * Layout of the header of a {@link Table#VALUE_FORMAT_V2} value.
+     * <ul>
+     * <li>2 bytes, the marker
+     * <li>1 byte, the size of each offset (2 or 4 bytes)
+     * <li>VInt, the number of slots in the directory, that is the max written
+     * serialPosition + 1
+     * <li>the directory, one offset for each serialPosition, relative to the
+     * start of the data section, all bits set for absent (NULL) columns
+     * <li>the data section, for each non NULL column (type, value), ordered by
+     * serialPosition
+     * </ul>
+     */
+    private static final class ValueV2Header {
+
+        final int offsetWidth;
+        final int numSlots;
+        final int directoryStart;
+        final int dataStart;
+
+        ValueV2Header(byte[] array, int offset) {
+            int pos = offset + 2;
+            offsetWidth = array[pos++];
+            byte b = array[pos++];
+            int slots = b & 0x7F;
+            for (int shift = 7; (b & 0x80) != 0; shift += 7) {
+                b = array[pos++];
+                slots |= (b & 0x7F) << shift;
+            }
+            numSlots = slots;
+            directoryStart = pos;
+            dataStart = pos + slots * offsetWidth;
+        }
+
+        /**
+         * Reads the offset of the given slot.
+         *
+         * @return the offset, relative to the start of the data section, or -1
+         * if the column has no value
+         */
+        int readOffset(byte[] array, int slot) {
+            int pos = directoryStart + slot * offsetWidth;
+            if (offsetWidth == VALUE_FORMAT_V2_SHORT_OFFSETS) {
+                int res = ((array[pos] & 0xFF) << 8) | (array[pos + 1] & 0xFF);
+                return res == VALUE_FORMAT_V2_ABSENT_SHORT_OFFSET ? -1 : res;
+            } else {
+                return ((array[pos] & 0xFF) << 24)
+                        | ((array[pos + 1] & 0xFF) << 16)
+                        | ((array[pos + 2] & 0xFF) << 8)
+                        | (array[pos + 3] & 0xFF);
+            }
+        }
+    }
+
+    /**
+     * Finds the position of the (type, value) pair of a column inside a
+     * {@link Table#VALUE_FORMAT_V2} value without scanning the other columns.
+     *
+     * @param value
+     * @param serialPosition
+     * @return the absolute position inside the buffer of the value, or -1 if
+     * the column is not present
+     */
+    static int locateColumnInValueV2(Bytes value, int serialPosition) {
+        byte[] array = value.getBuffer();
+        ValueV2Header header = new ValueV2Header(array, value.getOffset());
+        if (serialPosition >= header.numSlots) {
+            return -1;
+        }
+        int relative = header.readOffset(array, serialPosition);
+        if (relative < 0) {
+            return -1;
+        }
+        return header.dataStart + relative;
+    }
+
+    /**
+     * Visits all the (serialPosition, value) pairs of the record value,
+     * whichever is the layout of the value.
+     *
+     * @param value
+     * @param consumer receives the serialPosition and a cursor positioned on
+     * the (type, value) pair, the consumer must read or skip exactly one
+     * value
+     * @throws IOException
+     */
+    static void visitValue(Bytes value, ValueVisitor consumer) throws IOException {
+        if (isValueFormatV2(value)) {
+            byte[] array = value.getBuffer();
+            ValueV2Header header = new ValueV2Header(array, value.getOffset());
+            // the data section is written in serialPosition order
+            try (ByteArrayCursor din = cursorAt(value, header.dataStart)) {
+                for (int slot = 0; slot < header.numSlots; slot++) {
+                    if (header.readOffset(array, slot) >= 0) {
+                        consumer.accept(slot, din);
+                    }
+                }
+            }
+            return;
+        }
+        try (ByteArrayCursor din = value.newCursor()) {
+            while (!din.isEof()) {
+                int serialPosition;
+                serialPosition = din.readVIntNoEOFException();
+                if (din.isEof()) {
+                    break;
+                }
+                consumer.accept(serialPosition, din);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface ValueVisitor {
+
+        void accept(int serialPosition, ByteArrayCursor din) throws IOException;
+    }
+
     static Object accessRawDataFromPrimaryKey(String property, Bytes key, Table table) throws IOException {
         if (table.primaryKey.length == 1) {
             return deserialize(key, table.getColumn(property).type);
@@ -975,6 +1153,9 @@ public final class RecordSerializer {
     }
 
     public static byte[] serializeValueRaw(Map<String, Object> record, Table table, int expectedSize) {
+        if (table.valueFormat == Table.VALUE_FORMAT_V2) {
+            return buildRecordV2(expectedSize, table, record::get);
+        }
         VisibleByteArrayOutputStream value = new VisibleByteArrayOutputStream(expectedSize <= 0 ? INITIAL_BUFFER_SIZE : expectedSize);
         try (ExtendedDataOutputStream doo = new ExtendedDataOutputStream(value)) {
             for (Column c : table.columns) {
@@ -995,6 +1176,9 @@ public final class RecordSerializer {
             int expectedSize, Table table,
             Function<String, Object> evaluator
     ) {
+        if (table.valueFormat == Table.VALUE_FORMAT_V2) {
+            return buildRecordV2(expectedSize, table, evaluator);
+        }
         VisibleByteArrayOutputStream value = new VisibleByteArrayOutputStream(expectedSize <= 0 ? INITIAL_BUFFER_SIZE : expectedSize);
         try (ExtendedDataOutputStream doo = new ExtendedDataOutputStream(value)) {
             for (Column c : table.columns) {
@@ -1013,6 +1197,59 @@ public final class RecordSerializer {
         return value.toByteArrayNoCopy();
     }
 
+    private static byte[] buildRecordV2(
+            int expectedSize, Table table,
+            Function<String, Object> evaluator
+    ) {
+        // columns are sorted by serialPosition
+        int[] offsets = null;
+        int numSlots = 0;
+        VisibleByteArrayOutputStream data = new VisibleByteArrayOutputStream(expectedSize <= 0 ? INITIAL_BUFFER_SIZE : expectedSize);
+        try (ExtendedDataOutputStream doo = new ExtendedDataOutputStream(data)) {
+            for (Column c : table.columns) {
+                if (!table.isPrimaryKeyColumn(c.name)) {
+                    Object v = evaluator.apply(c.name);
+                    if (v != null) {
+                        if (offsets == null) {
+                            offsets = new int[table.columns[table.columns.length - 1].serialPosition + 1];
+                            Arrays.fill(offsets, -1);
+                        }
+                        offsets[c.serialPosition] = data.size();
+                        numSlots = c.serialPosition + 1;
+                        serializeTypeAndValue(v, c.type, doo);
+                    }
+                }
+            }
+        } catch (IOException err) {
+            throw new RuntimeException(err);
+        }
+        if (numSlots == 0) {
+            // no column to write, an empty value is the same for every format
+            return new byte[0];
+        }
+        int dataSize = data.size();
+        int offsetWidth = dataSize < VALUE_FORMAT_V2_ABSENT_SHORT_OFFSET
+                ? VALUE_FORMAT_V2_SHORT_OFFSETS : VALUE_FORMAT_V2_INT_OFFSETS;
+        VisibleByteArrayOutputStream value = new VisibleByteArrayOutputStream(8 + numSlots * offsetWidth + dataSize);
+        try (ExtendedDataOutputStream doo = new ExtendedDataOutputStream(value)) {
+            doo.writeByte(VALUE_FORMAT_V2_MARKER_0);
+            doo.writeByte(VALUE_FORMAT_V2_MARKER_1);
+            doo.writeByte(offsetWidth);
+            doo.writeVInt(numSlots);
+            for (int i = 0; i < numSlots; i++) {
+                if (offsetWidth == VALUE_FORMAT_V2_SHORT_OFFSETS) {
+                    doo.writeShort(offsets[i] < 0 ? VALUE_FORMAT_V2_ABSENT_SHORT_OFFSET : offsets[i]);
+                } else {
+                    doo.writeInt(offsets[i]);
+                }
+            }
+            doo.write(data.getBuffer(), 0, dataSize);
+        } catch (IOException err) {
+            throw new RuntimeException(err);
+        }
+        return value.toByteArrayNoCopy();
+    }
+
     public static Record toRecord(Map<String, Object> record, Table table) {
         return new Record(serializePrimaryKey(record, table, table.primaryKey),
                 serializeValue(record, table), record);
@@ -1036,24 +1273,17 @@ public final class RecordSerializer {
             }
 
             if (record.value != null && record.value.getLength() > 0) {
-                try (ByteArrayCursor din = record.value.newCursor()) {
-                    while (true) {
-                        int serialPosition;
-                        serialPosition = din.readVIntNoEOFException();
-                        if (din.isEof()) {
-                            break;
-                        }
-                        Column col = table.getColumnBySerialPosition(serialPosition);
+                visitValue(record.value, (serialPosition, din) -> {
+                    Column col = table.getColumnBySerialPosition(serialPosition);
 
-                        // we have to deserialize or skip always the value, even the column is no more present
-                        if (col != null) {
-                            Object v = deserializeTypeAndValue(din);
-                            res.put(col.name, v);
-                        } else {
-                            skipTypeAndValue(din);
-                        }
+                    // we have to deserialize or skip always the value, even the column is no more present
+                    if (col != null) {
+                        Object v = deserializeTypeAndValue(din);
+                        res.put(col.name, v);
+                    } else {
+                        skipTypeAndValue(din);
                     }
-                }
+                });
             }
             return res.build();
         } catch (IOException err) {
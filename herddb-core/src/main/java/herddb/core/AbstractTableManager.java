@@ -34,10 +34,13 @@ import herddb.model.StatementEvaluationContext;
 import herddb.model.StatementExecutionException;
 import herddb.model.StatementExecutionResult;
 import herddb.model.Table;
+import herddb.model.TableStatistics;
 import herddb.model.Transaction;
 import herddb.model.commands.ScanStatement;
+import herddb.storage.DataStorageManager;
 import herddb.storage.DataStorageManagerException;
 import herddb.storage.FullTableScanConsumer;
+import herddb.storage.TableStatus;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
@@ -52,6 +55,15 @@ public interface AbstractTableManager extends AutoCloseable {
 
     TableManagerStats getStats();
 
+    /**
+     * Column statistics computed by ANALYZE TABLE
+     *
+     * @return the statistics, null if the table has never been analyzed
+     */
+    default TableStatistics getStatistics() {
+        return null;
+    }
+
     Table getTable();
 
     long getCreatedInTransaction();
@@ -99,6 +111,16 @@ public interface AbstractTableManager extends AutoCloseable {
      */
     TableCheckpoint fullCheckpoint(boolean pin) throws DataStorageManagerException;
 
+    /**
+     * Performs a checkpoint without writing the TableStatus, the status is
+     * returned in the {@link TableCheckpoint} and the caller has to write it.
+     *
+     * @see DataStorageManager#tableCheckpoint(java.lang.String, java.lang.String, herddb.storage.TableStatus, boolean)
+     */
+    default TableCheckpoint checkpointWithoutStatus(boolean full, boolean pin) throws DataStorageManagerException {
+        return full ? fullCheckpoint(pin) : checkpoint(pin);
+    }
+
     /**
      * Unpin a previously pinned checkpont (see {@link #checkpoint(boolean)})
      *
@@ -152,12 +174,26 @@ public interface AbstractTableManager extends AutoCloseable {
         final String tableName;
         final LogSequenceNumber sequenceNumber;
         final List<PostCheckpointAction> actions;
+        /**
+         * Status still to be written, null if it has already been written
+         */
+        final TableStatus tableStatus;
+        final String tableUuid;
 
         public TableCheckpoint(String tableName, LogSequenceNumber sequenceNumber, List<PostCheckpointAction> actions) {
+            this(tableName, sequenceNumber, actions, null, null);
+        }
+
+        public TableCheckpoint(
+                String tableName, LogSequenceNumber sequenceNumber, List<PostCheckpointAction> actions,
+                String tableUuid, TableStatus tableStatus
+        ) {
             super();
             this.tableName = tableName;
             this.sequenceNumber = sequenceNumber;
             this.actions = actions;
+            this.tableUuid = tableUuid;
+            this.tableStatus = tableStatus;
         }
     }
 
@@ -0,0 +1,246 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.core;
+
+import herddb.model.DMLStatement;
+import herddb.model.DMLStatementExecutionResult;
+import herddb.model.StatementEvaluationContext;
+import herddb.model.StatementExecutionException;
+import herddb.model.StatementExecutionResult;
+import herddb.model.Transaction;
+import herddb.model.TransactionContext;
+import herddb.model.TransactionResult;
+import herddb.model.commands.BeginTransactionStatement;
+import herddb.model.commands.CommitTransactionStatement;
+import herddb.model.commands.RollbackTransactionStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Executes the same {@link DMLStatement} once for each of a list of contexts,
+ * that is a batch of JDBC parameters bound to a single plan.
+ * <p>
+ * All of the executions happen inside the same transaction. When the client
+ * is not running a transaction a new one is started and committed at the end,
+ * so the batch pays only one synchronous write to the commit log, and in case
+ * of error no statement of the batch is applied. The write locks on the
+ * affected records are acquired in key order before running the statements,
+ * see {@link TableManager#lockKeysForWrite}.
+ */
+final class BulkDMLExecution {
+
+    private static final Logger LOGGER = Logger.getLogger(BulkDMLExecution.class.getName());
+
+    private final TableSpaceManager tableSpaceManager;
+    private final DMLStatement statement;
+    private final List<? extends StatementEvaluationContext> contexts;
+    private final long clientTransactionId;
+    private final List<DMLStatementExecutionResult> results;
+    private final CompletableFuture<List<DMLStatementExecutionResult>> result = new CompletableFuture<>();
+    private long transactionId;
+
+    private BulkDMLExecution(
+            TableSpaceManager tableSpaceManager, DMLStatement statement,
+            List<? extends StatementEvaluationContext> contexts, TransactionContext transactionContext
+    ) {
+        this.tableSpaceManager = tableSpaceManager;
+        this.statement = statement;
+        this.contexts = contexts;
+        this.clientTransactionId = transactionContext.transactionId;
+        this.results = new ArrayList<>(contexts.size());
+    }
+
+    /**
+     * Executes the batch
+     *
+     * @param transactionContext 0 for auto-commit, {@link TransactionContext#AUTOTRANSACTION_ID}
+     * to start a new transaction which is left open, or the id of a running
+     * transaction
+     * @return the results of the executions, in the same order of the contexts
+     */
+    static CompletableFuture<List<DMLStatementExecutionResult>> execute(
+            TableSpaceManager tableSpaceManager, DMLStatement statement,
+            List<? extends StatementEvaluationContext> contexts, TransactionContext transactionContext
+    ) {
+        BulkDMLExecution execution = new BulkDMLExecution(tableSpaceManager, statement, contexts, transactionContext);
+        execution.start();
+        return execution.result;
+    }
+
+    private boolean isImplicitTransaction() {
+        return clientTransactionId <= 0;
+    }
+
+    private void start() {
+        if (!isImplicitTransaction()) {
+            transactionId = clientTransactionId;
+            lockAndExecute();
+            return;
+        }
+        CompletableFuture<StatementExecutionResult> begin;
+        try {
+            begin = tableSpaceManager.executeStatementAsync(
+                    new BeginTransactionStatement(statement.getTableSpace()),
+                    StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT(), TransactionContext.NO_TRANSACTION);
+        } catch (StatementExecutionException err) {
+            result.completeExceptionally(err);
+            return;
+        }
+        begin.whenComplete((res, error) -> {
+            if (error != null) {
+                result.completeExceptionally(unwrap(error));
+                return;
+            }
+            transactionId = ((TransactionResult) res).getTransactionId();
+            lockAndExecute();
+        });
+    }
+
+    private void lockAndExecute() {
+        AbstractTableManager tableManager = tableSpaceManager.getTableManager(statement.getTable());
+        Transaction transaction = tableSpaceManager.getTransaction(transactionId);
+        if (tableManager instanceof TableManager && transaction != null) {
+            try {
+                ((TableManager) tableManager).lockKeysForWrite(statement, contexts, transaction);
+            } catch (StatementExecutionException err) {
+                fail(err);
+                return;
+            }
+        }
+        executeFrom(0);
+    }
+
+    private void executeFrom(int index) {
+        TransactionContext transactionContext = new TransactionContext(transactionId);
+        // do not recurse on statements which complete immediately, batches can be very large
+        while (index < contexts.size()) {
+            StatementEvaluationContext context = contexts.get(index);
+            context.setTransactionContext(transactionContext);
+            CompletableFuture<StatementExecutionResult> res;
+            try {
+                res = tableSpaceManager.executeStatementAsync(statement, context, transactionContext);
+            } catch (StatementExecutionException err) {
+                fail(err);
+                return;
+            }
+            if (!res.isDone()) {
+                int next = index + 1;
+                res.whenComplete((executionResult, error) -> {
+                    if (accept(executionResult, error)) {
+                        executeFrom(next);
+                    }
+                });
+                return;
+            }
+            StatementExecutionResult executionResult = null;
+            Throwable error = null;
+            try {
+                executionResult = res.join();
+            } catch (CompletionException | CancellationException err) {
+                error = err;
+            }
+            if (!accept(executionResult, error)) {
+                return;
+            }
+            index++;
+        }
+        finish();
+    }
+
+    private boolean accept(StatementExecutionResult executionResult, Throwable error) {
+        if (error != null) {
+            fail(error);
+            return false;
+        }
+        if (!(executionResult instanceof DMLStatementExecutionResult)) {
+            fail(new StatementExecutionException("bad result type " + executionResult));
+            return false;
+        }
+        results.add((DMLStatementExecutionResult) executionResult);
+        return true;
+    }
+
+    private void finish() {
+        if (clientTransactionId != 0) {
+            result.complete(results);
+            return;
+        }
+        CompletableFuture<StatementExecutionResult> commit;
+        try {
+            commit = tableSpaceManager.executeStatementAsync(
+                    new CommitTransactionStatement(statement.getTableSpace(), transactionId),
+                    StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT(), TransactionContext.NO_TRANSACTION);
+        } catch (StatementExecutionException err) {
+            result.completeExceptionally(err);
+            return;
+        }
+        commit.whenComplete((res, error) -> {
+            if (error != null) {
+                result.completeExceptionally(unwrap(error));
+                return;
+            }
+            // the client is in auto-commit mode, it must not see the transaction
+            List<DMLStatementExecutionResult> committed = new ArrayList<>(results.size());
+            for (DMLStatementExecutionResult dml : results) {
+                committed.add(new DMLStatementExecutionResult(0, dml.getUpdateCount(), dml.getKey(), dml.getNewvalue()));
+            }
+            result.complete(committed);
+        });
+    }
+
+    private void fail(Throwable error) {
+        Throwable cause = unwrap(error);
+        if (!isImplicitTransaction() || transactionId <= 0) {
+            result.completeExceptionally(cause);
+            return;
+        }
+        LOGGER.log(Level.FINE, "rollback of bulk transaction " + transactionId, cause);
+        CompletableFuture<StatementExecutionResult> rollback;
+        try {
+            rollback = tableSpaceManager.executeStatementAsync(
+                    new RollbackTransactionStatement(statement.getTableSpace(), transactionId),
+                    StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT(), TransactionContext.NO_TRANSACTION);
+        } catch (StatementExecutionException err) {
+            cause.addSuppressed(err);
+            result.completeExceptionally(cause);
+            return;
+        }
+        rollback.whenComplete((res, error2) -> {
+            if (error2 != null) {
+                LOGGER.log(Level.SEVERE, "cannot rollback bulk transaction " + transactionId, error2);
+                cause.addSuppressed(unwrap(error2));
+            }
+            result.completeExceptionally(cause);
+        });
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+}
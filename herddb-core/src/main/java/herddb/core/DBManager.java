@@ -100,6 +100,8 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
@@ -162,6 +164,9 @@ public class DBManager implements AutoCloseable, MetadataChangeListener {
 
     private final RunningStatementsStats runningStatements;
     private final ExecutorService followersThreadPool;
+    private final ExecutorService checkpointExecutor;
+    private final ExecutorService scanPrefetchExecutor;
+    private final ForkJoinPool parallelScanPool;
 
     public DBManager(
             String nodeId, MetadataStorageManager metadataStorageManager, DataStorageManager dataStorageManager,
@@ -200,6 +205,49 @@ public class DBManager implements AutoCloseable, MetadataChangeListener {
         // todo: make it configurable, cached have some pitfalls under load
         this.followersThreadPool = Executors.newCachedThreadPool((Runnable r) -> new FastThreadLocalThread(
                 r, "herddb-worker-" + (hostData == null ? "local" : hostData.getHost() + ":" + hostData.getPort()) + "-" + r));
+        int checkpointThreads = configuration.getInt(ServerConfiguration.PROPERTY_CHECKPOINT_CONCURRENT_THREADS,
+                ServerConfiguration.PROPERTY_CHECKPOINT_CONCURRENT_THREADS_DEFAULT);
+        if (checkpointThreads > 0) {
+            this.checkpointExecutor = Executors.newFixedThreadPool(checkpointThreads, new ThreadFactory() {
+                private final AtomicLong count = new AtomicLong();
+
+                @Override
+                public Thread newThread(final Runnable r) {
+                    final String marker = hostData == null ? "local" : hostData.getHost() + ":" + hostData.getPort();
+                    return new FastThreadLocalThread(r, "db-checkpoint-" + marker + "-" + count.incrementAndGet());
+                }
+            });
+        } else {
+            this.checkpointExecutor = null;
+        }
+        int prefetchThreads = configuration.getInt(ServerConfiguration.PROPERTY_SCAN_PREFETCH_THREADS,
+                ServerConfiguration.PROPERTY_SCAN_PREFETCH_THREADS_DEFAULT);
+        if (prefetchThreads > 0) {
+            this.scanPrefetchExecutor = Executors.newFixedThreadPool(prefetchThreads, new ThreadFactory() {
+                private final AtomicLong count = new AtomicLong();
+
+                @Override
+                public Thread newThread(final Runnable r) {
+                    final String marker = hostData == null ? "local" : hostData.getHost() + ":" + hostData.getPort();
+                    return new FastThreadLocalThread(r, "db-prefetch-" + marker + "-" + count.incrementAndGet());
+                }
+            });
+        } else {
+            this.scanPrefetchExecutor = null;
+        }
+        int parallelScanThreads = configuration.getInt(ServerConfiguration.PROPERTY_SCAN_PARALLEL_THREADS,
+                ServerConfiguration.PROPERTY_SCAN_PARALLEL_THREADS_DEFAULT);
+        if (parallelScanThreads > 0) {
+            AtomicLong count = new AtomicLong();
+            this.parallelScanPool = new ForkJoinPool(parallelScanThreads, (ForkJoinPool pool) -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                final String marker = hostData == null ? "local" : hostData.getHost() + ":" + hostData.getPort();
+                thread.setName("db-parallelscan-" + marker + "-" + count.incrementAndGet());
+                return thread;
+            }, null, false);
+        } else {
+            this.parallelScanPool = null;
+        }
         this.recordSetFactory = dataStorageManager.createRecordSetFactory();
         this.metadataStorageManager = metadataStorageManager;
         this.dataStorageManager = dataStorageManager;
@@ -424,7 +472,10 @@ public class DBManager implements AutoCloseable, MetadataChangeListener {
             maxPKUsedMemory = pk;
         }
 
-        memoryManager = new MemoryManager(maxDataUsedMemory, maxPKUsedMemory, maxLogicalPageSize);
+        boolean offHeapDataPages = serverConfiguration.getBoolean(
+                ServerConfiguration.PROPERTY_MEMORY_DATA_OFFHEAP,
+                ServerConfiguration.PROPERTY_MEMORY_DATA_OFFHEAP_DEFAULT);
+        memoryManager = new MemoryManager(maxDataUsedMemory, maxPKUsedMemory, maxLogicalPageSize, offHeapDataPages);
 
         metadataStorageManager.start();
 
@@ -772,6 +823,45 @@ public class DBManager implements AutoCloseable, MetadataChangeListener {
         }
     }
 
+    /**
+     * Executes a DML plan once for each context, binding a batch of parameters
+     * to the same plan. Executions are grouped in a single transaction, see
+     * {@link BulkDMLExecution}.
+     *
+     * @param plan the plan, its main statement must be an INSERT, UPDATE or
+     * DELETE
+     * @param contexts one context for each execution
+     * @param transactionContext
+     * @return the results, in the same order of the contexts
+     */
+    public CompletableFuture<List<DMLStatementExecutionResult>> executeBulkPlanAsync(
+            ExecutionPlan plan, List<? extends StatementEvaluationContext> contexts, TransactionContext transactionContext
+    ) {
+        if (!(plan.mainStatement instanceof DMLStatement)) {
+            return Futures.exception(new StatementExecutionException("bulk execution is not supported for " + plan.mainStatement));
+        }
+        DMLStatement statement = (DMLStatement) plan.mainStatement;
+        String tableSpace = statement.getTableSpace();
+        TableSpaceManager manager = tablesSpaces.get(tableSpace);
+        if (manager == null) {
+            return Futures.exception(new NotLeaderException("No such tableSpace " + tableSpace + " here. "
+                    + "Maybe the server is starting "));
+        }
+        if (errorIfNotLeader && !manager.isLeader()) {
+            return Futures.exception(new NotLeaderException("node " + nodeId + " is not leader for tableSpace " + tableSpace));
+        }
+        try {
+            for (StatementEvaluationContext context : contexts) {
+                context.setDefaultTablespace(tableSpace);
+                context.setManager(this);
+                plan.validateContext(context);
+            }
+        } catch (StatementExecutionException err) {
+            return Futures.exception(err);
+        }
+        return BulkDMLExecution.execute(manager, statement, contexts, transactionContext);
+    }
+
     public DataScanner scan(ScanStatement statement, StatementEvaluationContext context, TransactionContext transactionContext) throws StatementExecutionException {
         context.setDefaultTablespace(statement.getTableSpace());
         context.setManager(this);
@@ -876,6 +966,15 @@ public class DBManager implements AutoCloseable, MetadataChangeListener {
             JMXUtils.unregisterDBManagerStatsMXBean();
         }
         callbacksExecutor.shutdownNow();
+        if (checkpointExecutor != null) {
+            checkpointExecutor.shutdownNow();
+        }
+        if (parallelScanPool != null) {
+            parallelScanPool.shutdownNow();
+        }
+        if (scanPrefetchExecutor != null) {
+            scanPrefetchExecutor.shutdownNow();
+        }
 
         // lastly give a chance to not "leak" even if not critical (ie not keep used instances after close())
         try {
@@ -959,6 +1058,13 @@ public class DBManager implements AutoCloseable, MetadataChangeListener {
     }
 
     public void dumpTableSpace(String tableSpace, String dumpId, Pdu message, Channel channel, int fetchSize, boolean includeLog) {
+        dumpTableSpace(tableSpace, dumpId, message, channel, fetchSize, includeLog, null);
+    }
+
+    public void dumpTableSpace(
+            String tableSpace, String dumpId, Pdu message, Channel channel, int fetchSize, boolean includeLog,
+            PduCodec.DumpOptions options
+    ) {
         TableSpaceManager manager = tablesSpaces.get(tableSpace);
         ByteBuf resp;
         if (manager == null) {
@@ -970,7 +1076,7 @@ public class DBManager implements AutoCloseable, MetadataChangeListener {
             channel.sendReplyMessage(message.messageId, resp);
         }
         try {
-            manager.dumpTableSpace(dumpId, channel, fetchSize, includeLog);
+            manager.dumpTableSpace(dumpId, channel, fetchSize, includeLog, options);
         } catch (Exception error) {
             LOGGER.log(Level.SEVERE, "error on dump", error);
         }
@@ -1435,6 +1541,36 @@ public class DBManager implements AutoCloseable, MetadataChangeListener {
         return callbacksExecutor;
     }
 
+    /**
+     * Executor for concurrent tablespace checkpoints.
+     *
+     * @return the executor or null if concurrent checkpoints are not enabled
+     * @see ServerConfiguration#PROPERTY_CHECKPOINT_CONCURRENT_THREADS
+     */
+    public ExecutorService getCheckpointExecutor() {
+        return checkpointExecutor;
+    }
+
+    /**
+     * Executor for data page read-ahead during table scans.
+     *
+     * @return the executor or null if read-ahead is not enabled
+     * @see ServerConfiguration#PROPERTY_SCAN_PREFETCH_THREADS
+     */
+    public ExecutorService getScanPrefetchExecutor() {
+        return scanPrefetchExecutor;
+    }
+
+    /**
+     * Pool for parallel scans of large tables.
+     *
+     * @return the pool or null if parallel scans are not enabled
+     * @see ServerConfiguration#PROPERTY_SCAN_PARALLEL_THREADS
+     */
+    public ForkJoinPool getParallelScanPool() {
+        return parallelScanPool;
+    }
+
     public ServerSidePreparedStatementCache getPreparedStatementsCache() {
         return preparedStatementsCache;
     }
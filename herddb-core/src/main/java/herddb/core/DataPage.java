@@ -23,11 +23,12 @@ package herddb.core;
 import herddb.model.Record;
 import herddb.utils.Bytes;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
 
 /**
  * A page of data loaded in memory
@@ -60,6 +61,12 @@ public final class DataPage extends Page<TableManager> {
 
     private final Map<Bytes, Record> data;
 
+    /**
+     * Records stored outside of the heap, only for immutable pages, when not
+     * null {@link #data} is null
+     */
+    private final OffHeapDataPageRecords offHeapData;
+
     private final AtomicLong usedMemory;
 
     /**
@@ -80,11 +87,43 @@ public final class DataPage extends Page<TableManager> {
         this.writable = !immutable;
 
         this.data = data;
+        this.offHeapData = null;
         this.usedMemory = new AtomicLong(estimatedSize);
 
         pageLock = immutable ? null : new ReentrantReadWriteLock(false);
     }
 
+    /**
+     * Builds an immutable page whose records are stored outside of the heap
+     */
+    DataPage(TableManager owner, long pageId, long maxSize, OffHeapDataPageRecords offHeapData) {
+        super(owner, pageId);
+        this.maxSize = maxSize;
+        this.immutable = true;
+        this.writable = false;
+
+        this.data = null;
+        this.offHeapData = offHeapData;
+        this.usedMemory = new AtomicLong(offHeapData.getUsedMemory());
+
+        pageLock = null;
+    }
+
+    boolean isOffHeap() {
+        return offHeapData != null;
+    }
+
+    /**
+     * Releases the memory accounted for off-heap records, to be called when
+     * the page is dropped from the memory of the table. Readers which still
+     * hold a reference to the page can continue to use it.
+     */
+    void release() {
+        if (offHeapData != null) {
+            offHeapData.release();
+        }
+    }
+
     /**
      * Convert a {@link DataPage} to immutable.
      * <p>
@@ -126,6 +165,9 @@ public final class DataPage extends Page<TableManager> {
     }
 
     Record get(Bytes key) {
+        if (offHeapData != null) {
+            return offHeapData.get(key);
+        }
         return data.get(key);
     }
 
@@ -174,22 +216,32 @@ public final class DataPage extends Page<TableManager> {
     }
 
     boolean isEmpty() {
-        return data.isEmpty();
+        return size() == 0;
     }
 
     int size() {
+        if (offHeapData != null) {
+            return offHeapData.size();
+        }
         return data.size();
     }
 
     Collection<Record> getRecordsForFlush() {
+        if (offHeapData != null) {
+            return offHeapData.records();
+        }
         return data.values();
     }
 
-    Set<Bytes> getKeysForDebug() {
+    Collection<Bytes> getKeysForDebug() {
+        if (offHeapData != null) {
+            return offHeapData.records().stream().map(r -> r.key).collect(Collectors.toList());
+        }
         return data.keySet();
     }
 
-    long getUsedMemory() {
+    @Override
+    public long getUsedMemory() {
         return usedMemory.get();
     }
 
@@ -213,7 +265,7 @@ public final class DataPage extends Page<TableManager> {
 
     @Override
     public String toString() {
-        return "DataPage{" + "pageId=" + pageId + ", immutable=" + immutable + ", writable=" + writable + ", usedMemory=" + usedMemory + '}';
+        return "DataPage{" + "pageId=" + pageId + ", immutable=" + immutable + ", writable=" + writable + ", offHeap=" + isOffHeap() + ", usedMemory=" + usedMemory + '}';
     }
 
     @Override
@@ -244,10 +296,25 @@ public final class DataPage extends Page<TableManager> {
         if (!equals(other)) {
             return false;
         }
-        return data.equals(other.data);
+        return toMap().equals(other.toMap());
+    }
+
+    private Map<Bytes, Record> toMap() {
+        if (offHeapData == null) {
+            return data;
+        }
+        Map<Bytes, Record> result = new HashMap<>();
+        for (Record record : offHeapData.records()) {
+            result.put(record.key, record);
+        }
+        return result;
     }
 
     void flushRecordsCache() {
+        if (offHeapData != null) {
+            // records are built on every access, there is no cache
+            return;
+        }
         data.values().forEach(r -> r.clearCache());
     }
 
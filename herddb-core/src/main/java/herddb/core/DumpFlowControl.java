@@ -0,0 +1,107 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.core;
+
+import herddb.network.Channel;
+import herddb.proto.Pdu;
+import herddb.proto.PduCodec;
+import herddb.storage.DataStorageManagerException;
+import io.netty.buffer.ByteBuf;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Credit based flow control for the chunks of a dump.
+ * <p>
+ * Chunks are sent without waiting for the ACK of the previous one, at most
+ * maxPendingChunks chunks (of all of the tables dumped at the same time) are
+ * waiting for the ACK of the receiver.
+ */
+final class DumpFlowControl {
+
+    private final Channel channel;
+    private final int timeout;
+    private final Semaphore credits;
+    private final AtomicReference<Throwable> error = new AtomicReference<>();
+
+    DumpFlowControl(Channel channel, int maxPendingChunks, int timeout) {
+        this.channel = channel;
+        this.timeout = timeout;
+        this.credits = new Semaphore(Math.max(1, maxPendingChunks));
+    }
+
+    /**
+     * Sends a message, waiting only for a credit.
+     *
+     * @param pending tracks the messages of a table which are still waiting
+     * for the ACK, see {@link #awaitPending(java.util.concurrent.Phaser)}
+     */
+    void send(long id, ByteBuf message, Phaser pending) throws InterruptedException, TimeoutException {
+        try {
+            checkError();
+            if (!credits.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+                throw new TimeoutException("dump receiver did not acknowledge any chunk in " + timeout + " ms");
+            }
+        } catch (InterruptedException | TimeoutException | RuntimeException err) {
+            message.release();
+            throw err;
+        }
+        pending.register();
+        channel.sendRequestWithAsyncReply(id, message, timeout, (Pdu reply, Throwable err) -> {
+            try {
+                if (err != null) {
+                    error.compareAndSet(null, err);
+                } else if (reply.type == Pdu.TYPE_ERROR) {
+                    error.compareAndSet(null, new DataStorageManagerException("dump receiver error: "
+                            + PduCodec.ErrorResponse.readError(reply)));
+                } else if (reply.type != Pdu.TYPE_ACK) {
+                    error.compareAndSet(null, new DataStorageManagerException("unexpected reply " + reply));
+                }
+            } finally {
+                if (reply != null) {
+                    reply.close();
+                }
+                credits.release();
+                pending.arriveAndDeregister();
+            }
+        });
+    }
+
+    /**
+     * Waits for the ACK of all of the messages tracked by the given Phaser,
+     * which must have been created with one registered party.
+     */
+    void awaitPending(Phaser pending) throws InterruptedException, TimeoutException {
+        int phase = pending.arrive();
+        pending.awaitAdvanceInterruptibly(phase, timeout, TimeUnit.MILLISECONDS);
+        checkError();
+    }
+
+    private void checkError() {
+        Throwable err = error.get();
+        if (err != null) {
+            throw new HerdDBInternalException(err);
+        }
+    }
+}
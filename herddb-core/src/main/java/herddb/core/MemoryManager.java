@@ -22,6 +22,7 @@ package herddb.core;
 
 import herddb.utils.SystemProperties;
 import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -44,8 +45,16 @@ public class MemoryManager {
     private final PageReplacementPolicy dataPageReplacementPolicy;
     private final PageReplacementPolicy pkPageReplacementPolicy;
 
+    private final boolean offHeapDataPages;
+    private final AtomicLong offHeapDataUsedMemory = new AtomicLong();
+
     public MemoryManager(long maxDataUsedMemory, long maxPKUsedMemory, long maxLogicalPageSize) {
+        this(maxDataUsedMemory, maxPKUsedMemory, maxLogicalPageSize, false);
+    }
 
+    public MemoryManager(long maxDataUsedMemory, long maxPKUsedMemory, long maxLogicalPageSize, boolean offHeapDataPages) {
+
+        this.offHeapDataPages = offHeapDataPages;
         this.maxDataUsedMemory = maxDataUsedMemory;
         this.maxPKUsedMemory = maxPKUsedMemory;
         this.maxLogicalPageSize = maxLogicalPageSize;
@@ -68,12 +77,20 @@ public class MemoryManager {
 
         LOGGER.log(Level.INFO, "Maximum number of loaded pages for data {0}"
                 + ", maximum number of loadedd pages for primary key indexes {1}", new Object[]{dataPages, pkPages});
+        if (offHeapDataPages) {
+            LOGGER.log(Level.INFO, "Loaded data pages are stored off-heap");
+        }
         switch (PAGE_REPLACEMENT_POLICY) {
             case "random":
                 dataPageReplacementPolicy = new RandomPageReplacementPolicy(dataPages);
                 pkPageReplacementPolicy = new RandomPageReplacementPolicy(pkPages);
                 break;
 
+            case "tinylfu":
+                dataPageReplacementPolicy = new TinyLFUPolicy(maxDataUsedMemory, maxLogicalPageSize);
+                pkPageReplacementPolicy = new TinyLFUPolicy(maxPKUsedMemory, maxLogicalPageSize);
+                break;
+
             case "cp":
                 dataPageReplacementPolicy = new ClockProPolicy(dataPages);
                 pkPageReplacementPolicy = new ClockProPolicy(pkPages);
@@ -107,4 +124,42 @@ public class MemoryManager {
         return pkPageReplacementPolicy;
     }
 
+    /**
+     * Immutable data pages loaded from the storage are stored outside of the
+     * heap
+     */
+    public boolean isOffHeapDataPages() {
+        return offHeapDataPages;
+    }
+
+    /**
+     * Memory currently used by off-heap data pages
+     */
+    public long getOffHeapDataUsedMemory() {
+        return offHeapDataUsedMemory.get();
+    }
+
+    /**
+     * Accounts memory for an off-heap data page, within the limit of memory for
+     * data pages
+     *
+     * @param size
+     * @return false if the memory would exceed the limit, in this case nothing
+     * is accounted
+     */
+    boolean allocateOffHeapDataMemory(long size) {
+        long current;
+        do {
+            current = offHeapDataUsedMemory.get();
+            if (current + size > maxDataUsedMemory) {
+                return false;
+            }
+        } while (!offHeapDataUsedMemory.compareAndSet(current, current + size));
+        return true;
+    }
+
+    void releaseOffHeapDataMemory(long size) {
+        offHeapDataUsedMemory.addAndGet(-size);
+    }
+
 }
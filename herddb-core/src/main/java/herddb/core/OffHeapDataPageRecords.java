@@ -0,0 +1,219 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.core;
+
+import herddb.model.Record;
+import herddb.utils.Bytes;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.nio.ByteBuffer;
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Records of an immutable {@link DataPage} stored outside of the Java heap.
+ * <p>
+ * All of the records are copied into a single direct buffer, each entry is
+ * laid out as hash (int), key length (int), value length (int), key, value. An
+ * open-addressing table of entry offsets (a single int array) is used to look
+ * up keys. {@link Record} instances are built only when accessed and they are
+ * not retained by the page.
+ * <p>
+ * The buffer is never freed explicitly, because readers may still access a
+ * page which has been unloaded: the memory is reclaimed by the GC together
+ * with this object. The {@link MemoryManager} accounts the bytes from
+ * creation to {@link #release()}.
+ */
+final class OffHeapDataPageRecords {
+
+    private static final int ENTRY_HEADER_SIZE = 12;
+
+    private final ByteBuf buffer;
+    private final int[] index;
+    private final int mask;
+    private final int size;
+    private final long usedMemory;
+    private final MemoryManager memoryManager;
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    private OffHeapDataPageRecords(ByteBuf buffer, int[] index, int size, long usedMemory, MemoryManager memoryManager) {
+        this.buffer = buffer;
+        this.index = index;
+        this.mask = index.length - 1;
+        this.size = size;
+        this.usedMemory = usedMemory;
+        this.memoryManager = memoryManager;
+    }
+
+    /**
+     * Copies the given records outside of the heap.
+     *
+     * @return the new page records or {@code null} if the off-heap memory
+     * budget of the memoryManager is exhausted
+     */
+    static OffHeapDataPageRecords build(Collection<Record> records, MemoryManager memoryManager) {
+        long bufferSize = 0;
+        for (Record record : records) {
+            bufferSize += ENTRY_HEADER_SIZE + record.key.getLength() + record.value.getLength();
+        }
+        if (bufferSize > Integer.MAX_VALUE) {
+            return null;
+        }
+        int capacity = Integer.highestOneBit(Math.max(2, records.size() * 2 - 1)) << 1;
+        long usedMemory = bufferSize + capacity * 4L;
+        if (!memoryManager.allocateOffHeapDataMemory(usedMemory)) {
+            return null;
+        }
+
+        ByteBuf buffer = Unpooled.wrappedBuffer(ByteBuffer.allocateDirect((int) bufferSize));
+        buffer.writerIndex(0);
+        int[] index = new int[capacity];
+        Arrays.fill(index, -1);
+        int mask = capacity - 1;
+        for (Record record : records) {
+            Bytes key = record.key;
+            int hash = key.hashCode();
+            int offset = buffer.writerIndex();
+            buffer.writeInt(hash);
+            buffer.writeInt(key.getLength());
+            buffer.writeInt(record.value.getLength());
+            buffer.writeBytes(key.getBuffer(), key.getOffset(), key.getLength());
+            buffer.writeBytes(record.value.getBuffer(), record.value.getOffset(), record.value.getLength());
+
+            int slot = spread(hash) & mask;
+            while (index[slot] != -1) {
+                slot = (slot + 1) & mask;
+            }
+            index[slot] = offset;
+        }
+        return new OffHeapDataPageRecords(buffer, index, records.size(), usedMemory, memoryManager);
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Memory accounted for this page, buffer and index
+     */
+    long getUsedMemory() {
+        return usedMemory;
+    }
+
+    int size() {
+        return size;
+    }
+
+    Record get(Bytes key) {
+        int hash = key.hashCode();
+        int slot = spread(hash) & mask;
+        int offset;
+        while ((offset = index[slot]) != -1) {
+            if (buffer.getInt(offset) == hash && keyEquals(offset, key)) {
+                return new Record(key, readValue(offset));
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    private boolean keyEquals(int offset, Bytes key) {
+        int keyLength = buffer.getInt(offset + 4);
+        if (keyLength != key.getLength()) {
+            return false;
+        }
+        byte[] array = key.getBuffer();
+        int keyOffset = key.getOffset();
+        int start = offset + ENTRY_HEADER_SIZE;
+        for (int i = 0; i < keyLength; i++) {
+            if (buffer.getByte(start + i) != array[keyOffset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Bytes readKey(int offset) {
+        byte[] key = new byte[buffer.getInt(offset + 4)];
+        buffer.getBytes(offset + ENTRY_HEADER_SIZE, key);
+        return Bytes.from_array(key);
+    }
+
+    private Bytes readValue(int offset) {
+        int keyLength = buffer.getInt(offset + 4);
+        byte[] value = new byte[buffer.getInt(offset + 8)];
+        buffer.getBytes(offset + ENTRY_HEADER_SIZE + keyLength, value);
+        return Bytes.from_array(value);
+    }
+
+    private int nextOffset(int offset) {
+        return offset + ENTRY_HEADER_SIZE + buffer.getInt(offset + 4) + buffer.getInt(offset + 8);
+    }
+
+    /**
+     * Materializes the records, in storage order
+     */
+    Collection<Record> records() {
+        return new AbstractCollection<Record>() {
+            @Override
+            public Iterator<Record> iterator() {
+                return new Iterator<Record>() {
+                    int offset = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return offset < buffer.writerIndex();
+                    }
+
+                    @Override
+                    public Record next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        Record record = new Record(readKey(offset), readValue(offset));
+                        offset = nextOffset(offset);
+                        return record;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Returns the memory to the {@link MemoryManager}, only the first call has
+     * effect
+     */
+    void release() {
+        if (released.compareAndSet(false, true)) {
+            memoryManager.releaseOffHeapDataMemory(usedMemory);
+        }
+    }
+
+}
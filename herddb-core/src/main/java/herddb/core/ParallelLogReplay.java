@@ -0,0 +1,177 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.core;
+
+import io.netty.util.concurrent.FastThreadLocalThread;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Applies entries of the commit log using a fixed set of workers.
+ * <p>
+ * Each task is bound to a worker by a routing key, tasks with the same key are
+ * executed in submission order. The caller uses {@link #barrier()} to wait for
+ * every submitted task before applying an entry which must not be reordered
+ * (DDL, commits, rollbacks...).
+ */
+final class ParallelLogReplay implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(ParallelLogReplay.class.getName());
+
+    interface ReplayTask {
+
+        void run() throws Exception;
+    }
+
+    private static final ReplayTask STOP = () -> {
+    };
+
+    private final Worker[] workers;
+    private final AtomicReference<Throwable> error = new AtomicReference<>();
+    private long submitted;
+
+    ParallelLogReplay(String tableSpaceName, int numWorkers, int queueSize) {
+        this.workers = new Worker[numWorkers];
+        for (int i = 0; i < numWorkers; i++) {
+            workers[i] = new Worker("herddb-recovery-" + tableSpaceName + "-" + i, queueSize);
+        }
+        for (Worker worker : workers) {
+            worker.thread.start();
+        }
+    }
+
+    void submit(int routingKey, ReplayTask task) {
+        checkError();
+        Worker worker = workers[(routingKey & Integer.MAX_VALUE) % workers.length];
+        put(worker, task);
+        submitted++;
+    }
+
+    /**
+     * Waits for the execution of all of the submitted tasks.
+     */
+    void barrier() {
+        CountDownLatch latch = new CountDownLatch(workers.length);
+        BarrierTask barrier = new BarrierTask(latch);
+        for (Worker worker : workers) {
+            put(worker, barrier);
+        }
+        try {
+            latch.await();
+        } catch (InterruptedException err) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(err);
+        }
+        checkError();
+    }
+
+    long getSubmitted() {
+        return submitted;
+    }
+
+    private void checkError() {
+        Throwable t = error.get();
+        if (t != null) {
+            throw new RuntimeException("error while replaying the log: " + t, t);
+        }
+    }
+
+    private static void put(Worker worker, ReplayTask task) {
+        try {
+            worker.queue.put(task);
+        } catch (InterruptedException err) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(err);
+        }
+    }
+
+    @Override
+    public void close() {
+        for (Worker worker : workers) {
+            worker.queue.clear();
+            put(worker, STOP);
+        }
+        for (Worker worker : workers) {
+            try {
+                worker.thread.join();
+            } catch (InterruptedException err) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+    }
+
+    private static final class BarrierTask implements ReplayTask {
+
+        private final CountDownLatch latch;
+
+        BarrierTask(CountDownLatch latch) {
+            this.latch = latch;
+        }
+
+        @Override
+        public void run() {
+            latch.countDown();
+        }
+    }
+
+    private final class Worker implements Runnable {
+
+        private final Thread thread;
+        private final BlockingQueue<ReplayTask> queue;
+
+        Worker(String name, int queueSize) {
+            this.queue = new ArrayBlockingQueue<>(queueSize);
+            this.thread = new FastThreadLocalThread(this, name);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                ReplayTask task;
+                try {
+                    task = queue.take();
+                } catch (InterruptedException err) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (task == STOP) {
+                    return;
+                }
+                if (error.get() != null && !(task instanceof BarrierTask)) {
+                    // skip the remaining tasks, the caller will see the error
+                    continue;
+                }
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    LOGGER.log(Level.SEVERE, "error while replaying the log", t);
+                    error.compareAndSet(null, t);
+                }
+            }
+        }
+    }
+}
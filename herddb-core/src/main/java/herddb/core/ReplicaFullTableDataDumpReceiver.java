@@ -30,6 +30,7 @@ import herddb.utils.SystemInstrumentation;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -42,7 +43,9 @@ public class ReplicaFullTableDataDumpReceiver extends TableSpaceDumpReceiver {
 
     private static final Logger LOGGER = Logger.getLogger(ReplicaFullTableDataDumpReceiver.class.getName());
 
-    private TableManager currentTable;
+    private volatile TableManager currentTable;
+    // tables which are being received at the same time, on "parallel" dumps
+    private final Map<String, TableManager> currentTables = new ConcurrentHashMap<>();
     private final CompletableFuture<Object> latch;
     private Throwable error;
     LogSequenceNumber logSequenceNumber;
@@ -87,33 +90,50 @@ public class ReplicaFullTableDataDumpReceiver extends TableSpaceDumpReceiver {
 
     @Override
     public void endTable() throws DataStorageManagerException {
-        if (currentTable == null) {
+        endTable(null);
+    }
+
+    @Override
+    public void endTable(String table) throws DataStorageManagerException {
+        TableManager tableManager = table == null ? currentTable : currentTables.remove(table);
+        if (tableManager == null) {
             LOGGER.log(Level.SEVERE, "dumpReceiver " + tableSpaceName + ", endTable swallow data after leader side error");
             return;
         }
-        LOGGER.log(Level.INFO, "dumpReceiver " + tableSpaceName + ", endTable " + currentTable.getTable().name);
-        currentTable = null;
+        LOGGER.log(Level.INFO, "dumpReceiver " + tableSpaceName + ", endTable " + tableManager.getTable().name);
+        if (table == null) {
+            currentTable = null;
+        }
     }
 
     @Override
     public void receiveTableDataChunk(List<Record> record) throws DataStorageManagerException {
-        if (currentTable == null) {
+        receiveTableDataChunk(null, record);
+    }
+
+    @Override
+    public void receiveTableDataChunk(String table, List<Record> record) throws DataStorageManagerException {
+        // chunks of the same table may be applied concurrently, they contain different records
+        TableManager tableManager = table == null ? currentTable : currentTables.get(table);
+        if (tableManager == null) {
             LOGGER.log(Level.SEVERE, "dumpReceiver " + tableSpaceName + ", receiveTableDataChunk swallow data after leader side error");
             return;
         }
-        currentTable.writeFromDump(record);
+        tableManager.writeFromDump(record);
         // after writing to local storage
-        SystemInstrumentation.instrumentationPoint("receiveTableDataChunk", tableSpaceManager, currentTable, record);
+        SystemInstrumentation.instrumentationPoint("receiveTableDataChunk", tableSpaceManager, tableManager, record);
     }
 
     @Override
-    public void beginTable(DumpedTableMetadata dumpedTable, Map<String, Object> stats) throws DataStorageManagerException {
+    public synchronized void beginTable(DumpedTableMetadata dumpedTable, Map<String, Object> stats) throws DataStorageManagerException {
         Table table = dumpedTable.table;
         LOGGER.log(Level.INFO, "dumpReceiver " + tableSpaceName + ", beginTable " + table.name + ", stats:" + stats + ", dumped at " + dumpedTable.logSequenceNumber + " (general dump at " + logSequenceNumber + ")");
-        currentTable = tableSpaceManager.bootTable(table, 0, dumpedTable.logSequenceNumber, false);
+        TableManager tableManager = tableSpaceManager.bootTable(table, 0, dumpedTable.logSequenceNumber, false);
         for (Index index : dumpedTable.indexes) {
-            tableSpaceManager.bootIndex(index, currentTable, false, 0, false, true);
+            tableSpaceManager.bootIndex(index, tableManager, false, 0, false, true);
         }
+        currentTables.put(table.name, tableManager);
+        currentTable = tableManager;
     }
 
 }
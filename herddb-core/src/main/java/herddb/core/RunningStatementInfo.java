@@ -20,6 +20,7 @@
 
 package herddb.core;
 
+import herddb.core.stats.StatementExecutionStats;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -37,13 +38,26 @@ public class RunningStatementInfo {
     private final String info;
     private final int numBatches;
     private final long startTimestamp;
+    private final long startNanos = System.nanoTime();
+    private final StatementExecutionStats executionStats;
 
     public RunningStatementInfo(String query, long startTimestamp, String tablespace, String info, int numBatches) {
+        this(query, startTimestamp, tablespace, info, numBatches, null);
+    }
+
+    /**
+     * @param executionStats if not null the latency of the statement is
+     * recorded when the statement is unregistered, see
+     * {@link RunningStatementsStats#unregisterRunningStatement(herddb.core.RunningStatementInfo)}
+     */
+    public RunningStatementInfo(String query, long startTimestamp, String tablespace, String info, int numBatches,
+                                StatementExecutionStats executionStats) {
         this.query = query;
         this.startTimestamp = startTimestamp;
         this.tablespace = tablespace;
         this.info = info;
         this.numBatches = numBatches;
+        this.executionStats = executionStats;
     }
 
     public int getNumBatches() {
@@ -70,4 +84,10 @@ public class RunningStatementInfo {
         return info;
     }
 
+    void executionFinished() {
+        if (executionStats != null) {
+            executionStats.recordExecution(System.nanoTime() - startNanos);
+        }
+    }
+
 }
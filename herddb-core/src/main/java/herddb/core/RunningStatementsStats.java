@@ -56,7 +56,9 @@ public class RunningStatementsStats {
     }
 
     public void unregisterRunningStatement(RunningStatementInfo info) {
-        runningStatements.remove(info.getId());
+        if (runningStatements.remove(info.getId()) != null) {
+            info.executionFinished();
+        }
     }
 
     public ConcurrentHashMap<Long, RunningStatementInfo> getRunningStatements() {
@@ -27,11 +27,18 @@ import herddb.model.Table;
 import herddb.network.Channel;
 import herddb.proto.Pdu;
 import herddb.proto.PduCodec;
+import herddb.storage.DataPageCodec;
 import herddb.storage.FullTableScanConsumer;
 import herddb.storage.TableStatus;
+import herddb.utils.Bytes;
 import herddb.utils.KeyValue;
+import herddb.utils.VisibleByteArrayOutputStream;
+import io.netty.buffer.ByteBuf;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Phaser;
 import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
@@ -48,15 +55,35 @@ class SingleTableDumper implements FullTableScanConsumer {
     private final String tableSpaceName;
     private final int timeout;
     private final int fetchSize;
-    private final List<KeyValue> batch = new ArrayList<>();
+    private final List<Record> batch = new ArrayList<>();
+    // "parallel" dumps, see PduCodec.DumpOptions
+    private final DumpFlowControl flowControl;
+    private final boolean compress;
+    private final String tableName;
+    private final Phaser pendingChunks = new Phaser(1);
 
     public SingleTableDumper(String tableSpaceName, AbstractTableManager tableManager, Channel channel, String dumpId, int timeout, int fetchSize) {
+        this(tableSpaceName, tableManager, channel, dumpId, timeout, fetchSize, null, false);
+    }
+
+    /**
+     * @param flowControl if not null chunks of data are sent without waiting
+     * for the ACK and every message carries the name of the table, so that
+     * many tables can be dumped at the same time
+     */
+    public SingleTableDumper(
+            String tableSpaceName, AbstractTableManager tableManager, Channel channel, String dumpId, int timeout, int fetchSize,
+            DumpFlowControl flowControl, boolean compress
+    ) {
         this.tableSpaceName = tableSpaceName;
         this.tableManager = tableManager;
         this.channel = channel;
         this.dumpId = dumpId;
         this.timeout = timeout;
         this.fetchSize = fetchSize;
+        this.flowControl = flowControl;
+        this.compress = compress && flowControl != null;
+        this.tableName = flowControl != null ? tableManager.getTable().name : null;
     }
 
 
@@ -74,7 +101,7 @@ class SingleTableDumper implements FullTableScanConsumer {
             try (Pdu pdu = channel.sendMessageWithPduReply(id, PduCodec.TablespaceDumpData.write(
                     id, tableSpaceName, dumpId, "beginTable", tableDefinition, stats.getTablesize(),
                     tableStatus.sequenceNumber.ledgerId, tableStatus.sequenceNumber.offset,
-                    indexes, null), timeout)) {
+                    indexes, null, tableName), timeout)) {
             }
         } catch (InterruptedException | TimeoutException err) {
             throw new HerdDBInternalException(err);
@@ -85,7 +112,7 @@ class SingleTableDumper implements FullTableScanConsumer {
     public void acceptPage(long pageId, List<Record> records) {
         try {
             for (Record record : records) {
-                batch.add(new KeyValue(record.key, record.value));
+                batch.add(record);
                 if (batch.size() == fetchSize) {
                     sendBatch();
                 }
@@ -101,11 +128,15 @@ class SingleTableDumper implements FullTableScanConsumer {
             if (!batch.isEmpty()) {
                 sendBatch();
             }
+            if (flowControl != null) {
+                // the receiver must have applied all of the data before the end of the table
+                flowControl.awaitPending(pendingChunks);
+            }
             long id = channel.generateRequestId();
             try (Pdu pdu = channel.sendMessageWithPduReply(id, PduCodec.TablespaceDumpData.write(
                     id, tableSpaceName, dumpId, "endTable", null, 0,
                     0, 0,
-                    null, null), timeout)) {
+                    null, null, tableName), timeout)) {
 
             }
         } catch (Exception error) {
@@ -113,14 +144,36 @@ class SingleTableDumper implements FullTableScanConsumer {
         }
     }
 
-    private void sendBatch() throws TimeoutException, InterruptedException {
+    private void sendBatch() throws TimeoutException, InterruptedException, IOException {
         long id = channel.generateRequestId();
-        try (Pdu pdu = channel.sendMessageWithPduReply(id, PduCodec.TablespaceDumpData.write(
-                id, tableSpaceName, dumpId, "data", null, 0,
-                0, 0,
-                null, batch), timeout)) {
+        ByteBuf message;
+        if (compress) {
+            VisibleByteArrayOutputStream raw = DataPageCodec.serializeRecords(batch);
+            byte[] header = new byte[8];
+            Bytes.putInt(header, 0, batch.size());
+            Bytes.putInt(header, 4, raw.size());
+            KeyValue compressed = new KeyValue(Bytes.from_array(header), Bytes.from_array(DataPageCodec.compress(raw)));
+            message = PduCodec.TablespaceDumpData.write(
+                    id, tableSpaceName, dumpId, "compressedData", null, 0,
+                    0, 0,
+                    null, Collections.singletonList(compressed), tableName);
+        } else {
+            List<KeyValue> data = new ArrayList<>(batch.size());
+            for (Record record : batch) {
+                data.add(new KeyValue(record.key, record.value));
+            }
+            message = PduCodec.TablespaceDumpData.write(
+                    id, tableSpaceName, dumpId, "data", null, 0,
+                    0, 0,
+                    null, data, tableName);
         }
         batch.clear();
+        if (flowControl != null) {
+            flowControl.send(id, message, pendingChunks);
+        } else {
+            try (Pdu pdu = channel.sendMessageWithPduReply(id, message, timeout)) {
+            }
+        }
     }
 
 }
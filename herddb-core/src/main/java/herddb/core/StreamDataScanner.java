@@ -36,6 +36,7 @@ import java.util.stream.Stream;
  */
 class StreamDataScanner extends DataScanner {
 
+    private final Stream<DataAccessor> stream;
     private final Iterator<DataAccessor> wrapped;
     private DataAccessor next;
     private final AtomicBoolean closed = new AtomicBoolean(false);
@@ -45,6 +46,7 @@ class StreamDataScanner extends DataScanner {
             Stream<DataAccessor> wrapped
     ) {
         super(transaction, fieldNames, schema);
+        this.stream = wrapped;
         this.wrapped = wrapped.iterator();
         fetchNext();
         if (transaction != null) {
@@ -78,6 +80,7 @@ class StreamDataScanner extends DataScanner {
             if (transaction != null) {
                 transaction.decreaseRefCount();
             }
+            stream.close();
             super.close();
         }
     }
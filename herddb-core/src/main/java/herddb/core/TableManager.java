@@ -24,6 +24,7 @@ import static java.util.concurrent.TimeUnit.SECONDS;
 import herddb.codec.RecordSerializer;
 import herddb.core.PageSet.DataPageMetaData;
 import herddb.core.stats.TableManagerStats;
+import herddb.core.stats.TableStatisticsCollector;
 import herddb.index.IndexOperation;
 import herddb.index.KeyToPageIndex;
 import herddb.index.PrimaryIndexSeek;
@@ -37,6 +38,8 @@ import herddb.log.LogSequenceNumber;
 import herddb.model.Column;
 import herddb.model.ColumnTypes;
 import herddb.model.DDLException;
+import herddb.model.DDLStatementExecutionResult;
+import herddb.model.DMLStatement;
 import herddb.model.DMLStatementExecutionResult;
 import herddb.model.DataScanner;
 import herddb.model.DataScannerException;
@@ -56,9 +59,12 @@ import herddb.model.StatementExecutionException;
 import herddb.model.StatementExecutionResult;
 import herddb.model.Table;
 import herddb.model.TableContext;
+import herddb.model.TableStatistics;
 import herddb.model.Transaction;
+import herddb.model.Tuple;
 import herddb.model.TupleComparator;
 import herddb.model.UniqueIndexContraintViolationException;
+import herddb.model.commands.AnalyzeTableStatement;
 import herddb.model.commands.DeleteStatement;
 import herddb.model.commands.GetStatement;
 import herddb.model.commands.InsertStatement;
@@ -83,8 +89,10 @@ import herddb.utils.ILocalLockManager;
 import herddb.utils.LocalLockManager;
 import herddb.utils.LockHandle;
 import herddb.utils.NullLockManager;
+import herddb.utils.StripedLocalLockManager;
 import herddb.utils.SystemProperties;
 import java.util.AbstractMap;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -92,13 +100,23 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
@@ -114,6 +132,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import org.apache.bookkeeper.stats.Counter;
 import org.apache.bookkeeper.stats.StatsLogger;
 
@@ -180,6 +199,33 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
      * Counts how many pages had been loaded
      */
     private final LongAdder unloadedPagesCount = new LongAdder();
+
+    /**
+     * Counts how many pages had been read ahead during table scans
+     */
+    private final LongAdder prefetchedPagesCount = new LongAdder();
+
+    /**
+     * Counts how many pages read ahead had been already available when the
+     * scan needed them
+     */
+    private final LongAdder prefetchHitsCount = new LongAdder();
+
+    /**
+     * Counts how many pages read ahead had not been used by the scan
+     */
+    private final LongAdder prefetchWastedCount = new LongAdder();
+
+    /**
+     * Counts how many scans had been executed by the parallel scan pool
+     */
+    private final LongAdder parallelScansCount = new LongAdder();
+
+    /**
+     * Number of pages to read ahead during table scans, 0 disables read-ahead
+     */
+    private volatile int scanPrefetchDepth;
+    private volatile long parallelScanThreshold;
     /**
      * Local locks
      */
@@ -219,6 +265,8 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
 
     private final PageReplacementPolicy pageReplacementPolicy;
 
+    private final MemoryManager memoryManager;
+
     /**
      * Max logical size of a page (raw key size + raw value size)
      */
@@ -259,6 +307,12 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
 
     private final TableManagerStats stats;
 
+    /**
+     * Column statistics computed by ANALYZE TABLE, persisted at the next
+     * checkpoint.
+     */
+    private volatile TableStatistics statistics;
+
     private final Counter checkpointProcessedDirtyRecords;
 
     private final boolean keyToPageSortedAscending;
@@ -346,6 +400,41 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
             return keyToPage.getUsedMemory();
         }
 
+        @Override
+        public long getPrefetchedPagesCount() {
+            return prefetchedPagesCount.sum();
+        }
+
+        @Override
+        public long getPrefetchHitsCount() {
+            return prefetchHitsCount.sum();
+        }
+
+        @Override
+        public long getPrefetchWastedCount() {
+            return prefetchWastedCount.sum();
+        }
+
+        @Override
+        public long getParallelScansCount() {
+            return parallelScansCount.sum();
+        }
+
+        @Override
+        public long getLockWaitsCount() {
+            return locksManager.getLockWaitsCount();
+        }
+
+        @Override
+        public long getLockWaitTime() {
+            return locksManager.getLockWaitTime();
+        }
+
+        @Override
+        public long getLockTimeoutsCount() {
+            return locksManager.getLockTimeoutsCount();
+        }
+
     }
 
     TableManager(
@@ -365,9 +454,10 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
         this.tableSpaceUUID = tableSpaceUUID;
         this.tableContext = buildTableContext();
         this.maxLogicalPageSize = memoryManager.getMaxLogicalPageSize();
-        this.keyToPage = dataStorageManager.createKeyToPageMap(tableSpaceUUID, table.uuid, memoryManager);
+        this.keyToPage = dataStorageManager.createKeyToPageMap(tableSpaceUUID, table, memoryManager);
 
         this.pageReplacementPolicy = memoryManager.getDataPageReplacementPolicy();
+        this.memoryManager = memoryManager;
         this.pages = new ConcurrentHashMap<>();
         this.newPages = new ConcurrentHashMap<>();
 
@@ -397,6 +487,13 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
 
         this.compactionTargetTime = compactionTargetTime < 0 ? Long.MAX_VALUE : compactionTargetTime;
 
+        this.scanPrefetchDepth = tableSpaceManager.getDbmanager().getServerConfiguration().getInt(
+                ServerConfiguration.PROPERTY_SCAN_PREFETCH_DEPTH,
+                ServerConfiguration.PROPERTY_SCAN_PREFETCH_DEPTH_DEFAULT);
+        this.parallelScanThreshold = tableSpaceManager.getDbmanager().getServerConfiguration().getLong(
+                ServerConfiguration.PROPERTY_SCAN_PARALLEL_THRESHOLD,
+                ServerConfiguration.PROPERTY_SCAN_PARALLEL_THRESHOLD_DEFAULT);
+
 
         StatsLogger tableMetrics = tableSpaceManager.tablespaceStasLogger.scope("table_" + table.name);
         this.checkpointProcessedDirtyRecords = tableMetrics.getCounter("checkpoint_processed_dirty_records");
@@ -422,10 +519,25 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
                 ServerConfiguration.PROPERTY_READLOCK_TIMEOUT,
                 ServerConfiguration.PROPERTY_READLOCK_TIMEOUT_DEFAULT
             );
-            LocalLockManager newLocksManager = new LocalLockManager();
-            newLocksManager.setWriteLockTimeout(writeLockTimeout);
-            newLocksManager.setReadLockTimeout(readLockTimeout);
-            locksManager = newLocksManager;
+            boolean striped = tableSpaceManager.getDbmanager().getServerConfiguration().getBoolean(
+                ServerConfiguration.PROPERTY_TABLEMANAGER_STRIPED_ROWLEVELLOCKS,
+                ServerConfiguration.PROPERTY_TABLEMANAGER_STRIPED_ROWLEVELLOCKS_DEFAULT
+            );
+            if (striped) {
+                int numStripes = tableSpaceManager.getDbmanager().getServerConfiguration().getInt(
+                    ServerConfiguration.PROPERTY_TABLEMANAGER_LOCK_STRIPES,
+                    ServerConfiguration.PROPERTY_TABLEMANAGER_LOCK_STRIPES_DEFAULT
+                );
+                StripedLocalLockManager newLocksManager = new StripedLocalLockManager(numStripes);
+                newLocksManager.setWriteLockTimeout(writeLockTimeout);
+                newLocksManager.setReadLockTimeout(readLockTimeout);
+                locksManager = newLocksManager;
+            } else {
+                LocalLockManager newLocksManager = new LocalLockManager();
+                newLocksManager.setWriteLockTimeout(writeLockTimeout);
+                newLocksManager.setReadLockTimeout(readLockTimeout);
+                locksManager = newLocksManager;
+            }
     }
     }
 
@@ -514,6 +626,7 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
                 nextPageId = tableStatus.nextPageId;
                 bootSequenceNumber = tableStatus.sequenceNumber;
                 activePagesAtBoot.putAll(tableStatus.activePages);
+                statistics = tableStatus.statistics;
             } else {
                 // non persistent primary key index, we need a full table scan
                 LOGGER.log(Level.INFO, "loading in memory all the keys for table {0}", new Object[]{table.name});
@@ -527,6 +640,7 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
                         nextPageId = tableStatus.nextPageId;
                         bootSequenceNumber = tableStatus.sequenceNumber;
                         activePagesAtBoot.putAll(tableStatus.activePages);
+                        statistics = tableStatus.statistics;
                     }
 
                     @Override
@@ -552,6 +666,7 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
             nextPageId = tableStatus.nextPageId;
             bootSequenceNumber = tableStatus.sequenceNumber;
             activePagesAtBoot.putAll(tableStatus.activePages);
+            statistics = tableStatus.statistics;
         }
         keyToPage.start(bootSequenceNumber, created);
 
@@ -591,6 +706,13 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
                 LOGGER.log(Level.SEVERE, "Truncate table failed", err);
                 res = Futures.exception(err);
             }
+        } else if (statement instanceof AnalyzeTableStatement) {
+            try {
+                res = CompletableFuture.completedFuture(executeAnalyze(transaction));
+            } catch (StatementExecutionException err) {
+                LOGGER.log(Level.SEVERE, "Analyze table failed", err);
+                res = Futures.exception(err);
+            }
         } else if (statement instanceof TableConsistencyCheckStatement) {
             DBManager manager = this.tableSpaceManager.getDbmanager();
             res = CompletableFuture.completedFuture(manager.createTableCheckSum((TableConsistencyCheckStatement) statement, context));
@@ -666,14 +788,25 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
         }
 
         /* Dereferenced page unload. Out of locking */
-        if (unload != null) {
-            unload.owner.unload(unload.pageId);
-        }
+        unloadPages(unload);
 
         /* Both created now or already created */
         return newId;
     }
 
+    /**
+     * Unloads the page selected by the page replacement policy, then any other page selected by the policy in order
+     * to stay within its memory budget.
+     *
+     * @param unload page selected by {@link PageReplacementPolicy#add(Page)}, may be {@code null}
+     */
+    private void unloadPages(Page.Metadata unload) {
+        while (unload != null) {
+            unload.owner.unload(unload.pageId);
+            unload = pageReplacementPolicy.pollExceeding();
+        }
+    }
+
     /**
      * Initialize newPages map
      * <p>
@@ -743,6 +876,7 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
         pages.computeIfPresent(pageId, (k, remove) -> {
 
                     unloadedPagesCount.increment();
+                    remove.release();
                     if (LOGGER.isLoggable(Level.FINER)) {
                         LOGGER.log(Level.FINER, "table {0} removed page {1}, {2}", new Object[]{table.name, pageId, remove.getUsedMemory() / (1024 * 1024) + " MB"});
                     }
@@ -951,7 +1085,7 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
 
         LOGGER.log(Level.FINER, "flushNewPage table {0}, pageId={1} with {2} records, {3} logical page size",
                 new Object[]{table.name, page.pageId, page.size(), page.getUsedMemory()});
-        dataStorageManager.writePage(tableSpaceUUID, table.uuid, page.pageId, page.getRecordsForFlush());
+        dataStorageManager.writePage(tableSpaceUUID, table.uuid, page.pageId, page.getRecordsForFlush(), table.pageCompression);
 
         return FlushNewPageResult.FLUSHED;
     }
@@ -1009,7 +1143,7 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
                 }
             }
 
-            dataStorageManager.writePage(tableSpaceUUID, table.uuid, page.pageId, page.getRecordsForFlush());
+            dataStorageManager.writePage(tableSpaceUUID, table.uuid, page.pageId, page.getRecordsForFlush(), table.pageCompression);
 
             /* Set the page as a fully active page */
             pageSet.pageCreated(page.pageId, page);
@@ -1023,10 +1157,7 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
                  * replacement policy knowledge it can be unloaded from another thread, we should finished any work
                  * on the page before of that.
                  */
-                final Page.Metadata unload = pageReplacementPolicy.add(page);
-                if (unload != null) {
-                    unload.owner.unload(unload.pageId);
-                }
+                unloadPages(pageReplacementPolicy.add(page));
             }
 
 
@@ -1044,6 +1175,55 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
 
     }
 
+    /**
+     * Acquires the write locks on the records which are going to be modified
+     * by the executions of the same statement with different contexts, sorting
+     * the keys in order to prevent deadlocks between concurrent batches. Locks
+     * are held by the transaction until commit or rollback.
+     * <p>
+     * Only INSERTs on tables without auto_increment and UPDATEs/DELETEs by
+     * primary key are supported, with other statements no lock is acquired in
+     * advance and the locks are taken while executing each statement.
+     *
+     * @return the number of locked keys
+     */
+    public int lockKeysForWrite(DMLStatement statement, List<? extends StatementEvaluationContext> contexts, Transaction transaction) throws StatementExecutionException {
+        RecordFunction keyFunction;
+        if (statement instanceof InsertStatement) {
+            if (table.auto_increment) {
+                // computing the key would consume a value of the sequence
+                return 0;
+            }
+            keyFunction = ((InsertStatement) statement).getKeyFunction();
+        } else {
+            Predicate predicate;
+            if (statement instanceof UpdateStatement) {
+                predicate = ((UpdateStatement) statement).getPredicate();
+            } else if (statement instanceof DeleteStatement) {
+                predicate = ((DeleteStatement) statement).getPredicate();
+            } else {
+                return 0;
+            }
+            if (predicate == null || !(predicate.getIndexOperation() instanceof PrimaryIndexSeek)) {
+                return 0;
+            }
+            keyFunction = ((PrimaryIndexSeek) predicate.getIndexOperation()).value;
+        }
+        TreeSet<Bytes> keys = new TreeSet<>();
+        for (StatementEvaluationContext context : contexts) {
+            try {
+                keys.add(Bytes.from_array(keyFunction.computeNewValue(null, context, tableContext)));
+            } catch (StatementExecutionException | IllegalArgumentException err) {
+                // the same error will be reported by the execution of the statement
+                return 0;
+            }
+        }
+        for (Bytes key : keys) {
+            lockForWrite(key, transaction);
+        }
+        return keys.size();
+    }
+
     private LockHandle lockForWrite(Bytes key, Transaction transaction) {
         return lockForWrite(key, transaction, table.name, locksManager);
     }
@@ -1579,6 +1759,32 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
         }
     }
 
+    private StatementExecutionResult executeAnalyze(Transaction transaction) throws StatementExecutionException {
+        if (transaction != null) {
+            throw new StatementExecutionException("ANALYZE TABLE cannot be executed within the context of a Transaction");
+        }
+        long start = System.currentTimeMillis();
+        TableStatisticsCollector collector = new TableStatisticsCollector(table);
+        try {
+            scanForIndexRebuild(record -> collector.accept(record.getDataAccessor(table)));
+        } catch (RuntimeException error) {
+            LOGGER.log(Level.SEVERE, "Error during ANALYZE table " + table.tablespace + "." + table.name, error);
+            throw new StatementExecutionException(error);
+        }
+        TableStatistics newStatistics = collector.build(start);
+        statistics = newStatistics;
+        LOGGER.log(Level.INFO, "ANALYZE TABLE {0}.{1}: {2} records, {3} ms", new Object[]{table.tablespace, table.name,
+            newStatistics.getRowCount(), System.currentTimeMillis() - start});
+        // cached plans do not take into account the new statistics
+        tableSpaceManager.getDbmanager().getPlanner().clearCache();
+        return new DDLStatementExecutionResult(0);
+    }
+
+    @Override
+    public TableStatistics getStatistics() {
+        return statistics;
+    }
+
     private void applyTruncate() throws DataStorageManagerException {
         if (createdInTransaction > 0) {
             throw new DataStorageManagerException("TRUNCATE TABLE cannot be executed on an uncommitted table");
@@ -1604,6 +1810,7 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
 
         pageSet.truncate();
 
+        pages.values().forEach(DataPage::release);
         pages.clear();
         newPages.clear();
 
@@ -2215,6 +2422,7 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
         final List<DataPage> unload = pages.values().stream()
                 .collect(Collectors.toList());
         pageReplacementPolicy.remove(unload);
+        unload.forEach(DataPage::release);
 
         // unload keyToPage
         dataStorageManager.releaseKeyToPageMap(tableSpaceUUID, table.uuid, keyToPage);
@@ -2296,21 +2504,15 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
      * @return loaded page
      * @throws DataStorageManagerException if requested page cannot be read
      */
-    private DataPage temporaryLoadPageToMemory(Long pageId) throws DataStorageManagerException {
+    private DataPage temporaryLoadPageToMemory(Long pageId, ScanPagePrefetcher prefetcher) throws DataStorageManagerException {
 
         long start = System.currentTimeMillis();
 
-        maxCurrentPagesLoads.acquireUninterruptibly();
-
-        long ioStart = System.currentTimeMillis();
-
         final List<Record> page;
         try {
-            page = dataStorageManager.readPage(tableSpaceUUID, table.uuid, pageId);
+            page = readPage(pageId, prefetcher);
         } catch (DataPageDoesNotExistException e) {
             return null;
-        } finally {
-            maxCurrentPagesLoads.release();
         }
 
         long ioStop = System.currentTimeMillis();
@@ -2321,19 +2523,43 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
             long stop = System.currentTimeMillis();
             LOGGER.log(Level.FINE, "table {0}.{1}, temporary loaded {2} records from page {4} in {5} ms, ({6} ms read)",
                     new Object[] { table.tablespace, table.name, result.size(), pageId, (stop - start),
-                            (ioStop - ioStart) });
+                            (ioStop - start) });
         }
 
         return result;
     }
 
     private DataPage loadPageToMemory(Long pageId, boolean recovery) throws DataStorageManagerException {
+        return loadPageToMemory(pageId, recovery, null);
+    }
+
+    private DataPage loadPageToMemory(Long pageId, boolean recovery, ScanPagePrefetcher prefetcher) throws DataStorageManagerException {
         DataPage result = pages.get(pageId);
         if (result != null) {
             pageReplacementPolicy.pageHit(result);
+            if (prefetcher != null) {
+                prefetcher.discard(pageId);
+            }
             return result;
         }
 
+        if (prefetcher != null) {
+            // consume the read ahead out of computeIfAbsent, taking a page schedules the next reads
+            List<Record> prefetched = prefetcher.take(pageId);
+            if (prefetched != null) {
+                DataPage loaded = buildLoadedDataPage(pageId, prefetched);
+                result = pages.putIfAbsent(pageId, loaded);
+                if (result != null) {
+                    // loaded by another thread
+                    pageReplacementPolicy.pageHit(result);
+                    return result;
+                }
+                loadedPagesCount.increment();
+                unloadPages(pageReplacementPolicy.add(loaded));
+                return loaded;
+            }
+        }
+
         long _start = System.currentTimeMillis();
         long _ioAndLock = 0;
         BooleanHolder computed = new BooleanHolder(false);
@@ -2342,17 +2568,11 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
             result = pages.computeIfAbsent(pageId, (id) -> {
                 try {
                     computed.value = true;
-                    List<Record> page;
-                    maxCurrentPagesLoads.acquireUninterruptibly();
-                    try {
-                        page = dataStorageManager.readPage(tableSpaceUUID, table.uuid, pageId);
-                    } finally {
-                        maxCurrentPagesLoads.release();
-                    }
+                    List<Record> page = readPage(pageId, null);
 
                     loadedPagesCount.increment();
 
-                    return buildImmutableDataPage(pageId, page);
+                    return buildLoadedDataPage(pageId, page);
                 } catch (DataStorageManagerException err) {
                     throw new RuntimeException(err);
                 }
@@ -2360,10 +2580,7 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
             if (computed.value) {
                 _ioAndLock = System.currentTimeMillis();
 
-                final Page.Metadata unload = pageReplacementPolicy.add(result);
-                if (unload != null) {
-                    unload.owner.unload(unload.pageId);
-                }
+                unloadPages(pageReplacementPolicy.add(result));
             }
         } catch (RuntimeException error) {
             if (error.getCause() != null) {
@@ -2388,6 +2605,194 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
         return result;
     }
 
+    /**
+     * Reads a page from the {@link DataStorageManager}, using the page read
+     * ahead by the given prefetcher if available.
+     */
+    private List<Record> readPage(Long pageId, ScanPagePrefetcher prefetcher) throws DataStorageManagerException {
+        if (prefetcher != null) {
+            List<Record> prefetched = prefetcher.take(pageId);
+            if (prefetched != null) {
+                return prefetched;
+            }
+        }
+        maxCurrentPagesLoads.acquireUninterruptibly();
+        try {
+            return dataStorageManager.readPage(tableSpaceUUID, table.uuid, pageId);
+        } finally {
+            maxCurrentPagesLoads.release();
+        }
+    }
+
+    /**
+     * Reads data pages in background, ahead of a scan which processes records
+     * in page order. This instance is owned by the scanning thread and it is
+     * not thread safe.
+     */
+    private final class ScanPagePrefetcher implements AutoCloseable {
+
+        private final ExecutorService executor;
+        private final int depth;
+        private final ArrayDeque<Long> upcoming = new ArrayDeque<>();
+        private final Map<Long, CompletableFuture<List<Record>>> inflight = new HashMap<>();
+
+        ScanPagePrefetcher(ExecutorService executor, int depth) {
+            this.executor = executor;
+            this.depth = depth;
+        }
+
+        /**
+         * Replaces the list of the pages which the scan is going to access.
+         *
+         * @param pageIds page ids, in access order
+         */
+        void schedule(Collection<Long> pageIds) {
+            upcoming.clear();
+            upcoming.addAll(pageIds);
+            fill();
+        }
+
+        private void fill() {
+            // pages loaded in the meantime by other threads do not need to be read
+            for (Iterator<Map.Entry<Long, CompletableFuture<List<Record>>>> it = inflight.entrySet().iterator(); it.hasNext();) {
+                Map.Entry<Long, CompletableFuture<List<Record>>> entry = it.next();
+                if (pages.containsKey(entry.getKey())) {
+                    entry.getValue().cancel(false);
+                    prefetchWastedCount.increment();
+                    it.remove();
+                }
+            }
+            while (inflight.size() < depth && !upcoming.isEmpty()) {
+                Long pageId = upcoming.poll();
+                if (pages.containsKey(pageId) || inflight.containsKey(pageId)) {
+                    continue;
+                }
+                CompletableFuture<List<Record>> read;
+                try {
+                    read = CompletableFuture.supplyAsync(() -> {
+                        maxCurrentPagesLoads.acquireUninterruptibly();
+                        try {
+                            return dataStorageManager.readPage(tableSpaceUUID, table.uuid, pageId);
+                        } finally {
+                            maxCurrentPagesLoads.release();
+                        }
+                    }, executor);
+                } catch (RejectedExecutionException shutdown) {
+                    upcoming.clear();
+                    return;
+                }
+                inflight.put(pageId, read);
+                prefetchedPagesCount.increment();
+            }
+        }
+
+        /**
+         * Consumes a page read ahead.
+         *
+         * @param pageId
+         * @return the records of the page, null if the page has not been
+         * read ahead or if the read failed, in this case the caller has to read
+         * the page by itself
+         */
+        List<Record> take(Long pageId) {
+            CompletableFuture<List<Record>> read = inflight.remove(pageId);
+            try {
+                if (read == null) {
+                    return null;
+                }
+                if (read.isDone() && !read.isCompletedExceptionally()) {
+                    prefetchHitsCount.increment();
+                }
+                return read.join();
+            } catch (CompletionException | CancellationException err) {
+                LOGGER.log(Level.FINE, "table {0}.{1}, read-ahead of page {2} failed: {3}",
+                        new Object[]{table.tablespace, table.name, pageId, err});
+                return null;
+            } finally {
+                fill();
+            }
+        }
+
+        /**
+         * Drops the read ahead of a page which the scan found already in
+         * memory.
+         *
+         * @param pageId
+         */
+        void discard(Long pageId) {
+            CompletableFuture<List<Record>> read = inflight.remove(pageId);
+            if (read != null) {
+                read.cancel(false);
+                prefetchWastedCount.increment();
+                fill();
+            }
+        }
+
+        @Override
+        public void close() {
+            upcoming.clear();
+            for (CompletableFuture<List<Record>> read : inflight.values()) {
+                read.cancel(false);
+                prefetchWastedCount.increment();
+            }
+            inflight.clear();
+        }
+    }
+
+    private ScanPagePrefetcher createScanPagePrefetcher() {
+        int depth = scanPrefetchDepth;
+        if (depth <= 0) {
+            return null;
+        }
+        ExecutorService executor = tableSpaceManager.getDbmanager().getScanPrefetchExecutor();
+        if (executor == null) {
+            return null;
+        }
+        return new ScanPagePrefetcher(executor, depth);
+    }
+
+    /**
+     * Number of data pages read ahead by table scans on this table.
+     *
+     * @return the depth of the read-ahead, 0 means that read-ahead is disabled
+     * @see ServerConfiguration#PROPERTY_SCAN_PREFETCH_DEPTH
+     */
+    public int getScanPrefetchDepth() {
+        return scanPrefetchDepth;
+    }
+
+    public void setScanPrefetchDepth(int scanPrefetchDepth) {
+        this.scanPrefetchDepth = scanPrefetchDepth;
+    }
+
+    /**
+     * Minimum number of records in order to scan this table in parallel.
+     *
+     * @return the threshold
+     * @see ServerConfiguration#PROPERTY_SCAN_PARALLEL_THRESHOLD
+     */
+    public long getParallelScanThreshold() {
+        return parallelScanThreshold;
+    }
+
+    public void setParallelScanThreshold(long parallelScanThreshold) {
+        this.parallelScanThreshold = parallelScanThreshold;
+    }
+
+    /**
+     * Builds a page to be kept in memory, off-heap if configured and if the
+     * off-heap memory budget allows it
+     */
+    private DataPage buildLoadedDataPage(long pageId, List<Record> page) {
+        if (memoryManager.isOffHeapDataPages()) {
+            OffHeapDataPageRecords offHeapData = OffHeapDataPageRecords.build(page, memoryManager);
+            if (offHeapData != null) {
+                return new DataPage(this, pageId, maxLogicalPageSize, offHeapData);
+            }
+        }
+        return buildImmutableDataPage(pageId, page);
+    }
+
     private DataPage buildImmutableDataPage(long pageId, List<Record> page) {
         Map<Bytes, Record> newPageMap = new HashMap<>(page.size());
         long estimatedPageSize = 0;
@@ -2400,12 +2805,20 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
 
     @Override
     public TableCheckpoint fullCheckpoint(boolean pin) throws DataStorageManagerException {
-        return checkpoint(Double.NEGATIVE_INFINITY, fillThreshold, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, pin);
+        return checkpoint(Double.NEGATIVE_INFINITY, fillThreshold, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, pin, true);
     }
 
     @Override
     public TableCheckpoint checkpoint(boolean pin) throws DataStorageManagerException {
-        return checkpoint(dirtyThreshold, fillThreshold, checkpointTargetTime, cleanupTargetTime, compactionTargetTime, pin);
+        return checkpoint(dirtyThreshold, fillThreshold, checkpointTargetTime, cleanupTargetTime, compactionTargetTime, pin, true);
+    }
+
+    @Override
+    public TableCheckpoint checkpointWithoutStatus(boolean full, boolean pin) throws DataStorageManagerException {
+        if (full) {
+            return checkpoint(Double.NEGATIVE_INFINITY, fillThreshold, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, pin, false);
+        }
+        return checkpoint(dirtyThreshold, fillThreshold, checkpointTargetTime, cleanupTargetTime, compactionTargetTime, pin, false);
     }
 
     @Override
@@ -2671,6 +3084,10 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
                     final DataPage removedDataPage = pages.remove(page.pageId);
 
                     unloadedPagesCount.increment();
+                    dataPage.release();
+                    if (removedDataPage != null) {
+                        removedDataPage.release();
+                    }
 
                     if (removedDataPage != null && removedDataPage != dataPage) {
                         /*
@@ -2733,12 +3150,14 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
      * @param checkpointTargetTime checkpoint target max milliseconds
      * @param cleanupTargetTime    cleanup target max milliseconds
      * @param compactionTargetTime compaction target max milliseconds
+     * @param writeStatus          false to return the TableStatus instead of writing it
      * @return
      * @throws DataStorageManagerException
      */
     private TableCheckpoint checkpoint(
             double dirtyThreshold, double fillThreshold,
-            long checkpointTargetTime, long cleanupTargetTime, long compactionTargetTime, boolean pin
+            long checkpointTargetTime, long cleanupTargetTime, long compactionTargetTime, boolean pin,
+            boolean writeStatus
     ) throws DataStorageManagerException {
         LOGGER.log(Level.INFO, "tableCheckpoint dirtyThreshold: " + dirtyThreshold + ", {0}.{1} (pin: {2})", new Object[]{tableSpaceUUID, table.name, pin});
         if (createdInTransaction > 0) {
@@ -2995,9 +3414,11 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
 
             TableStatus tableStatus = new TableStatus(table.name, sequenceNumber,
                     Bytes.longToByteArray(nextPrimaryKeyValue.get()), nextPageId,
-                    pageSet.getActivePages());
+                    pageSet.getActivePages(), statistics);
 
-            actions.addAll(dataStorageManager.tableCheckpoint(tableSpaceUUID, table.uuid, tableStatus, pin));
+            if (writeStatus) {
+                actions.addAll(dataStorageManager.tableCheckpoint(tableSpaceUUID, table.uuid, tableStatus, pin));
+            }
             tablecheckpoint = System.currentTimeMillis();
 
             /*
@@ -3011,7 +3432,9 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
 
             checkPointRunning = false;
 
-            result = new TableCheckpoint(table.name, sequenceNumber, actions);
+            result = writeStatus
+                    ? new TableCheckpoint(table.name, sequenceNumber, actions)
+                    : new TableCheckpoint(table.name, sequenceNumber, actions, table.uuid, tableStatus);
 
             end = System.currentTimeMillis();
 
@@ -3065,6 +3488,11 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
 
         forWrite = forWrite || context.isForceAcquireWriteLock();
 
+        ForkJoinPool parallelScanPool = tableSpaceManager.getDbmanager().getParallelScanPool();
+        if (parallelScanPool != null && !canScanInParallel(statement, transaction, lockRequired, forWrite)) {
+            parallelScanPool = null;
+        }
+
         TupleComparator comparator = statement.getComparator();
         if (!ENABLE_STREAMING_DATA_SCANNER || (comparator != null
                 && this.stats.getTablesize() > HUGE_TABLE_SIZE_FORCE_MATERIALIZED_RESULTSET)) {
@@ -3072,10 +3500,13 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
                     && comparator.isOnlyPrimaryKeyAndAscending()
                     && keyToPageSortedAscending;
             if (!sortedByClusteredIndex) {
+                if (parallelScanPool != null) {
+                    return scanParallel(statement, context, parallelScanPool);
+                }
                 return scanNoStream(statement, context, transaction, lockRequired, forWrite);
             }
         }
-        return scanWithStream(statement, context, transaction, lockRequired, forWrite);
+        return scanWithStream(statement, context, transaction, lockRequired, forWrite, parallelScanPool);
     }
 
     private DataScanner scanNoStream(
@@ -3226,9 +3657,199 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
         }
     }
 
+    /**
+     * Parallel scans are used only for full scans of large tables which do not
+     * need locks and which cannot take advantage of the order of the
+     * key-to-page index or of an early exit (LIMIT without ORDER BY).
+     */
+    private boolean canScanInParallel(
+            ScanStatement statement, Transaction transaction, boolean lockRequired, boolean forWrite
+    ) {
+        if (transaction != null || lockRequired || forWrite) {
+            return false;
+        }
+        if (this.stats.getTablesize() < parallelScanThreshold) {
+            return false;
+        }
+        Predicate predicate = statement.getPredicate();
+        if (predicate != null && predicate.getIndexOperation() != null) {
+            return false;
+        }
+        TupleComparator comparator = statement.getComparator();
+        if (comparator != null && comparator.isOnlyPrimaryKeyAndAscending() && keyToPageSortedAscending) {
+            return false;
+        }
+        return statement.getLimits() == null || comparator != null;
+    }
+
+    private DataScanner scanParallel(
+            ScanStatement statement, StatementEvaluationContext context, ForkJoinPool pool
+    ) throws StatementExecutionException {
+        final Projection projection = statement.getProjection();
+        boolean applyProjectionDuringScan = statement.getComparator() == null && projection != null;
+        MaterializedRecordSet recordSet;
+        if (applyProjectionDuringScan) {
+            recordSet = tableSpaceManager.getDbmanager().getRecordSetFactory()
+                    .createRecordSet(projection.getFieldNames(), projection.getColumns());
+        } else {
+            recordSet = tableSpaceManager.getDbmanager().getRecordSetFactory()
+                    .createRecordSet(table.columnNames, table.columns);
+        }
+        try (Stream<DataAccessor> tableData = streamTableDataInParallel(statement, context, pool,
+                applyProjectionDuringScan ? projection : null)) {
+            tableData.forEach(recordSet::add);
+        } catch (RuntimeException err) {
+            recordSet.close();
+            throw err;
+        }
+        recordSet.writeFinished();
+        recordSet.sort(statement.getComparator());
+        recordSet.applyLimits(statement.getLimits(), context);
+        if (!applyProjectionDuringScan) {
+            recordSet.applyProjection(projection, context);
+        }
+        return new SimpleDataScanner(null, recordSet);
+    }
+
+    /**
+     * Full scan of the table: the entries of the key-to-page index are grouped
+     * in batches sorted by data page, each batch is processed by a worker of
+     * the pool (access to the data page, predicate and projection) and the
+     * results are returned batch by batch, in the order of the batches.
+     * <p>
+     * Inside each batch records follow the order of the data pages, not the
+     * order of the key-to-page index: like in accessTableData the order of the
+     * records is not defined and callers which need it must sort them.
+     */
+    private Stream<DataAccessor> streamTableDataInParallel(
+            ScanStatement statement, StatementEvaluationContext context, ForkJoinPool pool, Projection projection
+    ) throws StatementExecutionException {
+        statement.validateContext(context);
+        parallelScansCount.increment();
+        // initialized lazily, every worker must see the same value
+        context.getCurrentTimestamp();
+        Stream<Map.Entry<Bytes, Long>> scanner = keyToPage.scanner(null, context, tableContext, null);
+        ParallelScanIterator iterator = new ParallelScanIterator(scanner.iterator(), pool,
+                statement.getPredicate(), projection, context);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false)
+                .onClose(iterator::close)
+                .onClose(scanner::close);
+    }
+
+    private final class ParallelScanIterator implements Iterator<DataAccessor>, AutoCloseable {
+
+        private final Iterator<Map.Entry<Bytes, Long>> source;
+        private final ForkJoinPool pool;
+        private final Predicate predicate;
+        private final Projection projection;
+        private final StatementEvaluationContext context;
+        private final int maxPendingBatches;
+        private final ArrayDeque<CompletableFuture<List<DataAccessor>>> pendingBatches = new ArrayDeque<>();
+        private Iterator<DataAccessor> current = Collections.emptyIterator();
+
+        ParallelScanIterator(
+                Iterator<Map.Entry<Bytes, Long>> source, ForkJoinPool pool,
+                Predicate predicate, Projection projection, StatementEvaluationContext context
+        ) {
+            this.source = source;
+            this.pool = pool;
+            this.predicate = predicate;
+            this.projection = projection;
+            this.context = context;
+            this.maxPendingBatches = pool.getParallelism() * 2;
+        }
+
+        private void fill() {
+            while (pendingBatches.size() < maxPendingBatches && source.hasNext()) {
+                List<Map.Entry<Bytes, Long>> batch = new ArrayList<>(SORTED_PAGE_ACCESS_WINDOW_SIZE);
+                while (batch.size() < SORTED_PAGE_ACCESS_WINDOW_SIZE && source.hasNext()) {
+                    batch.add(source.next());
+                }
+                batch.sort(SORTED_PAGE_ACCESS_COMPARATOR);
+                pendingBatches.add(CompletableFuture.supplyAsync(() -> scanBatch(batch), pool));
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext()) {
+                fill();
+                CompletableFuture<List<DataAccessor>> next = pendingBatches.poll();
+                if (next == null) {
+                    return false;
+                }
+                try {
+                    current = next.join().iterator();
+                } catch (CompletionException err) {
+                    close();
+                    Throwable cause = err.getCause();
+                    LOGGER.log(Level.SEVERE, "error during parallel scan of " + table.tablespace + "." + table.name, cause);
+                    if (cause instanceof StatementExecutionException) {
+                        throw (StatementExecutionException) cause;
+                    } else if (cause instanceof DataStorageManagerException) {
+                        throw (DataStorageManagerException) cause;
+                    } else {
+                        throw new StatementExecutionException(cause);
+                    }
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public DataAccessor next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+
+        private List<DataAccessor> scanBatch(List<Map.Entry<Bytes, Long>> batch)
+                throws StatementExecutionException, DataStorageManagerException {
+            LocalScanPageCache lastPageRead = new LocalScanPageCache();
+            List<DataAccessor> result = new ArrayList<>();
+            for (Map.Entry<Bytes, Long> entry : batch) {
+                Bytes key = entry.getKey();
+                Long pageId = entry.getValue();
+                if (pageId == null) {
+                    continue;
+                }
+                boolean pkFilterCompleteMatch = false;
+                if (predicate != null) {
+                    Predicate.PrimaryKeyMatchOutcome outcome = predicate.matchesRawPrimaryKey(key, context);
+                    if (outcome == Predicate.PrimaryKeyMatchOutcome.FAILED) {
+                        continue;
+                    } else if (outcome == Predicate.PrimaryKeyMatchOutcome.FULL_CONDITION_VERIFIED) {
+                        pkFilterCompleteMatch = true;
+                    }
+                }
+                Record record = fetchRecord(key, pageId, lastPageRead);
+                if (record != null && (pkFilterCompleteMatch || predicate == null || predicate.evaluate(record, context))) {
+                    if (projection != null) {
+                        // evaluate the projection now, not on the thread which consumes the results
+                        DataAccessor tuple = projection.map(record.getDataAccessor(table), context);
+                        result.add(new Tuple(projection.getFieldNames(), tuple.getValues()));
+                    } else {
+                        result.add(record.getDataAccessor(table));
+                    }
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public void close() {
+            CompletableFuture<List<DataAccessor>> pending;
+            while ((pending = pendingBatches.poll()) != null) {
+                pending.cancel(false);
+            }
+        }
+    }
+
     private DataScanner scanWithStream(
             ScanStatement statement, StatementEvaluationContext context,
-            Transaction transaction, boolean lockRequired, boolean forWrite
+            Transaction transaction, boolean lockRequired, boolean forWrite,
+            ForkJoinPool parallelScanPool
     ) throws StatementExecutionException {
         if (transaction != null) {
             transaction.increaseRefcount();
@@ -3263,8 +3884,14 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
                 fromTransactionSorted = fromTransactionSorted.sorted(comparator);
             }
 
-            Stream<DataAccessor> tableData = streamTableData(statement, context, transaction, lockRequired, forWrite)
-                    .map(mapper);
+            Stream<DataAccessor> tableData;
+            if (parallelScanPool != null) {
+                tableData = streamTableDataInParallel(statement, context, parallelScanPool,
+                        applyProjectionDuringScan ? projection : null);
+            } else {
+                tableData = streamTableData(statement, context, transaction, lockRequired, forWrite)
+                        .map(mapper);
+            }
             if (maxRows > 0) {
                 if (sortedByClusteredIndex) {
                     // already sorted if needed
@@ -3371,10 +3998,10 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
         boolean acquireLock = transaction != null || forWrite || lockRequired;
         LocalScanPageCache lastPageRead = acquireLock ? null : new LocalScanPageCache();
         AtomicInteger count = new AtomicInteger();
-        try {
+        IndexOperation indexOperation = predicate != null ? predicate.getIndexOperation() : null;
+        boolean primaryIndexSeek = indexOperation instanceof PrimaryIndexSeek;
+        try (ScanPagePrefetcher prefetcher = primaryIndexSeek ? null : createScanPagePrefetcher()) {
 
-            IndexOperation indexOperation = predicate != null ? predicate.getIndexOperation() : null;
-            boolean primaryIndexSeek = indexOperation instanceof PrimaryIndexSeek;
             AbstractIndexManager useIndex = getIndexForTbleAccess(indexOperation);
 
             class RecordProcessor implements BatchOrderedExecutor.Executor<Entry<Bytes, Long>>,
@@ -3382,13 +4009,44 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
 
                 @Override
                 public void execute(List<Map.Entry<Bytes, Long>> batch) throws HerdDBInternalException {
-                    batch.forEach((entry) -> {
-                        accept(entry);
-                    });
+                    Predicate.PrimaryKeyMatchOutcome[] outcomes = null;
+                    if (prefetcher != null) {
+                        // the batch is sorted by page id, we know in advance which pages we are going to read
+                        Set<Long> upcomingPages = new LinkedHashSet<>();
+                        if (predicate != null) {
+                            outcomes = new Predicate.PrimaryKeyMatchOutcome[batch.size()];
+                        }
+                        for (int i = 0; i < batch.size(); i++) {
+                            Map.Entry<Bytes, Long> entry = batch.get(i);
+                            Long pageId = entry.getValue();
+                            if (pageId == null) {
+                                continue;
+                            }
+                            if (outcomes != null) {
+                                outcomes[i] = predicate.matchesRawPrimaryKey(entry.getKey(), context);
+                                if (outcomes[i] == Predicate.PrimaryKeyMatchOutcome.FAILED) {
+                                    continue;
+                                }
+                            }
+                            upcomingPages.add(pageId);
+                        }
+                        prefetcher.schedule(upcomingPages);
+                    }
+                    for (int i = 0; i < batch.size(); i++) {
+                        process(batch.get(i), outcomes != null ? outcomes[i] : null);
+                    }
                 }
 
                 @Override
                 public void accept(Entry<Bytes, Long> entry) throws DataStorageManagerException, StatementExecutionException, LogNotAvailableException {
+                    process(entry, null);
+                }
+
+                /**
+                 * @param pkOutcome outcome of the filter on the primary key, null if it has not been evaluated yet
+                 */
+                private void process(Entry<Bytes, Long> entry, Predicate.PrimaryKeyMatchOutcome pkOutcome)
+                        throws DataStorageManagerException, StatementExecutionException, LogNotAvailableException {
                     if (transaction != null && count.incrementAndGet() % 1000 == 0) {
                         transaction.touch();
                     }
@@ -3419,15 +4077,16 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
                         if (pageId != null) {
                             boolean pkFilterCompleteMatch = false;
                             if (!primaryIndexSeek && predicate != null) {
-                                Predicate.PrimaryKeyMatchOutcome outcome =
-                                        predicate.matchesRawPrimaryKey(key, context);
+                                Predicate.PrimaryKeyMatchOutcome outcome = pkOutcome != null
+                                        ? pkOutcome
+                                        : predicate.matchesRawPrimaryKey(key, context);
                                 if (outcome == Predicate.PrimaryKeyMatchOutcome.FAILED) {
                                     return;
                                 } else if (outcome == Predicate.PrimaryKeyMatchOutcome.FULL_CONDITION_VERIFIED) {
                                     pkFilterCompleteMatch = true;
                                 }
                             }
-                            Record record = fetchRecord(key, pageId, lastPageRead);
+                            Record record = fetchRecord(key, pageId, lastPageRead, prefetcher);
                             if (record != null && (pkFilterCompleteMatch || predicate == null || predicate.evaluate(record, context))) {
                                 // now the consumer is the owner of the lock on the record
                                 record_discarded = false;
@@ -3657,9 +4316,13 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
     }
 
     private Record fetchRecord(Bytes key, Long pageId, LocalScanPageCache localScanPageCache) throws StatementExecutionException, DataStorageManagerException {
+        return fetchRecord(key, pageId, localScanPageCache, null);
+    }
+
+    private Record fetchRecord(Bytes key, Long pageId, LocalScanPageCache localScanPageCache, ScanPagePrefetcher prefetcher) throws StatementExecutionException, DataStorageManagerException {
         int maxTrials = 2;
         while (true) {
-            DataPage dataPage = fetchDataPage(pageId, localScanPageCache);
+            DataPage dataPage = fetchDataPage(pageId, localScanPageCache, prefetcher);
             if (dataPage != null) {
                 Record record = dataPage.get(key);
                 if (record != null) {
@@ -3711,12 +4374,12 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
         }
     }
 
-    private DataPage fetchDataPage(Long pageId, LocalScanPageCache localScanPageCache) throws DataStorageManagerException {
+    private DataPage fetchDataPage(Long pageId, LocalScanPageCache localScanPageCache, ScanPagePrefetcher prefetcher) throws DataStorageManagerException {
         DataPage dataPage;
         if (localScanPageCache == null
                 || !ENABLE_LOCAL_SCAN_PAGE_CACHE
                 || pages.containsKey(pageId)) {
-            dataPage = loadPageToMemory(pageId, false);
+            dataPage = loadPageToMemory(pageId, false, prefetcher);
         } else {
             if (pageId.equals(localScanPageCache.pageId)) {
                 // same page needed twice
@@ -3725,13 +4388,16 @@ public final class TableManager implements AbstractTableManager, Page.Owner {
                 // TODO: add good heuristics and choose whether to load
                 // the page in the main buffer
                 dataPage = pages.get(pageId);
+                if (dataPage != null && prefetcher != null) {
+                    prefetcher.discard(pageId);
+                }
                 if (dataPage == null) {
                     if (ThreadLocalRandom.current().nextInt(10) < 4) {
                         // 25% of pages will be loaded to main buffer
-                        dataPage = loadPageToMemory(pageId, false);
+                        dataPage = loadPageToMemory(pageId, false, prefetcher);
                     } else {
                         // 75% of pages will be loaded only to current scan buffer
-                        dataPage = temporaryLoadPageToMemory(pageId);
+                        dataPage = temporaryLoadPageToMemory(pageId, prefetcher);
                         localScanPageCache.value = dataPage;
                         localScanPageCache.pageId = pageId;
                     }
@@ -39,7 +39,9 @@ import herddb.core.system.SysindexcolumnsTableManager;
 import herddb.core.system.SysindexesTableManager;
 import herddb.core.system.SyslogstatusManager;
 import herddb.core.system.SysnodesTableManager;
+import herddb.core.system.SyspreparedstatementsTableManager;
 import herddb.core.system.SysstatementsTableManager;
+import herddb.core.system.SystablecolumnstatsTableManager;
 import herddb.core.system.SystablesTableManager;
 import herddb.core.system.SystablespacereplicastateTableManager;
 import herddb.core.system.SystablespacesTableManager;
@@ -47,7 +49,9 @@ import herddb.core.system.SystablestatsTableManager;
 import herddb.core.system.SystransactionsTableManager;
 import herddb.data.consistency.TableChecksum;
 import herddb.data.consistency.TableDataChecksum;
+import herddb.index.LongKeyToPageIndex;
 import herddb.index.MemoryHashIndexManager;
+import herddb.index.blink.BLinkIndexManager;
 import herddb.index.brin.BRINIndexManager;
 import herddb.jmx.JMXUtils;
 import herddb.log.CommitLog;
@@ -119,6 +123,7 @@ import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
@@ -127,6 +132,8 @@ import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
@@ -151,6 +158,7 @@ public class TableSpaceManager {
 
     final StatsLogger tablespaceStasLogger;
     final OpStatsLogger checkpointTimeStats;
+    final OpStatsLogger checkpointFenceTimeStats;
 
     private final MetadataStorageManager metadataStorageManager;
     private final DataStorageManager dataStorageManager;
@@ -211,6 +219,7 @@ public class TableSpaceManager {
         this.virtual = virtual;
         this.tablespaceStasLogger = this.dbmanager.getStatsLogger().scope(this.tableSpaceName);
         this.checkpointTimeStats = this.tablespaceStasLogger.getOpStatsLogger("checkpointTime");
+        this.checkpointFenceTimeStats = this.tablespaceStasLogger.getOpStatsLogger("checkpointFenceTime");
         this.dataStorageManager.tableSpaceMetadataUpdated(tableSpaceUUID, expectedReplicaCount);
     }
 
@@ -221,6 +230,7 @@ public class TableSpaceManager {
         } else {
             registerSystemTableManager(new SystablesTableManager(this));
             registerSystemTableManager(new SystablestatsTableManager(this));
+            registerSystemTableManager(new SystablecolumnstatsTableManager(this));
             registerSystemTableManager(new SysindexesTableManager(this));
             registerSystemTableManager(new SysindexcolumnsTableManager(this));
             registerSystemTableManager(new SyscolumnsTableManager(this));
@@ -231,6 +241,7 @@ public class TableSpaceManager {
         registerSystemTableManager(new SystablespacereplicastateTableManager(this));
         registerSystemTableManager(new SysnodesTableManager(this));
         registerSystemTableManager(new SysstatementsTableManager(this));
+        registerSystemTableManager(new SyspreparedstatementsTableManager(this));
 
     }
 
@@ -319,14 +330,14 @@ public class TableSpaceManager {
                 && dbmanager.getServerConfiguration().getBoolean(ServerConfiguration.PROPERTY_BOOT_FORCE_DOWNLOAD_SNAPSHOT, ServerConfiguration.PROPERTY_BOOT_FORCE_DOWNLOAD_SNAPSHOT_DEFAULT)) {
             LOGGER.log(Level.SEVERE, nodeId + " full recovery of data is forced (" + ServerConfiguration.PROPERTY_BOOT_FORCE_DOWNLOAD_SNAPSHOT + "=true) for tableSpace " + tableSpaceName);
             downloadTableSpaceData();
-            log.recovery(actualLogSequenceNumber, new ApplyEntryOnRecovery(), false);
+            replayLog(actualLogSequenceNumber, false);
         } else {
             try {
-                log.recovery(logSequenceNumber, new ApplyEntryOnRecovery(), false);
+                replayLog(logSequenceNumber, false);
             } catch (FullRecoveryNeededException fullRecoveryNeeded) {
                 LOGGER.log(Level.SEVERE, nodeId + " full recovery of data is needed for tableSpace " + tableSpaceName, fullRecoveryNeeded);
                 downloadTableSpaceData();
-                log.recovery(actualLogSequenceNumber, new ApplyEntryOnRecovery(), false);
+                replayLog(actualLogSequenceNumber, false);
             }
         }
         recoveryInProgress = false;
@@ -344,7 +355,7 @@ public class TableSpaceManager {
         recoveryInProgress = true;
         actualLogSequenceNumber = log.getLastSequenceNumber();
         LOGGER.log(Level.INFO, "recovering tablespace {0} log from sequence number {1}, with fencing", new Object[]{tableSpaceName, actualLogSequenceNumber});
-        log.recovery(actualLogSequenceNumber, new ApplyEntryOnRecovery(), true);
+        replayLog(actualLogSequenceNumber, true);
         LOGGER.log(Level.INFO, "Recovery (with fencing) finished for {0}", tableSpaceName);
         recoveryInProgress = false;
     }
@@ -750,7 +761,18 @@ public class TableSpaceManager {
             try (HDBConnection con = client.openConnection()) {
                 ReplicaFullTableDataDumpReceiver receiver = new ReplicaFullTableDataDumpReceiver(this);
                 int fetchSize = 10000;
-                con.dumpTableSpace(tableSpaceName, receiver, fetchSize, false);
+                ServerConfiguration serverConfiguration = dbmanager.getServerConfiguration();
+                int parallelTables = serverConfiguration.getInt(ServerConfiguration.PROPERTY_DOWNLOAD_PARALLEL_TABLES,
+                        ServerConfiguration.PROPERTY_DOWNLOAD_PARALLEL_TABLES_DEFAULT);
+                PduCodec.DumpOptions options = null;
+                if (parallelTables > 1) {
+                    options = new PduCodec.DumpOptions(parallelTables,
+                            serverConfiguration.getInt(ServerConfiguration.PROPERTY_DOWNLOAD_MAX_PENDING_CHUNKS,
+                                    ServerConfiguration.PROPERTY_DOWNLOAD_MAX_PENDING_CHUNKS_DEFAULT),
+                            serverConfiguration.getBoolean(ServerConfiguration.PROPERTY_DOWNLOAD_COMPRESS,
+                                    ServerConfiguration.PROPERTY_DOWNLOAD_COMPRESS_DEFAULT));
+                }
+                con.dumpTableSpace(tableSpaceName, receiver, fetchSize, false, options);
                 receiver.getLatch().get(1, TimeUnit.HOURS);
                 this.actualLogSequenceNumber = receiver.logSequenceNumber;
                 LOGGER.log(Level.INFO, tableSpaceName + " After download local actualLogSequenceNumber is " + actualLogSequenceNumber);
@@ -966,8 +988,18 @@ public class TableSpaceManager {
 
     @SuppressFBWarnings("RCN_REDUNDANT_NULLCHECK_OF_NULL_VALUE")
     void dumpTableSpace(String dumpId, Channel channel, int fetchSize, boolean includeLog) throws DataStorageManagerException, LogNotAvailableException {
+        dumpTableSpace(dumpId, channel, fetchSize, includeLog, null);
+    }
+
+    /**
+     * Sends a dump of the TableSpace.
+     *
+     * @param options if not null tables are streamed at the same time, with
+     * windowed flow control, see {@link PduCodec.DumpOptions}
+     */
+    void dumpTableSpace(String dumpId, Channel channel, int fetchSize, boolean includeLog, PduCodec.DumpOptions options) throws DataStorageManagerException, LogNotAvailableException {
 
-        LOGGER.log(Level.INFO, "dumpTableSpace dumpId:{0} channel {1} fetchSize:{2}, includeLog:{3}", new Object[]{dumpId, channel, fetchSize, includeLog});
+        LOGGER.log(Level.INFO, "dumpTableSpace dumpId:{0} channel {1} fetchSize:{2}, includeLog:{3}, options:{4}", new Object[]{dumpId, channel, fetchSize, includeLog, options});
 
         TableSpaceCheckpoint checkpoint;
 
@@ -1027,27 +1059,42 @@ public class TableSpaceManager {
                 sendTransactionsDump(batch, channel, dumpId, timeout);
             }
 
+            DumpFlowControl flowControl = options != null
+                    ? new DumpFlowControl(channel, options.maxPendingChunks, timeout) : null;
+            int parallelTables = options != null ? options.parallelTables : 1;
+            List<Callable<Void>> tableDumps = new ArrayList<>();
             for (Entry<String, LogSequenceNumber> entry : checkpoint.tablesCheckpoints.entrySet()) {
                 final AbstractTableManager tableManager = tables.get(entry.getKey());
                 final LogSequenceNumber sequenceNumber = entry.getValue();
                 if (tableManager.isSystemTable()) {
                     continue;
                 }
-                try {
+                tableDumps.add(() -> {
                     LOGGER.log(Level.INFO, "Sending table checkpoint for {} took at sequence number {}", new Object[]{tableManager.getTable().name, sequenceNumber});
-                    FullTableScanConsumer sink = new SingleTableDumper(tableSpaceName, tableManager, channel, dumpId, timeout, fetchSize);
+                    FullTableScanConsumer sink = new SingleTableDumper(tableSpaceName, tableManager, channel, dumpId, timeout, fetchSize,
+                            flowControl, options != null && options.compress);
                     tableManager.dump(sequenceNumber, sink);
-                } catch (DataStorageManagerException err) {
-                    LOGGER.log(Level.SEVERE, "error sending dump id " + dumpId, err);
-                    long errorid = channel.generateRequestId();
-                    try (Pdu response = channel.sendMessageWithPduReply(errorid, PduCodec.TablespaceDumpData.write(
-                            id, tableSpaceName, dumpId, "error", null, 0,
-                            0, 0,
-                            null, null),
-                            timeout)) {
+                    return null;
+                });
+            }
+            try {
+                if (parallelTables > 1 && tableDumps.size() > 1) {
+                    dumpTablesInParallel(tableDumps, Math.min(parallelTables, tableDumps.size()));
+                } else {
+                    for (Callable<Void> tableDump : tableDumps) {
+                        tableDump.call();
                     }
-                    return;
                 }
+            } catch (Exception err) {
+                LOGGER.log(Level.SEVERE, "error sending dump id " + dumpId, err);
+                long errorid = channel.generateRequestId();
+                try (Pdu response = channel.sendMessageWithPduReply(errorid, PduCodec.TablespaceDumpData.write(
+                        id, tableSpaceName, dumpId, "error", null, 0,
+                        0, 0,
+                        null, null),
+                        timeout)) {
+                }
+                return;
             }
 
             if (!txlogentries.isEmpty()) {
@@ -1087,6 +1134,33 @@ public class TableSpaceManager {
 
     }
 
+    private void dumpTablesInParallel(List<Callable<Void>> tableDumps, int parallelTables) throws Exception {
+        ExecutorService dumpThreads = Executors.newFixedThreadPool(parallelTables,
+                (Runnable r) -> {
+                    Thread t = new Thread(r, "herddb-dump-" + tableSpaceName);
+                    t.setDaemon(true);
+                    return t;
+                });
+        try {
+            List<Future<Void>> results = new ArrayList<>();
+            for (Callable<Void> tableDump : tableDumps) {
+                results.add(dumpThreads.submit(tableDump));
+            }
+            for (Future<Void> result : results) {
+                try {
+                    result.get();
+                } catch (ExecutionException err) {
+                    Throwable cause = err.getCause();
+                    throw cause instanceof Exception ? (Exception) cause : err;
+                }
+            }
+        } finally {
+            // stop the other tables on errors, they must not read the checkpoint after it has been released
+            dumpThreads.shutdownNow();
+            dumpThreads.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
     private void sendTransactionsDump(List<Transaction> batch, Channel channel, String dumpId, final int timeout) throws TimeoutException, InterruptedException {
         if (batch.isEmpty()) {
             return;
@@ -1541,7 +1615,18 @@ public class TableSpaceManager {
                 }
             }
 
-            LogEntry entry = LogEntryFactory.createTable(statement.getTableDefinition(), transaction);
+            Table table = statement.getTableDefinition();
+            if (table.keyToPageIndex == Table.KEYTOPAGE_INDEX_DEFAULT
+                    && LongKeyToPageIndex.isSupported(table)
+                    && dbmanager.getServerConfiguration().getBoolean(ServerConfiguration.PROPERTY_KEYTOPAGE_PRIMITIVE,
+                    ServerConfiguration.PROPERTY_KEYTOPAGE_PRIMITIVE_DEFAULT)) {
+                table = Table.builder()
+                        .cloning(table)
+                        .keyToPageIndex(Table.KEYTOPAGE_INDEX_LONG)
+                        .build();
+            }
+
+            LogEntry entry = LogEntryFactory.createTable(table, transaction);
             CommitLogResult pos = log.log(entry, entry.transactionId <= 0);
             apply(pos, entry, false);
 
@@ -1765,6 +1850,10 @@ public class TableSpaceManager {
                 indexManager = new BRINIndexManager(index, dbmanager.getMemoryManager(), tableManager, log, dataStorageManager, this, tableSpaceUUID, transaction,
                         writeLockTimeout, readLockTimeout);
                 break;
+            case Index.TYPE_BLINK:
+                indexManager = new BLinkIndexManager(index, dbmanager.getMemoryManager(), tableManager, log, dataStorageManager, this, tableSpaceUUID, transaction,
+                        writeLockTimeout, readLockTimeout);
+                break;
             default:
                 throw new DataStorageManagerException("invalid NON-UNIQUE index type " + index.type);
         }
@@ -1939,12 +2028,16 @@ public class TableSpaceManager {
         LogSequenceNumber _logSequenceNumber = null;
         Map<String, LogSequenceNumber> checkpointsTableNameSequenceNumber = new HashMap<>();
 
+        // concurrent mode is not available if the caller already holds the lock
+        ExecutorService checkpointExecutor = alreadLocked ? null : dbmanager.getCheckpointExecutor();
         try {
             List<PostCheckpointAction> actions = new ArrayList<>();
 
             long lockStamp = 0;
+            boolean writeLocked = false;
             if (!alreadLocked) {
                 lockStamp = acquireWriteLock("checkpoint");
+                writeLocked = true;
             }
             try {
                 logSequenceNumber = log.getLastSequenceNumber();
@@ -1968,20 +2061,29 @@ public class TableSpaceManager {
                 actions.addAll(dataStorageManager.writeTransactionsAtCheckpoint(tableSpaceUUID, logSequenceNumber, currentTransactions));
                 actions.addAll(writeTablesOnDataStorageManager(new CommitLogResult(logSequenceNumber, false, true), true));
 
-                // we checkpoint all data to disk and save the actual log sequence number
-                for (AbstractTableManager tableManager : tables.values()) {
-                    // each TableManager will save its own checkpoint sequence number (on TableStatus) and upon recovery will replay only actions with log position after the actual table-local checkpoint
-                    // remember that the checkpoint for a table can last "minutes" and we do not want to stop the world
-
-                    if (!tableManager.isSystemTable()) {
-                        TableCheckpoint checkpoint = full ? tableManager.fullCheckpoint(pin) : tableManager.checkpoint(pin);
-
-                        if (checkpoint != null) {
-                            LOGGER.log(Level.INFO, "checkpoint done for table {0}.{1} (pin: {2})", new Object[]{tableSpaceName, tableManager.getTable().name, pin});
-                            actions.addAll(checkpoint.actions);
-                            checkpointsTableNameSequenceNumber.put(checkpoint.tableName, checkpoint.sequenceNumber);
-                            if (afterTableCheckPointAction != null) {
-                                afterTableCheckPointAction.run();
+                if (checkpointExecutor != null) {
+                    // each table will be checkpointed at a log position which is after logSequenceNumber, so we can
+                    // let DML statements run, we only keep a shared lock in order to prevent DDLs
+                    lockStamp = generalLock.tryConvertToReadLock(lockStamp);
+                    writeLocked = false;
+                    checkpointFenceTimeStats.registerSuccessfulEvent(System.currentTimeMillis() - _start, TimeUnit.MILLISECONDS);
+                    checkpointTablesConcurrently(checkpointExecutor, full, pin, actions, checkpointsTableNameSequenceNumber);
+                } else {
+                    // we checkpoint all data to disk and save the actual log sequence number
+                    for (AbstractTableManager tableManager : tables.values()) {
+                        // each TableManager will save its own checkpoint sequence number (on TableStatus) and upon recovery will replay only actions with log position after the actual table-local checkpoint
+                        // remember that the checkpoint for a table can last "minutes" and we do not want to stop the world
+
+                        if (!tableManager.isSystemTable()) {
+                            TableCheckpoint checkpoint = full ? tableManager.fullCheckpoint(pin) : tableManager.checkpoint(pin);
+
+                            if (checkpoint != null) {
+                                LOGGER.log(Level.INFO, "checkpoint done for table {0}.{1} (pin: {2})", new Object[]{tableSpaceName, tableManager.getTable().name, pin});
+                                actions.addAll(checkpoint.actions);
+                                checkpointsTableNameSequenceNumber.put(checkpoint.tableName, checkpoint.sequenceNumber);
+                                if (afterTableCheckPointAction != null) {
+                                    afterTableCheckPointAction.run();
+                                }
                             }
                         }
                     }
@@ -1997,8 +2099,10 @@ public class TableSpaceManager {
 
                 _logSequenceNumber = log.getLastSequenceNumber();
             } finally {
-                if (!alreadLocked) {
+                if (writeLocked) {
                     releaseWriteLock(lockStamp, "checkpoint");
+                } else if (!alreadLocked) {
+                    releaseReadLock(lockStamp, "checkpoint");
                 }
             }
 
@@ -2018,6 +2122,75 @@ public class TableSpaceManager {
         }
     }
 
+    /**
+     * Checkpoints every table on the given executor, waiting for all of them.
+     * The TableStatus of the tables and the tablespace checkpoint are written
+     * only if every table has been checkpointed successfully.
+     */
+    private void checkpointTablesConcurrently(
+            ExecutorService checkpointExecutor, boolean full, boolean pin,
+            List<PostCheckpointAction> actions,
+            Map<String, LogSequenceNumber> checkpointsTableNameSequenceNumber
+    ) throws DataStorageManagerException {
+        List<CompletableFuture<TableCheckpoint>> tableCheckpoints = new ArrayList<>();
+        for (AbstractTableManager tableManager : tables.values()) {
+            if (tableManager.isSystemTable()) {
+                continue;
+            }
+            tableCheckpoints.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    TableCheckpoint checkpoint = tableManager.checkpointWithoutStatus(full, pin);
+                    if (checkpoint != null) {
+                        LOGGER.log(Level.INFO, "checkpoint done for table {0}.{1} (pin: {2})", new Object[]{tableSpaceName, tableManager.getTable().name, pin});
+                        if (afterTableCheckPointAction != null) {
+                            afterTableCheckPointAction.run();
+                        }
+                    }
+                    return checkpoint;
+                } catch (DataStorageManagerException err) {
+                    throw new CompletionException(err);
+                }
+            }, checkpointExecutor));
+        }
+        // wait for every table, we cannot release the lock while a table is still running its checkpoint
+        Throwable error = null;
+        List<TableCheckpoint> done = new ArrayList<>();
+        for (CompletableFuture<TableCheckpoint> future : tableCheckpoints) {
+            try {
+                TableCheckpoint checkpoint = future.get();
+                if (checkpoint != null) {
+                    done.add(checkpoint);
+                }
+            } catch (InterruptedException err) {
+                Thread.currentThread().interrupt();
+                if (error == null) {
+                    error = err;
+                }
+            } catch (ExecutionException err) {
+                if (error == null) {
+                    error = err.getCause();
+                } else {
+                    error.addSuppressed(err.getCause());
+                }
+            }
+        }
+        if (error != null) {
+            if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            }
+            throw new DataStorageManagerException(error);
+        }
+        // old pages are deleted only by the post checkpoint actions, so until every status
+        // has been written recovery can still start from the previous checkpoint of each table
+        for (TableCheckpoint checkpoint : done) {
+            actions.addAll(checkpoint.actions);
+            if (checkpoint.tableStatus != null) {
+                actions.addAll(dataStorageManager.tableCheckpoint(tableSpaceUUID, checkpoint.tableUuid, checkpoint.tableStatus, pin));
+            }
+            checkpointsTableNameSequenceNumber.put(checkpoint.tableName, checkpoint.sequenceNumber);
+        }
+    }
+
     private CompletableFuture<StatementExecutionResult> beginTransactionAsync(StatementEvaluationContext context, boolean releaseLock) throws StatementExecutionException {
 
         long id = newTransactionId.incrementAndGet();
@@ -2178,6 +2351,23 @@ public class TableSpaceManager {
         return new ArrayList<>(this.transactions.values());
     }
 
+    private void replayLog(LogSequenceNumber from, boolean fencing) throws DataStorageManagerException, LogNotAvailableException {
+        int threads = dbmanager.getServerConfiguration().getInt(ServerConfiguration.PROPERTY_RECOVERY_THREADS,
+                ServerConfiguration.PROPERTY_RECOVERY_THREADS_DEFAULT);
+        if (threads <= 0) {
+            log.recovery(from, new ApplyEntryOnRecovery(), fencing);
+            return;
+        }
+        try (ParallelLogReplay replay = new ParallelLogReplay(tableSpaceName, threads, RECOVERY_QUEUE_SIZE)) {
+            log.recovery(from, new ParallelApplyEntryOnRecovery(replay), fencing);
+            replay.barrier();
+            LOGGER.log(Level.INFO, "{0} replayed {1} DML entries using {2} threads",
+                    new Object[]{tableSpaceName, replay.getSubmitted(), threads});
+        }
+    }
+
+    private static final int RECOVERY_QUEUE_SIZE = 1024;
+
     private class ApplyEntryOnRecovery implements BiConsumer<LogSequenceNumber, LogEntry> {
 
         public ApplyEntryOnRecovery() {
@@ -2196,6 +2386,43 @@ public class TableSpaceManager {
         }
     }
 
+    /**
+     * Dispatches DML entries to parallel workers: entries of the same
+     * transaction, or on the same key for non transactional entries, are
+     * applied in log order by the same worker. Every other entry (DDL,
+     * begin/commit/rollback of transactions, truncate...) is a barrier.
+     */
+    private class ParallelApplyEntryOnRecovery extends ApplyEntryOnRecovery {
+
+        private final ParallelLogReplay replay;
+
+        ParallelApplyEntryOnRecovery(ParallelLogReplay replay) {
+            this.replay = replay;
+        }
+
+        @Override
+        public void accept(LogSequenceNumber t, LogEntry u) {
+            AbstractTableManager tableManager = null;
+            if (u.type == LogEntryType.INSERT || u.type == LogEntryType.UPDATE || u.type == LogEntryType.DELETE) {
+                tableManager = tables.get(u.tableName);
+            }
+            if (tableManager == null) {
+                replay.barrier();
+                super.accept(t, u);
+                return;
+            }
+            if (dbmanager.isStopped()) {
+                throw new RuntimeException("System was requested to stop, aborting recovery at " + t);
+            }
+            actualLogSequenceNumber = t;
+            int routingKey = u.transactionId > 0
+                    ? Long.hashCode(u.transactionId)
+                    : 31 * u.tableName.hashCode() + u.key.hashCode();
+            AbstractTableManager target = tableManager;
+            replay.submit(routingKey, () -> target.apply(new CommitLogResult(t, false, true), u, true));
+        }
+    }
+
     public DBManager getDbmanager() {
         return dbmanager;
     }
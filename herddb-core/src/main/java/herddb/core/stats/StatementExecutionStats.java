@@ -0,0 +1,103 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.core.stats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Executions and latency of a statement.
+ * <p>
+ * Latencies are recorded in microseconds into a histogram with power of two
+ * buckets: percentiles are approximated by the upper bound of their bucket.
+ */
+public final class StatementExecutionStats {
+
+    private static final int NUM_BUCKETS = 40;
+
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder totalLatency = new LongAdder();
+    private final AtomicLong maxLatency = new AtomicLong();
+    private final AtomicLongArray buckets = new AtomicLongArray(NUM_BUCKETS);
+
+    public void recordExecution(long latencyNanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(Math.max(0, latencyNanos));
+        executions.increment();
+        totalLatency.add(micros);
+        maxLatency.accumulateAndGet(micros, Math::max);
+        buckets.incrementAndGet(bucket(micros));
+    }
+
+    /**
+     * Bucket i contains latencies up to 2^i - 1 microseconds
+     */
+    private static int bucket(long micros) {
+        return Math.min(NUM_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+    }
+
+    public long getExecutions() {
+        return executions.sum();
+    }
+
+    /**
+     * @return total latency of all of the executions, in microseconds
+     */
+    public long getTotalLatency() {
+        return totalLatency.sum();
+    }
+
+    /**
+     * @return max latency, in microseconds
+     */
+    public long getMaxLatency() {
+        return maxLatency.get();
+    }
+
+    /**
+     * Approximated percentile of the latency.
+     *
+     * @param percentile from 0 to 100
+     * @return upper bound of the latency, in microseconds, 0 if the statement
+     * has never been executed
+     */
+    public long getLatencyPercentile(double percentile) {
+        long[] counts = new long[NUM_BUCKETS];
+        long total = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long threshold = (long) Math.ceil(total * percentile / 100);
+        long count = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            count += counts[i];
+            if (count >= threshold && count > 0) {
+                return Math.min((1L << i) - 1, getMaxLatency());
+            }
+        }
+        return getMaxLatency();
+    }
+}
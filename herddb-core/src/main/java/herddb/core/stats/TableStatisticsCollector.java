@@ -0,0 +1,166 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.core.stats;
+
+import herddb.codec.RecordSerializer;
+import herddb.model.Column;
+import herddb.model.ColumnStatistics;
+import herddb.model.ColumnTypes;
+import herddb.model.Table;
+import herddb.model.TableStatistics;
+import herddb.utils.DataAccessor;
+import herddb.utils.SQLRecordPredicateFunctions;
+import herddb.utils.SystemProperties;
+import herddb.utils.XXHash64Utils;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Computes {@link TableStatistics} during a full scan of a table.
+ * <p>
+ * The number of distinct values is estimated with an {@link HyperLogLog}, the
+ * equi-depth histogram is built from a uniform sample of the values
+ * (reservoir sampling), so memory usage does not depend on the size of the
+ * table.
+ */
+public class TableStatisticsCollector {
+
+    private static final int HLL_PRECISION = 14;
+    private static final int SAMPLE_SIZE = SystemProperties.
+            getIntSystemProperty("herddb.analyze.samplesize", 10_000);
+    private static final int HISTOGRAM_BUCKETS = SystemProperties.
+            getIntSystemProperty("herddb.analyze.histogrambuckets", 32);
+
+    private final ColumnCollector[] columns;
+    private final Random random = new Random();
+    private long rowCount;
+
+    public TableStatisticsCollector(Table table) {
+        this.columns = new ColumnCollector[table.columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = new ColumnCollector(table.columns[i]);
+        }
+    }
+
+    /**
+     * Accounts a record.
+     *
+     * @param record the record, with the same schema of the table
+     */
+    public void accept(DataAccessor record) {
+        rowCount++;
+        for (int i = 0; i < columns.length; i++) {
+            columns[i].accept(record.get(i));
+        }
+    }
+
+    public TableStatistics build(long analyzeTimestamp) {
+        List<ColumnStatistics> result = new ArrayList<>(columns.length);
+        for (ColumnCollector column : columns) {
+            result.add(column.build());
+        }
+        return new TableStatistics(analyzeTimestamp, rowCount, result);
+    }
+
+    private static boolean isComparable(int type) {
+        return type != ColumnTypes.BYTEARRAY
+                && type != ColumnTypes.NOTNULL_BYTEARRAY;
+    }
+
+    private final class ColumnCollector {
+
+        private final Column column;
+        private final boolean comparable;
+        private final HyperLogLog distinctValues = new HyperLogLog(HLL_PRECISION);
+        private final Object[] sample;
+        private long nonNullCount;
+        private long nullCount;
+        private Object min;
+        private Object max;
+
+        ColumnCollector(Column column) {
+            this.column = column;
+            this.comparable = isComparable(column.type);
+            this.sample = comparable ? new Object[SAMPLE_SIZE] : null;
+        }
+
+        void accept(Object value) {
+            if (value == null) {
+                nullCount++;
+                return;
+            }
+            distinctValues.add(hash(value));
+            if (comparable) {
+                if (min == null || SQLRecordPredicateFunctions.compare(value, min) < 0) {
+                    min = value;
+                }
+                if (max == null || SQLRecordPredicateFunctions.compare(value, max) > 0) {
+                    max = value;
+                }
+                if (nonNullCount < sample.length) {
+                    sample[(int) nonNullCount] = value;
+                } else {
+                    long position = (long) (random.nextDouble() * (nonNullCount + 1));
+                    if (position < sample.length) {
+                        sample[(int) position] = value;
+                    }
+                }
+            }
+            nonNullCount++;
+        }
+
+        private long hash(Object value) {
+            if (value instanceof Integer || value instanceof Long) {
+                return HyperLogLog.hash(((Number) value).longValue());
+            }
+            if (value instanceof Double) {
+                return HyperLogLog.hash(Double.doubleToLongBits((Double) value));
+            }
+            byte[] serialized = RecordSerializer.serialize(value, column.type);
+            return XXHash64Utils.hash(serialized, 0, serialized.length);
+        }
+
+        ColumnStatistics build() {
+            // the estimate cannot be greater than the number of values
+            long distinct = Math.min(distinctValues.estimate(), nonNullCount);
+            if (nonNullCount > 0 && distinct == 0) {
+                distinct = 1;
+            }
+            Object[] histogram = null;
+            if (comparable && nonNullCount > 0) {
+                int sampleSize = (int) Math.min(nonNullCount, sample.length);
+                Object[] sorted = Arrays.copyOf(sample, sampleSize);
+                Arrays.sort(sorted, SQLRecordPredicateFunctions::compare);
+                int buckets = Math.max(1, Math.min(HISTOGRAM_BUCKETS, sampleSize - 1));
+                histogram = new Object[buckets + 1];
+                for (int i = 0; i <= buckets; i++) {
+                    histogram[i] = sorted[(int) ((long) i * (sampleSize - 1) / buckets)];
+                }
+                // the sample may miss the extremes
+                histogram[0] = min;
+                histogram[buckets] = max;
+            }
+            return new ColumnStatistics(column.name, column.type, distinct, nullCount, min, max, histogram);
+        }
+    }
+}
@@ -133,6 +133,41 @@ public abstract class AbstractSystemTableManager implements AbstractTableManager
                 return 0;
             }
 
+            @Override
+            public long getPrefetchedPagesCount() {
+                return 0;
+            }
+
+            @Override
+            public long getPrefetchHitsCount() {
+                return 0;
+            }
+
+            @Override
+            public long getPrefetchWastedCount() {
+                return 0;
+            }
+
+            @Override
+            public long getParallelScansCount() {
+                return 0;
+            }
+
+            @Override
+            public long getLockWaitsCount() {
+                return 0;
+            }
+
+            @Override
+            public long getLockWaitTime() {
+                return 0;
+            }
+
+            @Override
+            public long getLockTimeoutsCount() {
+                return 0;
+            }
+
         };
     }
 
@@ -0,0 +1,85 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.core.system;
+
+import herddb.codec.RecordSerializer;
+import herddb.core.TableSpaceManager;
+import herddb.core.stats.StatementExecutionStats;
+import herddb.model.ColumnTypes;
+import herddb.model.Record;
+import herddb.model.Table;
+import herddb.model.Transaction;
+import herddb.server.ServerSidePreparedStatementCache;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Table Manager for the SYSPREPAREDSTATEMENTS virtual table, latencies are in
+ * microseconds
+ */
+public class SyspreparedstatementsTableManager extends AbstractSystemTableManager {
+
+    private static final Table TABLE = Table
+            .builder()
+            .name("syspreparedstatements")
+            .column("id", ColumnTypes.LONG)
+            .column("tablespace", ColumnTypes.STRING)
+            .column("query", ColumnTypes.STRING)
+            .column("planpinned", ColumnTypes.BOOLEAN)
+            .column("executions", ColumnTypes.LONG)
+            .column("totallatency", ColumnTypes.LONG)
+            .column("p50latency", ColumnTypes.LONG)
+            .column("p99latency", ColumnTypes.LONG)
+            .column("maxlatency", ColumnTypes.LONG)
+            .primaryKey("id", false)
+            .build();
+
+    public SyspreparedstatementsTableManager(TableSpaceManager parent) {
+        super(parent, TABLE);
+    }
+
+    @Override
+    protected Iterable<Record> buildVirtualRecordList(Transaction transaction) {
+        ServerSidePreparedStatementCache preparedStatements = tableSpaceManager.getDbmanager().getPreparedStatementsCache();
+        String tableSpaceName = tableSpaceManager.getTableSpaceName();
+        List<Record> result = new ArrayList<>();
+        for (ServerSidePreparedStatementCache.PreparedStatementInfo info : preparedStatements.getStatements()) {
+            if (!tableSpaceName.equals(info.getTablespace())) {
+                continue;
+            }
+            StatementExecutionStats stats = info.getExecutionStats();
+            result.add(RecordSerializer.makeRecord(
+                    table,
+                    "id", info.getId(),
+                    "tablespace", info.getTablespace(),
+                    "query", info.getQuery(),
+                    "planpinned", info.isPlanPinned(),
+                    "executions", stats.getExecutions(),
+                    "totallatency", stats.getTotalLatency(),
+                    "p50latency", stats.getLatencyPercentile(50),
+                    "p99latency", stats.getLatencyPercentile(99),
+                    "maxlatency", stats.getMaxLatency())
+            );
+        }
+        return result;
+    }
+
+}
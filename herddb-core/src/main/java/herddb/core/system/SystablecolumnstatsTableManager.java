@@ -0,0 +1,96 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.core.system;
+
+import herddb.codec.RecordSerializer;
+import herddb.core.AbstractTableManager;
+import herddb.core.TableSpaceManager;
+import herddb.model.ColumnStatistics;
+import herddb.model.ColumnTypes;
+import herddb.model.Record;
+import herddb.model.Table;
+import herddb.model.TableStatistics;
+import herddb.model.Transaction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Table Manager for the SYSTABLECOLUMNSTATS virtual table, column statistics
+ * computed by ANALYZE TABLE
+ */
+public class SystablecolumnstatsTableManager extends AbstractSystemTableManager {
+
+    private static final Table TABLE = Table
+            .builder()
+            .name("systablecolumnstats")
+            .column("tablespace", ColumnTypes.STRING)
+            .column("table_name", ColumnTypes.STRING)
+            .column("column_name", ColumnTypes.STRING)
+            .column("analyze_timestamp", ColumnTypes.TIMESTAMP)
+            .column("row_count", ColumnTypes.LONG)
+            .column("distinct_values", ColumnTypes.LONG)
+            .column("null_count", ColumnTypes.LONG)
+            .column("min_value", ColumnTypes.STRING)
+            .column("max_value", ColumnTypes.STRING)
+            .column("histogram", ColumnTypes.STRING)
+            .primaryKey("tablespace", false)
+            .primaryKey("table_name", false)
+            .primaryKey("column_name", false)
+            .build();
+
+    public SystablecolumnstatsTableManager(TableSpaceManager parent) {
+        super(parent, TABLE);
+    }
+
+    @Override
+    protected Iterable<Record> buildVirtualRecordList(Transaction transaction) {
+        List<Table> tables = tableSpaceManager.getAllVisibleTables(transaction);
+        List<Record> result = new ArrayList<>();
+        for (Table r : tables) {
+            AbstractTableManager tableManager = tableSpaceManager.getTableManager(r.name);
+            if (tableManager == null || tableManager.isSystemTable()) {
+                continue;
+            }
+            TableStatistics statistics = tableManager.getStatistics();
+            if (statistics == null) {
+                continue;
+            }
+            for (ColumnStatistics column : statistics.getColumns()) {
+                result.add(RecordSerializer.makeRecord(
+                        table,
+                        "tablespace", r.tablespace,
+                        "table_name", r.name,
+                        "column_name", column.getColumn(),
+                        "analyze_timestamp", new java.sql.Timestamp(statistics.getAnalyzeTimestamp()),
+                        "row_count", statistics.getRowCount(),
+                        "distinct_values", column.getDistinctValues(),
+                        "null_count", column.getNullCount(),
+                        "min_value", column.getMin() != null ? column.getMin().toString() : null,
+                        "max_value", column.getMax() != null ? column.getMax().toString() : null,
+                        "histogram", column.getHistogram() != null ? Arrays.toString(column.getHistogram()) : null
+                ));
+            }
+        }
+        return result;
+    }
+
+}
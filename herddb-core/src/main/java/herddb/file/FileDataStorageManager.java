@@ -32,13 +32,16 @@ import herddb.model.Record;
 import herddb.model.Table;
 import herddb.model.Transaction;
 import herddb.server.ServerConfiguration;
+import herddb.storage.DataPageCodec;
 import herddb.storage.DataPageDoesNotExistException;
 import herddb.storage.DataStorageManager;
 import herddb.storage.DataStorageManagerException;
 import herddb.storage.FullTableScanConsumer;
 import herddb.storage.IndexStatus;
+import herddb.storage.IndexStatusDoesNotExistException;
 import herddb.storage.TableStatus;
 import herddb.utils.ByteArrayCursor;
+import herddb.utils.ByteBufUtils;
 import herddb.utils.Bytes;
 import herddb.utils.CleanDirectoryFileVisitor;
 import herddb.utils.DeleteFileVisitor;
@@ -55,12 +58,17 @@ import herddb.utils.SystemInstrumentation;
 import herddb.utils.SystemProperties;
 import herddb.utils.VisibleByteArrayOutputStream;
 import herddb.utils.XXHash64Utils;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.util.Recycler;
+import io.netty.util.internal.PlatformDependent;
 import java.io.BufferedInputStream;
 import java.io.IOError;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
@@ -80,6 +88,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.apache.bookkeeper.stats.Counter;
 import org.apache.bookkeeper.stats.NullStatsLogger;
 import org.apache.bookkeeper.stats.OpStatsLogger;
 import org.apache.bookkeeper.stats.StatsLogger;
@@ -97,6 +106,7 @@ public class FileDataStorageManager extends DataStorageManager {
     private final int swapThreshold;
     private final boolean requirefsync;
     private final boolean pageodirect;
+    private final boolean pagemmap;
     private final boolean indexodirect;
     private final boolean hashChecksEnabled;
     private final boolean hashWritesEnabled;
@@ -105,6 +115,8 @@ public class FileDataStorageManager extends DataStorageManager {
     private final OpStatsLogger dataPageWrites;
     private final OpStatsLogger indexPageReads;
     private final OpStatsLogger indexPageWrites;
+    private final Counter compressedPagesRawBytes;
+    private final Counter compressedPagesBytes;
 
     public static final String FILEEXTENSION_PAGE = ".page";
 
@@ -138,6 +150,16 @@ public class FileDataStorageManager extends DataStorageManager {
             Path baseDirectory, Path tmpDirectory, int swapThreshold,
             boolean requirefsync, boolean pageodirect, boolean indexodirect,
             boolean hashChecksEnabled, boolean hashWritesEnabled, StatsLogger logger
+    ) {
+        this(baseDirectory, tmpDirectory, swapThreshold, requirefsync, pageodirect,
+                ServerConfiguration.PROPERTY_PAGE_USE_MMAP_DEFAULT, indexodirect,
+                hashChecksEnabled, hashWritesEnabled, logger);
+    }
+
+    public FileDataStorageManager(
+            Path baseDirectory, Path tmpDirectory, int swapThreshold,
+            boolean requirefsync, boolean pageodirect, boolean pagemmap, boolean indexodirect,
+            boolean hashChecksEnabled, boolean hashWritesEnabled, StatsLogger logger
     ) {
         this.baseDirectory = baseDirectory;
         this.tmpDirectory = tmpDirectory;
@@ -145,6 +167,7 @@ public class FileDataStorageManager extends DataStorageManager {
         this.logger = logger;
         this.requirefsync = requirefsync;
         this.pageodirect = pageodirect && OpenFileUtils.isO_DIRECT_Supported();
+        this.pagemmap = pagemmap;
         this.indexodirect = indexodirect && OpenFileUtils.isO_DIRECT_Supported();
         this.hashChecksEnabled = hashChecksEnabled;
         this.hashWritesEnabled = hashWritesEnabled;
@@ -153,6 +176,8 @@ public class FileDataStorageManager extends DataStorageManager {
         this.dataPageWrites = scope.getOpStatsLogger("data_pagewrites");
         this.indexPageReads = scope.getOpStatsLogger("index_pagereads");
         this.indexPageWrites = scope.getOpStatsLogger("index_pagewrites");
+        this.compressedPagesRawBytes = scope.getCounter("data_compressedpages_rawbytes");
+        this.compressedPagesBytes = scope.getCounter("data_compressedpages_bytes");
     }
 
     @Override
@@ -305,7 +330,9 @@ public class FileDataStorageManager extends DataStorageManager {
         Path pageFile = getPageFile(tableDir, pageId);
         List<Record> result;
         try {
-            if (pageodirect) {
+            if (pagemmap) {
+                result = rawReadMappedDataPage(pageFile);
+            } else if (pageodirect) {
                 try (ODirectFileInputStream odirect = new ODirectFileInputStream(pageFile, O_DIRECT_BLOCK_BATCH)) {
                     result = rawReadDataPage(pageFile, odirect);
                 }
@@ -337,15 +364,20 @@ public class FileDataStorageManager extends DataStorageManager {
         try (ByteArrayCursor dataIn = ByteArrayCursor.wrap(dataPage)) {
             long version = dataIn.readVLong(); // version
             long flags = dataIn.readVLong(); // flags for future implementations
-            if (version != 1 || flags != 0) {
+            if (!DataPageCodec.isSupported(version, flags)) {
                 throw new DataStorageManagerException("corrupted data file " + pageFile.toAbsolutePath());
             }
-            int numRecords = dataIn.readInt();
-            List<Record> result = new ArrayList<>(numRecords);
-            for (int i = 0; i < numRecords; i++) {
-                Bytes key = dataIn.readBytesNoCopy();
-                Bytes value = dataIn.readBytesNoCopy();
-                result.add(new Record(key, value));
+            List<Record> result;
+            if (version == DataPageCodec.FORMAT_V2) {
+                result = DataPageCodec.readCompressedRecords(dataIn);
+            } else {
+                int numRecords = dataIn.readInt();
+                result = new ArrayList<>(numRecords);
+                for (int i = 0; i < numRecords; i++) {
+                    Bytes key = dataIn.readBytesNoCopy();
+                    Bytes value = dataIn.readBytesNoCopy();
+                    result.add(new Record(key, value));
+                }
             }
             int pos = dataIn.getPosition();
             long hashFromFile = dataIn.readLong();
@@ -361,6 +393,75 @@ public class FileDataStorageManager extends DataStorageManager {
         }
     }
 
+    /**
+     * Reads a data page mapping the file in memory. Keys and values are copied
+     * from the mapped region straight to their own arrays, so no copy of the
+     * whole page is allocated on the heap and the records do not retain the
+     * buffer of the page.
+     */
+    private List<Record> rawReadMappedDataPage(Path pageFile) throws IOException, DataStorageManagerException {
+        try (FileChannel channel = FileChannel.open(pageFile, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new DataStorageManagerException("corrupted data file " + pageFile.toAbsolutePath() + ", size " + size);
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            try {
+                ByteBuf dataIn = Unpooled.wrappedBuffer(mapped);
+                long version = ByteBufUtils.readVLong(dataIn); // version
+                long flags = ByteBufUtils.readVLong(dataIn); // flags for future implementations
+                if (!DataPageCodec.isSupported(version, flags)) {
+                    throw new DataStorageManagerException("corrupted data file " + pageFile.toAbsolutePath());
+                }
+                int numRecords = dataIn.readInt();
+                List<Record> result;
+                if (version == DataPageCodec.FORMAT_V2) {
+                    int rawLength = dataIn.readInt();
+                    int compressedLength = dataIn.readInt();
+                    byte[] compressed = new byte[compressedLength];
+                    dataIn.readBytes(compressed);
+                    result = DataPageCodec.decompressRecords(numRecords, compressed, 0, compressedLength, rawLength);
+                } else {
+                    result = new ArrayList<>(numRecords);
+                    for (int i = 0; i < numRecords; i++) {
+                        Bytes key = readMappedBytes(dataIn);
+                        Bytes value = readMappedBytes(dataIn);
+                        result.add(new Record(key, value));
+                    }
+                }
+                int pos = dataIn.readerIndex();
+                long hashFromFile = dataIn.readLong();
+                if (hashChecksEnabled && hashFromFile != NO_HASH_PRESENT) {
+                    // after the hash we will have zeroes or garbage
+                    // the hash is not at the end of file, but after data
+                    long hashFromDigest = XXHash64Utils.hash(mapped, 0, pos);
+                    if (hashFromDigest != hashFromFile) {
+                        throw new DataStorageManagerException("Corrupted datafile " + pageFile + ". Bad hash " + hashFromFile + " <> " + hashFromDigest);
+                    }
+                }
+                return result;
+            } catch (IndexOutOfBoundsException err) {
+                throw new IOException("short read from " + pageFile + ": " + err, err);
+            } finally {
+                // do not wait for GC to release the mapping
+                PlatformDependent.freeDirectBuffer(mapped);
+            }
+        }
+    }
+
+    private static Bytes readMappedBytes(ByteBuf dataIn) {
+        int len = ByteBufUtils.readVInt(dataIn);
+        if (len == 0) {
+            return Bytes.EMPTY_ARRAY;
+        } else if (len == -1) {
+            /* NULL array */
+            return null;
+        }
+        byte[] array = new byte[len];
+        dataIn.readBytes(array);
+        return Bytes.from_array(array);
+    }
+
     public static List<Record> rawReadDataPage(Path pageFile) throws DataStorageManagerException,
             IOException {
         List<Record> result;
@@ -371,15 +472,23 @@ public class FileDataStorageManager extends DataStorageManager {
              ExtendedDataInputStream dataIn = new ExtendedDataInputStream(hash)) {
             long version = dataIn.readVLong(); // version
             long flags = dataIn.readVLong(); // flags for future implementations
-            if (version != 1 || flags != 0) {
+            if (!DataPageCodec.isSupported(version, flags)) {
                 throw new DataStorageManagerException("corrupted data file " + pageFile.toAbsolutePath());
             }
             int numRecords = dataIn.readInt();
-            result = new ArrayList<>(numRecords);
-            for (int i = 0; i < numRecords; i++) {
-                Bytes key = dataIn.readBytes();
-                Bytes value = dataIn.readBytes();
-                result.add(new Record(key, value));
+            if (version == DataPageCodec.FORMAT_V2) {
+                int rawLength = dataIn.readInt();
+                int compressedLength = dataIn.readInt();
+                byte[] compressed = new byte[compressedLength];
+                dataIn.readFully(compressed);
+                result = DataPageCodec.decompressRecords(numRecords, compressed, 0, compressedLength, rawLength);
+            } else {
+                result = new ArrayList<>(numRecords);
+                for (int i = 0; i < numRecords; i++) {
+                    Bytes key = dataIn.readBytes();
+                    Bytes value = dataIn.readBytes();
+                    result.add(new Record(key, value));
+                }
             }
             hashFromDigest = hash.hash();
             hashFromFile = dataIn.readLong();
@@ -497,7 +606,7 @@ public class FileDataStorageManager extends DataStorageManager {
         Path checkpointFile = getTableCheckPointsFile(dir, sequenceNumber);
 
         if (!Files.exists(checkpointFile)) {
-            throw new DataStorageManagerException("no such index checkpoint: " + checkpointFile);
+            throw new IndexStatusDoesNotExistException("no such index checkpoint: " + checkpointFile);
         }
 
         return readIndexStatusFromFile(checkpointFile);
@@ -868,20 +977,29 @@ public class FileDataStorageManager extends DataStorageManager {
      * @param file    managed file used for sync operations
      * @param stream  output stream related to given managed file for write
      *                operations
+     * @param pageCompression compression of the page
      * @return
      * @throws IOException
      */
-    private long writePage(Collection<Record> newPage, ManagedFile file, OutputStream stream) throws IOException {
+    private long writePage(Collection<Record> newPage, ManagedFile file, OutputStream stream, int pageCompression) throws IOException {
 
         try (RecyclableByteArrayOutputStream oo = getWriteBuffer();
              ExtendedDataOutputStream dataOutput = new ExtendedDataOutputStream(oo)) {
 
-            dataOutput.writeVLong(1); // version
-            dataOutput.writeVLong(0); // flags for future implementations
-            dataOutput.writeInt(newPage.size());
-            for (Record record : newPage) {
-                dataOutput.writeArray(record.key);
-                dataOutput.writeArray(record.value);
+            if (pageCompression == Table.PAGE_COMPRESSION_LZ4) {
+                dataOutput.writeVLong(DataPageCodec.FORMAT_V2); // version
+                dataOutput.writeVLong(DataPageCodec.CODEC_LZ4); // flags
+                VisibleByteArrayOutputStream raw = DataPageCodec.serializeRecords(newPage);
+                int compressedSize = DataPageCodec.writeCompressedRecords(newPage.size(), raw, dataOutput);
+                pageCompressed(raw.size(), compressedSize);
+            } else {
+                dataOutput.writeVLong(DataPageCodec.FORMAT_V1); // version
+                dataOutput.writeVLong(DataPageCodec.CODEC_NONE); // flags for future implementations
+                dataOutput.writeInt(newPage.size());
+                for (Record record : newPage) {
+                    dataOutput.writeArray(record.key);
+                    dataOutput.writeArray(record.value);
+                }
             }
             dataOutput.flush();
             long hash = hashWritesEnabled ? XXHash64Utils.hash(oo.getBuffer(), 0, oo.size()) : NO_HASH_PRESENT;
@@ -898,6 +1016,11 @@ public class FileDataStorageManager extends DataStorageManager {
 
     @Override
     public void writePage(String tableSpace, String tableName, long pageId, Collection<Record> newPage) throws DataStorageManagerException {
+        writePage(tableSpace, tableName, pageId, newPage, Table.PAGE_COMPRESSION_NONE);
+    }
+
+    @Override
+    public void writePage(String tableSpace, String tableName, long pageId, Collection<Record> newPage, int pageCompression) throws DataStorageManagerException {
         // synch on table is done by the TableManager
         long _start = System.currentTimeMillis();
         Path tableDir = getTableDirectory(tableSpace, tableName);
@@ -908,7 +1031,7 @@ public class FileDataStorageManager extends DataStorageManager {
             if (pageodirect) {
                 try (ODirectFileOutputStream odirect = new ODirectFileOutputStream(pageFile, O_DIRECT_BLOCK_BATCH,
                         StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
-                    size = writePage(newPage, null, odirect);
+                    size = writePage(newPage, null, odirect, pageCompression);
                 }
 
             } else {
@@ -916,7 +1039,7 @@ public class FileDataStorageManager extends DataStorageManager {
                         StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
                      SimpleBufferedOutputStream buffer = new SimpleBufferedOutputStream(file.getOutputStream(), COPY_BUFFERS_SIZE)) {
 
-                    size = writePage(newPage, file, buffer);
+                    size = writePage(newPage, file, buffer, pageCompression);
                 }
 
             }
@@ -933,6 +1056,13 @@ public class FileDataStorageManager extends DataStorageManager {
         dataPageWrites.registerSuccessfulEvent(delta, TimeUnit.MILLISECONDS);
     }
 
+    @Override
+    protected void pageCompressed(long rawBytes, long compressedBytes) {
+        super.pageCompressed(rawBytes, compressedBytes);
+        compressedPagesRawBytes.add(rawBytes);
+        compressedPagesBytes.add(compressedBytes);
+    }
+
     private long writeIndexPage(DataWriter writer, ManagedFile file, OutputStream stream) throws IOException {
         try (RecyclableByteArrayOutputStream oo = getWriteBuffer();
              ExtendedDataOutputStream dataOutput = new ExtendedDataOutputStream(oo)) {
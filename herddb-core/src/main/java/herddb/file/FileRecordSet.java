@@ -32,12 +32,15 @@ import herddb.utils.DataAccessor;
 import herddb.utils.DiskArrayList;
 import herddb.utils.ExtendedDataInputStream;
 import herddb.utils.ExtendedDataOutputStream;
+import herddb.utils.SystemProperties;
 import herddb.utils.VisibleByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
 
 /**
  * RecordSet which eventually swaps to disk
@@ -46,12 +49,24 @@ import java.util.List;
  */
 class FileRecordSet extends MaterializedRecordSet {
 
+    private static final int MAX_MERGE_FAN_IN = SystemProperties.getIntSystemProperty("herddb.filerecordset.merge.maxfanin", 64);
+
     private DiskArrayList<DataAccessor> buffer;
     private final Path tmpDirectory;
+    private final int swapThreshold;
+    // non null after an external sort, data is the merge of these runs
+    private List<DiskArrayList<DataAccessor>> sortedRuns;
+    private TupleComparator sortedRunsComparator;
+    // limits and projection applied while merging the sorted runs
+    private int sortedRunsOffset;
+    private int sortedRunsMaxRows;
+    private Projection sortedRunsProjection;
+    private StatementEvaluationContext sortedRunsProjectionContext;
 
     public FileRecordSet(int expectedSize, int swapThreshold, Column[] columns, String[] fieldNames, FileRecordSetFactory factory) {
         super(expectedSize, fieldNames, columns, factory);
         this.tmpDirectory = factory.tmpDirectory;
+        this.swapThreshold = Math.max(1, swapThreshold);
         this.buffer = new DiskArrayList<>(swapThreshold, factory.tmpDirectory, new TupleSerializer(columns, fieldNames));
         this.buffer.enableCompression();
     }
@@ -87,9 +102,23 @@ class FileRecordSet extends MaterializedRecordSet {
         if (!writeFinished) {
             throw new IllegalStateException("RecordSet is still in write mode");
         }
+        if (sortedRuns != null) {
+            return mergeSortedRuns();
+        }
         return buffer.iterator();
     }
 
+    private Iterator<DataAccessor> mergeSortedRuns() {
+        Iterator<DataAccessor> it = new MergeIterator(sortedRuns, sortedRunsComparator);
+        if (sortedRunsOffset > 0 || sortedRunsMaxRows > 0) {
+            it = new LimitIterator(it, sortedRunsOffset, sortedRunsMaxRows);
+        }
+        if (sortedRunsProjection != null) {
+            it = new ProjectionIterator(it, sortedRunsProjection, sortedRunsProjectionContext);
+        }
+        return it;
+    }
+
     @Override
     public void add(DataAccessor record) {
         if (writeFinished) {
@@ -111,29 +140,251 @@ class FileRecordSet extends MaterializedRecordSet {
             throw new IllegalStateException("RecordSet is still in write mode");
         }
         if (comparator != null) {
+            flattenSortedRuns();
             if (!buffer.isSwapped()) {
                 buffer.sortBuffer(comparator);
             } else {
-                List<DataAccessor> copyInMemory = new ArrayList<>();
-                for (DataAccessor tuple : buffer) {
-                    copyInMemory.add(tuple);
+                externalSort(comparator);
+            }
+        }
+
+    }
+
+    /**
+     * Sorts data which does not fit in memory: sorted runs of at most
+     * swapThreshold records are written to the tmp directory, and they are
+     * merged while reading.
+     */
+    private void externalSort(TupleComparator comparator) {
+        List<DiskArrayList<DataAccessor>> runs = new ArrayList<>();
+        try {
+            List<DataAccessor> chunk = new ArrayList<>(Math.min(swapThreshold, buffer.size()));
+            for (DataAccessor tuple : buffer) {
+                chunk.add(tuple);
+                if (chunk.size() >= swapThreshold) {
+                    runs.add(writeSortedRun(chunk, comparator));
+                    chunk.clear();
                 }
-                copyInMemory.sort(comparator);
-                buffer.close();
-                DiskArrayList<DataAccessor> newBuffer = new DiskArrayList<>(buffer.isSwapped() ? -1 : Integer.MAX_VALUE, tmpDirectory, new TupleSerializer(columns, fieldNames));
-                newBuffer.enableCompression();
-                for (DataAccessor t : copyInMemory) {
-                    newBuffer.add(t);
+            }
+            if (!chunk.isEmpty()) {
+                runs.add(writeSortedRun(chunk, comparator));
+            }
+            buffer.close();
+            buffer = null;
+
+            // bound the number of files opened at the same time
+            while (runs.size() > MAX_MERGE_FAN_IN) {
+                List<DiskArrayList<DataAccessor>> merged = new ArrayList<>();
+                for (int i = 0; i < runs.size(); i += MAX_MERGE_FAN_IN) {
+                    List<DiskArrayList<DataAccessor>> group = runs.subList(i, Math.min(runs.size(), i + MAX_MERGE_FAN_IN));
+                    DiskArrayList<DataAccessor> run = newSwappedBuffer();
+                    Iterator<DataAccessor> it = new MergeIterator(group, comparator);
+                    while (it.hasNext()) {
+                        run.add(it.next());
+                    }
+                    run.finish();
+                    for (DiskArrayList<DataAccessor> r : group) {
+                        r.close();
+                    }
+                    merged.add(run);
                 }
-                newBuffer.finish();
-                buffer = newBuffer;
+                runs = merged;
             }
+        } catch (RuntimeException err) {
+            for (DiskArrayList<DataAccessor> run : runs) {
+                run.close();
+            }
+            throw err;
+        }
+        if (runs.size() == 1) {
+            buffer = runs.get(0);
+        } else {
+            sortedRuns = runs;
+            sortedRunsComparator = comparator;
+        }
+    }
+
+    private DiskArrayList<DataAccessor> writeSortedRun(List<DataAccessor> chunk, TupleComparator comparator) {
+        chunk.sort(comparator);
+        DiskArrayList<DataAccessor> run = newSwappedBuffer();
+        for (DataAccessor t : chunk) {
+            run.add(t);
         }
+        run.finish();
+        return run;
+    }
+
+    private DiskArrayList<DataAccessor> newSwappedBuffer() {
+        DiskArrayList<DataAccessor> res = new DiskArrayList<>(-1, tmpDirectory, new TupleSerializer(columns, fieldNames));
+        res.enableCompression();
+        return res;
+    }
 
+    /**
+     * Writes the result of the merge of the sorted runs into a single buffer,
+     * this is needed only by operations which are not able to work on the
+     * sorted runs directly.
+     */
+    private void flattenSortedRuns() {
+        if (sortedRuns == null) {
+            return;
+        }
+        DiskArrayList<DataAccessor> merged = newSwappedBuffer();
+        Iterator<DataAccessor> it = mergeSortedRuns();
+        while (it.hasNext()) {
+            merged.add(it.next());
+        }
+        merged.finish();
+        closeSortedRuns();
+        buffer = merged;
+    }
+
+    private void closeSortedRuns() {
+        if (sortedRuns != null) {
+            for (DiskArrayList<DataAccessor> run : sortedRuns) {
+                run.close();
+            }
+            sortedRuns = null;
+            sortedRunsComparator = null;
+            sortedRunsOffset = 0;
+            sortedRunsMaxRows = 0;
+            sortedRunsProjection = null;
+            sortedRunsProjectionContext = null;
+        }
+    }
+
+    /**
+     * K-way merge of sorted runs. Records which compare as equal are returned
+     * in the order of the runs, so the sort is stable.
+     */
+    private static final class MergeIterator implements Iterator<DataAccessor> {
+
+        private final PriorityQueue<RunHead> heads;
+
+        MergeIterator(List<DiskArrayList<DataAccessor>> runs, TupleComparator comparator) {
+            this.heads = new PriorityQueue<>(Math.max(1, runs.size()), (RunHead a, RunHead b) -> {
+                int res = comparator.compare(a.current, b.current);
+                if (res != 0) {
+                    return res;
+                }
+                return Integer.compare(a.index, b.index);
+            });
+            int index = 0;
+            for (DiskArrayList<DataAccessor> run : runs) {
+                Iterator<DataAccessor> it = run.iterator();
+                if (it.hasNext()) {
+                    heads.add(new RunHead(index, it, it.next()));
+                }
+                index++;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public DataAccessor next() {
+            RunHead head = heads.poll();
+            if (head == null) {
+                throw new NoSuchElementException();
+            }
+            DataAccessor res = head.current;
+            if (head.iterator.hasNext()) {
+                head.current = head.iterator.next();
+                heads.add(head);
+            }
+            return res;
+        }
+    }
+
+    /**
+     * Skips the first offset records and stops after maxRows records (if
+     * positive), without reading the rest of the source.
+     */
+    private static final class LimitIterator implements Iterator<DataAccessor> {
+
+        private final Iterator<DataAccessor> source;
+        private final int maxRows;
+        private int offset;
+        private int returned;
+
+        LimitIterator(Iterator<DataAccessor> source, int offset, int maxRows) {
+            this.source = source;
+            this.offset = offset;
+            this.maxRows = maxRows;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (maxRows > 0 && returned >= maxRows) {
+                return false;
+            }
+            while (offset > 0 && source.hasNext()) {
+                source.next();
+                offset--;
+            }
+            return source.hasNext();
+        }
+
+        @Override
+        public DataAccessor next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            returned++;
+            return source.next();
+        }
+    }
+
+    private static final class ProjectionIterator implements Iterator<DataAccessor> {
+
+        private final Iterator<DataAccessor> source;
+        private final Projection projection;
+        private final StatementEvaluationContext context;
+
+        ProjectionIterator(Iterator<DataAccessor> source, Projection projection, StatementEvaluationContext context) {
+            this.source = source;
+            this.projection = projection;
+            this.context = context;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return source.hasNext();
+        }
+
+        @Override
+        public DataAccessor next() {
+            return projection.map(source.next(), context);
+        }
+    }
+
+    private static final class RunHead {
+
+        private final int index;
+        private final Iterator<DataAccessor> iterator;
+        private DataAccessor current;
+
+        RunHead(int index, Iterator<DataAccessor> iterator, DataAccessor current) {
+            this.index = index;
+            this.iterator = iterator;
+            this.current = current;
+        }
     }
 
     @Override
     public void applyProjection(Projection projection, StatementEvaluationContext context) throws StatementExecutionException {
+        if (sortedRuns != null && sortedRunsProjection == null) {
+            // records are projected while merging the sorted runs
+            this.sortedRunsProjection = projection;
+            this.sortedRunsProjectionContext = context;
+            this.columns = projection.getColumns();
+            this.fieldNames = projection.getFieldNames();
+            return;
+        }
+        flattenSortedRuns();
         this.columns = projection.getColumns();
         this.fieldNames = projection.getFieldNames();
         DiskArrayList<DataAccessor> projected = new DiskArrayList<>(buffer.isSwapped() ? -1 : Integer.MAX_VALUE, tmpDirectory, new TupleSerializer(columns, fieldNames));
@@ -154,6 +405,13 @@ class FileRecordSet extends MaterializedRecordSet {
         if (limits == null) {
             return;
         }
+        if (sortedRuns != null && sortedRunsOffset == 0 && sortedRunsMaxRows == 0) {
+            // the merge of the sorted runs skips the offset and stops at maxRows
+            this.sortedRunsOffset = Math.max(0, limits.computeOffset(context));
+            this.sortedRunsMaxRows = Math.max(0, limits.computeMaxRows(context));
+            return;
+        }
+        flattenSortedRuns();
         int offset = limits.computeOffset(context);
         if (offset > 0) {
             int maxlen = buffer.size();
@@ -200,7 +458,10 @@ class FileRecordSet extends MaterializedRecordSet {
 
     @Override
     public void close() {
-        buffer.close();
+        closeSortedRuns();
+        if (buffer != null) {
+            buffer.close();
+        }
     }
 
 }
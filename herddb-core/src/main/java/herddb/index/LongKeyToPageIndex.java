@@ -0,0 +1,477 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.index;
+
+import herddb.core.AbstractIndexManager;
+import herddb.core.PostCheckpointAction;
+import herddb.log.LogSequenceNumber;
+import herddb.model.Column;
+import herddb.model.ColumnTypes;
+import herddb.model.InvalidNullValueForKeyException;
+import herddb.model.Record;
+import herddb.model.StatementEvaluationContext;
+import herddb.model.StatementExecutionException;
+import herddb.model.Table;
+import herddb.model.TableContext;
+import herddb.sql.SQLRecordKeyFunction;
+import herddb.storage.DataStorageManager;
+import herddb.storage.DataStorageManagerException;
+import herddb.storage.IndexStatus;
+import herddb.storage.IndexStatusDoesNotExistException;
+import herddb.storage.TableStatus;
+import herddb.utils.ByteArrayCursor;
+import herddb.utils.Bytes;
+import herddb.utils.ConcurrentLongLongHashMap;
+import herddb.utils.ExtendedDataOutputStream;
+import herddb.utils.VisibleByteArrayOutputStream;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Implementation of {@link KeyToPageIndex} for tables with a primary key made
+ * of a single INTEGER or LONG column, keys and page ids are stored as
+ * primitive longs in a {@link ConcurrentLongLongHashMap}, without a
+ * {@link Bytes} and a {@link Long} for each entry.
+ * <p>
+ * When persistent the whole map is written to the {@link DataStorageManager}
+ * at checkpoint, one index page for each section of the map: sections which
+ * did not change since the previous checkpoint keep their page.
+ */
+public class LongKeyToPageIndex implements KeyToPageIndex {
+
+    private static final Logger LOGGER = Logger.getLogger(LongKeyToPageIndex.class.getName());
+
+    private static final int NUM_SECTIONS = 64;
+
+    /**
+     * Key and value, on a table filled at about two thirds
+     */
+    private static final long ENTRY_SIZE = 24;
+    private static final long NO_PAGE = -1;
+
+    private final String tableSpace;
+    private final String tableUuid;
+    private final String indexName;
+    private final int keySize;
+    private final DataStorageManager dataStorageManager;
+    private final ConcurrentLongLongHashMap map = new ConcurrentLongLongHashMap(16, NUM_SECTIONS);
+
+    private final AtomicLong newPageId = new AtomicLong(1);
+
+    /**
+     * Index page and modification count of each section at the last
+     * checkpoint, accessed only during checkpoints (and boot)
+     */
+    private final long[] checkpointPages = new long[NUM_SECTIONS];
+    private final long[] checkpointModCounts = new long[NUM_SECTIONS];
+
+    /**
+     * Tells whether the primary key of the table can be handled by this index
+     */
+    public static boolean isSupported(Table table) {
+        return getKeySize(table) > 0;
+    }
+
+    private static int getKeySize(Table table) {
+        if (table.primaryKey.length != 1) {
+            return 0;
+        }
+        Column column = table.getColumn(table.primaryKey[0]);
+        switch (column.type) {
+            case ColumnTypes.INTEGER:
+            case ColumnTypes.NOTNULL_INTEGER:
+                return 4;
+            case ColumnTypes.LONG:
+            case ColumnTypes.NOTNULL_LONG:
+                return 8;
+            default:
+                return 0;
+        }
+    }
+
+    public static String deriveIndexName(String tableName) {
+        return tableName + "_primary_long";
+    }
+
+    /**
+     * @param tableSpace
+     * @param table
+     * @param dataStorageManager storage for checkpoints, {@code null} for a
+     * non persistent index, rebuilt with a full table scan at boot
+     */
+    public LongKeyToPageIndex(String tableSpace, Table table, DataStorageManager dataStorageManager) {
+        this.tableSpace = tableSpace;
+        this.tableUuid = table.uuid;
+        this.indexName = deriveIndexName(table.uuid);
+        this.keySize = getKeySize(table);
+        if (keySize == 0) {
+            throw new IllegalArgumentException("unsupported primary key for table " + table.name);
+        }
+        this.dataStorageManager = dataStorageManager;
+        Arrays.fill(checkpointPages, NO_PAGE);
+        Arrays.fill(checkpointModCounts, -1);
+    }
+
+    private long toLong(Bytes key) {
+        if (key.getLength() != keySize) {
+            throw new IllegalArgumentException("bad key length " + key.getLength() + " for index " + indexName);
+        }
+        return keySize == 4 ? key.to_int() : key.to_long();
+    }
+
+    private Bytes toBytes(long key) {
+        return keySize == 4 ? Bytes.from_int((int) key) : Bytes.from_long(key);
+    }
+
+    private static Long toPage(long page) {
+        return page == ConcurrentLongLongHashMap.NO_VALUE ? null : page;
+    }
+
+    @Override
+    public long size() {
+        return map.size();
+    }
+
+    @Override
+    public void put(Bytes key, Long currentPage) {
+        map.put(toLong(key), currentPage);
+    }
+
+    @Override
+    public boolean put(Bytes key, Long newPage, Long expectedPage) {
+        long k = toLong(key);
+        if (expectedPage == null) {
+            return map.putIfAbsent(k, newPage) == ConcurrentLongLongHashMap.NO_VALUE;
+        } else {
+            return map.replace(k, expectedPage, newPage);
+        }
+    }
+
+    @Override
+    public boolean containsKey(Bytes key) {
+        return map.containsKey(toLong(key));
+    }
+
+    @Override
+    public Long get(Bytes key) {
+        return toPage(map.get(toLong(key)));
+    }
+
+    @Override
+    public Long remove(Bytes key) {
+        return toPage(map.remove(toLong(key)));
+    }
+
+    @Override
+    public boolean isSortedAscending(int[] pkTypes) {
+        return false;
+    }
+
+    @Override
+    public Stream<Map.Entry<Bytes, Long>> scanner(
+            IndexOperation operation, StatementEvaluationContext context,
+            TableContext tableContext, AbstractIndexManager index
+    ) throws DataStorageManagerException, StatementExecutionException {
+        if (operation instanceof PrimaryIndexSeek) {
+            PrimaryIndexSeek seek = (PrimaryIndexSeek) operation;
+            byte[] seekValue;
+            try {
+                seekValue = seek.value.computeNewValue(null, context, tableContext);
+            } catch (InvalidNullValueForKeyException nullKey) {
+                seekValue = null;
+            }
+            if (seekValue == null || seekValue.length != keySize) {
+                return Stream.empty();
+            }
+            Bytes key = Bytes.from_array(seekValue);
+            Long pageId = get(key);
+            if (pageId == null) {
+                return Stream.empty();
+            }
+            return Stream.of(new AbstractMap.SimpleImmutableEntry<>(key, pageId));
+        }
+
+        // Remember that the IndexOperation can return more records
+        // every predicate (WHEREs...) will always be evaluated anyway on every record, in order to guarantee correctness
+        if (index != null) {
+            return index.recordSetScanner(operation, context, tableContext, this);
+        }
+        if (operation == null) {
+            return fullScan();
+        } else if (operation instanceof PrimaryIndexRangeScan) {
+            PrimaryIndexRangeScan sis = (PrimaryIndexRangeScan) operation;
+            SQLRecordKeyFunction minKey = sis.minValue;
+            Bytes refminvalue = minKey != null
+                    ? Bytes.from_nullable_array(minKey.computeNewValue(null, context, tableContext)) : null;
+            SQLRecordKeyFunction maxKey = sis.maxValue;
+            Bytes refmaxvalue = maxKey != null
+                    ? Bytes.from_nullable_array(maxKey.computeNewValue(null, context, tableContext)) : null;
+            // same ordering of the other implementations, which compare the serialized keys
+            Predicate<Map.Entry<Bytes, Long>> predicate = (Map.Entry<Bytes, Long> entry) -> {
+                Bytes datum = entry.getKey();
+                return (refminvalue == null || datum.compareTo(refminvalue) >= 0)
+                        && (refmaxvalue == null || datum.compareTo(refmaxvalue) <= 0);
+            };
+            return fullScan().filter(predicate);
+        } else {
+            throw new DataStorageManagerException("operation " + operation + " not implemented on " + this.getClass());
+        }
+    }
+
+    /**
+     * Scans a copy of one section of the map at a time
+     */
+    private Stream<Map.Entry<Bytes, Long>> fullScan() {
+        Iterator<Map.Entry<Bytes, Long>> iterator = new Iterator<Map.Entry<Bytes, Long>>() {
+            int section = 0;
+            long[] entries = new long[0];
+            int position = 0;
+
+            @Override
+            public boolean hasNext() {
+                while (position >= entries.length) {
+                    if (section >= map.getNumSections()) {
+                        return false;
+                    }
+                    entries = map.snapshot(section++);
+                    position = 0;
+                }
+                return true;
+            }
+
+            @Override
+            public Map.Entry<Bytes, Long> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Map.Entry<Bytes, Long> result = new AbstractMap.SimpleImmutableEntry<>(
+                        toBytes(entries[position]), entries[position + 1]);
+                position += 2;
+                return result;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.DISTINCT | Spliterator.NONNULL), false);
+    }
+
+    @Override
+    public void close() {
+        map.clear();
+    }
+
+    @Override
+    public void truncate() {
+        map.clear();
+    }
+
+    @Override
+    public void dropData() {
+        truncate();
+        if (dataStorageManager != null) {
+            dataStorageManager.dropIndex(tableSpace, indexName);
+        }
+    }
+
+    @Override
+    public long getUsedMemory() {
+        return map.size() * ENTRY_SIZE;
+    }
+
+    @Override
+    public boolean requireLoadAtStartup() {
+        /* Without a storage a full table scan is needed at startup */
+        return dataStorageManager == null;
+    }
+
+    @Override
+    public void init() throws DataStorageManagerException {
+        if (dataStorageManager != null) {
+            dataStorageManager.initIndex(tableSpace, indexName);
+        }
+    }
+
+    @Override
+    public void start(LogSequenceNumber sequenceNumber, boolean created) throws DataStorageManagerException {
+        if (dataStorageManager == null || LogSequenceNumber.START_OF_TIME.equals(sequenceNumber)) {
+            return;
+        }
+        IndexStatus status;
+        try {
+            status = dataStorageManager.getIndexStatus(tableSpace, indexName, sequenceNumber);
+        } catch (IndexStatusDoesNotExistException err) {
+            // the table has been checkpointed with another kind of primary key index
+            LOGGER.log(Level.INFO, "no checkpoint for index {0} at {1} ({2}), rebuilding it from the data of the table",
+                    new Object[]{indexName, sequenceNumber, err.getMessage()});
+            loadFromTableCheckpoint(sequenceNumber);
+            return;
+        }
+        try {
+            loadIndexPages(status);
+        } catch (IOException err) {
+            throw new DataStorageManagerException(err);
+        }
+        newPageId.set(status.newPageId);
+        LOGGER.log(Level.INFO, "loaded index {0}: {1} keys", new Object[]{indexName, map.size()});
+    }
+
+    private void loadFromTableCheckpoint(LogSequenceNumber sequenceNumber) throws DataStorageManagerException {
+        TableStatus tableStatus = dataStorageManager.getTableStatus(tableSpace, tableUuid, sequenceNumber);
+        for (Long pageId : tableStatus.activePages.keySet()) {
+            List<Record> records = dataStorageManager.readPage(tableSpace, tableUuid, pageId);
+            for (Record record : records) {
+                put(record.key, pageId);
+            }
+        }
+        LOGGER.log(Level.INFO, "rebuilt index {0}: {1} keys from {2} pages",
+                new Object[]{indexName, map.size(), tableStatus.activePages.size()});
+    }
+
+    private void loadIndexPages(IndexStatus status) throws IOException {
+        ByteArrayCursor metadata = ByteArrayCursor.wrap(status.indexData);
+        long version = metadata.readVLong();
+        long flags = metadata.readVLong();
+        if (version != 1 || flags != 0) {
+            throw new IOException("corrupted index " + indexName + " metadata");
+        }
+        int storedKeySize = metadata.readVInt();
+        if (storedKeySize != keySize) {
+            throw new IOException("index " + indexName + " has keys of " + storedKeySize + " bytes, expected " + keySize);
+        }
+        int numSections = metadata.readVInt();
+        long[] pages = new long[numSections];
+        for (int i = 0; i < numSections; i++) {
+            pages[i] = metadata.readZLong();
+        }
+        for (long pageId : pages) {
+            if (pageId == NO_PAGE) {
+                continue;
+            }
+            dataStorageManager.readIndexPage(tableSpace, indexName, pageId, in -> {
+                long pageVersion = in.readVLong();
+                long pageFlags = in.readVLong();
+                if (pageVersion != 1 || pageFlags != 0) {
+                    throw new IOException("corrupted index page " + pageId);
+                }
+                int count = in.readVInt();
+                for (int i = 0; i < count; i++) {
+                    long key = in.readZLong();
+                    long page = in.readVLong();
+                    map.put(key, page);
+                }
+                return null;
+            });
+        }
+        if (numSections == NUM_SECTIONS) {
+            // entries are in the same sections, so unchanged sections can keep their page
+            for (int i = 0; i < NUM_SECTIONS; i++) {
+                checkpointPages[i] = pages[i];
+                checkpointModCounts[i] = map.getModCount(i);
+            }
+        }
+    }
+
+    @Override
+    public List<PostCheckpointAction> checkpoint(LogSequenceNumber sequenceNumber, boolean pin) throws DataStorageManagerException {
+        if (dataStorageManager == null) {
+            /* No checkpoint, isn't persisted */
+            return Collections.emptyList();
+        }
+        try {
+            int written = 0;
+            Set<Long> activePages = new HashSet<>();
+            for (int i = 0; i < NUM_SECTIONS; i++) {
+                // read the counter before copying the entries, concurrent changes will be written again next time
+                long modCount = map.getModCount(i);
+                if (modCount != checkpointModCounts[i]) {
+                    long[] entries = map.snapshot(i);
+                    long pageId = NO_PAGE;
+                    if (entries.length > 0) {
+                        pageId = newPageId.getAndIncrement();
+                        writeIndexPage(pageId, entries);
+                        written++;
+                    }
+                    checkpointPages[i] = pageId;
+                    checkpointModCounts[i] = modCount;
+                }
+                if (checkpointPages[i] != NO_PAGE) {
+                    activePages.add(checkpointPages[i]);
+                }
+            }
+
+            VisibleByteArrayOutputStream metadata = new VisibleByteArrayOutputStream();
+            try (ExtendedDataOutputStream out = new ExtendedDataOutputStream(metadata)) {
+                out.writeVLong(1); // version
+                out.writeVLong(0); // flags for future implementations
+                out.writeVInt(keySize);
+                out.writeVInt(NUM_SECTIONS);
+                for (long pageId : checkpointPages) {
+                    out.writeZLong(pageId);
+                }
+            }
+
+            IndexStatus indexStatus = new IndexStatus(indexName, sequenceNumber, newPageId.get(), activePages, metadata.toByteArray());
+            List<PostCheckpointAction> result = new ArrayList<>(dataStorageManager.indexCheckpoint(tableSpace, indexName, indexStatus, pin));
+
+            LOGGER.log(Level.INFO, "checkpoint index {0} finished: logpos {1}, {2} pages, {3} written",
+                    new Object[]{indexName, sequenceNumber, activePages.size(), written});
+            return result;
+        } catch (IOException err) {
+            throw new DataStorageManagerException(err);
+        }
+    }
+
+    private void writeIndexPage(long pageId, long[] entries) {
+        dataStorageManager.writeIndexPage(tableSpace, indexName, pageId, out -> {
+            out.writeVLong(1); // version
+            out.writeVLong(0); // flags for future implementations
+            out.writeVInt(entries.length / 2);
+            for (int i = 0; i < entries.length; i += 2) {
+                out.writeZLong(entries[i]);
+                out.writeVLong(entries[i + 1]);
+            }
+        });
+    }
+
+    @Override
+    public void unpinCheckpoint(LogSequenceNumber sequenceNumber) throws DataStorageManagerException {
+        if (dataStorageManager != null) {
+            dataStorageManager.unPinIndexCheckpoint(tableSpace, indexName, sequenceNumber);
+        }
+    }
+
+}
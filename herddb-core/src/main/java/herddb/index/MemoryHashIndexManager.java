@@ -32,20 +32,32 @@ import herddb.model.StatementEvaluationContext;
 import herddb.model.StatementExecutionException;
 import herddb.model.Table;
 import herddb.model.TableContext;
+import herddb.server.ServerConfiguration;
 import herddb.sql.SQLRecordKeyFunction;
 import herddb.storage.DataStorageManager;
 import herddb.storage.DataStorageManagerException;
 import herddb.storage.IndexStatus;
+import herddb.utils.ByteArrayCursor;
 import herddb.utils.Bytes;
 import herddb.utils.DataAccessor;
+import herddb.utils.ExtendedDataOutputStream;
 import herddb.utils.Holder;
+import herddb.utils.SystemProperties;
+import herddb.utils.VisibleByteArrayOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Predicate;
 import java.util.logging.Level;
@@ -53,8 +65,14 @@ import java.util.logging.Logger;
 import java.util.stream.Stream;
 
 /**
- * HASH index. The index resides entirely in memory. It is serialized fully on
- * the IndexStatus structure
+ * HASH index. The index resides entirely in memory.
+ * <p>
+ * Keys are split into a fixed number of buckets. Each checkpoint writes a
+ * single page with the buckets modified since the previous checkpoint, the
+ * other buckets stay on the pages where they have been written before. The
+ * location of every bucket is stored on the IndexStatus structure. Pages with
+ * too many stale buckets are compacted, moving their live buckets to the new
+ * page.
  *
  * @author enrico.olivelli
  */
@@ -62,18 +80,90 @@ public class MemoryHashIndexManager extends AbstractIndexManager {
 
     private static final Logger LOGGER = Logger.getLogger(MemoryHashIndexManager.class.getName());
 
-    private final ConcurrentHashMap<Bytes, List<Bytes>> data = new ConcurrentHashMap<>();
+    private static final int BUCKETS = SystemProperties.getIntSystemProperty("herddb.index.hash.buckets", 1024);
+
+    /**
+     * Page with the whole index, written by previous versions
+     */
+    private static final long PAGE_VERSION_FULL = 1;
+    /**
+     * Page with a set of buckets
+     */
+    private static final long PAGE_VERSION_BUCKETS = 2;
+
+    private final List<ConcurrentHashMap<Bytes, List<Bytes>>> data;
     private final AtomicLong newPageId = new AtomicLong(1);
+    private final double dirtyThreshold;
+
+    /**
+     * Buckets modified after the last checkpoint
+     */
+    private final AtomicIntegerArray dirtyBuckets;
+    /**
+     * Page which holds each bucket, 0 if the bucket was empty at the last
+     * checkpoint. Accessed only during boot and checkpoint
+     */
+    private final long[] bucketPages;
+    /**
+     * Number of entries of each bucket at the last checkpoint
+     */
+    private final long[] bucketEntries;
+    /**
+     * Active pages, accessed only during boot and checkpoint
+     */
+    private final Map<Long, PageStats> pages = new HashMap<>();
 
     public MemoryHashIndexManager(Index index, AbstractTableManager tableManager, CommitLog log, DataStorageManager dataStorageManager, TableSpaceManager tableSpaceManager, String tableSpaceUUID,
                                   long transaction,
                                   int writeLockTimeout, int readLockTimeout) {
         super(index, tableManager, dataStorageManager, tableSpaceManager.getTableSpaceUUID(), log, transaction,
                 writeLockTimeout, readLockTimeout);
+        this.dirtyThreshold = tableSpaceManager.getDbmanager().getServerConfiguration().getDouble(
+                ServerConfiguration.PROPERTY_DIRTY_PAGE_THRESHOLD,
+                ServerConfiguration.PROPERTY_DIRTY_PAGE_THRESHOLD_DEFAULT);
+        this.data = new ArrayList<>(BUCKETS);
+        for (int i = 0; i < BUCKETS; i++) {
+            data.add(new ConcurrentHashMap<>());
+        }
+        this.dirtyBuckets = new AtomicIntegerArray(BUCKETS);
+        this.bucketPages = new long[BUCKETS];
+        this.bucketEntries = new long[BUCKETS];
     }
 
     LogSequenceNumber bootSequenceNumber;
 
+    private static final class PageStats {
+
+        private final long writtenEntries;
+        private long liveEntries;
+
+        private PageStats(long writtenEntries, long liveEntries) {
+            this.writtenEntries = writtenEntries;
+            this.liveEntries = liveEntries;
+        }
+    }
+
+    private static int bucket(Bytes indexKey) {
+        return (indexKey.hashCode() & Integer.MAX_VALUE) % BUCKETS;
+    }
+
+    private ConcurrentHashMap<Bytes, List<Bytes>> bucketOf(Bytes indexKey) {
+        return data.get(bucket(indexKey));
+    }
+
+    private void markAllBucketsDirty() {
+        for (int i = 0; i < BUCKETS; i++) {
+            dirtyBuckets.set(i, 1);
+        }
+    }
+
+    private void resetPersistentState() {
+        pages.clear();
+        Arrays.fill(bucketPages, 0);
+        Arrays.fill(bucketEntries, 0);
+        markAllBucketsDirty();
+    }
+
     @Override
     protected boolean doStart(LogSequenceNumber sequenceNumber) throws DataStorageManagerException {
         LOGGER.log(Level.INFO, "loading in memory all the keys for mem index {0}", new Object[]{index.name});
@@ -95,47 +185,157 @@ public class MemoryHashIndexManager extends AbstractIndexManager {
                 return false;
             }
 
-            for (long pageId : status.activePages) {
-                LOGGER.log(Level.INFO, "recovery index {0}, load {1}", new Object[]{index.name, pageId});
+            /* Location of the buckets, keyed by the bucket number of the checkpoint */
+            Map<Integer, Long> liveBuckets = new HashMap<>();
+            boolean sameBuckets = false;
+            if (status.indexData != null) {
+                try {
+                    sameBuckets = readMetadata(status.indexData, liveBuckets);
+                } catch (IOException err) {
+                    throw new DataStorageManagerException(err);
+                }
+            }
 
-                Map<Bytes, List<Bytes>> read = dataStorageManager.readIndexPage(tableSpaceUUID, index.uuid, pageId, in -> {
-                    Map<Bytes, List<Bytes>> deserialized = new HashMap<>();
+            for (long pageId : status.activePages) {
+                LOGGER.log(Level.FINE, "recovery index {0}, load {1}", new Object[]{index.name, pageId});
 
+                dataStorageManager.readIndexPage(tableSpaceUUID, index.uuid, pageId, in -> {
                     long version = in.readVLong(); // version
                     long flags = in.readVLong(); // flags for future implementations
-                    if (version != 1 || flags != 0) {
+                    if ((version != PAGE_VERSION_FULL && version != PAGE_VERSION_BUCKETS) || flags != 0) {
                         throw new DataStorageManagerException("corrupted index page");
                     }
-                    int size = in.readVInt();
-                    for (int i = 0; i < size; i++) {
-                        Bytes indexKey = in.readBytesNoCopy();
-                        int entrySize = in.readVInt();
-                        List<Bytes> value = new ArrayList<>(entrySize);
-                        for (int kk = 0; kk < entrySize; kk++) {
-                            Bytes tableKey = in.readBytesNoCopy();
-                            value.add(tableKey);
+                    if (version == PAGE_VERSION_FULL) {
+                        readEntries(in, true);
+                    } else {
+                        int numBuckets = in.readVInt();
+                        for (int i = 0; i < numBuckets; i++) {
+                            int bucket = in.readVInt();
+                            boolean live = Objects.equals(liveBuckets.get(bucket), pageId);
+                            readEntries(in, live);
                         }
-                        deserialized.put(indexKey, value);
                     }
-
-                    return deserialized;
+                    return null;
                 });
+            }
 
-                data.putAll(read);
+            if (!sameBuckets) {
+                // old format or different number of buckets, rewrite the whole index at the next checkpoint
+                LOGGER.log(Level.INFO, "index {0} will be fully rewritten at the next checkpoint", new Object[]{index.name});
+                resetPersistentState();
             }
 
             newPageId.set(status.newPageId);
-            LOGGER.log(Level.INFO, "loaded {0} keys for index {1}", new Object[]{data.size(), index.name});
+            LOGGER.log(Level.INFO, "loaded {0} keys for index {1}", new Object[]{size(), index.name});
             return true;
         }
     }
 
+    private void readEntries(ByteArrayCursor in, boolean load) throws IOException {
+        int size = in.readVInt();
+        for (int i = 0; i < size; i++) {
+            Bytes indexKey = in.readBytesNoCopy();
+            int entrySize = in.readVInt();
+            List<Bytes> value = new ArrayList<>(entrySize);
+            for (int kk = 0; kk < entrySize; kk++) {
+                Bytes tableKey = in.readBytesNoCopy();
+                value.add(tableKey);
+            }
+            if (load) {
+                bucketOf(indexKey).put(indexKey, value);
+            }
+        }
+    }
+
+    /**
+     * Reads the location of the buckets
+     *
+     * @return true if the index has been written with the current number of
+     * buckets
+     */
+    private boolean readMetadata(byte[] indexData, Map<Integer, Long> liveBuckets) throws IOException {
+        try (ByteArrayCursor in = ByteArrayCursor.wrap(indexData)) {
+            long version = in.readVLong(); // version
+            long flags = in.readVLong(); // flags for future implementations
+            if (version != 1 || flags != 0) {
+                throw new IOException("corrupted index metadata");
+            }
+            int numBuckets = in.readVInt();
+            int numPages = in.readVInt();
+            Map<Long, PageStats> readPages = new HashMap<>();
+            for (int i = 0; i < numPages; i++) {
+                long pageId = in.readVLong();
+                long writtenEntries = in.readVLong();
+                readPages.put(pageId, new PageStats(writtenEntries, 0));
+            }
+            int numLiveBuckets = in.readVInt();
+            boolean sameBuckets = numBuckets == BUCKETS;
+            for (int i = 0; i < numLiveBuckets; i++) {
+                int bucket = in.readVInt();
+                long pageId = in.readVLong();
+                long entries = in.readVLong();
+                liveBuckets.put(bucket, pageId);
+                PageStats page = readPages.get(pageId);
+                if (page == null) {
+                    throw new IOException("corrupted index metadata, unknown page " + pageId);
+                }
+                page.liveEntries += entries;
+                if (sameBuckets) {
+                    bucketPages[bucket] = pageId;
+                    bucketEntries[bucket] = entries;
+                }
+            }
+            if (sameBuckets) {
+                pages.putAll(readPages);
+            }
+            return sameBuckets;
+        }
+    }
+
+    private byte[] writeMetadata() throws IOException {
+        VisibleByteArrayOutputStream buffer = new VisibleByteArrayOutputStream();
+        try (ExtendedDataOutputStream out = new ExtendedDataOutputStream(buffer)) {
+            out.writeVLong(1); // version
+            out.writeVLong(0); // flags for future implementations
+            out.writeVInt(BUCKETS);
+            out.writeVInt(pages.size());
+            for (Map.Entry<Long, PageStats> page : pages.entrySet()) {
+                out.writeVLong(page.getKey());
+                out.writeVLong(page.getValue().writtenEntries);
+            }
+            int numLiveBuckets = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                if (bucketPages[i] != 0) {
+                    numLiveBuckets++;
+                }
+            }
+            out.writeVInt(numLiveBuckets);
+            for (int i = 0; i < BUCKETS; i++) {
+                if (bucketPages[i] != 0) {
+                    out.writeVInt(i);
+                    out.writeVLong(bucketPages[i]);
+                    out.writeVLong(bucketEntries[i]);
+                }
+            }
+        }
+        return buffer.toByteArray();
+    }
+
+    private long size() {
+        long size = 0;
+        for (Map<Bytes, List<Bytes>> bucket : data) {
+            size += bucket.size();
+        }
+        return size;
+    }
+
     @Override
     public void rebuild() throws DataStorageManagerException {
         long _start = System.currentTimeMillis();
         LOGGER.log(Level.INFO, "building index {0}", index.name);
         dataStorageManager.initIndex(tableSpaceUUID, index.uuid);
-        data.clear();
+        clearData();
+        resetPersistentState();
         Table table = tableManager.getTable();
         tableManager.scanForIndexRebuild(r -> {
             DataAccessor values = r.getDataAccessor(table);
@@ -148,13 +348,18 @@ public class MemoryHashIndexManager extends AbstractIndexManager {
         LOGGER.log(Level.INFO, "building index {0} took {1}", new Object[]{index.name, (_stop - _start) + " ms"});
     }
 
+    private Stream<Map.Entry<Bytes, List<Bytes>>> entries() {
+        return data.stream().flatMap(bucket -> bucket.entrySet().stream());
+    }
+
     @Override
     public Stream<Bytes> scanner(IndexOperation operation, StatementEvaluationContext context, TableContext tableContext) throws StatementExecutionException {
         if (operation instanceof SecondaryIndexSeek) {
             SecondaryIndexSeek sis = (SecondaryIndexSeek) operation;
             SQLRecordKeyFunction value = sis.value;
             byte[] refvalue = value.computeNewValue(null, context, tableContext);
-            List<Bytes> result = data.get(Bytes.from_array(refvalue));
+            Bytes indexKey = Bytes.from_array(refvalue);
+            List<Bytes> result = bucketOf(indexKey).get(indexKey);
             if (result != null) {
                 return result.stream();
             } else {
@@ -168,9 +373,7 @@ public class MemoryHashIndexManager extends AbstractIndexManager {
                 Bytes recordValue = entry.getKey();
                 return recordValue.startsWith(refvalue.length, refvalue);
             };
-            return data
-                    .entrySet()
-                    .stream()
+            return entries()
                     .filter(predicate)
                     .map(entry -> entry.getValue())
                     .flatMap(l -> l.stream());
@@ -215,9 +418,7 @@ public class MemoryHashIndexManager extends AbstractIndexManager {
                     return true;
                 };
             }
-            return data
-                    .entrySet()
-                    .stream()
+            return entries()
                     .filter(predicate)
                     .map(entry -> entry.getValue())
                     .flatMap(l -> l.stream());
@@ -237,38 +438,133 @@ public class MemoryHashIndexManager extends AbstractIndexManager {
 
         LOGGER.log(Level.INFO, "flush index {0}", new Object[]{index.name});
 
-        long pageId = newPageId.getAndIncrement();
-        Holder<Long> count = new Holder<>();
-
-        dataStorageManager.writeIndexPage(tableSpaceUUID, index.uuid, pageId, (out) -> {
+        BitSet toWrite = new BitSet(BUCKETS);
+        for (int i = 0; i < BUCKETS; i++) {
+            if (dirtyBuckets.getAndSet(i, 0) == 1) {
+                toWrite.set(i);
+            }
+        }
+        int dirty = toWrite.cardinality();
 
-            long entries = 0;
-            out.writeVLong(1); // version
-            out.writeVLong(0); // flags for future implementations
-            out.writeVInt(data.size());
-            for (Map.Entry<Bytes, List<Bytes>> entry : data.entrySet()) {
-                out.writeArray(entry.getKey());
-                List<Bytes> entrydata = entry.getValue();
-                out.writeVInt(entrydata.size());
-                for (Bytes v : entrydata) {
-                    out.writeArray(v);
-                    ++entries;
+        // compaction: move the live buckets out of pages with too much stale data,
+        // taking into account the buckets which are going to be rewritten anyway
+        Map<Long, Long> liveAfterFlush = new HashMap<>();
+        for (Map.Entry<Long, PageStats> page : pages.entrySet()) {
+            liveAfterFlush.put(page.getKey(), page.getValue().liveEntries);
+        }
+        for (int i = toWrite.nextSetBit(0); i >= 0; i = toWrite.nextSetBit(i + 1)) {
+            Long live = liveAfterFlush.get(bucketPages[i]);
+            if (live != null) {
+                liveAfterFlush.put(bucketPages[i], live - bucketEntries[i]);
+            }
+        }
+        Set<Long> compactedPages = new HashSet<>();
+        for (Map.Entry<Long, PageStats> page : pages.entrySet()) {
+            long written = page.getValue().writtenEntries;
+            long live = liveAfterFlush.get(page.getKey());
+            if (live > 0 && written - live > dirtyThreshold * written) {
+                compactedPages.add(page.getKey());
+            }
+        }
+        if (!compactedPages.isEmpty()) {
+            for (int i = 0; i < BUCKETS; i++) {
+                if (compactedPages.contains(bucketPages[i])) {
+                    toWrite.set(i);
                 }
             }
+        }
 
-            count.value = entries;
+        Holder<Long> count = new Holder<>(0L);
+        long[] writtenEntries = new long[BUCKETS];
+        int numBuckets = 0;
+        for (int i = toWrite.nextSetBit(0); i >= 0; i = toWrite.nextSetBit(i + 1)) {
+            if (!data.get(i).isEmpty()) {
+                numBuckets++;
+            }
+        }
+        long pageId = 0;
+        if (numBuckets > 0) {
+            pageId = newPageId.getAndIncrement();
+            try {
+                writeBuckets(pageId, numBuckets, toWrite, writtenEntries, count);
+            } catch (RuntimeException err) {
+                // the buckets will be written at the next checkpoint
+                for (int i = toWrite.nextSetBit(0); i >= 0; i = toWrite.nextSetBit(i + 1)) {
+                    dirtyBuckets.set(i, 1);
+                }
+                throw err;
+            }
+        }
 
-        });
+        // move the written buckets to the new page
+        for (int i = toWrite.nextSetBit(0); i >= 0; i = toWrite.nextSetBit(i + 1)) {
+            PageStats previous = pages.get(bucketPages[i]);
+            if (previous != null) {
+                previous.liveEntries -= bucketEntries[i];
+            }
+            if (data.get(i).isEmpty()) {
+                bucketPages[i] = 0;
+                bucketEntries[i] = 0;
+            } else {
+                bucketPages[i] = pageId;
+                bucketEntries[i] = writtenEntries[i];
+            }
+        }
+        if (numBuckets > 0) {
+            pages.put(pageId, new PageStats(count.value, count.value));
+        }
+        for (Iterator<PageStats> it = pages.values().iterator(); it.hasNext();) {
+            if (it.next().liveEntries <= 0) {
+                it.remove();
+            }
+        }
 
-        IndexStatus indexStatus = new IndexStatus(index.name, sequenceNumber, newPageId.get(), Collections.singleton(pageId), null);
+        byte[] metadata;
+        try {
+            metadata = writeMetadata();
+        } catch (IOException err) {
+            throw new DataStorageManagerException(err);
+        }
+        IndexStatus indexStatus = new IndexStatus(index.name, sequenceNumber, newPageId.get(), new HashSet<>(pages.keySet()), metadata);
         result.addAll(dataStorageManager.indexCheckpoint(tableSpaceUUID, index.uuid, indexStatus, pin));
 
-        LOGGER.log(Level.INFO, "checkpoint index {0} finished: logpos {1}, {2} entries, page {3}",
-                new Object[]{index.name, sequenceNumber, Long.toString(count.value), Long.toString(pageId)});
+        LOGGER.log(Level.INFO, "checkpoint index {0} finished: logpos {1}, {2} dirty buckets, {3} compacted pages, {4} entries written, {5} active pages",
+                new Object[]{index.name, sequenceNumber, dirty, compactedPages.size(), Long.toString(count.value), pages.size()});
 
         return result;
     }
 
+    private void writeBuckets(long pageId, int numBuckets, BitSet toWrite, long[] writtenEntries, Holder<Long> count) {
+        dataStorageManager.writeIndexPage(tableSpaceUUID, index.uuid, pageId, (out) -> {
+            out.writeVLong(PAGE_VERSION_BUCKETS); // version
+            out.writeVLong(0); // flags for future implementations
+            out.writeVInt(numBuckets);
+            long entries = 0;
+            for (int i = toWrite.nextSetBit(0); i >= 0; i = toWrite.nextSetBit(i + 1)) {
+                Map<Bytes, List<Bytes>> bucket = data.get(i);
+                if (bucket.isEmpty()) {
+                    continue;
+                }
+                // the bucket cannot change, DML is blocked during checkpoints
+                long entriesInBucket = 0;
+                out.writeVInt(i);
+                out.writeVInt(bucket.size());
+                for (Map.Entry<Bytes, List<Bytes>> entry : bucket.entrySet()) {
+                    out.writeArray(entry.getKey());
+                    List<Bytes> entrydata = entry.getValue();
+                    out.writeVInt(entrydata.size());
+                    for (Bytes v : entrydata) {
+                        out.writeArray(v);
+                        ++entriesInBucket;
+                    }
+                }
+                writtenEntries[i] = entriesInBucket;
+                entries += entriesInBucket;
+            }
+            count.value = entries;
+        });
+    }
+
     @Override
     public void unpinCheckpoint(LogSequenceNumber sequenceNumber) throws DataStorageManagerException {
         dataStorageManager.unPinIndexCheckpoint(tableSpaceUUID, index.uuid, sequenceNumber);
@@ -283,7 +579,8 @@ public class MemoryHashIndexManager extends AbstractIndexManager {
     }
 
     private void removeValueFromIndex(Bytes indexKey, Bytes key) {
-        data.merge(indexKey, Collections.singletonList(key), (actual, newList) -> {
+        int bucket = bucket(indexKey);
+        data.get(bucket).merge(indexKey, Collections.singletonList(key), (actual, newList) -> {
             if (actual.size() == 1) {
                 return null;
             } else {
@@ -291,6 +588,7 @@ public class MemoryHashIndexManager extends AbstractIndexManager {
                 return actual;
             }
         });
+        dirtyBuckets.set(bucket, 1);
     }
 
     @Override
@@ -302,12 +600,14 @@ public class MemoryHashIndexManager extends AbstractIndexManager {
     }
 
     private void addValueToIndex(Bytes indexKey, Bytes key) {
-        data.merge(indexKey, Collections.singletonList(key), (actual, newList) -> {
+        int bucket = bucket(indexKey);
+        data.get(bucket).merge(indexKey, Collections.singletonList(key), (actual, newList) -> {
             List<Bytes> result = new ArrayList<>(actual.size() + 1);
             result.addAll(actual);
             result.addAll(newList);
             return result;
         });
+        dirtyBuckets.set(bucket, 1);
     }
 
     @Override
@@ -324,24 +624,32 @@ public class MemoryHashIndexManager extends AbstractIndexManager {
         }
     }
 
+    private void clearData() {
+        for (Map<Bytes, List<Bytes>> bucket : data) {
+            bucket.clear();
+        }
+    }
+
     @Override
     public void close() {
-        data.clear();
+        clearData();
     }
 
     @Override
     public void truncate() throws DataStorageManagerException {
-        data.clear();
+        clearData();
+        markAllBucketsDirty();
     }
 
     @Override
     public boolean valueAlreadyMapped(Bytes key, Bytes primaryKey) throws DataStorageManagerException {
+        Map<Bytes, List<Bytes>> bucket = bucketOf(key);
         if (primaryKey == null) {
             // new record, error if there is any mapping
-            return data.containsKey(key);
+            return bucket.containsKey(key);
         } else {
             // updating a record, error if there is a mapping to another record
-            List<Bytes> current = data.getOrDefault(key, Collections.emptyList());
+            List<Bytes> current = bucket.getOrDefault(key, Collections.emptyList());
             return !current.isEmpty()
                     && !current.contains(primaryKey);
         }
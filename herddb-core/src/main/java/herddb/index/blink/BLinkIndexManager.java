@@ -0,0 +1,567 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.index.blink;
+
+import herddb.codec.RecordSerializer;
+import herddb.core.AbstractIndexManager;
+import herddb.core.AbstractTableManager;
+import herddb.core.HerdDBInternalException;
+import herddb.core.MemoryManager;
+import herddb.core.PostCheckpointAction;
+import herddb.core.TableSpaceManager;
+import herddb.index.IndexOperation;
+import herddb.index.SecondaryIndexPrefixScan;
+import herddb.index.SecondaryIndexRangeScan;
+import herddb.index.SecondaryIndexSeek;
+import herddb.index.blink.BLink.SizeEvaluator;
+import herddb.log.CommitLog;
+import herddb.log.LogSequenceNumber;
+import herddb.model.Index;
+import herddb.model.StatementEvaluationContext;
+import herddb.model.StatementExecutionException;
+import herddb.model.Table;
+import herddb.model.TableContext;
+import herddb.sql.SQLRecordKeyFunction;
+import herddb.storage.DataStorageManager;
+import herddb.storage.DataStorageManagerException;
+import herddb.storage.IndexStatus;
+import herddb.utils.Bytes;
+import herddb.utils.DataAccessor;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Sorted secondary index, backed by a paged {@link BLink} tree.
+ * <p>
+ * Every entry of the tree is a composite key made of the value of the
+ * indexed columns followed by the primary key of the record, so that non
+ * unique values are supported and entries are ordered by indexed value. The
+ * indexed value is escaped in order to keep the ordering of the composite
+ * keys consistent with the ordering of the indexed values. The value mapped
+ * to each composite key is the offset of the primary key inside it.
+ * <p>
+ * Pages are loaded and unloaded using the same {@link MemoryManager} budget
+ * of primary key indexes and only dirty pages are written at checkpoint.
+ */
+public class BLinkIndexManager extends AbstractIndexManager {
+
+    private static final Logger LOGGER = Logger.getLogger(BLinkIndexManager.class.getName());
+
+    private static final byte NODE_PAGE_END_BLOCK = 0;
+    private static final byte NODE_PAGE_KEY_VALUE_BLOCK = 1;
+    private static final byte NODE_PAGE_INF_BLOCK = 2;
+
+    private static final byte ESCAPE = 0x00;
+    private static final byte ESCAPED_ZERO = (byte) 0xFF;
+    private static final byte TERMINATOR = 0x01;
+    private static final byte AFTER_TERMINATOR = 0x02;
+
+    private final MemoryManager memoryManager;
+    private final AtomicLong newPageId = new AtomicLong(1);
+    private final BLinkIndexDataStorage<Bytes, Long> indexDataStorage = new BLinkIndexDataStorageImpl();
+    private volatile BLink<Bytes, Long> tree;
+
+    public BLinkIndexManager(Index index, MemoryManager memoryManager, AbstractTableManager tableManager, CommitLog log,
+                             DataStorageManager dataStorageManager, TableSpaceManager tableSpaceManager, String tableSpaceUUID, long transaction,
+                             int writeLockTimeout, int readLockTimeout) {
+        super(index, tableManager, dataStorageManager, tableSpaceManager.getTableSpaceUUID(), log, transaction,
+                writeLockTimeout, readLockTimeout);
+        this.memoryManager = memoryManager;
+    }
+
+    @Override
+    protected boolean doStart(LogSequenceNumber sequenceNumber) throws DataStorageManagerException {
+        LOGGER.log(Level.INFO, " start BLINK index {0} uuid {1}", new Object[]{index.name, index.uuid});
+
+        dataStorageManager.initIndex(tableSpaceUUID, index.uuid);
+
+        if (LogSequenceNumber.START_OF_TIME.equals(sequenceNumber)) {
+            /* Empty index (booting from the start) */
+            tree = newTree(null);
+            LOGGER.log(Level.INFO, "loaded empty index {0}", new Object[]{index.name});
+            return true;
+        }
+        IndexStatus status;
+        try {
+            status = dataStorageManager.getIndexStatus(tableSpaceUUID, index.uuid, sequenceNumber);
+        } catch (DataStorageManagerException e) {
+            LOGGER.log(Level.SEVERE, "cannot load index {0} due to {1}, it will be rebuilt", new Object[]{index.name, e});
+            return false;
+        }
+        try {
+            BLinkMetadata<Bytes> metadata = BLinkKeyToPageIndex.MetadataSerializer.INSTANCE.read(status.indexData);
+            tree = newTree(metadata);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "cannot load index {0} due to {1}, it will be rebuilt", new Object[]{index.name, e});
+            return false;
+        }
+        newPageId.set(status.newPageId);
+        LOGGER.log(Level.INFO, "loaded index {0}: {1} keys", new Object[]{index.name, tree.size()});
+        return true;
+    }
+
+    private BLink<Bytes, Long> newTree(BLinkMetadata<Bytes> metadata) {
+        final long pageSize = memoryManager.getMaxLogicalPageSize();
+        if (metadata == null) {
+            return new BLink<>(pageSize, SizeEvaluatorImpl.INSTANCE,
+                    memoryManager.getPKPageReplacementPolicy(), indexDataStorage);
+        }
+        return new BLink<>(pageSize, SizeEvaluatorImpl.INSTANCE,
+                memoryManager.getPKPageReplacementPolicy(), indexDataStorage, metadata);
+    }
+
+    @Override
+    public void rebuild() throws DataStorageManagerException {
+        long _start = System.currentTimeMillis();
+        LOGGER.log(Level.FINE, "building index {0}", index.name);
+        dataStorageManager.initIndex(tableSpaceUUID, index.uuid);
+        closeTree();
+        tree = newTree(null);
+        Table table = tableManager.getTable();
+        AtomicLong count = new AtomicLong();
+        tableManager.scanForIndexRebuild(r -> {
+            DataAccessor values = r.getDataAccessor(table);
+            Bytes key = RecordSerializer.serializeIndexKey(values, table, table.primaryKey);
+            Bytes indexKey = RecordSerializer.serializeIndexKey(values, index, index.columnNames);
+            recordInserted(key, indexKey);
+            count.incrementAndGet();
+        });
+        long _stop = System.currentTimeMillis();
+        if (count.intValue() > 0) {
+            LOGGER.log(Level.INFO, "building index {0} took {1}, scanned {2} records", new Object[]{index.name, (_stop - _start) + " ms", count});
+        }
+    }
+
+    @Override
+    public List<PostCheckpointAction> checkpoint(LogSequenceNumber sequenceNumber, boolean pin) throws DataStorageManagerException {
+        if (createdInTransaction > 0) {
+            LOGGER.log(Level.INFO, "checkpoint for index " + index.name + " skipped, this index is created on transaction " + createdInTransaction + " which is not committed");
+            return Collections.emptyList();
+        }
+        try {
+            BLinkMetadata<Bytes> metadata = getTree().checkpoint();
+
+            byte[] metaPage = BLinkKeyToPageIndex.MetadataSerializer.INSTANCE.write(metadata);
+
+            Set<Long> activePages = new HashSet<>();
+            metadata.nodes.forEach(node -> activePages.add(node.storeId));
+
+            IndexStatus indexStatus = new IndexStatus(index.name, sequenceNumber, newPageId.get(), activePages, metaPage);
+            List<PostCheckpointAction> result = new ArrayList<>();
+            result.addAll(dataStorageManager.indexCheckpoint(tableSpaceUUID, index.uuid, indexStatus, pin));
+
+            LOGGER.log(Level.INFO, "checkpoint index {0} finished: logpos {1}, {2} pages",
+                    new Object[]{index.name, sequenceNumber, Integer.toString(metadata.nodes.size())});
+            LOGGER.log(Level.FINE, "checkpoint index {0} finished: logpos {1}, pages {2}",
+                    new Object[]{index.name, sequenceNumber, activePages});
+
+            return result;
+        } catch (IOException | UncheckedIOException err) {
+            throw new DataStorageManagerException(err);
+        }
+    }
+
+    @Override
+    public void unpinCheckpoint(LogSequenceNumber sequenceNumber) throws DataStorageManagerException {
+        dataStorageManager.unPinIndexCheckpoint(tableSpaceUUID, index.uuid, sequenceNumber);
+    }
+
+    @Override
+    protected Stream<Bytes> scanner(IndexOperation operation, StatementEvaluationContext context, TableContext tableContext) throws StatementExecutionException {
+        if (operation instanceof SecondaryIndexSeek) {
+            SecondaryIndexSeek sis = (SecondaryIndexSeek) operation;
+            SQLRecordKeyFunction value = sis.value;
+            byte[] refvalue = value.computeNewValue(null, context, tableContext);
+            return scan(firstEntryOf(refvalue), afterLastEntryOf(refvalue));
+
+        } else if (operation instanceof SecondaryIndexPrefixScan) {
+            SecondaryIndexPrefixScan sis = (SecondaryIndexPrefixScan) operation;
+            SQLRecordKeyFunction value = sis.value;
+            byte[] refvalue = value.computeNewValue(null, context, tableContext);
+            Bytes firstKey = escape(refvalue, 0);
+            Bytes lastKey;
+            try {
+                lastKey = firstKey.next();
+            } catch (IllegalStateException noNextValue) {
+                lastKey = null;
+            }
+            return scan(firstKey, lastKey);
+
+        } else if (operation instanceof SecondaryIndexRangeScan) {
+
+            Bytes firstKey = null;
+            Bytes lastKey = null;
+
+            SecondaryIndexRangeScan sis = (SecondaryIndexRangeScan) operation;
+            SQLRecordKeyFunction minKey = sis.minValue;
+            if (minKey != null) {
+                byte[] refminvalue = minKey.computeNewValue(null, context, tableContext);
+                if (refminvalue != null) {
+                    firstKey = firstEntryOf(refminvalue);
+                }
+            }
+
+            SQLRecordKeyFunction maxKey = sis.maxValue;
+            if (maxKey != null) {
+                byte[] refmaxvalue = maxKey.computeNewValue(null, context, tableContext);
+                if (refmaxvalue != null) {
+                    lastKey = afterLastEntryOf(refmaxvalue);
+                }
+            }
+            LOGGER.log(Level.FINE, "range scan on {0}.{1}, from {2} to {3}", new Object[]{index.table, index.name, firstKey, lastKey});
+            return scan(firstKey, lastKey);
+
+        } else {
+            throw new UnsupportedOperationException("unsuppported index access type " + operation);
+        }
+    }
+
+    /**
+     * Scans the tree, returning the primary keys in the order of the indexed
+     * values
+     *
+     * @param firstKey inclusive, null means from the first entry
+     * @param lastKey exclusive, null means up to the last entry
+     */
+    private Stream<Bytes> scan(Bytes firstKey, Bytes lastKey) {
+        try {
+            return getTree().scan(firstKey, lastKey).map(BLinkIndexManager::primaryKeyOf);
+        } catch (UncheckedIOException err) {
+            throw new HerdDBInternalException(err);
+        }
+    }
+
+    @Override
+    public void recordDeleted(Bytes key, Bytes indexKey) {
+        if (indexKey == null) {
+            return;
+        }
+        try {
+            getTree().delete(entryOf(indexKey, key));
+        } catch (UncheckedIOException err) {
+            throw new HerdDBInternalException(err);
+        }
+    }
+
+    @Override
+    public void recordInserted(Bytes key, Bytes indexKey) {
+        if (indexKey == null) {
+            return;
+        }
+        Bytes entry = entryOf(indexKey, key);
+        try {
+            getTree().insert(entry, (long) (entry.getLength() - key.getLength()));
+        } catch (UncheckedIOException err) {
+            throw new HerdDBInternalException(err);
+        }
+    }
+
+    @Override
+    public void recordUpdated(Bytes key, Bytes indexKeyRemoved, Bytes indexKeyAdded) {
+        if (Objects.equals(indexKeyRemoved, indexKeyAdded)) {
+            return;
+        }
+        // BEWARE that this operation is not atomic
+        recordInserted(key, indexKeyAdded);
+        recordDeleted(key, indexKeyRemoved);
+    }
+
+    @Override
+    public void truncate() throws DataStorageManagerException {
+        getTree().truncate();
+    }
+
+    @Override
+    public void dropIndexData() throws DataStorageManagerException {
+        BLink<Bytes, Long> current = tree;
+        if (current != null) {
+            current.truncate();
+        }
+        super.dropIndexData();
+    }
+
+    @Override
+    public boolean valueAlreadyMapped(Bytes key, Bytes primaryKey) throws DataStorageManagerException {
+        byte[] value = key.to_array();
+        try (Stream<Bytes> mapped = scan(firstEntryOf(value), afterLastEntryOf(value))) {
+            if (primaryKey == null) {
+                // new record, error if there is any mapping
+                return mapped.findAny().isPresent();
+            } else {
+                // updating a record, error if there is a mapping to another record
+                return mapped.anyMatch(pk -> !pk.equals(primaryKey));
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closeTree();
+    }
+
+    private void closeTree() {
+        BLink<Bytes, Long> current = tree;
+        tree = null;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    private BLink<Bytes, Long> getTree() {
+        BLink<Bytes, Long> current = tree;
+        if (current == null) {
+            throw new DataStorageManagerException("Index " + index.name + " not started");
+        }
+        return current;
+    }
+
+    /**
+     * Escapes the value, 0x00 is written as 0x00 0xFF, this way the
+     * terminator 0x00 0x01 sorts before any other continuation of the value.
+     */
+    private static Bytes escape(byte[] value, int extraSpace) {
+        int zeros = 0;
+        for (byte b : value) {
+            if (b == ESCAPE) {
+                zeros++;
+            }
+        }
+        byte[] result = new byte[value.length + zeros + extraSpace];
+        int pos = 0;
+        for (byte b : value) {
+            result[pos++] = b;
+            if (b == ESCAPE) {
+                result[pos++] = ESCAPED_ZERO;
+            }
+        }
+        return Bytes.from_array(result);
+    }
+
+    private static Bytes entryOf(Bytes indexKey, Bytes primaryKey) {
+        Bytes escaped = escape(indexKey.to_array(), 2 + primaryKey.getLength());
+        byte[] result = escaped.getBuffer();
+        int pos = result.length - primaryKey.getLength() - 2;
+        result[pos++] = ESCAPE;
+        result[pos++] = TERMINATOR;
+        System.arraycopy(primaryKey.getBuffer(), primaryKey.getOffset(), result, pos, primaryKey.getLength());
+        return escaped;
+    }
+
+    /**
+     * Lower bound (inclusive) of the entries of the value
+     */
+    private static Bytes firstEntryOf(byte[] value) {
+        return terminated(value, TERMINATOR);
+    }
+
+    /**
+     * Upper bound (exclusive) of the entries of the value
+     */
+    private static Bytes afterLastEntryOf(byte[] value) {
+        return terminated(value, AFTER_TERMINATOR);
+    }
+
+    private static Bytes terminated(byte[] value, byte terminator) {
+        Bytes escaped = escape(value, 2);
+        byte[] result = escaped.getBuffer();
+        result[result.length - 2] = ESCAPE;
+        result[result.length - 1] = terminator;
+        return escaped;
+    }
+
+    private static Bytes primaryKeyOf(Entry<Bytes, Long> entry) {
+        Bytes composite = entry.getKey();
+        int offset = entry.getValue().intValue();
+        return Bytes.from_array(composite.getBuffer(), composite.getOffset() + offset, composite.getLength() - offset);
+    }
+
+    private static class SizeEvaluatorImpl implements SizeEvaluator<Bytes, Long> {
+
+        /**
+         * Size of a java.lang.Long instance
+         */
+        private static final long DATA_SIZE = 24L;
+
+        public static final SizeEvaluator<Bytes, Long> INSTANCE = new SizeEvaluatorImpl();
+
+        private SizeEvaluatorImpl() {
+        }
+
+        @Override
+        public long evaluateKey(Bytes key) {
+            return key.getEstimatedSize();
+        }
+
+        @Override
+        public boolean isValueSizeConstant() {
+            return true;
+        }
+
+        @Override
+        public long constantValueSize() throws UnsupportedOperationException {
+            return DATA_SIZE;
+        }
+
+        @Override
+        public long evaluateValue(Long value) {
+            return DATA_SIZE;
+        }
+
+        @Override
+        public long evaluateAll(Bytes key, Long value) {
+            return key.getEstimatedSize() + DATA_SIZE;
+        }
+
+        @Override
+        public Bytes getPosiviveInfinityKey() {
+            return Bytes.POSITIVE_INFINITY;
+        }
+
+    }
+
+    private final class BLinkIndexDataStorageImpl implements BLinkIndexDataStorage<Bytes, Long> {
+
+        @Override
+        public void loadNodePage(long pageId, Map<Bytes, Long> data) throws IOException {
+            loadPage(pageId, BLinkKeyToPageIndex.INNER_NODE_PAGE, data);
+        }
+
+        @Override
+        public void loadLeafPage(long pageId, Map<Bytes, Long> data) throws IOException {
+            loadPage(pageId, BLinkKeyToPageIndex.LEAF_NODE_PAGE, data);
+        }
+
+        private void loadPage(long pageId, byte type, Map<Bytes, Long> map) throws IOException {
+
+            dataStorageManager.readIndexPage(tableSpaceUUID, index.uuid, pageId, in -> {
+
+                long version = in.readVLong();
+
+                /* flags for future implementations, actually unused */
+                long flags = in.readVLong();
+
+                if (version != 1 || flags != 0) {
+                    throw new IOException("Corrupted index page " + pageId);
+                }
+
+                byte rtype = in.readByte();
+
+                if (rtype != type) {
+                    throw new IOException("Wrong page type " + rtype + " expected " + type);
+                }
+
+                byte block;
+                while ((block = in.readByte()) != NODE_PAGE_END_BLOCK) {
+
+                    switch (block) {
+
+                        case NODE_PAGE_KEY_VALUE_BLOCK:
+                            map.put(in.readBytes(), in.readVLong());
+                            break;
+
+                        case NODE_PAGE_INF_BLOCK:
+                            map.put(Bytes.POSITIVE_INFINITY, in.readVLong());
+                            break;
+
+                        default:
+                            throw new IOException("Wrong node block type " + block);
+
+                    }
+                }
+
+                return map;
+
+            });
+
+        }
+
+        @Override
+        public long createNodePage(Map<Bytes, Long> data) throws IOException {
+            return createPage(NEW_PAGE, data, BLinkKeyToPageIndex.INNER_NODE_PAGE);
+        }
+
+        @Override
+        public long createLeafPage(Map<Bytes, Long> data) throws IOException {
+            return createPage(NEW_PAGE, data, BLinkKeyToPageIndex.LEAF_NODE_PAGE);
+        }
+
+        @Override
+        public void overwriteNodePage(long pageId, Map<Bytes, Long> data) throws IOException {
+            createPage(pageId, data, BLinkKeyToPageIndex.INNER_NODE_PAGE);
+        }
+
+        @Override
+        public void overwriteLeafPage(long pageId, Map<Bytes, Long> data) throws IOException {
+            createPage(pageId, data, BLinkKeyToPageIndex.LEAF_NODE_PAGE);
+        }
+
+        private long createPage(long pageId, Map<Bytes, Long> data, byte type) throws IOException {
+            /* Write/overwrite switch */
+            if (pageId == NEW_PAGE) {
+                pageId = newPageId.getAndIncrement();
+            }
+
+            dataStorageManager.writeIndexPage(tableSpaceUUID, index.uuid, pageId, out -> {
+
+                /* Data version */
+                out.writeVLong(1);
+
+                /* flags for future implementations, actually unused */
+                out.writeVLong(0);
+
+                out.writeByte(type);
+
+                data.forEach((x, y) -> {
+                    try {
+                        if (x == Bytes.POSITIVE_INFINITY) {
+                            // Handle special case for +inf key
+                            out.writeByte(NODE_PAGE_INF_BLOCK);
+                            out.writeVLong(y);
+                        } else {
+                            out.writeByte(NODE_PAGE_KEY_VALUE_BLOCK);
+                            out.writeArray(x.to_array());
+                            out.writeVLong(y);
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Unexpected IOException during node page write preparation", e);
+                    }
+                });
+
+                out.writeByte(NODE_PAGE_END_BLOCK);
+
+            });
+
+            return pageId;
+        }
+    }
+}
@@ -21,7 +21,6 @@
 package herddb.index.brin;
 
 import herddb.core.Page;
-import herddb.core.Page.Metadata;
 import herddb.core.PageReplacementPolicy;
 import herddb.storage.DataStorageManagerException;
 import herddb.utils.EnsureLongIncrementAccumulator;
@@ -345,10 +344,7 @@ public final class BlockRangeIndex<K extends Comparable<K> & SizeAwareObject, V
             }
 
             if (newblock != null) {
-                final Metadata unload = index.pageReplacementPolicy.add(newblock.page);
-                if (unload != null) {
-                    unload.owner.unload(unload.pageId);
-                }
+                index.unloadPages(index.pageReplacementPolicy.add(newblock.page));
             }
 
             /* Added */
@@ -494,10 +490,7 @@ public final class BlockRangeIndex<K extends Comparable<K> & SizeAwareObject, V
         }
 
         void ensureBlockLoaded() {
-            final Page.Metadata unload = ensureBlockLoadedWithoutUnload();
-            if (unload != null) {
-                unload.owner.unload(unload.pageId);
-            }
+            index.unloadPages(ensureBlockLoadedWithoutUnload());
         }
 
         Page.Metadata ensureBlockLoadedWithoutUnload() {
@@ -743,6 +736,19 @@ public final class BlockRangeIndex<K extends Comparable<K> & SizeAwareObject, V
 
     }
 
+    /**
+     * Unloads the page selected by the page replacement policy, then any other page selected by the policy in order
+     * to stay within its memory budget.
+     *
+     * @param unload page selected by {@link PageReplacementPolicy#add(Page)}, may be {@code null}
+     */
+    private void unloadPages(Page.Metadata unload) {
+        while (unload != null) {
+            unload.owner.unload(unload.pageId);
+            unload = pageReplacementPolicy.pollExceeding();
+        }
+    }
+
     public int getNumBlocks() {
         return blocks.size();
     }
@@ -860,10 +866,8 @@ public final class BlockRangeIndex<K extends Comparable<K> & SizeAwareObject, V
 
         BlockRangeIndexMetadata.BlockMetadata<K> metadata = first.checkpointNoLock();
 
-        /* Deferred unload of first block! */
-        if (firstBlockUnload != null) {
-            firstBlockUnload.owner.unload(firstBlockUnload.pageId);
-        }
+        /* Deferred unload of first block, then of any other page exceeding the budget of the policy */
+        unloadPages(firstBlockUnload != null ? firstBlockUnload : pageReplacementPolicy.pollExceeding());
 
         return metadata;
 
@@ -1151,10 +1155,7 @@ public final class BlockRangeIndex<K extends Comparable<K> & SizeAwareObject, V
         final Block<K, V> headBlock = new Block<>(this);
         blocks.put((BlockStartKey<K>) BlockStartKey.HEAD_KEY, headBlock);
 
-        final Metadata unload = pageReplacementPolicy.add(headBlock.page);
-        if (unload != null) {
-            unload.owner.unload(unload.pageId);
-        }
+        unloadPages(pageReplacementPolicy.add(headBlock.page));
 
         currentBlockId.set(0);
     }
@@ -49,4 +49,18 @@ public interface TableManagerStatsMXBean {
     long getBuffersUsedMemory();
 
     long getKeysUsedMemory();
+
+    long getPrefetchedPagesCount();
+
+    long getPrefetchHitsCount();
+
+    long getPrefetchWastedCount();
+
+    long getParallelScansCount();
+
+    long getLockWaitsCount();
+
+    long getLockWaitTime();
+
+    long getLockTimeoutsCount();
 }
@@ -25,6 +25,7 @@ import herddb.core.PostCheckpointAction;
 import herddb.core.RecordSetFactory;
 import herddb.index.ConcurrentMapKeyToPageIndex;
 import herddb.index.KeyToPageIndex;
+import herddb.index.LongKeyToPageIndex;
 import herddb.log.LogSequenceNumber;
 import herddb.model.Index;
 import herddb.model.Record;
@@ -35,6 +36,7 @@ import herddb.storage.DataStorageManager;
 import herddb.storage.DataStorageManagerException;
 import herddb.storage.FullTableScanConsumer;
 import herddb.storage.IndexStatus;
+import herddb.storage.IndexStatusDoesNotExistException;
 import herddb.storage.TableStatus;
 import herddb.utils.ByteArrayCursor;
 import herddb.utils.Bytes;
@@ -235,7 +237,7 @@ public class MemoryDataStorageManager extends DataStorageManager {
         byte[] data = indexStatuses.get(checkPoint);
 
         if (data == null) {
-            throw new DataStorageManagerException("no such index checkpoint: " + checkPoint);
+            throw new IndexStatusDoesNotExistException("no such index checkpoint: " + checkPoint);
         }
 
         try {
@@ -566,11 +568,19 @@ public class MemoryDataStorageManager extends DataStorageManager {
         return new ConcurrentMapKeyToPageIndex(new ConcurrentHashMap<>());
     }
 
+    @Override
+    public KeyToPageIndex createKeyToPageMap(String tablespace, Table table, MemoryManager memoryManager) {
+        if (table.keyToPageIndex == Table.KEYTOPAGE_INDEX_LONG) {
+            // not persistent, as the ConcurrentMapKeyToPageIndex
+            return new LongKeyToPageIndex(tablespace, table, null);
+        }
+        return createKeyToPageMap(tablespace, table.uuid, memoryManager);
+    }
+
     @Override
     public void releaseKeyToPageMap(String tablespace, String name, KeyToPageIndex keyToPage) {
         if (keyToPage != null) {
-            ConcurrentMapKeyToPageIndex impl = (ConcurrentMapKeyToPageIndex) keyToPage;
-            impl.getMap().clear();
+            keyToPage.close();
         }
     }
 
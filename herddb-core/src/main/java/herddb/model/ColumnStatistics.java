@@ -0,0 +1,254 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.model;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import herddb.codec.RecordSerializer;
+import herddb.utils.ExtendedDataInputStream;
+import herddb.utils.ExtendedDataOutputStream;
+import herddb.utils.SQLRecordPredicateFunctions;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Statistics about the values of a column, computed by ANALYZE TABLE
+ *
+ * @see TableStatistics
+ */
+@SuppressFBWarnings({"EI_EXPOSE_REP", "EI_EXPOSE_REP2"})
+public final class ColumnStatistics {
+
+    private final String column;
+    private final int type;
+    private final long distinctValues;
+    private final long nullCount;
+    private final Object min;
+    private final Object max;
+    private final Object[] histogram;
+
+    /**
+     * @param column name of the column
+     * @param type type of the column
+     * @param distinctValues estimated number of distinct non null values
+     * @param nullCount number of null values
+     * @param min minimum value, null if not available
+     * @param max maximum value, null if not available
+     * @param histogram bounds of an equi-depth histogram of the non null
+     * values, each bucket holds the same number of values, null if not
+     * available
+     */
+    public ColumnStatistics(
+            String column, int type, long distinctValues, long nullCount,
+            Object min, Object max, Object[] histogram
+    ) {
+        this.column = column;
+        this.type = type;
+        this.distinctValues = distinctValues;
+        this.nullCount = nullCount;
+        this.min = min;
+        this.max = max;
+        this.histogram = histogram;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public long getDistinctValues() {
+        return distinctValues;
+    }
+
+    public long getNullCount() {
+        return nullCount;
+    }
+
+    public Object getMin() {
+        return min;
+    }
+
+    public Object getMax() {
+        return max;
+    }
+
+    public Object[] getHistogram() {
+        return histogram;
+    }
+
+    /**
+     * Estimates the fraction of the non null values which are lower than the
+     * given value, using the histogram.
+     *
+     * @param value
+     * @return the fraction, or a negative value if it cannot be estimated
+     */
+    public double estimateFractionLowerThan(Object value) {
+        if (value == null || histogram == null || histogram.length < 2) {
+            return -1;
+        }
+        try {
+            int buckets = histogram.length - 1;
+            if (SQLRecordPredicateFunctions.compare(value, histogram[0]) <= 0) {
+                return 0;
+            }
+            if (SQLRecordPredicateFunctions.compare(value, histogram[buckets]) > 0) {
+                return 1;
+            }
+            // find the bucket, bounds[low] < value <= bounds[low + 1]
+            int low = 0;
+            int high = buckets;
+            while (high - low > 1) {
+                int mid = (low + high) >>> 1;
+                if (SQLRecordPredicateFunctions.compare(value, histogram[mid]) <= 0) {
+                    high = mid;
+                } else {
+                    low = mid;
+                }
+            }
+            double lowerBound = toDouble(histogram[low]);
+            double upperBound = toDouble(histogram[high]);
+            double position = toDouble(value);
+            double inBucket = 0.5;
+            if (!Double.isNaN(lowerBound) && !Double.isNaN(upperBound) && !Double.isNaN(position)
+                    && upperBound > lowerBound) {
+                inBucket = (position - lowerBound) / (upperBound - lowerBound);
+            }
+            return (low + inBucket) / buckets;
+        } catch (IllegalArgumentException uncomparable) {
+            return -1;
+        }
+    }
+
+    private static double toDouble(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        if (value instanceof java.util.Date) {
+            return ((java.util.Date) value).getTime();
+        }
+        return Double.NaN;
+    }
+
+    void serialize(ExtendedDataOutputStream output) throws IOException {
+        output.writeUTF(column);
+        output.writeVInt(type);
+        output.writeVLong(distinctValues);
+        output.writeVLong(nullCount);
+        writeValue(min, output);
+        writeValue(max, output);
+        if (histogram == null) {
+            output.writeVInt(0);
+        } else {
+            output.writeVInt(histogram.length);
+            for (Object bound : histogram) {
+                writeValue(bound, output);
+            }
+        }
+    }
+
+    static ColumnStatistics deserialize(ExtendedDataInputStream input) throws IOException {
+        String column = input.readUTF();
+        int type = input.readVInt();
+        long distinctValues = input.readVLong();
+        long nullCount = input.readVLong();
+        Object min = readValue(type, input);
+        Object max = readValue(type, input);
+        int histogramSize = input.readVInt();
+        Object[] histogram = null;
+        if (histogramSize > 0) {
+            histogram = new Object[histogramSize];
+            for (int i = 0; i < histogramSize; i++) {
+                histogram[i] = readValue(type, input);
+            }
+        }
+        return new ColumnStatistics(column, type, distinctValues, nullCount, min, max, histogram);
+    }
+
+    private void writeValue(Object value, ExtendedDataOutputStream output) throws IOException {
+        if (value == null) {
+            output.writeNullArray();
+        } else {
+            output.writeArray(RecordSerializer.serialize(value, type));
+        }
+    }
+
+    private static Object readValue(int type, ExtendedDataInputStream input) throws IOException {
+        byte[] value = input.readArray();
+        if (value == null) {
+            return null;
+        }
+        return RecordSerializer.deserialize(value, type);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 7;
+        hash = 59 * hash + Objects.hashCode(this.column);
+        hash = 59 * hash + (int) (this.distinctValues ^ (this.distinctValues >>> 32));
+        hash = 59 * hash + (int) (this.nullCount ^ (this.nullCount >>> 32));
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final ColumnStatistics other = (ColumnStatistics) obj;
+        if (this.type != other.type) {
+            return false;
+        }
+        if (this.distinctValues != other.distinctValues) {
+            return false;
+        }
+        if (this.nullCount != other.nullCount) {
+            return false;
+        }
+        if (!Objects.equals(this.column, other.column)) {
+            return false;
+        }
+        if (!Objects.equals(this.min, other.min)) {
+            return false;
+        }
+        if (!Objects.equals(this.max, other.max)) {
+            return false;
+        }
+        return Arrays.equals(this.histogram, other.histogram);
+    }
+
+    @Override
+    public String toString() {
+        return "ColumnStatistics{" + "column=" + column + ", distinctValues=" + distinctValues
+                + ", nullCount=" + nullCount + ", min=" + min + ", max=" + max
+                + ", histogram=" + Arrays.toString(histogram) + '}';
+    }
+
+}
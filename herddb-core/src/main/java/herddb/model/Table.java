@@ -60,6 +60,52 @@ public class Table implements ColumnsList, BindableTableScanColumnNameResolver {
     private static final int COLUMNFLAGS_NO_FLAGS = 0;
     private static final int COLUMNFLAGS_HAS_DEFAULT_VALUE = 1;
 
+    private static final int TABLEFLAGS_NO_FLAGS = 0;
+    private static final int TABLEFLAGS_VALUE_FORMAT_V2 = 1;
+    private static final int TABLEFLAGS_PAGE_COMPRESSION_LZ4 = 2;
+    private static final int TABLEFLAGS_KEYTOPAGE_INDEX_LONG = 4;
+    private static final int TABLEFLAGS_ALL = TABLEFLAGS_VALUE_FORMAT_V2 | TABLEFLAGS_PAGE_COMPRESSION_LZ4
+            | TABLEFLAGS_KEYTOPAGE_INDEX_LONG;
+
+    /**
+     * Sequential layout of the 'value' of records: a list of
+     * (serialPosition, type, value) tuples.
+     */
+    public static final int VALUE_FORMAT_V1 = 1;
+
+    /**
+     * Layout of the 'value' of records with an offset directory in the
+     * header, which allows to access a column without scanning all of the
+     * preceding columns. Records written with {@link #VALUE_FORMAT_V1} are
+     * still readable.
+     */
+    public static final int VALUE_FORMAT_V2 = 2;
+
+    /**
+     * Data pages are written without compression.
+     */
+    public static final int PAGE_COMPRESSION_NONE = 0;
+
+    /**
+     * Data pages are compressed with LZ4, the DataStorageManager may ignore
+     * this setting. Pages written without compression are still readable.
+     */
+    public static final int PAGE_COMPRESSION_LZ4 = 1;
+
+    /**
+     * The primary key index is the default one configured on the
+     * DataStorageManager.
+     */
+    public static final int KEYTOPAGE_INDEX_DEFAULT = 0;
+
+    /**
+     * The primary key index is a map of primitive longs, only for tables whose
+     * primary key is a single INTEGER or LONG column. The kind of index is
+     * fixed when the table is created, because each kind has its own
+     * checkpoints.
+     */
+    public static final int KEYTOPAGE_INDEX_LONG = 1;
+
     public final String uuid;
     public final String name;
     public final String tablespace;
@@ -74,6 +120,9 @@ public class Table implements ColumnsList, BindableTableScanColumnNameResolver {
     // CHECKSTYLE.ON: MemberName
     private final Set<String> primaryKeyColumns;
     public final int maxSerialPosition;
+    public final int valueFormat;
+    public final int pageCompression;
+    public final int keyToPageIndex;
 
     /**
      * Best case:
@@ -88,8 +137,11 @@ public class Table implements ColumnsList, BindableTableScanColumnNameResolver {
      */
     public final boolean physicalLayoutLikeLogicalLayout;
 
-    private Table(String uuid, String name, Column[] columns, String[] primaryKey, String tablespace, boolean auto_increment, int maxSerialPosition) {
+    private Table(String uuid, String name, Column[] columns, String[] primaryKey, String tablespace, boolean auto_increment, int maxSerialPosition, int valueFormat, int pageCompression, int keyToPageIndex) {
         this.uuid = uuid;
+        this.valueFormat = valueFormat;
+        this.pageCompression = pageCompression;
+        this.keyToPageIndex = keyToPageIndex;
         this.name = name;
         this.columns = columns;
         this.maxSerialPosition = maxSerialPosition;
@@ -163,9 +215,16 @@ public class Table implements ColumnsList, BindableTableScanColumnNameResolver {
             ExtendedDataInputStream dii = new ExtendedDataInputStream(ii);
             long tversion = dii.readVLong(); // version
             long tflags = dii.readVLong(); // flags for future implementations
-            if (tversion != 1 || tflags != 0) {
+            if (tversion != 1
+                    || (tflags & ~TABLEFLAGS_ALL) != 0) {
                 throw new IOException("corrupted table file");
             }
+            int valueFormat = (tflags & TABLEFLAGS_VALUE_FORMAT_V2) == TABLEFLAGS_VALUE_FORMAT_V2
+                    ? VALUE_FORMAT_V2 : VALUE_FORMAT_V1;
+            int pageCompression = (tflags & TABLEFLAGS_PAGE_COMPRESSION_LZ4) == TABLEFLAGS_PAGE_COMPRESSION_LZ4
+                    ? PAGE_COMPRESSION_LZ4 : PAGE_COMPRESSION_NONE;
+            int keyToPageIndex = (tflags & TABLEFLAGS_KEYTOPAGE_INDEX_LONG) == TABLEFLAGS_KEYTOPAGE_INDEX_LONG
+                    ? KEYTOPAGE_INDEX_LONG : KEYTOPAGE_INDEX_DEFAULT;
             String tablespace = dii.readUTF();
             String name = dii.readUTF();
             String uuid = dii.readUTF();
@@ -196,7 +255,7 @@ public class Table implements ColumnsList, BindableTableScanColumnNameResolver {
                 }
                 columns[i] = Column.column(cname, type, serialPosition, defaultValue);
             }
-            return new Table(uuid, name, columns, primaryKey, tablespace, auto_increment, maxSerialPosition);
+            return new Table(uuid, name, columns, primaryKey, tablespace, auto_increment, maxSerialPosition, valueFormat, pageCompression, keyToPageIndex);
         } catch (IOException err) {
             throw new IllegalArgumentException(err);
         }
@@ -206,7 +265,17 @@ public class Table implements ColumnsList, BindableTableScanColumnNameResolver {
         ByteArrayOutputStream oo = new ByteArrayOutputStream();
         try (ExtendedDataOutputStream doo = new ExtendedDataOutputStream(oo)) {
             doo.writeVLong(1); // version
-            doo.writeVLong(0); // flags for future implementations
+            int tflags = TABLEFLAGS_NO_FLAGS;
+            if (valueFormat == VALUE_FORMAT_V2) {
+                tflags |= TABLEFLAGS_VALUE_FORMAT_V2;
+            }
+            if (pageCompression == PAGE_COMPRESSION_LZ4) {
+                tflags |= TABLEFLAGS_PAGE_COMPRESSION_LZ4;
+            }
+            if (keyToPageIndex == KEYTOPAGE_INDEX_LONG) {
+                tflags |= TABLEFLAGS_KEYTOPAGE_INDEX_LONG;
+            }
+            doo.writeVLong(tflags);
             doo.writeUTF(tablespace);
             doo.writeUTF(name);
             doo.writeUTF(uuid);
@@ -273,7 +342,10 @@ public class Table implements ColumnsList, BindableTableScanColumnNameResolver {
         Builder builder = builder()
                 .name(newTableName)
                 .uuid(this.uuid)
-                .tablespace(this.tablespace);
+                .tablespace(this.tablespace)
+                .valueFormat(this.valueFormat)
+                .pageCompression(this.pageCompression)
+                .keyToPageIndex(this.keyToPageIndex);
 
         List<String> dropColumns = alterTableStatement.getDropColumns().stream().map(String::toLowerCase)
                 .collect(Collectors.toList());
@@ -392,6 +464,9 @@ public class Table implements ColumnsList, BindableTableScanColumnNameResolver {
         private boolean auto_increment;
         // CHECKSTYLE.ON: MemberName
         private int maxSerialPosition = 0;
+        private int valueFormat = VALUE_FORMAT_V1;
+        private int pageCompression = PAGE_COMPRESSION_NONE;
+        private int keyToPageIndex = KEYTOPAGE_INDEX_DEFAULT;
 
         private Builder() {
         }
@@ -411,6 +486,30 @@ public class Table implements ColumnsList, BindableTableScanColumnNameResolver {
             return this;
         }
 
+        public Builder valueFormat(int valueFormat) {
+            if (valueFormat != VALUE_FORMAT_V1 && valueFormat != VALUE_FORMAT_V2) {
+                throw new IllegalArgumentException("unsupported value format " + valueFormat);
+            }
+            this.valueFormat = valueFormat;
+            return this;
+        }
+
+        public Builder pageCompression(int pageCompression) {
+            if (pageCompression != PAGE_COMPRESSION_NONE && pageCompression != PAGE_COMPRESSION_LZ4) {
+                throw new IllegalArgumentException("unsupported page compression " + pageCompression);
+            }
+            this.pageCompression = pageCompression;
+            return this;
+        }
+
+        public Builder keyToPageIndex(int keyToPageIndex) {
+            if (keyToPageIndex != KEYTOPAGE_INDEX_DEFAULT && keyToPageIndex != KEYTOPAGE_INDEX_LONG) {
+                throw new IllegalArgumentException("unsupported primary key index " + keyToPageIndex);
+            }
+            this.keyToPageIndex = keyToPageIndex;
+            return this;
+        }
+
         public Builder tablespace(String tablespace) {
             this.tablespace = tablespace;
             return this;
@@ -477,11 +576,15 @@ public class Table implements ColumnsList, BindableTableScanColumnNameResolver {
                 }
             }
 
+            if (keyToPageIndex == KEYTOPAGE_INDEX_LONG && !validateLongKeyToPageIndex()) {
+                throw new IllegalArgumentException("the primary key of table " + name + " must be a single integer or long column");
+            }
+
             columns.sort((Column o1, Column o2) -> o1.serialPosition - o2.serialPosition);
 
             return new Table(uuid, name,
                     columns.toArray(new Column[columns.size()]), primaryKey.toArray(new String[primaryKey.size()]),
-                    tablespace, auto_increment, maxSerialPosition);
+                    tablespace, auto_increment, maxSerialPosition, valueFormat, pageCompression, keyToPageIndex);
         }
 
         /**
@@ -508,6 +611,22 @@ public class Table implements ColumnsList, BindableTableScanColumnNameResolver {
             }
         }
 
+        private boolean validateLongKeyToPageIndex() {
+            if (primaryKey.size() != 1) {
+                return false;
+            }
+            Column pk = columns.stream().filter(c -> c.name.equals(primaryKey.get(0))).findAny().get();
+            switch (pk.type) {
+                case ColumnTypes.NOTNULL_INTEGER:
+                case ColumnTypes.INTEGER:
+                case ColumnTypes.NOTNULL_LONG:
+                case ColumnTypes.LONG:
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
         public Builder cloning(Table tableSchema) {
             this.columns.addAll(Arrays.asList(tableSchema.columns));
             this.name = tableSchema.name;
@@ -516,6 +635,9 @@ public class Table implements ColumnsList, BindableTableScanColumnNameResolver {
             this.tablespace = tableSchema.tablespace;
             this.auto_increment = tableSchema.auto_increment;
             this.maxSerialPosition = tableSchema.maxSerialPosition;
+            this.valueFormat = tableSchema.valueFormat;
+            this.pageCompression = tableSchema.pageCompression;
+            this.keyToPageIndex = tableSchema.keyToPageIndex;
             return this;
         }
     }
@@ -545,6 +667,15 @@ public class Table implements ColumnsList, BindableTableScanColumnNameResolver {
         if (this.maxSerialPosition != other.maxSerialPosition) {
             return false;
         }
+        if (this.valueFormat != other.valueFormat) {
+            return false;
+        }
+        if (this.pageCompression != other.pageCompression) {
+            return false;
+        }
+        if (this.keyToPageIndex != other.keyToPageIndex) {
+            return false;
+        }
         if (!Objects.equals(this.uuid, other.uuid)) {
             return false;
         }
@@ -0,0 +1,142 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.model;
+
+import herddb.utils.ExtendedDataInputStream;
+import herddb.utils.ExtendedDataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Per-column statistics of a table, computed by ANALYZE TABLE and persisted
+ * with the table checkpoint.
+ */
+public final class TableStatistics {
+
+    private final long analyzeTimestamp;
+    private final long rowCount;
+    private final Map<String, ColumnStatistics> columns;
+
+    public TableStatistics(long analyzeTimestamp, long rowCount, List<ColumnStatistics> columns) {
+        this.analyzeTimestamp = analyzeTimestamp;
+        this.rowCount = rowCount;
+        Map<String, ColumnStatistics> byName = new LinkedHashMap<>();
+        for (ColumnStatistics column : columns) {
+            byName.put(column.getColumn(), column);
+        }
+        this.columns = Collections.unmodifiableMap(byName);
+    }
+
+    public long getAnalyzeTimestamp() {
+        return analyzeTimestamp;
+    }
+
+    /**
+     * Number of records at the time of the analysis.
+     *
+     * @return the number of records
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public Collection<ColumnStatistics> getColumns() {
+        return columns.values();
+    }
+
+    /**
+     * Statistics about a column
+     *
+     * @param column
+     * @return the statistics or null if the column was not analyzed
+     */
+    public ColumnStatistics getColumn(String column) {
+        return columns.get(column);
+    }
+
+    public void serialize(ExtendedDataOutputStream output) throws IOException {
+        output.writeVLong(1); // version
+        output.writeVLong(0); // flags for future implementations
+        output.writeLong(analyzeTimestamp);
+        output.writeVLong(rowCount);
+        output.writeVInt(columns.size());
+        for (ColumnStatistics column : columns.values()) {
+            column.serialize(output);
+        }
+    }
+
+    public static TableStatistics deserialize(ExtendedDataInputStream input) throws IOException {
+        long version = input.readVLong(); // version
+        long flags = input.readVLong(); // flags for future implementations
+        if (version != 1 || flags != 0) {
+            throw new IOException("corrupted table statistics");
+        }
+        long analyzeTimestamp = input.readLong();
+        long rowCount = input.readVLong();
+        int numColumns = input.readVInt();
+        ColumnStatistics[] columns = new ColumnStatistics[numColumns];
+        for (int i = 0; i < numColumns; i++) {
+            columns[i] = ColumnStatistics.deserialize(input);
+        }
+        return new TableStatistics(analyzeTimestamp, rowCount, Arrays.asList(columns));
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 5;
+        hash = 41 * hash + (int) (this.analyzeTimestamp ^ (this.analyzeTimestamp >>> 32));
+        hash = 41 * hash + (int) (this.rowCount ^ (this.rowCount >>> 32));
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final TableStatistics other = (TableStatistics) obj;
+        if (this.analyzeTimestamp != other.analyzeTimestamp) {
+            return false;
+        }
+        if (this.rowCount != other.rowCount) {
+            return false;
+        }
+        return Objects.equals(this.columns, other.columns);
+    }
+
+    @Override
+    public String toString() {
+        return "TableStatistics{" + "analyzeTimestamp=" + analyzeTimestamp + ", rowCount=" + rowCount + ", columns=" + columns.values() + '}';
+    }
+
+}
@@ -26,6 +26,7 @@ import herddb.core.RecordSetFactory;
 import herddb.core.SimpleDataScanner;
 import herddb.core.TableSpaceManager;
 import herddb.model.Column;
+import herddb.model.ColumnTypes;
 import herddb.model.DataScanner;
 import herddb.model.DataScannerException;
 import herddb.model.ScanResult;
@@ -39,7 +40,9 @@ import herddb.sql.expressions.AccessCurrentRowExpression;
 import herddb.sql.expressions.CompiledSQLExpression;
 import herddb.sql.functions.BuiltinFunctions;
 import herddb.utils.DataAccessor;
+import herddb.utils.SystemProperties;
 import herddb.utils.Wrapper;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -60,6 +63,21 @@ public class AggregateOp implements PlannerOp {
     private final List<Integer> groupedFiledsIndexes;
     private final List<List<Integer>> argLists;
 
+    /**
+     * Maximum number of groups held in memory by each level of the hash
+     * aggregation, further groups are spilled to the RecordSetFactory.
+     * <p>
+     * This is a number of groups, not an amount of memory: the size of each
+     * group depends on the grouping key and on the aggregated columns.
+     */
+    private static final int MAX_GROUPS_IN_MEMORY = SystemProperties.
+            getIntSystemProperty("herddb.planner.aggregate.maxgroupsinmemory", 100_000);
+
+    private static final int SPILL_PARTITIONS = SystemProperties.
+            getIntSystemProperty("herddb.planner.aggregate.spillpartitions", 16);
+
+    private static final int MAX_SPILL_LEVELS = 8;
+
     public AggregateOp(
             PlannerOp input,
             String[] fieldnames,
@@ -88,124 +106,346 @@ public class AggregateOp implements PlannerOp {
             StatementEvaluationContext context,
             boolean lockRequired, boolean forWrite
     ) throws StatementExecutionException {
+        return execute(tableSpaceManager, transactionContext, context, lockRequired, forWrite, MAX_GROUPS_IN_MEMORY);
+    }
+
+    // visible for testing
+    StatementExecutionResult execute(
+            TableSpaceManager tableSpaceManager,
+            TransactionContext transactionContext,
+            StatementEvaluationContext context,
+            boolean lockRequired, boolean forWrite,
+            int maxGroupsInMemory
+    ) throws StatementExecutionException {
 
         StatementExecutionResult input = this.input.execute(tableSpaceManager, transactionContext, context, lockRequired, forWrite);
         ScanResult downstreamScanResult = (ScanResult) input;
         final DataScanner inputScanner = downstreamScanResult.dataScanner;
         AggregatedDataScanner filtered = new AggregatedDataScanner(inputScanner, context,
-                tableSpaceManager.getDbmanager().getRecordSetFactory());
+                tableSpaceManager.getDbmanager().getRecordSetFactory(), maxGroupsInMemory);
         return new ScanResult(downstreamScanResult.transactionId, filtered);
 
     }
 
     private static class Group {
 
-        AggregatedColumnCalculator[] columns;
+        final Object[] key;
+        final AggregatedColumnCalculator[] columns;
 
-        public Group(AggregatedColumnCalculator[] columns) {
+        public Group(Object[] key, AggregatedColumnCalculator[] columns) {
+            this.key = key;
             this.columns = columns;
         }
 
     }
 
+    /**
+     * In memory table of groups. A lookup remembers the probed key, in order
+     * to let the caller add a new group or spill the row without computing
+     * the key again.
+     */
+    private abstract static class GroupTable {
+
+        abstract Group lookup(DataAccessor tuple);
+
+        abstract int probedHash();
+
+        abstract Object[] probedKey();
+
+        abstract void addProbed(Group group);
+
+        abstract int size();
+
+        abstract Iterable<Group> groups();
+    }
+
+    private static final class Key {
+
+        final Object[] values;
+        final int hash;
+
+        Key(Object[] values) {
+            this.values = values;
+            this.hash = Arrays.deepHashCode(values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return hash == other.hash && Arrays.deepEquals(this.values, other.values);
+        }
+
+    }
+
+    private static final class GenericGroupTable extends GroupTable {
+
+        private final int[] groupedFieldsIndexes;
+        private final Map<Key, Group> groups = new HashMap<>();
+        private Key probed;
+
+        GenericGroupTable(int[] groupedFieldsIndexes) {
+            this.groupedFieldsIndexes = groupedFieldsIndexes;
+        }
+
+        @Override
+        Group lookup(DataAccessor tuple) {
+            Object[] values = new Object[groupedFieldsIndexes.length];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = tuple.get(groupedFieldsIndexes[i]);
+            }
+            probed = new Key(values);
+            return groups.get(probed);
+        }
+
+        @Override
+        int probedHash() {
+            return probed.hash;
+        }
+
+        @Override
+        Object[] probedKey() {
+            return probed.values;
+        }
+
+        @Override
+        void addProbed(Group group) {
+            groups.put(probed, group);
+        }
+
+        @Override
+        int size() {
+            return groups.size();
+        }
+
+        @Override
+        Iterable<Group> groups() {
+            return groups.values();
+        }
+    }
+
+    /**
+     * Open addressing table for a single integral grouping column, it does
+     * not allocate any key object per row.
+     */
+    private static final class LongGroupTable extends GroupTable {
+
+        private final int groupedFieldIndex;
+        private long[] keys = new long[64];
+        private Group[] values = new Group[64];
+        private int size;
+        private Group nullGroup;
+        private Object probedValue;
+        private long probedLong;
+        private int probedSlot;
+
+        LongGroupTable(int groupedFieldIndex) {
+            this.groupedFieldIndex = groupedFieldIndex;
+        }
+
+        private static int hashLong(long value) {
+            return Long.hashCode(value);
+        }
+
+        @Override
+        Group lookup(DataAccessor tuple) {
+            probedValue = tuple.get(groupedFieldIndex);
+            if (probedValue == null) {
+                return nullGroup;
+            }
+            probedLong = ((Number) probedValue).longValue();
+            int mask = keys.length - 1;
+            int slot = SpillPartitions.mixHash(hashLong(probedLong), 0) & mask;
+            while (values[slot] != null) {
+                if (keys[slot] == probedLong) {
+                    return values[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            probedSlot = slot;
+            return null;
+        }
+
+        @Override
+        int probedHash() {
+            return probedValue == null ? 0 : hashLong(probedLong);
+        }
+
+        @Override
+        Object[] probedKey() {
+            return new Object[]{probedValue};
+        }
+
+        @Override
+        void addProbed(Group group) {
+            if (probedValue == null) {
+                nullGroup = group;
+                return;
+            }
+            keys[probedSlot] = probedLong;
+            values[probedSlot] = group;
+            size++;
+            if (size * 2 > keys.length) {
+                rehash();
+            }
+        }
+
+        private void rehash() {
+            long[] oldKeys = keys;
+            Group[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new Group[oldValues.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldValues.length; i++) {
+                if (oldValues[i] != null) {
+                    int slot = SpillPartitions.mixHash(hashLong(oldKeys[i]), 0) & mask;
+                    while (values[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        @Override
+        int size() {
+            return nullGroup == null ? size : size + 1;
+        }
+
+        @Override
+        Iterable<Group> groups() {
+            List<Group> result = new ArrayList<>(size());
+            if (nullGroup != null) {
+                result.add(nullGroup);
+            }
+            for (Group group : values) {
+                if (group != null) {
+                    result.add(group);
+                }
+            }
+            return result;
+        }
+    }
+
     private class AggregatedDataScanner extends DataScanner {
 
         private final DataScanner wrapped;
         private DataScanner aggregatedScanner;
         private final StatementEvaluationContext context;
         private final RecordSetFactory recordSetFactory;
+        private final int[] groupedFieldsIndexes;
+        private final boolean integralGroupKey;
+        private final int maxGroupsInMemory;
 
         public AggregatedDataScanner(
                 DataScanner wrapped,
                 StatementEvaluationContext context,
-                RecordSetFactory recordSetFactory
+                RecordSetFactory recordSetFactory,
+                int maxGroupsInMemory
         ) throws StatementExecutionException {
             super(wrapped.getTransaction(), fieldnames, columns);
             this.wrapped = wrapped;
             this.context = context;
             this.recordSetFactory = recordSetFactory;
+            this.groupedFieldsIndexes = groupedFiledsIndexes.stream().mapToInt(Integer::intValue).toArray();
+            this.integralGroupKey = groupedFieldsIndexes.length == 1
+                    && isIntegralType(wrapped.getSchema()[groupedFieldsIndexes[0]].type);
+            this.maxGroupsInMemory = maxGroupsInMemory;
         }
 
-        private class Key {
-
-            final Object[] values;
-
-            public Key(Object[] values) {
-                this.values = values;
-            }
-
-            @Override
-            public int hashCode() {
-                int hash = 7;
-                hash = 71 * hash + Arrays.deepHashCode(this.values);
-                return hash;
+        private GroupTable newGroupTable() {
+            if (integralGroupKey) {
+                return new LongGroupTable(groupedFieldsIndexes[0]);
             }
+            return new GenericGroupTable(groupedFieldsIndexes);
+        }
 
-            @Override
-            public boolean equals(Object obj) {
-                if (this == obj) {
-                    return true;
+        /**
+         * Hybrid hash aggregation. Groups are kept in memory up to
+         * {@link #maxGroupsInMemory}, then rows belonging to groups that are
+         * not in memory are partitioned by hash and spilled to RecordSets,
+         * which in turn are aggregated recursively once the input has been
+         * fully consumed.
+         */
+        private void aggregate(DataScanner source, int level, MaterializedRecordSet results)
+                throws DataScannerException, StatementExecutionException {
+            GroupTable groups = newGroupTable();
+            SpillPartitions partitions = null;
+            boolean canSpill = level < MAX_SPILL_LEVELS;
+            try {
+                while (source.hasNext()) {
+                    DataAccessor tuple = source.next();
+                    Group group = groups.lookup(tuple);
+                    if (group == null) {
+                        if (canSpill && groups.size() >= maxGroupsInMemory) {
+                            if (partitions == null) {
+                                partitions = new SpillPartitions(recordSetFactory, source.getSchema(), SPILL_PARTITIONS, level + 1);
+                            }
+                            partitions.add(groups.probedHash(), tuple);
+                            continue;
+                        }
+                        group = createGroup(groups.probedKey());
+                        groups.addProbed(group);
+                    }
+                    for (AggregatedColumnCalculator cc : group.columns) {
+                        cc.consume(tuple);
+                    }
                 }
-                if (obj == null) {
-                    return false;
+                for (Group group : groups.groups()) {
+                    Object[] values = new Object[fieldnames.length];
+                    int k = 0;
+                    for (Object field : group.key) {
+                        values[k++] = field;
+                    }
+                    for (AggregatedColumnCalculator cc : group.columns) {
+                        values[k++] = cc.getValue();
+                    }
+                    results.add(new Tuple(fieldnames, values));
                 }
-                if (getClass() != obj.getClass()) {
-                    return false;
+                groups = null;
+                if (partitions != null) {
+                    for (int i = 0; i < partitions.size(); i++) {
+                        MaterializedRecordSet partition = partitions.take(i);
+                        if (partition != null) {
+                            try (DataScanner partitionScanner = new SimpleDataScanner(null, partition)) {
+                                aggregate(partitionScanner, level + 1, results);
+                            }
+                        }
+                    }
+                }
+            } finally {
+                if (partitions != null) {
+                    partitions.close();
                 }
-                final Key other = (Key) obj;
-                return Arrays.deepEquals(this.values, other.values);
-            }
-
-        }
-
-        private Key key(DataAccessor tuple) throws DataScannerException {
-            Object[] values = new Object[groupedFiledsIndexes.size()];
-            int i = 0;
-            for (int posInUpstreamRow : groupedFiledsIndexes) {
-                Object value = tuple.get(posInUpstreamRow);
-                values[i++] = value;
             }
-            return new Key(values);
         }
 
         private void compute() throws DataScannerException {
             try {
                 if (!groupedFiledsIndexes.isEmpty()) {
-                    Map<Key, Group> groups = new HashMap<>();
-                    while (wrapped.hasNext()) {
-                        DataAccessor tuple = wrapped.next();
-                        Key key = key(tuple);
-                        Group group = groups.get(key);
-                        if (group == null) {
-                            group = createGroup();
-                            groups.put(key, group);
-                        }
-                        for (AggregatedColumnCalculator cc : group.columns) {
-                            cc.consume(tuple);
-                        }
-                    }
                     MaterializedRecordSet results = recordSetFactory
-                            .createFixedSizeRecordSet(groups.values().size(),
-                                    getFieldNames(), getSchema());
-                    for (Map.Entry<Key, Group> cell : groups.entrySet()) {
-                        Key key = cell.getKey();
-                        Group group = cell.getValue();
-                        AggregatedColumnCalculator[] columns = group.columns;
-                        Object[] values = new Object[fieldnames.length];
-                        int k = 0;
-                        for (Object field : key.values) {
-                            values[k++] = field;
-                        }
-                        for (AggregatedColumnCalculator cc : columns) {
-                            values[k++] = cc.getValue();
-                        }
-                        Tuple tuple = new Tuple(fieldnames, values);
-                        results.add(tuple);
+                            .createRecordSet(getFieldNames(), getSchema());
+                    try {
+                        aggregate(wrapped, 0, results);
+                    } catch (DataScannerException | RuntimeException err) {
+                        results.close();
+                        throw err;
                     }
                     results.writeFinished();
                     aggregatedScanner = new SimpleDataScanner(wrapped.getTransaction(), results);
                 } else {
-                    Group group = createGroup();
+                    Group group = createGroup(null);
                     AggregatedColumnCalculator[] columns = group.columns;
                     while (wrapped.hasNext()) {
                         DataAccessor tuple = wrapped.next();
@@ -230,7 +470,7 @@ public class AggregateOp implements PlannerOp {
             }
         }
 
-        private Group createGroup() throws DataScannerException, StatementExecutionException {
+        private Group createGroup(Object[] key) throws StatementExecutionException {
             AggregatedColumnCalculator[] columns = new AggregatedColumnCalculator[aggtypes.length];
             int firstIndexAggregatedColumn = fieldnames.length - aggtypes.length;
             for (int i = 0; i < aggtypes.length; i++) {
@@ -247,7 +487,7 @@ public class AggregateOp implements PlannerOp {
                 }
                 columns[i] = calculator;
             }
-            return new Group(columns);
+            return new Group(key, columns);
         }
 
         @Override
@@ -276,6 +516,18 @@ public class AggregateOp implements PlannerOp {
         }
     }
 
+    private static boolean isIntegralType(int type) {
+        switch (type) {
+            case ColumnTypes.LONG:
+            case ColumnTypes.INTEGER:
+            case ColumnTypes.NOTNULL_LONG:
+            case ColumnTypes.NOTNULL_INTEGER:
+                return true;
+            default:
+                return false;
+        }
+    }
+
     @Override
     public <T> T unwrap(Class<T> clazz) {
         T unwrapped = input.unwrap(clazz);
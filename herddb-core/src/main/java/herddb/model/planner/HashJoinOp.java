@@ -0,0 +1,478 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.model.planner;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import herddb.core.MaterializedRecordSet;
+import herddb.core.RecordSetFactory;
+import herddb.core.SimpleDataScanner;
+import herddb.core.TableSpaceManager;
+import herddb.model.Column;
+import herddb.model.DataScanner;
+import herddb.model.DataScannerException;
+import herddb.model.ScanResult;
+import herddb.model.StatementEvaluationContext;
+import herddb.model.StatementExecutionException;
+import herddb.model.StatementExecutionResult;
+import herddb.model.TransactionContext;
+import herddb.model.Tuple;
+import herddb.sql.expressions.CompiledSQLExpression;
+import herddb.utils.DataAccessor;
+import herddb.utils.SQLRecordPredicateFunctions;
+import herddb.utils.SystemProperties;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Build/probe hash join. The build side is loaded in a hash table, then the
+ * probe side is streamed without materializing it. If the build side does not
+ * fit the memory budget both sides are partitioned by hash and spilled to the
+ * {@link RecordSetFactory}, then each pair of partitions is joined
+ * independently.
+ * <p>
+ * Supports inner, left, right and full outer joins and semi joins.
+ */
+@SuppressFBWarnings(value = {"EI_EXPOSE_REP2", "EI_EXPOSE_REP"})
+public class HashJoinOp implements PlannerOp {
+
+    /**
+     * Maximum number of rows of the build side held in memory, further rows
+     * are spilled to the RecordSetFactory.
+     * <p>
+     * This is a number of rows, not an amount of memory.
+     */
+    private static final int MAX_BUILD_ROWS_IN_MEMORY = SystemProperties.
+            getIntSystemProperty("herddb.planner.hashjoin.maxbuildrowsinmemory", 100_000);
+
+    private static final int SPILL_PARTITIONS = SystemProperties.
+            getIntSystemProperty("herddb.planner.hashjoin.spillpartitions", 16);
+
+    private static final int MAX_SPILL_LEVELS = 4;
+
+    private final int[] leftKeys;
+    private final PlannerOp left;
+    private final int[] rightKeys;
+    private final PlannerOp right;
+    private final String[] fieldNames;
+    private final Column[] columns;
+    private final boolean generateNullsOnLeft;
+    private final boolean generateNullsOnRight;
+    private final boolean semiJoin;
+    private final boolean buildOnLeft;
+    private final List<CompiledSQLExpression> nonEquiConditions;
+
+    public HashJoinOp(
+            String[] fieldNames,
+            Column[] columns, int[] leftKeys, PlannerOp left,
+            int[] rightKeys, PlannerOp right,
+            boolean generateNullsOnLeft,
+            boolean generateNullsOnRight,
+            boolean semiJoin,
+            boolean buildOnLeft,
+            List<CompiledSQLExpression> nonEquiConditions
+    ) {
+        this.fieldNames = fieldNames;
+        this.columns = columns;
+        this.leftKeys = leftKeys;
+        this.left = left.optimize();
+        this.rightKeys = rightKeys;
+        this.right = right.optimize();
+        this.generateNullsOnLeft = generateNullsOnLeft;
+        this.generateNullsOnRight = generateNullsOnRight;
+        this.semiJoin = semiJoin;
+        // a semi join emits the rows of the left side, the hash table is always on the right side
+        this.buildOnLeft = buildOnLeft && !semiJoin;
+        this.nonEquiConditions = nonEquiConditions == null || nonEquiConditions.isEmpty() ? null : nonEquiConditions;
+    }
+
+    @Override
+    public String getTablespace() {
+        return left.getTablespace();
+    }
+
+    @Override
+    public StatementExecutionResult execute(
+            TableSpaceManager tableSpaceManager,
+            TransactionContext transactionContext,
+            StatementEvaluationContext context, boolean lockRequired, boolean forWrite
+    ) throws StatementExecutionException {
+        return execute(tableSpaceManager, transactionContext, context, lockRequired, forWrite, MAX_BUILD_ROWS_IN_MEMORY);
+    }
+
+    // visible for testing
+    StatementExecutionResult execute(
+            TableSpaceManager tableSpaceManager,
+            TransactionContext transactionContext,
+            StatementEvaluationContext context, boolean lockRequired, boolean forWrite,
+            int maxBuildRowsInMemory
+    ) throws StatementExecutionException {
+        ScanResult resLeft = (ScanResult) left.execute(tableSpaceManager, transactionContext,
+                context, lockRequired, forWrite);
+        transactionContext = new TransactionContext(resLeft.transactionId);
+        ScanResult resRight = (ScanResult) right.execute(tableSpaceManager, transactionContext,
+                context, lockRequired, forWrite);
+        final long resTransactionId = resRight.transactionId;
+        HashJoinDataScanner joinedScanner = new HashJoinDataScanner(resLeft.dataScanner, resRight.dataScanner,
+                context, tableSpaceManager.getDbmanager().getRecordSetFactory(), maxBuildRowsInMemory);
+        return new ScanResult(resTransactionId, joinedScanner);
+    }
+
+    private static final class BuildRow {
+
+        final DataAccessor row;
+        boolean matched;
+
+        BuildRow(DataAccessor row) {
+            this.row = row;
+        }
+    }
+
+    /**
+     * A pair of spilled partitions, to be joined.
+     */
+    private static final class PartitionPair {
+
+        final MaterializedRecordSet build;
+        final MaterializedRecordSet probe;
+        final int level;
+
+        PartitionPair(MaterializedRecordSet build, MaterializedRecordSet probe, int level) {
+            this.build = build;
+            this.probe = probe;
+            this.level = level;
+        }
+
+        void close() {
+            if (build != null) {
+                build.close();
+            }
+            if (probe != null) {
+                probe.close();
+            }
+        }
+    }
+
+    private static boolean hasNullKey(JoinKey key, int numKeys) {
+        for (int i = 0; i < numKeys; i++) {
+            if (key.get(i) == null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private class HashJoinDataScanner extends DataScanner {
+
+        private final DataScanner leftScanner;
+        private final DataScanner rightScanner;
+        private final StatementEvaluationContext context;
+        private final RecordSetFactory recordSetFactory;
+        private final DataScanner buildInput;
+        private final DataScanner probeInput;
+        private final int[] buildKeys;
+        private final int[] probeKeys;
+        private final boolean preserveBuild;
+        private final boolean preserveProbe;
+        private final DataAccessor nullsOnLeft;
+        private final DataAccessor nullsOnRight;
+        private final int maxBuildRowsInMemory;
+
+        private final ArrayDeque<PartitionPair> partitionsToJoin = new ArrayDeque<>();
+        private final ArrayDeque<DataAccessor> pending = new ArrayDeque<>();
+        private Map<JoinKey, List<BuildRow>> table;
+        private DataScanner probeSource;
+        private Iterator<List<BuildRow>> unmatchedBuildRows;
+        private boolean started;
+        private boolean spilled;
+        private DataAccessor next;
+
+        HashJoinDataScanner(
+                DataScanner leftScanner, DataScanner rightScanner,
+                StatementEvaluationContext context, RecordSetFactory recordSetFactory,
+                int maxBuildRowsInMemory
+        ) {
+            super(rightScanner.getTransaction(), fieldNames, columns);
+            this.leftScanner = leftScanner;
+            this.rightScanner = rightScanner;
+            this.context = context;
+            this.recordSetFactory = recordSetFactory;
+            this.maxBuildRowsInMemory = maxBuildRowsInMemory;
+            this.buildInput = buildOnLeft ? leftScanner : rightScanner;
+            this.probeInput = buildOnLeft ? rightScanner : leftScanner;
+            this.buildKeys = buildOnLeft ? leftKeys : rightKeys;
+            this.probeKeys = buildOnLeft ? rightKeys : leftKeys;
+            this.preserveBuild = buildOnLeft ? generateNullsOnRight : generateNullsOnLeft;
+            this.preserveProbe = buildOnLeft ? generateNullsOnLeft : generateNullsOnRight;
+            this.nullsOnLeft = DataAccessor.ALL_NULLS(leftScanner.getFieldNames());
+            this.nullsOnRight = DataAccessor.ALL_NULLS(rightScanner.getFieldNames());
+        }
+
+        /**
+         * Loads the build side in memory, if it does not fit the budget both
+         * sides are partitioned and the partitions are scheduled to be joined.
+         */
+        private void prepare(DataScanner buildSource, DataScanner probeSource, int level) throws DataScannerException {
+            Map<JoinKey, List<BuildRow>> newTable = new HashMap<>();
+            int count = 0;
+            SpillPartitions buildPartitions = null;
+            SpillPartitions probePartitions = null;
+            try {
+                if (buildSource != null) {
+                    while (buildSource.hasNext()) {
+                        DataAccessor row = buildSource.next();
+                        JoinKey key = new JoinKey(row, buildKeys);
+                        if (!preserveBuild && hasNullKey(key, buildKeys.length)) {
+                            // it will never match
+                            continue;
+                        }
+                        if (buildPartitions != null) {
+                            buildPartitions.add(key.hashCode(), row);
+                            continue;
+                        }
+                        if (count >= maxBuildRowsInMemory && level < MAX_SPILL_LEVELS) {
+                            buildPartitions = new SpillPartitions(recordSetFactory, buildSource.getSchema(), SPILL_PARTITIONS, level + 1);
+                            for (Map.Entry<JoinKey, List<BuildRow>> entry : newTable.entrySet()) {
+                                int hash = entry.getKey().hashCode();
+                                for (BuildRow buildRow : entry.getValue()) {
+                                    buildPartitions.add(hash, buildRow.row);
+                                }
+                            }
+                            newTable = null;
+                            buildPartitions.add(key.hashCode(), row);
+                            continue;
+                        }
+                        newTable.computeIfAbsent(key, k -> new ArrayList<>(1)).add(new BuildRow(row));
+                        count++;
+                    }
+                }
+                if (buildPartitions == null) {
+                    this.table = newTable;
+                    this.probeSource = probeSource;
+                    return;
+                }
+                spilled = true;
+                if (probeSource != null) {
+                    probePartitions = new SpillPartitions(recordSetFactory, probeSource.getSchema(), SPILL_PARTITIONS, level + 1);
+                    while (probeSource.hasNext()) {
+                        DataAccessor row = probeSource.next();
+                        JoinKey key = new JoinKey(row, probeKeys);
+                        if (!preserveProbe && hasNullKey(key, probeKeys.length)) {
+                            continue;
+                        }
+                        probePartitions.add(key.hashCode(), row);
+                    }
+                    closeIfPartition(probeSource);
+                }
+                // join the new partitions before the ones already scheduled
+                for (int i = buildPartitions.size() - 1; i >= 0; i--) {
+                    MaterializedRecordSet build = buildPartitions.take(i);
+                    MaterializedRecordSet probe = probePartitions != null ? probePartitions.take(i) : null;
+                    if (build != null || probe != null) {
+                        partitionsToJoin.addFirst(new PartitionPair(build, probe, level + 1));
+                    }
+                }
+            } finally {
+                closeIfPartition(buildSource);
+                if (buildPartitions != null) {
+                    buildPartitions.close();
+                }
+                if (probePartitions != null) {
+                    probePartitions.close();
+                }
+            }
+        }
+
+        private void closeIfPartition(DataScanner scanner) throws DataScannerException {
+            if (scanner != null && scanner != buildInput && scanner != probeInput) {
+                scanner.close();
+            }
+        }
+
+        private DataAccessor combine(DataAccessor buildRow, DataAccessor probeRow) {
+            DataAccessor l = buildOnLeft ? buildRow : probeRow;
+            DataAccessor r = buildOnLeft ? probeRow : buildRow;
+            return new ConcatenatedDataAccessor(fieldNames,
+                    l != null ? l : nullsOnLeft,
+                    r != null ? r : nullsOnRight);
+        }
+
+        private boolean evaluateNonEquiConditions(DataAccessor joined) throws StatementExecutionException {
+            if (nonEquiConditions != null) {
+                for (CompiledSQLExpression exp : nonEquiConditions) {
+                    Object result = exp.evaluate(joined, context);
+                    if (!SQLRecordPredicateFunctions.toBoolean(result)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        private void probe(DataAccessor row) throws StatementExecutionException {
+            JoinKey key = new JoinKey(row, probeKeys);
+            List<BuildRow> matches = hasNullKey(key, probeKeys.length) ? null : table.get(key);
+            boolean found = false;
+            if (matches != null) {
+                for (BuildRow buildRow : matches) {
+                    DataAccessor joined = combine(buildRow.row, row);
+                    if (evaluateNonEquiConditions(joined)) {
+                        found = true;
+                        buildRow.matched = true;
+                        if (semiJoin) {
+                            pending.add(spilled ? new Tuple(fieldNames, row.getValues()) : row);
+                            break;
+                        }
+                        pending.add(joined);
+                    }
+                }
+            }
+            if (!found && preserveProbe) {
+                pending.add(combine(null, row));
+            }
+        }
+
+        private DataAccessor fetchNext() throws DataScannerException, StatementExecutionException {
+            if (!started) {
+                started = true;
+                prepare(buildInput, probeInput, 0);
+            }
+            while (true) {
+                if (!pending.isEmpty()) {
+                    return pending.poll();
+                }
+                if (unmatchedBuildRows != null) {
+                    while (unmatchedBuildRows.hasNext()) {
+                        for (BuildRow buildRow : unmatchedBuildRows.next()) {
+                            if (!buildRow.matched) {
+                                pending.add(combine(buildRow.row, null));
+                            }
+                        }
+                        if (!pending.isEmpty()) {
+                            break;
+                        }
+                    }
+                    if (pending.isEmpty()) {
+                        unmatchedBuildRows = null;
+                        table = null;
+                    }
+                    continue;
+                }
+                if (table != null) {
+                    if (probeSource != null) {
+                        if (probeSource.hasNext()) {
+                            probe(probeSource.next());
+                            continue;
+                        }
+                        closeIfPartition(probeSource);
+                        probeSource = null;
+                    }
+                    if (preserveBuild) {
+                        unmatchedBuildRows = table.values().iterator();
+                    } else {
+                        table = null;
+                    }
+                    continue;
+                }
+                PartitionPair pair = partitionsToJoin.poll();
+                if (pair == null) {
+                    return null;
+                }
+                try {
+                    prepare(pair.build != null ? new SimpleDataScanner(null, pair.build) : null,
+                            pair.probe != null ? new SimpleDataScanner(null, pair.probe) : null,
+                            pair.level);
+                } catch (DataScannerException | RuntimeException err) {
+                    pair.close();
+                    throw err;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() throws DataScannerException {
+            if (next == null) {
+                try {
+                    next = fetchNext();
+                } catch (StatementExecutionException err) {
+                    throw new DataScannerException(err);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public DataAccessor next() throws DataScannerException {
+            if (!hasNext()) {
+                return null;
+            }
+            DataAccessor current = next;
+            next = null;
+            return current;
+        }
+
+        @Override
+        public void close() throws DataScannerException {
+            try {
+                if (probeSource != null) {
+                    closeIfPartition(probeSource);
+                    probeSource = null;
+                }
+                for (PartitionPair pair : partitionsToJoin) {
+                    pair.close();
+                }
+                partitionsToJoin.clear();
+                table = null;
+                unmatchedBuildRows = null;
+                pending.clear();
+            } finally {
+                try {
+                    leftScanner.close();
+                } finally {
+                    try {
+                        rightScanner.close();
+                    } finally {
+                        super.close();
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "HashJoinOp{fieldNames=" + Arrays.toString(fieldNames) + ", columns=" + Arrays.toString(columns) + ","
+                + "\ngenerateNullsOnLeft=" + generateNullsOnLeft + ", generateNullsOnRight=" + generateNullsOnRight
+                + ", semiJoin=" + semiJoin + ", buildOnLeft=" + buildOnLeft + ","
+                + "\nleftKeys=" + Arrays.toString(leftKeys) + ",left=" + left + ","
+                + "\nrightKeys=" + Arrays.toString(rightKeys) + ", right=" + right + '}';
+    }
+
+    @Override
+    public Column[] getOutputSchema() {
+        return columns;
+    }
+
+}
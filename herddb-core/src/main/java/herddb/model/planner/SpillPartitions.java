@@ -0,0 +1,117 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.model.planner;
+
+import herddb.core.MaterializedRecordSet;
+import herddb.core.RecordSetFactory;
+import herddb.model.Column;
+import herddb.model.Tuple;
+import herddb.utils.DataAccessor;
+
+/**
+ * Hash partitioned RecordSets, used by operators which spill rows to the
+ * {@link RecordSetFactory} when they exceed their memory budget.
+ * <p>
+ * Rows are stored using positional field names, because the field names of
+ * the upstream operators are not guaranteed to be unique.
+ */
+final class SpillPartitions implements AutoCloseable {
+
+    private final RecordSetFactory recordSetFactory;
+    private final String[] fieldNames;
+    private final Column[] schema;
+    private final int level;
+    private final MaterializedRecordSet[] partitions;
+
+    SpillPartitions(RecordSetFactory recordSetFactory, Column[] inputSchema, int numPartitions, int level) {
+        this.recordSetFactory = recordSetFactory;
+        this.fieldNames = new String[inputSchema.length];
+        this.schema = new Column[inputSchema.length];
+        for (int i = 0; i < inputSchema.length; i++) {
+            fieldNames[i] = "c" + i;
+            schema[i] = Column.column(fieldNames[i], inputSchema[i].type);
+        }
+        this.partitions = new MaterializedRecordSet[numPartitions];
+        this.level = level;
+    }
+
+    Column[] getSchema() {
+        return schema;
+    }
+
+    int size() {
+        return partitions.length;
+    }
+
+    /**
+     * Salts the hash with the recursion level, in order to redistribute the
+     * rows of a spilled partition when it is partitioned again at the next
+     * level.
+     */
+    static int mixHash(int hash, int level) {
+        // murmur3 finalizer
+        int h = hash + level * 0x9E3779B9;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    void add(int hash, DataAccessor row) {
+        int partition = (mixHash(hash, level) & Integer.MAX_VALUE) % partitions.length;
+        if (partitions[partition] == null) {
+            partitions[partition] = recordSetFactory.createRecordSet(fieldNames, schema);
+        }
+        Object[] values = new Object[schema.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = row.get(i);
+        }
+        partitions[partition].add(new Tuple(fieldNames, values));
+    }
+
+    /**
+     * Transfers the ownership of a partition to the caller.
+     *
+     * @param partition
+     * @return the partition, ready to be read, or null if no row has been
+     * added to it
+     */
+    MaterializedRecordSet take(int partition) {
+        MaterializedRecordSet result = partitions[partition];
+        partitions[partition] = null;
+        if (result != null) {
+            result.writeFinished();
+        }
+        return result;
+    }
+
+    @Override
+    public void close() {
+        for (int i = 0; i < partitions.length; i++) {
+            if (partitions[i] != null) {
+                partitions[i].close();
+                partitions[i] = null;
+            }
+        }
+    }
+}
@@ -324,9 +324,10 @@ public class Server implements AutoCloseable, ServerSideConnectionAcceptor<Serve
                 boolean requirefsync = configuration.getBoolean(ServerConfiguration.PROPERTY_REQUIRE_FSYNC, ServerConfiguration.PROPERTY_REQUIRE_FSYNC_DEFAULT);
                 boolean pageodirect = configuration.getBoolean(ServerConfiguration.PROPERTY_PAGE_USE_ODIRECT, ServerConfiguration.PROPERTY_PAGE_USE_ODIRECT_DEFAULT);
                 boolean indexodirect = configuration.getBoolean(ServerConfiguration.PROPERTY_INDEX_USE_ODIRECT, ServerConfiguration.PROPERTY_INDEX_USE_ODIRECT_DEFAULT);
+                boolean pagemmap = configuration.getBoolean(ServerConfiguration.PROPERTY_PAGE_USE_MMAP, ServerConfiguration.PROPERTY_PAGE_USE_MMAP_DEFAULT);
                 boolean hashChecksEnabled = configuration.getBoolean(ServerConfiguration.PROPERTY_HASH_CHECKS_ENABLED, ServerConfiguration.PROPERTY_HASH_CHECKS_ENABLED_DEFAULT);
                 boolean hashWritesEnabled = configuration.getBoolean(ServerConfiguration.PROPERTY_HASH_WRITES_ENABLED, ServerConfiguration.PROPERTY_HASH_WRITES_ENABLED_DEFAULT);
-                return new FileDataStorageManager(dataDirectory, tmpDirectory, diskswapThreshold, requirefsync, pageodirect, indexodirect, hashChecksEnabled, hashWritesEnabled, statsLogger);
+                return new FileDataStorageManager(dataDirectory, tmpDirectory, diskswapThreshold, requirefsync, pageodirect, pagemmap, indexodirect, hashChecksEnabled, hashWritesEnabled, statsLogger);
             }
             case ServerConfiguration.PROPERTY_MODE_DISKLESSCLUSTER: {
                 int diskswapThreshold = configuration.getInt(ServerConfiguration.PROPERTY_DISK_SWAP_MAX_RECORDS, ServerConfiguration.PROPERTY_DISK_SWAP_MAX_RECORDS_DEFAULT);
@@ -367,6 +368,9 @@ public class Server implements AutoCloseable, ServerSideConnectionAcceptor<Serve
                 bkmanager.setMaxLedgerSizeBytes(maxLedgerSizeBytes);
                 long maxIdleTime = configuration.getLong(ServerConfiguration.PROPERTY_BOOKKEEPER_MAX_IDLE_TIME, ServerConfiguration.PROPERTY_BOOKKEEPER_MAX_IDLE_TIME_DEFAULT);
                 bkmanager.setMaxIdleTime(maxIdleTime);
+                bkmanager.setGroupWrite(configuration.getBoolean(ServerConfiguration.PROPERTY_BOOKKEEPER_GROUP_WRITE, ServerConfiguration.PROPERTY_BOOKKEEPER_GROUP_WRITE_DEFAULT));
+                bkmanager.setGroupWriteMaxEntries(configuration.getInt(ServerConfiguration.PROPERTY_BOOKKEEPER_GROUP_WRITE_MAX_ENTRIES, ServerConfiguration.PROPERTY_BOOKKEEPER_GROUP_WRITE_MAX_ENTRIES_DEFAULT));
+                bkmanager.setGroupWriteMaxBytes(configuration.getInt(ServerConfiguration.PROPERTY_BOOKKEEPER_GROUP_WRITE_MAX_BYTES, ServerConfiguration.PROPERTY_BOOKKEEPER_GROUP_WRITE_MAX_BYTES_DEFAULT));
                 long checkPointperiod = configuration.getLong(ServerConfiguration.PROPERTY_CHECKPOINT_PERIOD, ServerConfiguration.PROPERTY_CHECKPOINT_PERIOD_DEFAULT);
 
                 if (checkPointperiod > 0 && ledgersRetentionPeriod > 0) {
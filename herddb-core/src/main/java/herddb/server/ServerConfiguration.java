@@ -94,6 +94,14 @@ public final class ServerConfiguration {
     public static final String PROPERTY_INDEX_USE_ODIRECT = "index.use_o_direct";
     public static final boolean PROPERTY_INDEX_USE_ODIRECT_DEFAULT = USE_O_DIRECT_DEFAULT;
 
+    /**
+     * Read data pages by mapping page files in memory, instead of copying
+     * them to the heap with a stream. When enabled it takes precedence over
+     * {@link #PROPERTY_PAGE_USE_ODIRECT} for reads.
+     */
+    public static final String PROPERTY_PAGE_USE_MMAP = "page.use_mmap";
+    public static final boolean PROPERTY_PAGE_USE_MMAP_DEFAULT = false;
+
     /**
      * In some cases the usage of XXHash64 might to be overkilling
      */
@@ -154,12 +162,109 @@ public final class ServerConfiguration {
     public static final String PROPERTY_BOOKKEEPER_MAX_IDLE_TIME = "server.bookkeeper.max.idle.time";
     public static final long PROPERTY_BOOKKEEPER_MAX_IDLE_TIME_DEFAULT = 1000L * 10;
 
+    /**
+     * Coalesce concurrent writes to the commit log into a single BookKeeper
+     * entry. Ledgers written in this mode cannot be read by older versions of
+     * HerdDB, enable it only when every node of the cluster has been upgraded.
+     */
+    public static final String PROPERTY_BOOKKEEPER_GROUP_WRITE = "server.bookkeeper.group.write";
+    public static final boolean PROPERTY_BOOKKEEPER_GROUP_WRITE_DEFAULT = false;
+    public static final String PROPERTY_BOOKKEEPER_GROUP_WRITE_MAX_ENTRIES = "server.bookkeeper.group.write.max.entries";
+    public static final int PROPERTY_BOOKKEEPER_GROUP_WRITE_MAX_ENTRIES_DEFAULT = 1000;
+    public static final String PROPERTY_BOOKKEEPER_GROUP_WRITE_MAX_BYTES = "server.bookkeeper.group.write.max.bytes";
+    public static final int PROPERTY_BOOKKEEPER_GROUP_WRITE_MAX_BYTES_DEFAULT = 1024 * 1024;
+
     public static final String PROPERTY_BOOT_FORCE_DOWNLOAD_SNAPSHOT = "server.boot.force.download.snapshot";
     public static final boolean PROPERTY_BOOT_FORCE_DOWNLOAD_SNAPSHOT_DEFAULT = false;
 
+    /**
+     * Number of threads used to replay the commit log during the recovery of
+     * a tablespace. DML entries on different tables and keys are applied in
+     * parallel, the other entries (DDL, commits and rollbacks of transactions)
+     * wait for all of the pending DML. By default, the value is 0: the log is
+     * replayed by a single thread.
+     */
+    public static final String PROPERTY_RECOVERY_THREADS = "server.recovery.threads";
+    public static final int PROPERTY_RECOVERY_THREADS_DEFAULT = 0;
+
+    /**
+     * Execute batches of INSERT, UPDATE and DELETE statements sent by the
+     * clients (JDBC executeBatch) in bulk mode: the statement is planned once,
+     * the locks on the records are acquired in key order and the whole batch
+     * runs inside a single transaction. In auto-commit mode the batch becomes
+     * atomic, if a statement fails no statement of the batch is applied.
+     */
+    public static final String PROPERTY_BULK_EXECUTE_STATEMENTS = "server.bulk.executestatements";
+    public static final boolean PROPERTY_BULK_EXECUTE_STATEMENTS_DEFAULT = false;
+
+    /**
+     * Number of tables which are downloaded at the same time when a replica
+     * downloads the snapshot of a tablespace from the leader. With a value
+     * of 1 tables are downloaded one at a time and every chunk of data waits
+     * for the ACK of the previous one, as leaders older than 0.20.0 do.
+     */
+    public static final String PROPERTY_DOWNLOAD_PARALLEL_TABLES = "server.download.paralleltables";
+    public static final int PROPERTY_DOWNLOAD_PARALLEL_TABLES_DEFAULT = 1;
+
+    /**
+     * Max number of chunks of data sent by the leader and still waiting to
+     * be applied by the replica during the download of a snapshot, only if
+     * {@link #PROPERTY_DOWNLOAD_PARALLEL_TABLES} is greater than 1
+     */
+    public static final String PROPERTY_DOWNLOAD_MAX_PENDING_CHUNKS = "server.download.maxpendingchunks";
+    public static final int PROPERTY_DOWNLOAD_MAX_PENDING_CHUNKS_DEFAULT = 16;
+
+    /**
+     * Compress (LZ4) the chunks of data during the download of a snapshot,
+     * only if {@link #PROPERTY_DOWNLOAD_PARALLEL_TABLES} is greater than 1
+     */
+    public static final String PROPERTY_DOWNLOAD_COMPRESS = "server.download.compress";
+    public static final boolean PROPERTY_DOWNLOAD_COMPRESS_DEFAULT = false;
+
     public static final String PROPERTY_CHECKPOINT_PERIOD = "server.checkpoint.period";
     public static final long PROPERTY_CHECKPOINT_PERIOD_DEFAULT = 1000L * 60 * 15;
 
+    /**
+     * Number of threads used to checkpoint the tables of a tablespace in
+     * parallel. If greater than zero the tablespace is locked exclusively only
+     * in order to capture the log position and the list of transactions, and
+     * DML statements can run while tables are being flushed. By default, the
+     * value is 0: tables are checkpointed one after the other while holding
+     * the exclusive tablespace lock.
+     */
+    public static final String PROPERTY_CHECKPOINT_CONCURRENT_THREADS = "server.checkpoint.concurrent.threads";
+    public static final int PROPERTY_CHECKPOINT_CONCURRENT_THREADS_DEFAULT = 0;
+
+    /**
+     * Number of threads used to read data pages ahead of full table scans. By
+     * default, the value is 0: read-ahead is disabled and pages are read by
+     * the scanning thread.
+     */
+    public static final String PROPERTY_SCAN_PREFETCH_THREADS = "server.scan.prefetch.threads";
+    public static final int PROPERTY_SCAN_PREFETCH_THREADS_DEFAULT = 0;
+
+    /**
+     * Maximum number of data pages read ahead by each table scan, it can be
+     * changed at runtime for each table.
+     */
+    public static final String PROPERTY_SCAN_PREFETCH_DEPTH = "server.scan.prefetch.depth";
+    public static final int PROPERTY_SCAN_PREFETCH_DEPTH_DEFAULT = 4;
+
+    /**
+     * Number of threads of the pool used to scan large tables in parallel.
+     * Each worker evaluates the predicate and the projection on a subset of
+     * the data pages. By default, the value is 0: parallel scans are disabled.
+     */
+    public static final String PROPERTY_SCAN_PARALLEL_THREADS = "server.scan.parallel.threads";
+    public static final int PROPERTY_SCAN_PARALLEL_THREADS_DEFAULT = 0;
+
+    /**
+     * Minimum number of records of a table in order to scan it in parallel, it
+     * can be changed at runtime for each table.
+     */
+    public static final String PROPERTY_SCAN_PARALLEL_THRESHOLD = "server.scan.parallel.threshold";
+    public static final long PROPERTY_SCAN_PARALLEL_THRESHOLD_DEFAULT = 100_000;
+
     public static final String PROPERTY_DEFAULT_REPLICA_COUNT = "tablespace.default.replica.count";
     public static final int PROPERTY_DEFAULT_REPLICA_COUNT_DEFAULT = 1;
 
@@ -229,6 +334,20 @@ public final class ServerConfiguration {
     public static final String PROPERTY_TABLEMANAGER_DISABLE_ROWLEVELLOCKS = "server.tablemanager.disablerowlevellocks";
     public static final boolean PROPERTY_TABLEMANAGER_DISABLE_ROWLEVELLOCKS_DEFAULT = false;
 
+    /**
+     * Use a fixed table of lock stripes for row level locks, instead of a map
+     * of lock instances, see {@link herddb.utils.StripedLocalLockManager}
+     */
+    public static final String PROPERTY_TABLEMANAGER_STRIPED_ROWLEVELLOCKS = "server.tablemanager.stripedrowlevellocks";
+    public static final boolean PROPERTY_TABLEMANAGER_STRIPED_ROWLEVELLOCKS_DEFAULT = false;
+
+    /**
+     * Number of lock stripes for each table, used only with
+     * {@link #PROPERTY_TABLEMANAGER_STRIPED_ROWLEVELLOCKS}
+     */
+    public static final String PROPERTY_TABLEMANAGER_LOCK_STRIPES = "server.tablemanager.lockstripes";
+    public static final int PROPERTY_TABLEMANAGER_LOCK_STRIPES_DEFAULT = 256;
+
     public static final String PROPERTY_WRITELOCK_TIMEOUT = "server.tablemanager.writelocktimeout";
     public static final int PROPERTY_WRITELOCK_TIMEOUT_DEFAULT = 60 * 30;
 
@@ -274,12 +393,28 @@ public final class ServerConfiguration {
     public static final String PROPERTY_MAX_DATA_MEMORY = "server.memory.data.limit";
     public static final long PROPERTY_MAX_DATA_MEMORY_DEFAULT = 0L;
 
+    /**
+     * Store data pages loaded from the storage outside of the Java heap, the
+     * memory is accounted within {@link #PROPERTY_MAX_DATA_MEMORY}
+     */
+    public static final String PROPERTY_MEMORY_DATA_OFFHEAP = "server.memory.data.offheap";
+    public static final boolean PROPERTY_MEMORY_DATA_OFFHEAP_DEFAULT = false;
+
     /**
      * Maximum amount of memory used for primary index pages
      */
     public static final String PROPERTY_MAX_PK_MEMORY = "server.memory.pk.limit";
     public static final long PROPERTY_MAX_PK_MEMORY_DEFAULT = 0L;
 
+    /**
+     * Use a map of primitive longs as primary key index of new tables whose
+     * primary key is a single INTEGER or LONG column. The kind of index is
+     * recorded in the table when it is created, changing this setting does not
+     * affect existing tables.
+     */
+    public static final String PROPERTY_KEYTOPAGE_PRIMITIVE = "server.keytopage.primitive";
+    public static final boolean PROPERTY_KEYTOPAGE_PRIMITIVE_DEFAULT = false;
+
     public static final String PROPERTY_JMX_ENABLE = "server.jmx.enable";
     public static final boolean PROPERTY_JMX_ENABLE_DEFAULT = true;
 
@@ -32,8 +32,10 @@ import herddb.core.RunningStatementsStats;
 import herddb.core.TableManager;
 import herddb.core.TableSpaceManager;
 import herddb.core.stats.ConnectionsInfo;
+import herddb.core.stats.StatementExecutionStats;
 import herddb.log.LogSequenceNumber;
 import herddb.model.DDLStatementExecutionResult;
+import herddb.model.DMLStatement;
 import herddb.model.DMLStatementExecutionResult;
 import herddb.model.DataConsistencyStatementResult;
 import herddb.model.DataScanner;
@@ -64,6 +66,9 @@ import herddb.network.ServerSideConnection;
 import herddb.proto.Pdu;
 import herddb.proto.PduCodec;
 import herddb.security.sasl.SaslNettyServer;
+import herddb.server.ServerSidePreparedStatementCache.PreparedStatementInfo;
+import herddb.sql.AbstractSQLPlanner;
+import herddb.sql.SQLStatementEvaluationContext;
 import herddb.sql.TranslatedQuery;
 import herddb.utils.Bytes;
 import herddb.utils.DataAccessor;
@@ -110,6 +115,7 @@ public class ServerSideConnectionPeer implements ServerSideConnection, ChannelEv
     private final String address;
     private volatile String username = "";
     private final long connectionTs = System.currentTimeMillis();
+    private final boolean bulkExecuteStatements;
 
     public ServerSideConnectionPeer(Channel channel, Server server) {
         this.channel = channel;
@@ -117,6 +123,9 @@ public class ServerSideConnectionPeer implements ServerSideConnection, ChannelEv
         this.server = server;
         this.address = channel.getRemoteAddress();
         this.preparedStatements = server.getManager().getPreparedStatementsCache();
+        this.bulkExecuteStatements = server.getManager().getServerConfiguration().getBoolean(
+                ServerConfiguration.PROPERTY_BULK_EXECUTE_STATEMENTS,
+                ServerConfiguration.PROPERTY_BULK_EXECUTE_STATEMENTS_DEFAULT);
         // no need to perform auth in "local" mode
         boolean localMode = ServerConfiguration.PROPERTY_MODE_LOCAL.equals(server.getManager().getMode());
         if (localMode && channel.isLocalChannel()) {
@@ -420,9 +429,14 @@ public class ServerSideConnectionPeer implements ServerSideConnection, ChannelEv
 
         String tableSpace = PduCodec.OpenScanner.readTablespace(message);
         long statementId = PduCodec.OpenScanner.readStatementId(message);
-        String query =
-                statementId > 0 ? preparedStatements.resolveQuery(tableSpace, statementId)
-                        : PduCodec.OpenScanner.readQuery(message);
+        PreparedStatementInfo prepared = null;
+        String query;
+        if (statementId > 0) {
+            prepared = preparedStatements.resolveStatement(tableSpace, statementId);
+            query = prepared != null ? prepared.getQuery() : null;
+        } else {
+            query = PduCodec.OpenScanner.readQuery(message);
+        }
         if (query == null) {
             ByteBuf error = PduCodec.ErrorResponse.writeMissingPreparedStatementError(message.messageId, "bad statement id: " + statementId);
             channel.sendReplyMessage(message.messageId, error);
@@ -444,17 +458,17 @@ public class ServerSideConnectionPeer implements ServerSideConnection, ChannelEv
         }
         // with clients older than 0.20.0 keepReadLocks will be always true
         boolean keepReadLocks = !PduCodec.OpenScanner.readDontKeepReadLocks(message);
+        // clients older than 0.20.0 do not support the columnar layout
+        boolean columnarResults = PduCodec.OpenScanner.readColumnarResults(message);
         if (LOGGER.isLoggable(Level.FINER)) {
             LOGGER.log(Level.FINER, "openScanner txId+" + txId + ", fetchSize " + fetchSize + ", maxRows " + maxRows + ", keepReadLocks " + keepReadLocks + ", " + query + " with " + parameters);
         }
         RunningStatementsStats runningStatements = server.getManager().getRunningStatements();
         RunningStatementInfo statementInfo = new RunningStatementInfo(query,
-                System.currentTimeMillis(), tableSpace, "", 1);
+                System.currentTimeMillis(), tableSpace, "", 1, executionStats(prepared));
         try {
-            TranslatedQuery translatedQuery = server
-                    .getManager()
-                    .getPlanner().translate(tableSpace,
-                            query, parameters, true, true, false, maxRows);
+            TranslatedQuery translatedQuery = translate(prepared, tableSpace,
+                    query, parameters, true, false, maxRows);
             translatedQuery.context.setForceRetainReadLock(keepReadLocks);
 
             if (LOGGER.isLoggable(Level.FINEST)) {
@@ -468,7 +482,7 @@ public class ServerSideConnectionPeer implements ServerSideConnection, ChannelEv
                 ScanResult scanResult = (ScanResult) server.getManager().executePlan(translatedQuery.plan, translatedQuery.context, transactionContext);
                 DataScanner dataScanner = scanResult.dataScanner;
 
-                ServerSideScannerPeer scanner = new ServerSideScannerPeer(dataScanner);
+                ServerSideScannerPeer scanner = new ServerSideScannerPeer(dataScanner, columnarResults);
 
                 String[] columns = dataScanner.getFieldNames();
                 List<DataAccessor> records = dataScanner.consume(fetchSize);
@@ -481,7 +495,7 @@ public class ServerSideConnectionPeer implements ServerSideConnection, ChannelEv
                     scanners.put(scannerId, scanner);
                 }
                 try {
-                    ByteBuf result = PduCodec.ResultSetChunk.write(message.messageId, tuplesList, last, dataScanner.getTransactionId());
+                    ByteBuf result = PduCodec.ResultSetChunk.write(message.messageId, tuplesList, last, dataScanner.getTransactionId(), columnarResults);
                     channel.sendReplyMessage(message.messageId, result);
                 } catch (HerdDBInternalException err) {
                     // do not leak an unserializable scanner
@@ -519,34 +533,38 @@ public class ServerSideConnectionPeer implements ServerSideConnection, ChannelEv
         }
         ServerSideScannerPeer scanner = scanners.get(scannerId);
         if (scanner != null) {
-            try {
-                DataScanner dataScanner = scanner.getScanner();
-                List<DataAccessor> records = dataScanner.consume(fetchSize);
-                String[] columns = dataScanner.getFieldNames();
-                TuplesList tuplesList = new TuplesList(columns, records);
-
-                boolean last = false;
-                if (dataScanner.isFinished()) {
-                    LOGGER.log(Level.FINEST, "unregistering scanner {0}, resultset is finished", scannerId);
-                    scanners.remove(scannerId);
-                    last = true;
-                }
-//                        LOGGER.log(Level.SEVERE, "sending " + converted.size() + " records to scanner " + scannerId);
+            // clients may pipeline fetch requests, the scanner must produce one chunk at a time
+            synchronized (scanner) {
                 try {
-                    ByteBuf result = PduCodec.ResultSetChunk.write(message.messageId, tuplesList, last, dataScanner.getTransactionId());
-                    channel.sendReplyMessage(message.messageId, result);
-                } catch (HerdDBInternalException err) {
-                    // do not leak an unserializable scanner
-                    scanners.remove(scannerId);
-                    scanner.close();
-                    throw err;
-                }
-                if (last) {
-                    dataScanner.close();
+                    DataScanner dataScanner = scanner.getScanner();
+                    List<DataAccessor> records = dataScanner.consume(fetchSize);
+                    String[] columns = dataScanner.getFieldNames();
+                    TuplesList tuplesList = new TuplesList(columns, records);
+
+                    boolean last = false;
+                    if (dataScanner.isFinished()) {
+                        LOGGER.log(Level.FINEST, "unregistering scanner {0}, resultset is finished", scannerId);
+                        scanners.remove(scannerId);
+                        last = true;
+                    }
+//                        LOGGER.log(Level.SEVERE, "sending " + converted.size() + " records to scanner " + scannerId);
+                    try {
+                        ByteBuf result = PduCodec.ResultSetChunk.write(message.messageId, tuplesList, last, dataScanner.getTransactionId(),
+                                scanner.isColumnarResults());
+                        channel.sendReplyMessage(message.messageId, result);
+                    } catch (HerdDBInternalException err) {
+                        // do not leak an unserializable scanner
+                        scanners.remove(scannerId);
+                        scanner.close();
+                        throw err;
+                    }
+                    if (last) {
+                        dataScanner.close();
+                    }
+                } catch (DataScannerException | StatementExecutionException err) {
+                    ByteBuf error = composeErrorResponse(message.messageId, err);
+                    channel.sendReplyMessage(message.messageId, error);
                 }
-            } catch (DataScannerException | StatementExecutionException err) {
-                ByteBuf error = composeErrorResponse(message.messageId, err);
-                channel.sendReplyMessage(message.messageId, error);
             }
         } else {
             ByteBuf error = PduCodec.ErrorResponse.write(message.messageId, "no such scanner " + scannerId);
@@ -579,16 +597,23 @@ public class ServerSideConnectionPeer implements ServerSideConnection, ChannelEv
         }
         String tableSpace = PduCodec.RequestTablespaceDump.readTablespace(message);
         boolean includeTransactionLog = PduCodec.RequestTablespaceDump.readInludeTransactionLog(message);
-        server.getManager().dumpTableSpace(tableSpace, dumpId, message, channel, fetchSize, includeTransactionLog);
+        // clients older than 0.20.0 always ask for a sequential dump
+        PduCodec.DumpOptions options = PduCodec.RequestTablespaceDump.readOptions(message);
+        server.getManager().dumpTableSpace(tableSpace, dumpId, message, channel, fetchSize, includeTransactionLog, options);
     }
 
     private void handleExecuteStatements(Pdu message, Channel channel) {
         long transactionId = PduCodec.ExecuteStatements.readTx(message);
         String tableSpace = PduCodec.ExecuteStatements.readTablespace(message);
         long statementId = PduCodec.ExecuteStatements.readStatementId(message);
-        String query =
-                statementId > 0 ? preparedStatements.resolveQuery(tableSpace, statementId)
-                        : PduCodec.ExecuteStatements.readQuery(message);
+        PreparedStatementInfo prepared = null;
+        String query;
+        if (statementId > 0) {
+            prepared = preparedStatements.resolveStatement(tableSpace, statementId);
+            query = prepared != null ? prepared.getQuery() : null;
+        } else {
+            query = PduCodec.ExecuteStatements.readQuery(message);
+        }
         if (query == null) {
             ByteBuf error = PduCodec.ErrorResponse.writeMissingPreparedStatementError(message.messageId, "bad statement id: " + statementId);
             channel.sendReplyMessage(message.messageId, error);
@@ -608,16 +633,23 @@ public class ServerSideConnectionPeer implements ServerSideConnection, ChannelEv
             batch.add(batchParams);
         }
         RunningStatementsStats runningStatements = server.getManager().getRunningStatements();
-        RunningStatementInfo statementInfo = new RunningStatementInfo(query, System.currentTimeMillis(), tableSpace, "", numStatements);
+        RunningStatementInfo statementInfo = new RunningStatementInfo(query, System.currentTimeMillis(), tableSpace, "", numStatements,
+                executionStats(prepared));
         try {
+            if (bulkExecuteStatements && numStatements > 1) {
+                TranslatedQuery translatedQuery = translate(prepared, tableSpace, query,
+                        batch.get(0), false, returnValues, -1);
+                if (translatedQuery.plan.mainStatement instanceof DMLStatement) {
+                    executeStatementsBulk(message, channel, translatedQuery, batch, transactionId, returnValues, statementInfo);
+                    return;
+                }
+            }
 
             List<TranslatedQuery> queries = new ArrayList<>();
             for (int i = 0; i < numStatements; i++) {
                 List<Object> parameters = batch.get(i);
-                TranslatedQuery translatedQuery = server
-                        .getManager()
-                        .getPlanner().translate(tableSpace, query,
-                                parameters, false, true, returnValues, -1);
+                TranslatedQuery translatedQuery = translate(prepared, tableSpace, query,
+                        parameters, false, returnValues, -1);
                 queries.add(translatedQuery);
             }
 
@@ -645,17 +677,7 @@ public class ServerSideConnectionPeer implements ServerSideConnection, ChannelEv
                         DMLStatementExecutionResult dml = (DMLStatementExecutionResult) result;
                         Map<String, Object> otherData = Collections.emptyMap();
                         if (returnValues && dml.getKey() != null) {
-                            TranslatedQuery translatedQuery = queries.get(current - 1);
-                            Statement statement = translatedQuery.plan.mainStatement;
-                            TableAwareStatement tableStatement = (TableAwareStatement) statement;
-                            Table table = server.getManager().getTableSpaceManager(statement.getTableSpace()).getTableManager(tableStatement.getTable()).getTable();
-                            Object key = RecordSerializer.deserializePrimaryKey(dml.getKey(), table);
-                            otherData = new HashMap<>();
-                            otherData.put("_key", key);
-                            if (dml.getNewvalue() != null) {
-                                Map<String, Object> newvalue = RecordSerializer.toBean(new Record(dml.getKey(), dml.getNewvalue()), table);
-                                otherData.putAll(newvalue);
-                            }
+                            otherData = buildReturnValues(dml, queries.get(current - 1).plan.mainStatement);
                         }
                         updateCounts.add((long) dml.getUpdateCount());
                         otherDatas.add(otherData);
@@ -705,13 +727,79 @@ public class ServerSideConnectionPeer implements ServerSideConnection, ChannelEv
         }
     }
 
+    /**
+     * Executes a batch binding every set of parameters to the same plan, see
+     * {@link herddb.core.DBManager#executeBulkPlanAsync}
+     */
+    private void executeStatementsBulk(
+            Pdu message, Channel channel, TranslatedQuery translatedQuery,
+            List<List<Object>> batch, long transactionId, boolean returnValues,
+            RunningStatementInfo statementInfo
+    ) {
+        List<SQLStatementEvaluationContext> contexts = new ArrayList<>(batch.size());
+        contexts.add(translatedQuery.context);
+        for (int i = 1; i < batch.size(); i++) {
+            contexts.add(new SQLStatementEvaluationContext(translatedQuery.context.query, batch.get(i), false, false));
+        }
+        Statement statement = translatedQuery.plan.mainStatement;
+        RunningStatementsStats runningStatements = server.getManager().getRunningStatements();
+        server.getManager()
+                .executeBulkPlanAsync(translatedQuery.plan, contexts, new TransactionContext(transactionId))
+                .whenComplete((results, error) -> {
+                    try {
+                        if (error != null) {
+                            ByteBuf errorMsg = composeErrorResponse(message.messageId, error);
+                            channel.sendReplyMessage(message.messageId, errorMsg);
+                            return;
+                        }
+                        List<Long> updateCounts = new ArrayList<>(results.size());
+                        List<Map<String, Object>> otherDatas = new ArrayList<>(results.size());
+                        long newTransactionId = transactionId;
+                        for (DMLStatementExecutionResult dml : results) {
+                            updateCounts.add((long) dml.getUpdateCount());
+                            if (returnValues && dml.getKey() != null) {
+                                otherDatas.add(buildReturnValues(dml, statement));
+                            } else {
+                                otherDatas.add(Collections.emptyMap());
+                            }
+                            newTransactionId = dml.transactionId;
+                        }
+                        ByteBuf response = PduCodec.ExecuteStatementsResult.write(message.messageId, updateCounts, otherDatas, newTransactionId);
+                        channel.sendReplyMessage(message.messageId, response);
+                    } catch (Throwable t) {
+                        LOGGER.log(Level.SEVERE, "Internal error", t);
+                    } finally {
+                        message.close();
+                        runningStatements.unregisterRunningStatement(statementInfo);
+                    }
+                });
+    }
+
+    private Map<String, Object> buildReturnValues(DMLStatementExecutionResult dml, Statement statement) {
+        TableAwareStatement tableStatement = (TableAwareStatement) statement;
+        Table table = server.getManager().getTableSpaceManager(statement.getTableSpace()).getTableManager(tableStatement.getTable()).getTable();
+        Object key = RecordSerializer.deserializePrimaryKey(dml.getKey(), table);
+        Map<String, Object> otherData = new HashMap<>();
+        otherData.put("_key", key);
+        if (dml.getNewvalue() != null) {
+            Map<String, Object> newvalue = RecordSerializer.toBean(new Record(dml.getKey(), dml.getNewvalue()), table);
+            otherData.putAll(newvalue);
+        }
+        return otherData;
+    }
+
     private void handleExecuteStatement(Pdu message, Channel channel) {
         long txId = PduCodec.ExecuteStatement.readTx(message);
         String tablespace = PduCodec.ExecuteStatement.readTablespace(message);
         long statementId = PduCodec.ExecuteStatement.readStatementId(message);
-        String query =
-                statementId > 0 ? preparedStatements.resolveQuery(tablespace, statementId)
-                        : PduCodec.ExecuteStatement.readQuery(message);
+        PreparedStatementInfo prepared = null;
+        String query;
+        if (statementId > 0) {
+            prepared = preparedStatements.resolveStatement(tablespace, statementId);
+            query = prepared != null ? prepared.getQuery() : null;
+        } else {
+            query = PduCodec.ExecuteStatement.readQuery(message);
+        }
         if (query == null) {
             ByteBuf error = PduCodec.ErrorResponse.writeMissingPreparedStatementError(message.messageId, "bad statement id: " + statementId);
             channel.sendReplyMessage(message.messageId, error);
@@ -729,12 +817,13 @@ public class ServerSideConnectionPeer implements ServerSideConnection, ChannelEv
             LOGGER.log(Level.FINEST, "query {0} with {1}", new Object[]{query, parameters});
         }
 
-        RunningStatementInfo statementInfo = new RunningStatementInfo(query, System.currentTimeMillis(), tablespace, "", 1);
+        RunningStatementInfo statementInfo = new RunningStatementInfo(query, System.currentTimeMillis(), tablespace, "", 1,
+                executionStats(prepared));
         TransactionContext transactionContext = new TransactionContext(txId);
         TranslatedQuery translatedQuery;
         try {
-            translatedQuery = server.getManager().getPlanner().translate(tablespace,
-                    query, parameters, false, true, returnValues, -1);
+            translatedQuery = translate(prepared, tablespace,
+                    query, parameters, false, returnValues, -1);
         } catch (StatementExecutionException ex) {
             ByteBuf error = composeErrorResponse(message.messageId, ex);
             channel.sendReplyMessage(message.messageId, error);
@@ -828,6 +917,25 @@ public class ServerSideConnectionPeer implements ServerSideConnection, ChannelEv
         });
     }
 
+    /**
+     * Translates a query, prepared statements reuse the plan pinned by their
+     * previous executions
+     */
+    private TranslatedQuery translate(
+            PreparedStatementInfo prepared, String tableSpace, String query, List<Object> parameters,
+            boolean scan, boolean returnValues, int maxRows
+    ) throws StatementExecutionException {
+        AbstractSQLPlanner planner = server.getManager().getPlanner();
+        if (prepared != null) {
+            return prepared.translate(planner, parameters, scan, returnValues, maxRows);
+        }
+        return planner.translate(tableSpace, query, parameters, scan, true, returnValues, maxRows);
+    }
+
+    private static StatementExecutionStats executionStats(PreparedStatementInfo prepared) {
+        return prepared != null ? prepared.getExecutionStats() : null;
+    }
+
     private void handlePrepareStatement(Pdu message, Channel channel) {
         try {
             String query = PduCodec.PrepareStatement.readQuery(message);
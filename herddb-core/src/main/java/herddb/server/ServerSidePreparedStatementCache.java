@@ -25,6 +25,14 @@ import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.RemovalNotification;
 import herddb.core.HerdDBInternalException;
+import herddb.core.stats.StatementExecutionStats;
+import herddb.model.StatementExecutionException;
+import herddb.sql.AbstractSQLPlanner;
+import herddb.sql.PreparedPlan;
+import herddb.sql.TranslatedQuery;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicLong;
@@ -42,19 +50,63 @@ public final class ServerSidePreparedStatementCache {
     private final Cache<String, Long> preparedStatements;
     private final ConcurrentHashMap<Long, PreparedStatementInfo> statementsInfo = new ConcurrentHashMap<>();
 
-    private static class PreparedStatementInfo {
+    /**
+     * A prepared statement, with the plan pinned by its last execution
+     */
+    public static final class PreparedStatementInfo {
 
+        private final long id;
         private final String query;
         private final String tablespace;
         private final int memory;
+        private final StatementExecutionStats executionStats = new StatementExecutionStats();
+        private volatile PreparedPlan plan;
 
-        public PreparedStatementInfo(String query, String tablespace) {
+        private PreparedStatementInfo(long id, String query, String tablespace) {
+            this.id = id;
             this.query = query;
             this.tablespace = tablespace;
             // impossible overflow
             this.memory = query.length() + tablespace.length();
         }
 
+        public long getId() {
+            return id;
+        }
+
+        public String getQuery() {
+            return query;
+        }
+
+        public String getTablespace() {
+            return tablespace;
+        }
+
+        public StatementExecutionStats getExecutionStats() {
+            return executionStats;
+        }
+
+        public boolean isPlanPinned() {
+            return plan != null;
+        }
+
+        /**
+         * Translates the statement, reusing the pinned plan if it is still
+         * valid, otherwise the new plan is pinned for the next executions.
+         */
+        public TranslatedQuery translate(
+                AbstractSQLPlanner planner, List<Object> parameters,
+                boolean scan, boolean returnValues, int maxRows
+        ) throws StatementExecutionException {
+            PreparedPlan current = plan;
+            if (current != null && current.isValid(planner, scan, returnValues, maxRows)) {
+                return current.bind(parameters);
+            }
+            TranslatedQuery translatedQuery = planner.translate(tablespace, query, parameters, scan, true, returnValues, maxRows);
+            plan = PreparedPlan.pin(translatedQuery, scan, returnValues, maxRows);
+            return translatedQuery;
+        }
+
     }
 
     public ServerSidePreparedStatementCache(long maxMemory) {
@@ -82,7 +134,7 @@ public final class ServerSidePreparedStatementCache {
         try {
             return preparedStatements.get(tableSpace + "#" + text, () -> {
                 long newId = idGenerator.incrementAndGet();
-                PreparedStatementInfo info = new PreparedStatementInfo(text, tableSpace);
+                PreparedStatementInfo info = new PreparedStatementInfo(newId, text, tableSpace);
                 statementsInfo.put(newId, info);
                 return newId;
             });
@@ -98,6 +150,11 @@ public final class ServerSidePreparedStatementCache {
     }
 
     String resolveQuery(String tableSpace, long statementId) {
+        PreparedStatementInfo info = resolveStatement(tableSpace, statementId);
+        return info != null ? info.query : null;
+    }
+
+    PreparedStatementInfo resolveStatement(String tableSpace, long statementId) {
         PreparedStatementInfo info = statementsInfo.get(statementId);
         if (info == null) {
             return null;
@@ -105,7 +162,11 @@ public final class ServerSidePreparedStatementCache {
         if (!tableSpace.equals(info.tablespace)) {
             return null;
         }
-        return info.query;
+        return info;
+    }
+
+    public Collection<PreparedStatementInfo> getStatements() {
+        return Collections.unmodifiableCollection(statementsInfo.values());
     }
 
     @VisibleForTesting
@@ -33,15 +33,28 @@ import java.util.logging.Logger;
 public class ServerSideScannerPeer implements AutoCloseable {
 
     private final DataScanner scanner;
+    private final boolean columnarResults;
 
     public ServerSideScannerPeer(DataScanner scanner) {
+        this(scanner, false);
+    }
+
+    public ServerSideScannerPeer(DataScanner scanner, boolean columnarResults) {
         this.scanner = scanner;
+        this.columnarResults = columnarResults;
     }
 
     public DataScanner getScanner() {
         return scanner;
     }
 
+    /**
+     * The client is able to decode columnar chunks
+     */
+    public boolean isColumnarResults() {
+        return columnarResults;
+    }
+
     public void clientClose() {
         try {
             scanner.close();
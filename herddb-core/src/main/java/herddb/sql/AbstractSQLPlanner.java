@@ -36,6 +36,13 @@ public interface AbstractSQLPlanner {
 
     long getCacheSize();
 
+    /**
+     * Current generation of the cache of plans, see {@link PreparedPlan}
+     */
+    default long getCacheGeneration() {
+        return TranslatedQuery.NOT_CACHEABLE;
+    }
+
     TranslatedQuery translate(String defaultTableSpace, String query, List<Object> parameters, boolean scan, boolean allowCache, boolean returnValues, int maxRows) throws StatementExecutionException;
 
 }
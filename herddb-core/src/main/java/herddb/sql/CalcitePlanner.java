@@ -48,13 +48,13 @@ import herddb.model.planner.BindableTableScanOp;
 import herddb.model.planner.DeleteOp;
 import herddb.model.planner.FilterOp;
 import herddb.model.planner.FilteredTableScanOp;
+import herddb.model.planner.HashJoinOp;
 import herddb.model.planner.InsertOp;
 import herddb.model.planner.JoinOp;
 import herddb.model.planner.LimitOp;
 import herddb.model.planner.NestedLoopJoinOp;
 import herddb.model.planner.PlannerOp;
 import herddb.model.planner.ProjectOp;
-import herddb.model.planner.SemiJoinOp;
 import herddb.model.planner.SimpleDeleteOp;
 import herddb.model.planner.SimpleInsertOp;
 import herddb.model.planner.SimpleUpdateOp;
@@ -125,9 +125,12 @@ import org.apache.calcite.rel.RelFieldCollation;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.core.AggregateCall;
 import org.apache.calcite.rel.core.JoinInfo;
+import org.apache.calcite.rel.core.JoinRelType;
 import org.apache.calcite.rel.core.Sort;
 import org.apache.calcite.rel.core.TableModify;
 import org.apache.calcite.rel.logical.LogicalTableModify;
+import org.apache.calcite.rel.metadata.JaninoRelMetadataProvider;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
 import org.apache.calcite.rel.rules.CoreRules;
 import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rel.type.RelDataTypeFactory;
@@ -182,7 +185,7 @@ public class CalcitePlanner implements AbstractSQLPlanner {
     private static final long WAIT_FOR_SCHEMA_UP_TIMEOUT = SystemProperties.getLongSystemProperty("herddb.planner.waitfortablespacetimeout", 60000);
     private static final Level DUMP_QUERY_LEVEL = Level.parse(SystemProperties.getStringSystemProperty("herddb.planner.dumpqueryloglevel", Level.FINE.toString()));
 
-    private static final Pattern USE_DDL_PARSER = Pattern.compile("^[\\s]*(EXECUTE|CREATE|DROP|ALTER|TRUNCATE|BEGIN|COMMIT|ROLLBACK).*", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern USE_DDL_PARSER = Pattern.compile("^[\\s]*(EXECUTE|CREATE|DROP|ALTER|TRUNCATE|ANALYZE|BEGIN|COMMIT|ROLLBACK).*", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
 
     private final DBManager manager;
     private final AbstractSQLPlanner fallback;
@@ -217,6 +220,11 @@ public class CalcitePlanner implements AbstractSQLPlanner {
         return cache.getCacheMisses();
     }
 
+    @Override
+    public long getCacheGeneration() {
+        return cache.getGeneration();
+    }
+
     @Override
     public void clearCache() {
         rootSchema = null;
@@ -239,6 +247,8 @@ public class CalcitePlanner implements AbstractSQLPlanner {
         if (parameters == null) {
             parameters = Collections.emptyList();
         }
+        // read the generation before looking up the cache, a concurrent DDL makes the plan stale
+        long cacheGeneration = cache.getGeneration();
         String cacheKey = "scan:" + scan
                 + ",defaultTableSpace:" + defaultTableSpace
                 + ",query:" + query
@@ -255,7 +265,7 @@ public class CalcitePlanner implements AbstractSQLPlanner {
         if (allowCache) {
             ExecutionPlan cached = cache.get(cacheKey);
             if (cached != null) {
-                return new TranslatedQuery(cached, new SQLStatementEvaluationContext(query, parameters, forceAcquireWriteLock, false));
+                return new TranslatedQuery(cached, new SQLStatementEvaluationContext(query, parameters, forceAcquireWriteLock, false), cacheGeneration);
             }
         }
 
@@ -274,6 +284,8 @@ public class CalcitePlanner implements AbstractSQLPlanner {
         if (!isCachable(query)) {
             allowCache = false;
         }
+        // runPlanner installs the metadata provider on this thread, restore it once the plan is built
+        JaninoRelMetadataProvider previousMetadataProvider = RelMetadataQuery.THREAD_PROVIDERS.get();
         try {
             if (query.startsWith("EXPLAIN ")) {
                 query = query.substring("EXPLAIN ".length());
@@ -342,6 +354,7 @@ public class CalcitePlanner implements AbstractSQLPlanner {
                     );
                     if (allowCache) {
                         cache.put(cacheKey, executionPlan);
+                        return new TranslatedQuery(executionPlan, new SQLStatementEvaluationContext(query, parameters, forceAcquireWriteLock, false), cacheGeneration);
                     }
                     return new TranslatedQuery(executionPlan, new SQLStatementEvaluationContext(query, parameters, forceAcquireWriteLock, false));
                 }
@@ -361,6 +374,7 @@ public class CalcitePlanner implements AbstractSQLPlanner {
             }
             if (allowCache) {
                 cache.put(cacheKey, executionPlan);
+                return new TranslatedQuery(executionPlan, new SQLStatementEvaluationContext(query, parameters, forceAcquireWriteLock, false), cacheGeneration);
             }
             return new TranslatedQuery(executionPlan, new SQLStatementEvaluationContext(query, parameters, forceAcquireWriteLock, false));
         } catch (CalciteContextException ex) {
@@ -374,6 +388,8 @@ public class CalcitePlanner implements AbstractSQLPlanner {
         } catch (MetadataStorageManagerException ex) {
             LOG.log(Level.INFO, "Error while parsing '" + query + "'", ex);
             throw new StatementExecutionException(ex);
+        } finally {
+            RelMetadataQuery.THREAD_PROVIDERS.set(previousMetadataProvider);
         }
     }
 
@@ -484,6 +500,10 @@ public class CalcitePlanner implements AbstractSQLPlanner {
             }
             RelDataType originalRowType = logicalPlan.getRowType();
             RelOptCluster cluster = logicalPlan.getCluster();
+            // estimates based on the statistics computed by ANALYZE TABLE
+            cluster.setMetadataProvider(TableStatisticsMetadataProvider.INSTANCE);
+            RelMetadataQuery.THREAD_PROVIDERS.set(JaninoRelMetadataProvider.of(TableStatisticsMetadataProvider.INSTANCE));
+            cluster.invalidateMetadataQuery();
             final RelOptPlanner optPlanner = cluster.getPlanner();
 
             optPlanner.addRule(CoreRules.FILTER_REDUCE_EXPRESSIONS);
@@ -879,14 +899,22 @@ public class CalcitePlanner implements AbstractSQLPlanner {
             fieldNames[i] = col.name;
             columns[i++] = col;
         }
-        if (op.isSemiJoin()) {
-            return new SemiJoinOp(fieldNames, columns, leftKeys, left, rightKeys, right);
-        } else {
+        if (op.getJoinType() == JoinRelType.ANTI) {
             return new JoinOp(fieldNames, columns,
                     leftKeys, left, rightKeys, right,
                     generateNullsOnLeft, generateNullsOnRight, false,
                     nonEquiConditions);
         }
+        // build the hash table on the side with less rows
+        RelMetadataQuery metadataQuery = op.getCluster().getMetadataQuery();
+        Double leftRowCount = metadataQuery.getRowCount(op.getLeft());
+        Double rightRowCount = metadataQuery.getRowCount(op.getRight());
+        boolean buildOnLeft = leftRowCount != null && rightRowCount != null
+                && leftRowCount < rightRowCount;
+        return new HashJoinOp(fieldNames, columns,
+                leftKeys, left, rightKeys, right,
+                generateNullsOnLeft, generateNullsOnRight, op.isSemiJoin(),
+                buildOnLeft, nonEquiConditions);
     }
 
     private List<CompiledSQLExpression> convertJoinNonEquiConditions(final JoinInfo analyzeCondition) throws IllegalStateException {
@@ -1202,6 +1230,9 @@ public class CalcitePlanner implements AbstractSQLPlanner {
             if (aClass == InitializerExpressionFactory.class) {
                 return (C) this;
             }
+            if (aClass == AbstractTableManager.class) {
+                return (C) tableManager;
+            }
             return super.unwrap(aClass);
         }
 
@@ -18,6 +18,7 @@
 package herddb.sql;
 
 import herddb.core.AbstractIndexManager;
+import herddb.core.AbstractTableManager;
 import herddb.core.TableSpaceManager;
 import herddb.index.IndexOperation;
 import herddb.index.PrimaryIndexPrefixScan;
@@ -26,9 +27,11 @@ import herddb.index.PrimaryIndexSeek;
 import herddb.index.SecondaryIndexPrefixScan;
 import herddb.index.SecondaryIndexRangeScan;
 import herddb.index.SecondaryIndexSeek;
+import herddb.model.ColumnStatistics;
 import herddb.model.ColumnsList;
 import herddb.model.StatementExecutionException;
 import herddb.model.Table;
+import herddb.model.TableStatistics;
 import herddb.sql.expressions.BindableTableScanColumnNameResolver;
 import herddb.sql.expressions.CompiledMultiAndExpression;
 import herddb.sql.expressions.CompiledSQLExpression;
@@ -110,15 +113,29 @@ public class IndexUtils {
         if (result == null && tableSpaceManager != null) {
             Map<String, AbstractIndexManager> indexes = tableSpaceManager.getIndexesOnTable(table.name);
             if (indexes != null) {
-                // TODO: use some kind of statistics, maybe using an index is more expensive than a full table scan
+                // TODO: maybe using an index is more expensive than a full table scan
+                AbstractTableManager tableManager = tableSpaceManager.getTableManager(table.name);
+                TableStatistics statistics = tableManager != null ? tableManager.getStatistics() : null;
+                long bestDistinctValues = -1;
                 for (AbstractIndexManager index : indexes.values()) {
                     if (!index.isAvailable()) {
                         continue;
                     }
                     IndexOperation secondaryIndexOperation = findSecondaryIndexOperation(index, expressionWhere, table);
                     if (secondaryIndexOperation != null) {
-                        result = secondaryIndexOperation;
-                        break;
+                        if (statistics == null) {
+                            result = secondaryIndexOperation;
+                            break;
+                        }
+                        // prefer lookups to range scans, then the most selective leading column
+                        long distinctValues = estimateDistinctValues(statistics, index.getColumnNames()[0]);
+                        if (!(secondaryIndexOperation instanceof SecondaryIndexRangeScan)) {
+                            distinctValues += Long.MAX_VALUE / 2;
+                        }
+                        if (distinctValues > bestDistinctValues) {
+                            bestDistinctValues = distinctValues;
+                            result = secondaryIndexOperation;
+                        }
                     }
                 }
             }
@@ -126,6 +143,11 @@ public class IndexUtils {
         return result;
     }
 
+    private static long estimateDistinctValues(TableStatistics statistics, String column) {
+        ColumnStatistics columnStatistics = statistics.getColumn(column);
+        return columnStatistics != null ? columnStatistics.getDistinctValues() : 0;
+    }
+
     private static IndexOperation findSecondaryIndexOperation(
             AbstractIndexManager index,
             CompiledSQLExpression where, Table table
@@ -49,6 +49,7 @@ import herddb.model.TableSpaceDoesNotExistException;
 import herddb.model.TupleComparator;
 import herddb.model.commands.AlterTableSpaceStatement;
 import herddb.model.commands.AlterTableStatement;
+import herddb.model.commands.AnalyzeTableStatement;
 import herddb.model.commands.BeginTransactionStatement;
 import herddb.model.commands.CommitTransactionStatement;
 import herddb.model.commands.CreateIndexStatement;
@@ -108,6 +109,8 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import net.sf.jsqlparser.expression.Alias;
 import net.sf.jsqlparser.expression.DoubleValue;
@@ -168,6 +171,8 @@ public class JSQLParserPlanner implements AbstractSQLPlanner {
     private static final Level DUMP_QUERY_LEVEL = Level.parse(SystemProperties.getStringSystemProperty("herddb.planner.dumpqueryloglevel", Level.FINE.toString()));
     public static final String TABLE_CONSISTENCY_COMMAND = "tableconsistencycheck";
     public static final String TABLESPACE_CONSISTENCY_COMMAND = "tablespaceconsistencycheck";
+    private static final Pattern ANALYZE_TABLE_COMMAND = Pattern.compile("^\\s*ANALYZE\\s+TABLE\\s+([^\\s;]+)\\s*;?\\s*$",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
     private final DBManager manager;
     private final PlansCache cache;
     /**
@@ -190,6 +195,11 @@ public class JSQLParserPlanner implements AbstractSQLPlanner {
         return cache.getCacheMisses();
     }
 
+    @Override
+    public long getCacheGeneration() {
+        return cache.getGeneration();
+    }
+
     @Override
     public void clearCache() {
         cache.clear();
@@ -375,6 +385,11 @@ public class JSQLParserPlanner implements AbstractSQLPlanner {
                     return new TranslatedQuery(cached, new SQLStatementEvaluationContext(query, parameters, forceAcquireWriteLock, false));
                 }
             }
+            Matcher analyzeTable = ANALYZE_TABLE_COMMAND.matcher(query);
+            if (analyzeTable.matches()) {
+                ExecutionPlan executionPlan = ExecutionPlan.simple(buildAnalyzeTableStatement(defaultTableSpace, analyzeTable.group(1)));
+                return new TranslatedQuery(executionPlan, new SQLStatementEvaluationContext(query, parameters, false, false));
+            }
             if (query.startsWith(TABLE_CONSISTENCY_COMMAND)) {
                 ExecutionPlan executionPlan = ExecutionPlan.simple(JSQLParserPlanner.this.queryConsistencyCheckStatement(defaultTableSpace, query, parameters));
                 return new TranslatedQuery(executionPlan, new SQLStatementEvaluationContext(query, parameters, false, false));
@@ -534,6 +549,8 @@ public class JSQLParserPlanner implements AbstractSQLPlanner {
                 tablebuilder.column("_pk", ColumnTypes.LONG, position++, null);
                 tablebuilder.primaryKey("_pk", true);
             }
+            tablebuilder.valueFormat(decodeValueFormat(s.getTableOptionsStrings()));
+            tablebuilder.pageCompression(decodePageCompression(s.getTableOptionsStrings()));
 
             Table table = tablebuilder.build();
             List<herddb.model.Index> otherIndexes = new ArrayList<>();
@@ -590,6 +607,57 @@ public class JSQLParserPlanner implements AbstractSQLPlanner {
         }
     }
 
+    /**
+     * Decodes the VALUE_FORMAT=n table option.
+     */
+    private static int decodeValueFormat(List<?> tableOptions) throws StatementExecutionException {
+        String value = findTableOption(tableOptions, "VALUE_FORMAT");
+        if (value == null) {
+            return Table.VALUE_FORMAT_V1;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException err) {
+            throw new StatementExecutionException("bad table definition: bad VALUE_FORMAT " + value);
+        }
+    }
+
+    /**
+     * Decodes the PAGE_COMPRESSION=LZ4|NONE table option.
+     */
+    private static int decodePageCompression(List<?> tableOptions) throws StatementExecutionException {
+        String value = findTableOption(tableOptions, "PAGE_COMPRESSION");
+        if (value == null) {
+            return Table.PAGE_COMPRESSION_NONE;
+        }
+        value = value.replace("'", "");
+        if ("LZ4".equalsIgnoreCase(value)) {
+            return Table.PAGE_COMPRESSION_LZ4;
+        } else if ("NONE".equalsIgnoreCase(value)) {
+            return Table.PAGE_COMPRESSION_NONE;
+        }
+        throw new StatementExecutionException("bad table definition: bad PAGE_COMPRESSION " + value);
+    }
+
+    private static String findTableOption(List<?> tableOptions, String name) throws StatementExecutionException {
+        if (tableOptions == null) {
+            return null;
+        }
+        for (int i = 0; i < tableOptions.size(); i++) {
+            if (name.equalsIgnoreCase(String.valueOf(tableOptions.get(i)))) {
+                int pos = i + 1;
+                if (pos < tableOptions.size() && "=".equals(tableOptions.get(pos))) {
+                    pos++;
+                }
+                if (pos >= tableOptions.size()) {
+                    throw new StatementExecutionException("bad table definition: missing value for " + name);
+                }
+                return String.valueOf(tableOptions.get(pos));
+            }
+        }
+        return null;
+    }
+
     private boolean decodeAutoIncrement(List<String> columnSpecs) {
         boolean auto_increment = columnSpecs.contains("AUTO_INCREMENT");
         return auto_increment;
@@ -661,6 +729,7 @@ public class JSQLParserPlanner implements AbstractSQLPlanner {
         switch (indexType) {
             case herddb.model.Index.TYPE_HASH:
             case herddb.model.Index.TYPE_BRIN:
+            case herddb.model.Index.TYPE_BLINK:
                 break;
             default:
                 throw new StatementExecutionException("Invalid index type " + indexType);
@@ -1324,6 +1393,26 @@ public class JSQLParserPlanner implements AbstractSQLPlanner {
     }
 
 
+    private Statement buildAnalyzeTableStatement(String defaultTableSpace, String name) throws StatementExecutionException {
+        String tableSpace = defaultTableSpace;
+        String tableName = name;
+        int dot = name.indexOf('.');
+        if (dot >= 0) {
+            tableSpace = fixMySqlBackTicks(name.substring(0, dot));
+            tableName = name.substring(dot + 1);
+        }
+        tableName = fixMySqlBackTicks(tableName.toLowerCase());
+        TableSpaceManager tableSpaceManager = manager.getTableSpaceManager(tableSpace);
+        if (tableSpaceManager == null) {
+            throw new TableSpaceDoesNotExistException(String.format("Tablespace %s does not exist.", tableSpace));
+        }
+        AbstractTableManager tableManager = tableSpaceManager.getTableManager(tableName);
+        if (tableManager == null || tableManager.getCreatedInTransaction() > 0 || tableManager.isSystemTable()) {
+            throw new TableDoesNotExistException(String.format("Table %s does not exist.", tableName));
+        }
+        return new AnalyzeTableStatement(tableSpace, tableName);
+    }
+
     private ExecutionPlan buildSelectStatement(String defaultTableSpace, int maxRows, Select select, boolean forceScan) throws StatementExecutionException {
         checkSupported(select.getWithItemsList() == null);
         SelectBody selectBody = select.getSelectBody();
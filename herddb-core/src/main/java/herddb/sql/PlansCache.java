@@ -24,6 +24,7 @@ import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.RemovalNotification;
 import herddb.model.ExecutionPlan;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -37,6 +38,7 @@ public class PlansCache {
     private static final Logger LOG = Logger.getLogger(PlansCache.class.getName());
 
     private final Cache<String, ExecutionPlanContainer> cache;
+    private final AtomicLong generation = new AtomicLong();
 
     private static class ExecutionPlanContainer {
 
@@ -91,7 +93,17 @@ public class PlansCache {
         this.cache.put(sql, new ExecutionPlanContainer(statement));
     }
 
+    /**
+     * Generation of the cache, it changes every time the cache is cleared
+     * (for instance after a DDL): a plan translated during a previous
+     * generation must not be reused
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
     public void clear() {
+        this.generation.incrementAndGet();
         this.cache.invalidateAll();
     }
 
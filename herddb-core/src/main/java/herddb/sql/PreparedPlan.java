@@ -0,0 +1,76 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.sql;
+
+import herddb.model.ExecutionPlan;
+import java.util.List;
+
+/**
+ * A plan pinned to a prepared statement.
+ * <p>
+ * The plan is bound to new parameters without translating the query again,
+ * so without building the key and looking up the {@link PlansCache}. It is
+ * valid until the cache is cleared (for instance by a DDL statement) and only
+ * for the same flags used to translate it.
+ */
+public final class PreparedPlan {
+
+    private final ExecutionPlan plan;
+    private final String query;
+    private final boolean forceAcquireWriteLock;
+    private final boolean scan;
+    private final boolean returnValues;
+    private final int maxRows;
+    private final long cacheGeneration;
+
+    private PreparedPlan(TranslatedQuery translatedQuery, boolean scan, boolean returnValues, int maxRows) {
+        this.plan = translatedQuery.plan;
+        this.query = translatedQuery.context.query;
+        this.forceAcquireWriteLock = translatedQuery.context.isForceAcquireWriteLock();
+        this.scan = scan;
+        this.returnValues = returnValues;
+        this.maxRows = maxRows;
+        this.cacheGeneration = translatedQuery.cacheGeneration;
+    }
+
+    /**
+     * Pins the plan of a query.
+     *
+     * @return null if the plan cannot be reused
+     */
+    public static PreparedPlan pin(TranslatedQuery translatedQuery, boolean scan, boolean returnValues, int maxRows) {
+        if (translatedQuery.cacheGeneration == TranslatedQuery.NOT_CACHEABLE) {
+            return null;
+        }
+        return new PreparedPlan(translatedQuery, scan, returnValues, maxRows);
+    }
+
+    public boolean isValid(AbstractSQLPlanner planner, boolean scan, boolean returnValues, int maxRows) {
+        return this.scan == scan
+                && this.returnValues == returnValues
+                && this.maxRows == maxRows
+                && this.cacheGeneration == planner.getCacheGeneration();
+    }
+
+    public TranslatedQuery bind(List<Object> parameters) {
+        return new TranslatedQuery(plan, new SQLStatementEvaluationContext(query, parameters, forceAcquireWriteLock, false), cacheGeneration);
+    }
+}
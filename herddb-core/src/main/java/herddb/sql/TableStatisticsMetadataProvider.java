@@ -0,0 +1,332 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.sql;
+
+import com.google.common.collect.ImmutableList;
+import herddb.core.AbstractTableManager;
+import herddb.model.ColumnStatistics;
+import herddb.model.Table;
+import herddb.model.TableStatistics;
+import java.math.BigDecimal;
+import java.util.List;
+import org.apache.calcite.interpreter.Bindables.BindableTableScan;
+import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.rel.core.TableScan;
+import org.apache.calcite.rel.metadata.BuiltInMetadata;
+import org.apache.calcite.rel.metadata.ChainedRelMetadataProvider;
+import org.apache.calcite.rel.metadata.DefaultRelMetadataProvider;
+import org.apache.calcite.rel.metadata.MetadataDef;
+import org.apache.calcite.rel.metadata.MetadataHandler;
+import org.apache.calcite.rel.metadata.ReflectiveRelMetadataProvider;
+import org.apache.calcite.rel.metadata.RelMdUtil;
+import org.apache.calcite.rel.metadata.RelMetadataProvider;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rex.RexCall;
+import org.apache.calcite.rex.RexDynamicParam;
+import org.apache.calcite.rex.RexInputRef;
+import org.apache.calcite.rex.RexLiteral;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.util.BuiltInMethod;
+import org.apache.calcite.util.ImmutableBitSet;
+
+/**
+ * Feeds the column statistics computed by ANALYZE TABLE to the Calcite
+ * metadata system: selectivity of predicates on table scans, number of
+ * distinct values and row count of scans with pushed down filters.
+ * <p>
+ * When a table has never been analyzed the estimates are the same as the
+ * default ones of Calcite.
+ */
+public final class TableStatisticsMetadataProvider {
+
+    public static final RelMetadataProvider INSTANCE = ChainedRelMetadataProvider.of(
+            ImmutableList.of(
+                    ReflectiveRelMetadataProvider.reflectiveSource(BuiltInMethod.SELECTIVITY.method, new SelectivityHandler()),
+                    ReflectiveRelMetadataProvider.reflectiveSource(BuiltInMethod.DISTINCT_ROW_COUNT.method, new DistinctRowCountHandler()),
+                    ReflectiveRelMetadataProvider.reflectiveSource(BuiltInMethod.ROW_COUNT.method, new RowCountHandler()),
+                    DefaultRelMetadataProvider.INSTANCE));
+
+    private TableStatisticsMetadataProvider() {
+    }
+
+    /**
+     * Selectivity of predicates on a table scan
+     */
+    public static final class SelectivityHandler implements MetadataHandler<BuiltInMetadata.Selectivity> {
+
+        @Override
+        public MetadataDef<BuiltInMetadata.Selectivity> getDef() {
+            return BuiltInMetadata.Selectivity.DEF;
+        }
+
+        public Double getSelectivity(TableScan rel, RelMetadataQuery mq, RexNode predicate) {
+            ScanStatistics scan = ScanStatistics.of(rel, true);
+            if (scan == null) {
+                return RelMdUtil.guessSelectivity(predicate);
+            }
+            return scan.selectivity(predicate);
+        }
+    }
+
+    /**
+     * Number of distinct values of columns of a table scan
+     */
+    public static final class DistinctRowCountHandler implements MetadataHandler<BuiltInMetadata.DistinctRowCount> {
+
+        @Override
+        public MetadataDef<BuiltInMetadata.DistinctRowCount> getDef() {
+            return BuiltInMetadata.DistinctRowCount.DEF;
+        }
+
+        public Double getDistinctRowCount(TableScan rel, RelMetadataQuery mq, ImmutableBitSet groupKey, RexNode predicate) {
+            if (predicate == null || predicate.isAlwaysTrue()) {
+                if (groupKey.isEmpty()) {
+                    return 1D;
+                }
+            }
+            Double rowCount = mq.getRowCount(rel);
+            ScanStatistics scan = ScanStatistics.of(rel, true);
+            double distinct = scan != null ? scan.distinctValues(groupKey) : -1;
+            if (distinct < 0 || rowCount == null) {
+                // same as the default handler, assume half the rows are duplicates
+                double selectivity = RelMdUtil.guessSelectivity(predicate);
+                double nRows = rel.estimateRowCount(mq) / 2;
+                return RelMdUtil.numDistinctVals(nRows, nRows * selectivity);
+            }
+            double selectivity = scan.selectivity(predicate);
+            return RelMdUtil.numDistinctVals(Math.min(distinct, rowCount), rowCount * selectivity);
+        }
+    }
+
+    /**
+     * Row count of a table scan with pushed down filters
+     */
+    public static final class RowCountHandler implements MetadataHandler<BuiltInMetadata.RowCount> {
+
+        @Override
+        public MetadataDef<BuiltInMetadata.RowCount> getDef() {
+            return BuiltInMetadata.RowCount.DEF;
+        }
+
+        public Double getRowCount(BindableTableScan rel, RelMetadataQuery mq) {
+            double rowCount = rel.estimateRowCount(mq);
+            if (rel.filters.isEmpty()) {
+                return rowCount;
+            }
+            // pushed down filters reference the columns of the table, not the projected fields
+            ScanStatistics scan = ScanStatistics.of(rel, false);
+            if (scan == null) {
+                return rowCount;
+            }
+            double selectivity = 1;
+            for (RexNode filter : rel.filters) {
+                selectivity *= scan.selectivity(filter);
+            }
+            return Math.max(1, rowCount * selectivity);
+        }
+    }
+
+    private static final class ScanStatistics {
+
+        private final TableStatistics statistics;
+        private final Table table;
+        private final List<Integer> projects;
+
+        private ScanStatistics(TableStatistics statistics, Table table, List<Integer> projects) {
+            this.statistics = statistics;
+            this.table = table;
+            this.projects = projects;
+        }
+
+        static ScanStatistics of(TableScan rel, boolean projected) {
+            AbstractTableManager tableManager = rel.getTable().unwrap(AbstractTableManager.class);
+            if (tableManager == null) {
+                return null;
+            }
+            TableStatistics statistics = tableManager.getStatistics();
+            if (statistics == null || statistics.getRowCount() == 0) {
+                return null;
+            }
+            List<Integer> projects = null;
+            if (projected && rel instanceof BindableTableScan && !((BindableTableScan) rel).projects.isEmpty()) {
+                projects = ((BindableTableScan) rel).projects;
+            }
+            return new ScanStatistics(statistics, tableManager.getTable(), projects);
+        }
+
+        ColumnStatistics column(int field) {
+            int index = projects != null && field < projects.size() ? projects.get(field) : field;
+            if (index < 0 || index >= table.columns.length) {
+                return null;
+            }
+            return statistics.getColumn(table.columns[index].name);
+        }
+
+        double distinctValues(ImmutableBitSet groupKey) {
+            double result = 1;
+            for (int field : groupKey) {
+                ColumnStatistics column = column(field);
+                if (column == null) {
+                    return -1;
+                }
+                // NULL is a group too
+                result *= Math.max(1, column.getDistinctValues() + (column.getNullCount() > 0 ? 1 : 0));
+            }
+            return Math.min(result, statistics.getRowCount());
+        }
+
+        double selectivity(RexNode predicate) {
+            if (predicate == null || predicate.isAlwaysTrue()) {
+                return 1;
+            }
+            return clamp(estimate(predicate));
+        }
+
+        private double estimate(RexNode predicate) {
+            switch (predicate.getKind()) {
+                case AND: {
+                    double result = 1;
+                    for (RexNode conjunction : RelOptUtil.conjunctions(predicate)) {
+                        result *= clamp(estimate(conjunction));
+                    }
+                    return result;
+                }
+                case OR: {
+                    double none = 1;
+                    for (RexNode disjunction : RelOptUtil.disjunctions(predicate)) {
+                        none *= 1 - clamp(estimate(disjunction));
+                    }
+                    return 1 - none;
+                }
+                case NOT:
+                    return 1 - clamp(estimate(((RexCall) predicate).getOperands().get(0)));
+                case IS_NULL:
+                case IS_NOT_NULL: {
+                    ColumnStatistics column = columnOf(((RexCall) predicate).getOperands().get(0));
+                    if (column == null) {
+                        break;
+                    }
+                    double nullFraction = nullFraction(column);
+                    return predicate.getKind() == SqlKind.IS_NULL ? nullFraction : 1 - nullFraction;
+                }
+                case EQUALS:
+                case NOT_EQUALS:
+                case LESS_THAN:
+                case LESS_THAN_OR_EQUAL:
+                case GREATER_THAN:
+                case GREATER_THAN_OR_EQUAL: {
+                    double result = estimateComparison((RexCall) predicate);
+                    if (result >= 0) {
+                        return result;
+                    }
+                    break;
+                }
+                default:
+                    break;
+            }
+            return RelMdUtil.guessSelectivity(predicate);
+        }
+
+        private double estimateComparison(RexCall call) {
+            RexNode left = call.getOperands().get(0);
+            RexNode right = call.getOperands().get(1);
+            SqlKind kind = call.getKind();
+            ColumnStatistics column = columnOf(left);
+            RexNode value = right;
+            if (column == null) {
+                column = columnOf(right);
+                value = left;
+                kind = kind.reverse();
+            }
+            if (column == null || !(value instanceof RexLiteral || value instanceof RexDynamicParam)) {
+                return -1;
+            }
+            double notNull = 1 - nullFraction(column);
+            double equals = notNull / Math.max(1, column.getDistinctValues());
+            if (kind == SqlKind.EQUALS) {
+                return equals;
+            }
+            if (kind == SqlKind.NOT_EQUALS) {
+                return notNull - equals;
+            }
+            if (!(value instanceof RexLiteral)) {
+                return -1;
+            }
+            double lower = column.estimateFractionLowerThan(literalValue((RexLiteral) value));
+            if (lower < 0) {
+                return -1;
+            }
+            double equalsFraction = 1.0 / Math.max(1, column.getDistinctValues());
+            switch (kind) {
+                case LESS_THAN:
+                    return notNull * lower;
+                case LESS_THAN_OR_EQUAL:
+                    return notNull * Math.min(1, lower + equalsFraction);
+                case GREATER_THAN:
+                    return notNull * Math.max(0, 1 - lower - equalsFraction);
+                case GREATER_THAN_OR_EQUAL:
+                    return notNull * (1 - lower);
+                default:
+                    return -1;
+            }
+        }
+
+        private ColumnStatistics columnOf(RexNode node) {
+            if (node.getKind() == SqlKind.CAST) {
+                node = ((RexCall) node).getOperands().get(0);
+            }
+            if (node instanceof RexInputRef) {
+                return column(((RexInputRef) node).getIndex());
+            }
+            return null;
+        }
+
+        private double nullFraction(ColumnStatistics column) {
+            return (double) column.getNullCount() / statistics.getRowCount();
+        }
+
+        private static Object literalValue(RexLiteral literal) {
+            if (literal.isNull()) {
+                return null;
+            }
+            switch (literal.getTypeName().getFamily()) {
+                case NUMERIC:
+                    return literal.getValueAs(BigDecimal.class).doubleValue();
+                case CHARACTER:
+                    return literal.getValueAs(String.class);
+                case TIMESTAMP:
+                    return literal.getValueAs(Long.class);
+                case BOOLEAN:
+                    return literal.getValueAs(Boolean.class);
+                default:
+                    return null;
+            }
+        }
+
+        private static double clamp(double value) {
+            if (Double.isNaN(value)) {
+                return 1;
+            }
+            return Math.max(0, Math.min(1, value));
+        }
+    }
+}
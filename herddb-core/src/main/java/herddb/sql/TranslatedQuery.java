@@ -29,12 +29,27 @@ import herddb.model.ExecutionPlan;
  */
 public class TranslatedQuery {
 
+    /**
+     * Value of {@link #cacheGeneration} for plans which cannot be reused
+     */
+    public static final long NOT_CACHEABLE = -1;
+
     public final ExecutionPlan plan;
     public final SQLStatementEvaluationContext context;
+    /**
+     * Generation of the {@link PlansCache} which contained the plan, see
+     * {@link PreparedPlan}
+     */
+    public final long cacheGeneration;
 
     public TranslatedQuery(ExecutionPlan plan, SQLStatementEvaluationContext context) {
+        this(plan, context, NOT_CACHEABLE);
+    }
+
+    public TranslatedQuery(ExecutionPlan plan, SQLStatementEvaluationContext context, long cacheGeneration) {
         this.plan = plan;
         this.context = context;
+        this.cacheGeneration = cacheGeneration;
     }
 
 }
@@ -57,4 +57,11 @@ public class CompiledIsNotTrueExpression implements CompiledSQLExpression {
                 left.remapPositionalAccessToToPrimaryKeyAccessor(projection));
     }
 
+    public CompiledSQLExpression getLeft() {
+        return left;
+    }
+
+    public boolean isNot() {
+        return not;
+    }
 }
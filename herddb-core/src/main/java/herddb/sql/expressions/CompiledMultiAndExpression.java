@@ -87,4 +87,8 @@ public class CompiledMultiAndExpression implements CompiledSQLExpression {
         }
         return new CompiledMultiAndExpression(ops);
     }
+
+    CompiledSQLExpression[] getOperands() {
+        return operands;
+    }
 }
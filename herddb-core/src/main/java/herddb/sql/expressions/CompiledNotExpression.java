@@ -72,4 +72,7 @@ public class CompiledNotExpression implements CompiledSQLExpression {
         return this;
     }
 
+    public CompiledSQLExpression getLeft() {
+        return left;
+    }
 }
@@ -56,4 +56,11 @@ public class CompiledParenthesisExpression implements CompiledSQLExpression {
                 inner.remapPositionalAccessToToPrimaryKeyAccessor(projection));
     }
 
+    public CompiledSQLExpression getInner() {
+        return inner;
+    }
+
+    public boolean isNot() {
+        return not;
+    }
 }
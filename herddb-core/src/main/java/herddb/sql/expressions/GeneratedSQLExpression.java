@@ -0,0 +1,125 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.sql.expressions;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import herddb.model.StatementEvaluationContext;
+import herddb.model.StatementExecutionException;
+import herddb.utils.SQLRecordPredicateFunctions;
+import herddb.utils.SQLRecordPredicateFunctions.CompareResult;
+import java.util.List;
+
+/**
+ * Base class for expressions generated by {@link SQLExpressionCodeGenerator}.
+ * <p>
+ * Only the evaluation is generated, every other operation is delegated to the
+ * original expression tree.
+ */
+@SuppressFBWarnings({"EI_EXPOSE_REP2"})
+public abstract class GeneratedSQLExpression implements CompiledSQLExpression {
+
+    protected static final CompareResult GREATER = CompareResult.GREATER;
+    protected static final CompareResult MINOR = CompareResult.MINOR;
+    protected static final CompareResult EQUALS = CompareResult.EQUALS;
+    protected static final CompareResult NULL = CompareResult.NULL;
+
+    private final CompiledSQLExpression original;
+    protected final Object[] constants;
+    protected final CompiledSQLExpression[] delegates;
+
+    protected GeneratedSQLExpression(CompiledSQLExpression original, Object[] constants, CompiledSQLExpression[] delegates) {
+        this.original = original;
+        this.constants = constants;
+        this.delegates = delegates;
+    }
+
+    public CompiledSQLExpression getOriginal() {
+        return original;
+    }
+
+    protected static boolean toBoolean(Object value) {
+        return SQLRecordPredicateFunctions.toBoolean(value);
+    }
+
+    protected static boolean objectEquals(Object a, Object b) {
+        return SQLRecordPredicateFunctions.objectEquals(a, b);
+    }
+
+    protected static boolean objectNotEquals(Object a, Object b) {
+        return SQLRecordPredicateFunctions.objectNotEquals(a, b);
+    }
+
+    protected static CompareResult compareConsiderNull(Object a, Object b) {
+        return SQLRecordPredicateFunctions.compareConsiderNull(a, b);
+    }
+
+    protected static Object add(Object a, Object b) {
+        return SQLRecordPredicateFunctions.add(a, b);
+    }
+
+    protected static Object subtract(Object a, Object b) {
+        return SQLRecordPredicateFunctions.subtract(a, b);
+    }
+
+    protected static Object multiply(Object a, Object b) {
+        return SQLRecordPredicateFunctions.multiply(a, b);
+    }
+
+    protected static Object divide(Object a, Object b) {
+        return SQLRecordPredicateFunctions.divide(a, b);
+    }
+
+    protected static Object modulo(Object a, Object b) {
+        return SQLRecordPredicateFunctions.modulo(a, b);
+    }
+
+    @Override
+    public void validate(StatementEvaluationContext context) throws StatementExecutionException {
+        original.validate(context);
+    }
+
+    @Override
+    public List<CompiledSQLExpression> scanForConstraintedValueOnColumnWithOperator(String column, String operator, BindableTableScanColumnNameResolver columnNameResolver) {
+        return original.scanForConstraintedValueOnColumnWithOperator(column, operator, columnNameResolver);
+    }
+
+    @Override
+    public List<CompiledSQLExpression> scanForConstraintsOnColumn(String column, BindableTableScanColumnNameResolver columnNameResolver) {
+        return original.scanForConstraintsOnColumn(column, columnNameResolver);
+    }
+
+    @Override
+    public CompiledSQLExpression remapPositionalAccessToToPrimaryKeyAccessor(int[] projection) {
+        return original.remapPositionalAccessToToPrimaryKeyAccessor(projection);
+    }
+
+    @Override
+    public int estimateObjectSizeForCache() {
+        // the generated class is not accounted
+        return original.estimateObjectSizeForCache();
+    }
+
+    @Override
+    public String toString() {
+        return original.toString();
+    }
+
+}
@@ -56,4 +56,7 @@ public class JdbcParameterExpression implements CompiledSQLExpression {
         return this;
     }
 
+    public int getIndex() {
+        return index;
+    }
 }
@@ -0,0 +1,341 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.sql.expressions;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import herddb.utils.SystemProperties;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.codehaus.janino.SimpleCompiler;
+
+/**
+ * Generates a single Java class which evaluates a whole {@link CompiledSQLExpression} tree.
+ * <p>
+ * The generated code does not need virtual calls for each node of the tree and
+ * it handles boolean values as primitives. Nodes which are not supported are
+ * evaluated by the interpreter, and if the class cannot be generated the
+ * original expression is returned.
+ * <p>
+ * Constants and delegated nodes are not part of the generated code, so
+ * expressions with the same shape share the same class: generated classes are
+ * cached by their source code, and a query which differs only by its literals
+ * does not compile a new class.
+ */
+public final class SQLExpressionCodeGenerator {
+
+    private static final Logger LOGGER = Logger.getLogger(SQLExpressionCodeGenerator.class.getName());
+
+    private static final boolean ENABLED = SystemProperties.getBooleanSystemProperty("herddb.planner.codegen", true);
+
+    /**
+     * Simpler expressions are not worth the cost of generating a class
+     */
+    private static final int MIN_OPERATORS = SystemProperties.getIntSystemProperty("herddb.planner.codegen.minoperators", 2);
+
+    /**
+     * Maximum number of generated classes kept in memory
+     */
+    private static final int CACHE_SIZE = SystemProperties.getIntSystemProperty("herddb.planner.codegen.cachesize", 1000);
+
+    private static final String PACKAGE = "herddb.sql.expressions.generated";
+    private static final AtomicLong CLASS_ID = new AtomicLong();
+
+    /**
+     * Name of the class in the source code used as key of the cache
+     */
+    private static final String KEY_CLASS_NAME = "GeneratedExpression";
+
+    private static final Cache<String, Constructor<?>> CLASSES = CacheBuilder
+            .newBuilder()
+            .maximumSize(CACHE_SIZE)
+            .build();
+
+    private static final String ARGS = "(bean, context)";
+    private static final String PARAMS = "(DataAccessor bean, StatementEvaluationContext context)";
+
+    private SQLExpressionCodeGenerator() {
+    }
+
+    /**
+     * Generates the code for the given expression.
+     *
+     * @param expression
+     * @return a generated expression, or the expression itself if code
+     * generation is disabled or not worth
+     */
+    public static CompiledSQLExpression generate(CompiledSQLExpression expression) {
+        if (!ENABLED || expression == null || expression instanceof GeneratedSQLExpression) {
+            return expression;
+        }
+        Generator generator = new Generator();
+        Value root = generator.visit(expression);
+        if (generator.operators < MIN_OPERATORS) {
+            return expression;
+        }
+        String key = generator.buildSource(KEY_CLASS_NAME, root);
+        try {
+            Constructor<?> constructor = CLASSES.get(key, () -> compile(generator, root));
+            return (CompiledSQLExpression) constructor
+                    .newInstance(expression, generator.constants.toArray(), generator.delegates.toArray(new CompiledSQLExpression[0]));
+        } catch (ExecutionException | UncheckedExecutionException | ExecutionError err) {
+            LOGGER.log(Level.SEVERE, "Cannot generate code for " + expression + ", falling back to interpreter. Source: " + key, err.getCause());
+            return expression;
+        } catch (Exception | LinkageError err) {
+            LOGGER.log(Level.SEVERE, "Cannot generate code for " + expression + ", falling back to interpreter. Source: " + key, err);
+            return expression;
+        }
+    }
+
+    private static Constructor<?> compile(Generator generator, Value root) throws Exception {
+        String className = KEY_CLASS_NAME + CLASS_ID.incrementAndGet();
+        SimpleCompiler compiler = new SimpleCompiler();
+        compiler.setParentClassLoader(GeneratedSQLExpression.class.getClassLoader());
+        compiler.cook(generator.buildSource(className, root));
+        Class<?> clazz = compiler.getClassLoader().loadClass(PACKAGE + "." + className);
+        return clazz.getConstructor(CompiledSQLExpression.class, Object[].class, CompiledSQLExpression[].class);
+    }
+
+    private enum Kind {
+        /**
+         * Never null, a Java boolean
+         */
+        BOOLEAN,
+        /**
+         * Any value, including null
+         */
+        OBJECT
+    }
+
+    private static final class Value {
+
+        private final Kind kind;
+        private final String code;
+
+        Value(Kind kind, String code) {
+            this.kind = kind;
+            this.code = code;
+        }
+
+        String asBoolean() {
+            return kind == Kind.BOOLEAN ? code : "toBoolean(" + code + ")";
+        }
+
+        String asObject() {
+            return kind == Kind.BOOLEAN ? "(" + code + " ? Boolean.TRUE : Boolean.FALSE)" : code;
+        }
+    }
+
+    private static final class Generator {
+
+        private final List<Object> constants = new ArrayList<>();
+        private final List<CompiledSQLExpression> delegates = new ArrayList<>();
+        private final StringBuilder methods = new StringBuilder();
+        private int operators;
+        private int methodId;
+
+        Value visit(CompiledSQLExpression exp) {
+            if (exp instanceof ConstantExpression) {
+                constants.add(((ConstantExpression) exp).getValue());
+                return new Value(Kind.OBJECT, "constants[" + (constants.size() - 1) + "]");
+            }
+            if (exp instanceof AccessCurrentRowExpression) {
+                return new Value(Kind.OBJECT, "bean.get(" + ((AccessCurrentRowExpression) exp).getIndex() + ")");
+            }
+            if (exp instanceof JdbcParameterExpression) {
+                return new Value(Kind.OBJECT, "context.getJdbcParameter(" + ((JdbcParameterExpression) exp).getIndex() + ")");
+            }
+            if (exp instanceof CompiledAndExpression) {
+                CompiledAndExpression and = (CompiledAndExpression) exp;
+                return booleanMethod("return " + visit(and.left).asBoolean() + " && " + visit(and.right).asBoolean() + ";");
+            }
+            if (exp instanceof CompiledOrExpression) {
+                CompiledOrExpression or = (CompiledOrExpression) exp;
+                return booleanMethod("return " + visit(or.left).asBoolean() + " || " + visit(or.right).asBoolean() + ";");
+            }
+            if (exp instanceof CompiledMultiAndExpression) {
+                return booleanMethod("return " + join(((CompiledMultiAndExpression) exp).getOperands(), " && ") + ";");
+            }
+            if (exp instanceof CompiledMultiOrExpression) {
+                return booleanMethod("return " + join(((CompiledMultiOrExpression) exp).getOperands(), " || ") + ";");
+            }
+            if (exp instanceof CompiledNotExpression) {
+                Value inner = visit(((CompiledNotExpression) exp).getLeft());
+                if (inner.kind == Kind.BOOLEAN) {
+                    return booleanMethod("return !" + inner.code + ";");
+                }
+                // NOT NULL is NULL
+                return objectMethod("Object value = " + inner.code + ";\n"
+                        + "        if (value == null) {\n"
+                        + "            return null;\n"
+                        + "        }\n"
+                        + "        return toBoolean(value) ? Boolean.FALSE : Boolean.TRUE;");
+            }
+            if (exp instanceof CompiledParenthesisExpression) {
+                CompiledParenthesisExpression parenthesis = (CompiledParenthesisExpression) exp;
+                Value inner = visit(parenthesis.getInner());
+                if (!parenthesis.isNot()) {
+                    return inner;
+                }
+                return booleanMethod("return !" + inner.asBoolean() + ";");
+            }
+            if (exp instanceof CompiledIsNullExpression) {
+                CompiledIsNullExpression isNull = (CompiledIsNullExpression) exp;
+                return booleanMethod("return " + visit(isNull.getLeft()).asObject() + (isNull.isNot() ? " != null;" : " == null;"));
+            }
+            if (exp instanceof CompiledIsNotTrueExpression) {
+                CompiledIsNotTrueExpression isNotTrue = (CompiledIsNotTrueExpression) exp;
+                return booleanMethod("return " + (isNotTrue.isNot() ? "" : "!") + visit(isNotTrue.getLeft()).asBoolean() + ";");
+            }
+            if (exp instanceof CompiledEqualsExpression) {
+                return equality((CompiledBinarySQLExpression) exp, "fieldEqualsTo", "objectEquals");
+            }
+            if (exp instanceof CompiledNotEqualsExpression) {
+                return equality((CompiledBinarySQLExpression) exp, "fieldNotEqualsTo", "objectNotEquals");
+            }
+            if (exp instanceof CompiledGreaterThanExpression) {
+                return comparison((CompiledBinarySQLExpression) exp, "res == GREATER");
+            }
+            if (exp instanceof CompiledGreaterThanEqualsExpression) {
+                return comparison((CompiledBinarySQLExpression) exp, "res == GREATER || res == EQUALS");
+            }
+            if (exp instanceof CompiledMinorThanExpression) {
+                return comparison((CompiledBinarySQLExpression) exp, "res == MINOR");
+            }
+            if (exp instanceof CompiledMinorThanEqualsExpression) {
+                return comparison((CompiledBinarySQLExpression) exp, "res == MINOR || res == EQUALS");
+            }
+            if (exp instanceof CompiledAddExpression) {
+                return arithmetic((CompiledBinarySQLExpression) exp, "add");
+            }
+            if (exp instanceof CompiledSubtractExpression) {
+                return arithmetic((CompiledBinarySQLExpression) exp, "subtract");
+            }
+            if (exp instanceof CompiledMultiplyExpression) {
+                return arithmetic((CompiledBinarySQLExpression) exp, "multiply");
+            }
+            if (exp instanceof CompiledDivideExpression) {
+                return arithmetic((CompiledBinarySQLExpression) exp, "divide");
+            }
+            if (exp instanceof CompiledModuloExpression) {
+                return arithmetic((CompiledBinarySQLExpression) exp, "modulo");
+            }
+            // not supported, use the interpreter
+            delegates.add(exp);
+            return new Value(Kind.OBJECT, "delegates[" + (delegates.size() - 1) + "].evaluate" + ARGS);
+        }
+
+        private String join(CompiledSQLExpression[] operands, String operator) {
+            StringBuilder res = new StringBuilder();
+            for (CompiledSQLExpression operand : operands) {
+                if (res.length() > 0) {
+                    res.append(operator);
+                }
+                res.append(visit(operand).asBoolean());
+            }
+            return res.length() > 0 ? res.toString() : (operator.contains("&") ? "true" : "false");
+        }
+
+        private Value equality(CompiledBinarySQLExpression exp, String fieldFunction, String function) {
+            // NULL is never equal (or not-equal) to any other value
+            if (exp.left instanceof AccessCurrentRowExpression) {
+                int index = ((AccessCurrentRowExpression) exp.left).getIndex();
+                return booleanMethod("Object right = " + visit(exp.right).asObject() + ";\n"
+                        + "        return right != null && bean." + fieldFunction + "(" + index + ", right);");
+            }
+            String left = visit(exp.left).asObject();
+            String right = visit(exp.right).asObject();
+            return booleanMethod("Object left = " + left + ";\n"
+                    + "        if (left == null) {\n"
+                    + "            return false;\n"
+                    + "        }\n"
+                    + "        Object right = " + right + ";\n"
+                    + "        if (right == null) {\n"
+                    + "            return false;\n"
+                    + "        }\n"
+                    + "        return " + function + "(left, right);");
+        }
+
+        private Value comparison(CompiledBinarySQLExpression exp, String condition) {
+            if (exp.left instanceof AccessCurrentRowExpression) {
+                int index = ((AccessCurrentRowExpression) exp.left).getIndex();
+                return booleanMethod("Object right = " + visit(exp.right).asObject() + ";\n"
+                        + "        if (right == null) {\n"
+                        + "            return false;\n"
+                        + "        }\n"
+                        + "        CompareResult res = bean.fieldCompareTo(" + index + ", right);\n"
+                        + "        return " + condition + ";");
+            }
+            String left = visit(exp.left).asObject();
+            String right = visit(exp.right).asObject();
+            return booleanMethod("CompareResult res = compareConsiderNull(" + left + ", " + right + ");\n"
+                    + "        return " + condition + ";");
+        }
+
+        private Value arithmetic(CompiledBinarySQLExpression exp, String function) {
+            String left = visit(exp.left).asObject();
+            String right = visit(exp.right).asObject();
+            return objectMethod("return " + function + "(" + left + ", " + right + ");");
+        }
+
+        private Value booleanMethod(String body) {
+            return method(Kind.BOOLEAN, "boolean", body);
+        }
+
+        private Value objectMethod(String body) {
+            return method(Kind.OBJECT, "Object", body);
+        }
+
+        private Value method(Kind kind, String returnType, String body) {
+            operators++;
+            String name = "e" + (methodId++);
+            methods.append("    private ").append(returnType).append(' ').append(name).append(PARAMS).append(" {\n")
+                    .append("        ").append(body).append('\n')
+                    .append("    }\n\n");
+            return new Value(kind, name + ARGS);
+        }
+
+        String buildSource(String className, Value root) {
+            return "package " + PACKAGE + ";\n"
+                    + "import herddb.model.StatementEvaluationContext;\n"
+                    + "import herddb.sql.expressions.CompiledSQLExpression;\n"
+                    + "import herddb.sql.expressions.GeneratedSQLExpression;\n"
+                    + "import herddb.utils.DataAccessor;\n"
+                    + "import herddb.utils.SQLRecordPredicateFunctions.CompareResult;\n"
+                    + "public final class " + className + " extends GeneratedSQLExpression {\n\n"
+                    + "    public " + className + "(CompiledSQLExpression original, Object[] constants, CompiledSQLExpression[] delegates) {\n"
+                    + "        super(original, constants, delegates);\n"
+                    + "    }\n\n"
+                    + "    public Object evaluate" + PARAMS + " {\n"
+                    + "        return " + root.asObject() + ";\n"
+                    + "    }\n\n"
+                    + methods
+                    + "}\n";
+        }
+    }
+}
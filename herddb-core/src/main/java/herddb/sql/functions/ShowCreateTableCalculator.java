@@ -82,6 +82,12 @@ public class ShowCreateTableCalculator {
         }
 
         sb.append(joiner.toString());
+        if (t.valueFormat != Table.VALUE_FORMAT_V1) {
+            sb.append(" VALUE_FORMAT=").append(t.valueFormat);
+        }
+        if (t.pageCompression == Table.PAGE_COMPRESSION_LZ4) {
+            sb.append(" PAGE_COMPRESSION=LZ4");
+        }
         return sb.toString();
     }
 
@@ -0,0 +1,153 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.storage;
+
+import herddb.model.Record;
+import herddb.utils.ByteArrayCursor;
+import herddb.utils.Bytes;
+import herddb.utils.ExtendedDataOutputStream;
+import herddb.utils.VisibleByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+
+/**
+ * Layout of the records of a data page.
+ * <ul>
+ * <li>version 1, flags 0: numRecords (int), then key and value of each
+ * record
+ * <li>version 2, flags = codec: numRecords (int), uncompressed size (int),
+ * compressed size (int), then the compressed block, which contains key and
+ * value of each record as in version 1
+ * </ul>
+ * In both cases the page ends with the hash of all of the preceding bytes.
+ */
+public final class DataPageCodec {
+
+    public static final int FORMAT_V1 = 1;
+    public static final int FORMAT_V2 = 2;
+
+    public static final int CODEC_NONE = 0;
+    public static final int CODEC_LZ4 = 1;
+
+    private static final LZ4Factory LZ4 = LZ4Factory.fastestInstance();
+
+    private DataPageCodec() {
+    }
+
+    public static boolean isSupported(long version, long flags) {
+        return (version == FORMAT_V1 && flags == CODEC_NONE)
+                || (version == FORMAT_V2 && flags == CODEC_LZ4);
+    }
+
+    /**
+     * Serializes the records as in the body of a version 1 page, without the
+     * number of records.
+     */
+    public static VisibleByteArrayOutputStream serializeRecords(Collection<Record> records) throws IOException {
+        VisibleByteArrayOutputStream buffer = new VisibleByteArrayOutputStream(records.size() * 64);
+        try (ExtendedDataOutputStream dataOutput = new ExtendedDataOutputStream(buffer)) {
+            for (Record record : records) {
+                dataOutput.writeArray(record.key);
+                dataOutput.writeArray(record.value);
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * Writes the body of a version 2 page
+     *
+     * @param numRecords number of records
+     * @param raw records, see {@link #serializeRecords(java.util.Collection)}
+     * @param dataOutput
+     * @return the size of the compressed block
+     * @throws IOException
+     */
+    public static int writeCompressedRecords(int numRecords, VisibleByteArrayOutputStream raw, ExtendedDataOutputStream dataOutput) throws IOException {
+        LZ4Compressor compressor = LZ4.fastCompressor();
+        int rawLength = raw.size();
+        byte[] compressed = new byte[compressor.maxCompressedLength(rawLength)];
+        int compressedLength = compressor.compress(raw.getBuffer(), 0, rawLength, compressed, 0, compressed.length);
+        dataOutput.writeInt(numRecords);
+        dataOutput.writeInt(rawLength);
+        dataOutput.writeInt(compressedLength);
+        dataOutput.write(compressed, 0, compressedLength);
+        return compressedLength;
+    }
+
+    /**
+     * Compresses records serialized with
+     * {@link #serializeRecords(java.util.Collection)}, see
+     * {@link #decompressRecords(int, byte[], int, int, int)}
+     */
+    public static byte[] compress(VisibleByteArrayOutputStream raw) {
+        LZ4Compressor compressor = LZ4.fastCompressor();
+        int rawLength = raw.size();
+        byte[] compressed = new byte[compressor.maxCompressedLength(rawLength)];
+        int compressedLength = compressor.compress(raw.getBuffer(), 0, rawLength, compressed, 0, compressed.length);
+        return Arrays.copyOf(compressed, compressedLength);
+    }
+
+    /**
+     * Reads the body of a version 2 page, the cursor is positioned after the
+     * compressed block.
+     */
+    public static List<Record> readCompressedRecords(ByteArrayCursor dataIn) throws IOException {
+        int numRecords = dataIn.readInt();
+        int rawLength = dataIn.readInt();
+        int compressedLength = dataIn.readInt();
+        int offset = dataIn.getPosition();
+        dataIn.skip(compressedLength);
+        return decompressRecords(numRecords, dataIn.getArray(), offset, compressedLength, rawLength);
+    }
+
+    public static List<Record> decompressRecords(int numRecords, byte[] compressed, int offset, int compressedLength, int rawLength) throws IOException {
+        if (numRecords < 0 || rawLength < 0) {
+            throw new IOException("corrupted data page, numRecords " + numRecords + ", size " + rawLength);
+        }
+        byte[] raw = new byte[rawLength];
+        try {
+            // the hash of the page is verified after decoding the records, so
+            // we must not trust the compressed block
+            int size = LZ4.safeDecompressor().decompress(compressed, offset, compressedLength, raw, 0, rawLength);
+            if (size != rawLength) {
+                throw new IOException("corrupted data page, uncompressed size " + size + " <> " + rawLength);
+            }
+        } catch (LZ4Exception err) {
+            throw new IOException("corrupted data page: " + err, err);
+        }
+        List<Record> result = new ArrayList<>(numRecords);
+        try (ByteArrayCursor dataIn = ByteArrayCursor.wrap(raw)) {
+            for (int i = 0; i < numRecords; i++) {
+                Bytes key = dataIn.readBytesNoCopy();
+                Bytes value = dataIn.readBytesNoCopy();
+                result.add(new Record(key, value));
+            }
+        }
+        return result;
+    }
+}
@@ -24,6 +24,7 @@ import herddb.core.MemoryManager;
 import herddb.core.PostCheckpointAction;
 import herddb.core.RecordSetFactory;
 import herddb.index.KeyToPageIndex;
+import herddb.index.LongKeyToPageIndex;
 import herddb.log.LogSequenceNumber;
 import herddb.model.Index;
 import herddb.model.Record;
@@ -38,6 +39,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -51,6 +53,9 @@ public abstract class DataStorageManager implements AutoCloseable {
 
     private static final Logger LOG = Logger.getLogger(DataStorageManager.class.getName());
 
+    private final LongAdder compressedPagesRawBytes = new LongAdder();
+    private final LongAdder compressedPagesBytes = new LongAdder();
+
     /**
      * Load a data page in memory
      *
@@ -116,6 +121,55 @@ public abstract class DataStorageManager implements AutoCloseable {
     public abstract void writePage(String tableSpace, String uuid, long pageId, Collection<Record> newPage)
             throws DataStorageManagerException;
 
+    /**
+     * Write a page on disk, using the given compression if supported by this
+     * DataStorageManager
+     *
+     * @param tableSpace
+     * @param uuid
+     * @param pageId
+     * @param newPage
+     * @param pageCompression see {@link Table#PAGE_COMPRESSION_LZ4}
+     * @throws herddb.storage.DataStorageManagerException
+     */
+    public void writePage(String tableSpace, String uuid, long pageId, Collection<Record> newPage, int pageCompression)
+            throws DataStorageManagerException {
+        writePage(tableSpace, uuid, pageId, newPage);
+    }
+
+    /**
+     * Records the size of a compressed page
+     *
+     * @param rawBytes size of the records before compression
+     * @param compressedBytes size of the compressed block
+     */
+    protected void pageCompressed(long rawBytes, long compressedBytes) {
+        compressedPagesRawBytes.add(rawBytes);
+        compressedPagesBytes.add(compressedBytes);
+    }
+
+    public long getCompressedPagesRawBytes() {
+        return compressedPagesRawBytes.sum();
+    }
+
+    public long getCompressedPagesBytes() {
+        return compressedPagesBytes.sum();
+    }
+
+    /**
+     * Ratio between the size of the records and the size of the compressed
+     * blocks, for all the compressed pages written since the boot.
+     *
+     * @return the compression ratio, 1 if no page has been compressed
+     */
+    public double getPageCompressionRatio() {
+        long compressed = compressedPagesBytes.sum();
+        if (compressed <= 0) {
+            return 1;
+        }
+        return (double) compressedPagesRawBytes.sum() / compressed;
+    }
+
     @FunctionalInterface
     public interface DataWriter {
 
@@ -247,6 +301,18 @@ public abstract class DataStorageManager implements AutoCloseable {
     public abstract KeyToPageIndex createKeyToPageMap(String tablespace, String name, MemoryManager memoryManager)
             throws DataStorageManagerException;
 
+    /**
+     * Creates the primary key index of a table, following the kind of index
+     * recorded in the table, see {@link Table#KEYTOPAGE_INDEX_LONG}
+     */
+    public KeyToPageIndex createKeyToPageMap(String tablespace, Table table, MemoryManager memoryManager)
+            throws DataStorageManagerException {
+        if (table.keyToPageIndex == Table.KEYTOPAGE_INDEX_LONG) {
+            return new LongKeyToPageIndex(tablespace, table, this);
+        }
+        return createKeyToPageMap(tablespace, table.uuid, memoryManager);
+    }
+
     public abstract void releaseKeyToPageMap(String tablespace, String name, KeyToPageIndex index);
 
     public abstract RecordSetFactory createRecordSetFactory();
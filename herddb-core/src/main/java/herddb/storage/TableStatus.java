@@ -23,6 +23,7 @@ package herddb.storage;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import herddb.core.PageSet.DataPageMetaData;
 import herddb.log.LogSequenceNumber;
+import herddb.model.TableStatistics;
 import herddb.utils.Bytes;
 import herddb.utils.ExtendedDataInputStream;
 import herddb.utils.ExtendedDataOutputStream;
@@ -47,6 +48,13 @@ public class TableStatus {
     public final byte[] nextPrimaryKeyValue;
     public final Map<Long, DataPageMetaData> activePages;
     public final long nextPageId;
+    /**
+     * Column statistics computed by ANALYZE TABLE, null if the table has never
+     * been analyzed.
+     */
+    public final TableStatistics statistics;
+
+    private static final long FLAG_HAS_STATISTICS = 1;
 
     public static TableStatus buildTableStatusForNewCreatedTable(String tableUuid) {
         return new TableStatus(tableUuid, LogSequenceNumber.START_OF_TIME,
@@ -56,17 +64,25 @@ public class TableStatus {
     public TableStatus(
             String tableName, LogSequenceNumber sequenceNumber, byte[] nextPrimaryKeyValue, long nextPageId,
             Map<Long, DataPageMetaData> activePages
+    ) {
+        this(tableName, sequenceNumber, nextPrimaryKeyValue, nextPageId, activePages, null);
+    }
+
+    public TableStatus(
+            String tableName, LogSequenceNumber sequenceNumber, byte[] nextPrimaryKeyValue, long nextPageId,
+            Map<Long, DataPageMetaData> activePages, TableStatistics statistics
     ) {
         this.tableName = tableName;
         this.sequenceNumber = sequenceNumber;
         this.nextPrimaryKeyValue = nextPrimaryKeyValue;
         this.activePages = activePages;
         this.nextPageId = nextPageId;
+        this.statistics = statistics;
     }
 
     public void serialize(ExtendedDataOutputStream output) throws IOException {
         output.writeVLong(1); // version
-        output.writeVLong(0); // flags for future implementations
+        output.writeVLong(statistics != null ? FLAG_HAS_STATISTICS : 0); // flags
         output.writeUTF(tableName);
         output.writeLong(sequenceNumber.ledgerId);
         output.writeLong(sequenceNumber.offset);
@@ -80,12 +96,15 @@ public class TableStatus {
             /* metadata */
             active.getValue().serialize(output);
         }
+        if (statistics != null) {
+            statistics.serialize(output);
+        }
     }
 
     public static TableStatus deserialize(ExtendedDataInputStream in) throws IOException {
         long version = in.readVLong(); // version
-        long flags = in.readVLong(); // flags for future implementations
-        if (version != 1 || flags != 0) {
+        long flags = in.readVLong(); // flags
+        if (version != 1 || (flags & ~FLAG_HAS_STATISTICS) != 0) {
             throw new DataStorageManagerException("corrupted table status");
         }
         String tableName = in.readUTF();
@@ -99,7 +118,11 @@ public class TableStatus {
         for (int i = 0; i < numActivePages; i++) {
             activePages.put(in.readVLong(), DataPageMetaData.deserialize(in));
         }
-        return new TableStatus(tableName, new LogSequenceNumber(ledgerId, offset), nextPrimaryKeyValue, nextPageId, activePages);
+        TableStatistics statistics = null;
+        if ((flags & FLAG_HAS_STATISTICS) != 0) {
+            statistics = TableStatistics.deserialize(in);
+        }
+        return new TableStatus(tableName, new LogSequenceNumber(ledgerId, offset), nextPrimaryKeyValue, nextPageId, activePages, statistics);
     }
 
     @Override
@@ -146,6 +169,9 @@ public class TableStatus {
         if (!Arrays.equals(this.nextPrimaryKeyValue, other.nextPrimaryKeyValue)) {
             return false;
         }
+        if (!Objects.equals(this.statistics, other.statistics)) {
+            return false;
+        }
         return Objects.equals(this.activePages, other.activePages);
     }
 
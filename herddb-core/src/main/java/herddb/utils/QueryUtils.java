@@ -81,7 +81,7 @@ public class QueryUtils {
      * Prefix for INDEX CREATE before tablespace.tablename
      */
     private static final String PREFIX_INDEX_CREATE =
-            "(?i)create\\W+(?:(" + Index.TYPE_HASH + "|" + Index.TYPE_BRIN + ")\\W+)?index\\W+.+\\W+on\\W+";
+            "(?i)create\\W+(?:(" + Index.TYPE_HASH + "|" + Index.TYPE_BRIN + "|" + Index.TYPE_BLINK + ")\\W+)?index\\W+.+\\W+on\\W+";
 
     /**
      * Prefix for INDEX DROP before tablespace.tablename
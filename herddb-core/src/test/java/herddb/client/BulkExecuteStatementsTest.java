@@ -0,0 +1,122 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import herddb.model.TableSpace;
+import herddb.model.TransactionContext;
+import herddb.server.Server;
+import herddb.server.ServerConfiguration;
+import herddb.server.StaticClientSideMetadataProvider;
+import herddb.utils.RawString;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Batches of statements executed with {@link ServerConfiguration#PROPERTY_BULK_EXECUTE_STATEMENTS}
+ */
+public class BulkExecuteStatementsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void test() throws Exception {
+        Path baseDir = folder.newFolder().toPath();
+        ServerConfiguration serverConfiguration = new ServerConfiguration(baseDir);
+        serverConfiguration.set(ServerConfiguration.PROPERTY_BULK_EXECUTE_STATEMENTS, true);
+        try (Server server = new Server(serverConfiguration)) {
+            server.start();
+            server.waitForStandaloneBoot();
+            ClientConfiguration clientConfiguration = new ClientConfiguration(folder.newFolder().toPath());
+            try (HDBClient client = new HDBClient(clientConfiguration);
+                 HDBConnection connection = client.openConnection()) {
+                client.setClientSideMetadataProvider(new StaticClientSideMetadataProvider(server));
+                assertTrue(connection.waitForTableSpace(TableSpace.DEFAULT, Integer.MAX_VALUE));
+
+                connection.executeUpdate(TableSpace.DEFAULT,
+                        "CREATE TABLE mytable (id string primary key, n1 long, n2 integer)", 0, false, true,
+                        Collections.emptyList());
+
+                List<List<Object>> batch = new ArrayList<>();
+                for (int i = 0; i < 1000; i++) {
+                    batch.add(Arrays.asList("k" + i, i, i));
+                }
+                List<DMLResult> results = connection.executeUpdates(TableSpace.DEFAULT,
+                        "INSERT INTO mytable (id,n1,n2) values(?,?,?)", TransactionContext.NOTRANSACTION_ID,
+                        true, true, batch);
+                assertEquals(1000, results.size());
+                for (int i = 0; i < 1000; i++) {
+                    DMLResult result = results.get(i);
+                    assertEquals(1, result.updateCount);
+                    assertEquals(0, result.transactionId);
+                    assertEquals(RawString.of("k" + i), result.key);
+                    assertEquals(Long.valueOf(i), result.newvalue.get(RawString.of("n1")));
+                }
+
+                // the batch is atomic
+                try {
+                    connection.executeUpdates(TableSpace.DEFAULT,
+                            "INSERT INTO mytable (id,n1,n2) values(?,?,?)", TransactionContext.NOTRANSACTION_ID,
+                            false, true, Arrays.asList(Arrays.asList("new", 1, 1), Arrays.asList("k5", 1, 1)));
+                    fail();
+                } catch (HDBException expected) {
+                }
+                assertEquals(0, connection.executeScan(TableSpace.DEFAULT, "SELECT * FROM mytable WHERE id='new'",
+                        true, Collections.emptyList(), 0, 0, 10, true).consume().size());
+
+                long tx = connection.beginTransaction(TableSpace.DEFAULT);
+                results = connection.executeUpdates(TableSpace.DEFAULT,
+                        "UPDATE mytable set n2=? WHERE id=?", tx, false, true,
+                        Arrays.asList(
+                                Arrays.asList(-1, "k1"),
+                                Arrays.asList(-1, "k2"),
+                                Arrays.asList(-1, "not_exists")));
+                assertEquals(1, results.get(0).updateCount);
+                assertEquals(1, results.get(1).updateCount);
+                assertEquals(0, results.get(2).updateCount);
+                assertEquals(tx, results.get(2).transactionId);
+                connection.commitTransaction(TableSpace.DEFAULT, tx);
+
+                List<Map<String, Object>> updated = connection.executeScan(TableSpace.DEFAULT, "SELECT * FROM mytable WHERE n2=-1",
+                        true, Collections.emptyList(), 0, 0, 10, true).consume();
+                assertEquals(2, updated.size());
+
+                // statements which are not simple DML are executed one by one
+                results = connection.executeUpdates(TableSpace.DEFAULT,
+                        "INSERT INTO mytable (id,n1,n2) SELECT ?, n1, n2 FROM mytable WHERE id=?",
+                        TransactionContext.NOTRANSACTION_ID, false, true,
+                        Arrays.asList(Arrays.asList("copy1", "k1"), Arrays.asList("copy2", "k2")));
+                assertEquals(1, results.get(0).updateCount);
+                assertEquals(1, results.get(1).updateCount);
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed to Diennea S.r.l. under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Diennea S.r.l. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package herddb.cluster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import herddb.log.LogEntry;
+import herddb.log.LogEntryFactory;
+import herddb.log.LogEntryType;
+import herddb.log.LogSequenceNumber;
+import herddb.utils.Bytes;
+import io.netty.buffer.ByteBuf;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class LogEntryBatchTest {
+
+    @Test
+    public void testFraming() throws Exception {
+        List<LogEntry> entries = new ArrayList<>();
+        entries.add(LogEntryFactory.beginTransaction(1));
+        entries.add(new LogEntry(System.currentTimeMillis(), LogEntryType.INSERT, 1, "t1",
+                Bytes.from_string("key"), Bytes.from_string("value")));
+        entries.add(LogEntryFactory.noop());
+        entries.add(LogEntryFactory.commitTransaction(1));
+        List<ByteBuf> serialized = new ArrayList<>();
+        for (LogEntry entry : entries) {
+            serialized.add(entry.serializeAsByteBuf());
+        }
+        ByteBuf frame = LogEntryBatch.frame(serialized);
+        try {
+            for (ByteBuf buf : serialized) {
+                assertEquals(0, buf.refCnt());
+            }
+            List<LogEntry> read = LogEntryBatch.read(frame);
+            assertEquals(entries.size(), read.size());
+            for (int i = 0; i < entries.size(); i++) {
+                assertEquals(entries.get(i).type, read.get(i).type);
+                assertEquals(entries.get(i).transactionId, read.get(i).transactionId);
+                assertEquals(entries.get(i).timestamp, read.get(i).timestamp);
+                assertEquals(entries.get(i).tableName, read.get(i).tableName);
+                assertEquals(entries.get(i).key, read.get(i).key);
+                assertEquals(entries.get(i).value, read.get(i).value);
+            }
+            // the buffer can be read again
+            assertEquals(entries.size(), LogEntryBatch.read(frame).size());
+        } finally {
+            frame.release();
+        }
+    }
+
+    @Test
+    public void testOffsets() throws Exception {
+        LogSequenceNumber previous = LogSequenceNumber.START_OF_TIME;
+        for (long entryId = 0; entryId < 5; entryId++) {
+            for (int position : new int[]{0, 1, 2, LogEntryBatch.MAX_ENTRIES_PER_BATCH - 1}) {
+                long offset = LogEntryBatch.toOffset(entryId, position);
+                assertEquals(entryId, LogEntryBatch.toEntryId(offset));
+                assertEquals(position, LogEntryBatch.toPosition(offset));
+                LogSequenceNumber current = new LogSequenceNumber(1, offset);
+                assertTrue(current.after(previous));
+                previous = current;
+            }
+        }
+        assertEquals(-1, LogEntryBatch.toEntryId(-1));
+    }
+
+    @Test
+    public void testLedgerMetadata() throws Exception {
+        Map<String, byte[]> metadata = new HashMap<>();
+        assertFalse(LogEntryBatch.isBatchLedger(Collections.emptyMap()));
+        metadata.put(LogEntryBatch.METADATA_ENTRY_FORMAT, "other".getBytes(StandardCharsets.UTF_8));
+        assertFalse(LogEntryBatch.isBatchLedger(metadata));
+        metadata.put(LogEntryBatch.METADATA_ENTRY_FORMAT, LogEntryBatch.ENTRY_FORMAT_BATCH.getBytes(StandardCharsets.UTF_8));
+        assertTrue(LogEntryBatch.isBatchLedger(metadata));
+    }
+}
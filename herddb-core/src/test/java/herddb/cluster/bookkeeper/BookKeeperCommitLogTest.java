@@ -27,6 +27,7 @@ import static org.junit.Assert.assertTrue;
 import herddb.cluster.BookkeeperCommitLog;
 import herddb.cluster.BookkeeperCommitLogManager;
 import herddb.cluster.ZookeeperMetadataStorageManager;
+import herddb.log.CommitLog;
 import herddb.log.CommitLogResult;
 import herddb.log.LogEntry;
 import herddb.log.LogEntryFactory;
@@ -217,6 +218,115 @@ public class BookKeeperCommitLogTest {
         }
     }
 
+    @Test
+    public void testGroupWrite() throws Exception {
+        final String tableSpaceUUID = UUID.randomUUID().toString();
+        final String name = TableSpace.DEFAULT;
+        final String nodeid = "nodeid";
+        ServerConfiguration serverConfiguration = new ServerConfiguration();
+        try (ZookeeperMetadataStorageManager man = new ZookeeperMetadataStorageManager(testEnv.getAddress(),
+                testEnv.getTimeout(), testEnv.getPath());
+                BookkeeperCommitLogManager logManager = new BookkeeperCommitLogManager(man, serverConfiguration, NullStatsLogger.INSTANCE)) {
+            man.start();
+            logManager.start();
+
+            List<LogSequenceNumber> written = new ArrayList<>();
+            try (BookkeeperCommitLog writer = logManager.createCommitLog(tableSpaceUUID, name, nodeid);) {
+                writer.setGroupWrite(true);
+                writer.startWriting(1);
+                List<CommitLogResult> results = new ArrayList<>();
+                for (int i = 0; i < 100; i++) {
+                    results.add(writer.log(LogEntryFactory.beginTransaction(i), true));
+                }
+                for (CommitLogResult res : results) {
+                    written.add(res.getLogSequenceNumber());
+                }
+                // writes were coalesced
+                assertTrue(writer.getWriter().getOut().getLastAddConfirmed() < 100);
+
+                // switch to the legacy layout, the log will contain both
+                writer.setGroupWrite(false);
+                writer.rollNewLedger();
+                written.add(writer.log(LogEntryFactory.beginTransaction(100), true).getLogSequenceNumber());
+                writer.setGroupWrite(true);
+                writer.rollNewLedger();
+                written.add(writer.log(LogEntryFactory.beginTransaction(101), true).getLogSequenceNumber());
+            }
+            assertEquals(written.size(), new HashSet<>(written).size());
+            for (int i = 1; i < written.size(); i++) {
+                assertTrue(written.get(i).after(written.get(i - 1)));
+            }
+
+            try (BookkeeperCommitLog reader = logManager.createCommitLog(tableSpaceUUID, name, nodeid);) {
+                List<Map.Entry<LogSequenceNumber, LogEntry>> list = new ArrayList<>();
+                reader.recovery(LogSequenceNumber.START_OF_TIME, (lsn, entry) -> {
+                    if (entry.type != LogEntryType.NOOP) {
+                        list.add(new AbstractMap.SimpleImmutableEntry<>(lsn, entry));
+                    }
+                }, false);
+                assertEquals(written.size(), list.size());
+                for (int i = 0; i < written.size(); i++) {
+                    assertEquals(written.get(i), list.get(i).getKey());
+                    assertEquals(i, list.get(i).getValue().transactionId);
+                }
+                assertEquals(written.get(written.size() - 1), reader.getLastSequenceNumber());
+            }
+
+            // start from the middle of a batch
+            LogSequenceNumber snapshot = written.get(50);
+            try (BookkeeperCommitLog reader = logManager.createCommitLog(tableSpaceUUID, name, nodeid);) {
+                List<Long> transactions = new ArrayList<>();
+                reader.recovery(snapshot, (lsn, entry) -> {
+                    if (entry.type != LogEntryType.NOOP) {
+                        transactions.add(entry.transactionId);
+                    }
+                }, false);
+                assertEquals(written.size() - 51, transactions.size());
+                assertEquals(51L, transactions.get(0).longValue());
+            }
+
+            // followers read both layouts
+            try (BookkeeperCommitLog follower = logManager.createCommitLog(tableSpaceUUID, name, nodeid);) {
+                List<LogSequenceNumber> followed = new ArrayList<>();
+                LogSequenceNumber[] position = {LogSequenceNumber.START_OF_TIME};
+                try (CommitLog.FollowerContext context = follower.startFollowing(position[0])) {
+                    for (int i = 0; i < 100 && followed.size() < written.size(); i++) {
+                        follower.followTheLeader(position[0], (lsn, entry) -> {
+                            position[0] = lsn;
+                            if (entry.type != LogEntryType.NOOP) {
+                                followed.add(lsn);
+                            }
+                            return true;
+                        }, context);
+                    }
+                }
+                assertEquals(written, followed);
+            }
+
+            // followers start from the middle of a batch, consecutive offsets are in the same entry
+            int middle = 0;
+            while (written.get(middle + 1).offset != written.get(middle).offset + 1) {
+                middle++;
+            }
+            try (BookkeeperCommitLog follower = logManager.createCommitLog(tableSpaceUUID, name, nodeid);) {
+                List<LogSequenceNumber> followed = new ArrayList<>();
+                LogSequenceNumber[] position = {written.get(middle)};
+                try (CommitLog.FollowerContext context = follower.startFollowing(position[0])) {
+                    for (int i = 0; i < 100 && followed.size() < written.size() - middle - 1; i++) {
+                        follower.followTheLeader(position[0], (lsn, entry) -> {
+                            position[0] = lsn;
+                            if (entry.type != LogEntryType.NOOP) {
+                                followed.add(lsn);
+                            }
+                            return true;
+                        }, context);
+                    }
+                }
+                assertEquals(written.subList(middle + 1, written.size()), followed);
+            }
+        }
+    }
+
     @Test
     public void testBookieFailureSyncWrites() throws Exception {
         final String tableSpaceUUID = UUID.randomUUID().toString();
@@ -21,22 +21,28 @@ package herddb.codec;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import herddb.model.Column;
 import herddb.model.ColumnTypes;
 import herddb.model.ColumnsList;
 import herddb.model.Record;
 import herddb.model.StatementExecutionException;
 import herddb.model.Table;
+import herddb.model.commands.AlterTableStatement;
 import herddb.utils.Bytes;
 import herddb.utils.DataAccessor;
 import herddb.utils.ExtendedDataOutputStream;
 import herddb.utils.MapDataAccessor;
 import herddb.utils.RawString;
+import herddb.utils.SQLRecordPredicateFunctions.CompareResult;
 import herddb.utils.VisibleByteArrayOutputStream;
 import java.nio.charset.StandardCharsets;
 import java.sql.Timestamp;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.TimeZone;
@@ -67,6 +73,111 @@ public class RecordSerializerTest {
         Map<String, Object> toBean = RecordSerializer.toBean(record, table);
     }
 
+    @Test
+    public void testValueFormatV2() {
+        Table.Builder builder = Table.builder()
+                .name("t1")
+                .valueFormat(Table.VALUE_FORMAT_V2)
+                .column("pk", ColumnTypes.STRING);
+        for (int i = 0; i < 40; i++) {
+            builder.column("c" + i, i % 2 == 0 ? ColumnTypes.STRING : ColumnTypes.LONG);
+        }
+        Table table = builder.primaryKey("pk").build();
+        Object[] values = new Object[2 + 2 * 39];
+        values[0] = "pk";
+        values[1] = "key";
+        int p = 2;
+        // leave c0 null
+        for (int i = 1; i < 40; i++) {
+            values[p++] = "c" + i;
+            values[p++] = i % 2 == 0 ? (Object) ("v" + i) : (Object) Long.valueOf(i);
+        }
+        Record record = RecordSerializer.makeRecord(table, values);
+        assertTrue(RecordSerializer.isValueFormatV2(record.value));
+
+        DataAccessor accessor = RecordSerializer.buildRawDataAccessor(record, table);
+        assertEquals(RawString.of("key"), accessor.get(0));
+        assertNull(accessor.get(1));
+        assertNull(accessor.get("c0"));
+        assertEquals(39L, accessor.get("c39"));
+        assertEquals(RawString.of("v30"), accessor.get(31));
+        assertTrue(accessor.fieldEqualsTo(31, "v30"));
+        assertFalse(accessor.fieldEqualsTo(31, "v29"));
+        assertEquals(CompareResult.NULL, accessor.fieldCompareTo(1, "foo"));
+        assertEquals(CompareResult.GREATER, accessor.fieldCompareTo(40, 10L));
+
+        Map<String, Object> bean = RecordSerializer.toBean(record, table);
+        assertEquals(40, bean.size());
+        assertEquals(RawString.of("v2"), bean.get("c2"));
+        Map<String, Object> fromForEach = new HashMap<>();
+        accessor.forEach(fromForEach::put);
+        assertEquals(bean, fromForEach);
+    }
+
+    @Test
+    public void testValueFormatV2ReadsV1RecordsAndDroppedColumns() {
+        Table tableV1 = Table.builder()
+                .name("t1")
+                .column("pk", ColumnTypes.STRING)
+                .column("a", ColumnTypes.STRING)
+                .column("b", ColumnTypes.INTEGER)
+                .column("c", ColumnTypes.LONG)
+                .primaryKey("pk")
+                .build();
+        Record recordV1 = RecordSerializer.makeRecord(tableV1, "pk", "k1", "a", "x", "b", 1, "c", 2L);
+        assertFalse(RecordSerializer.isValueFormatV2(recordV1.value));
+
+        Table tableV2 = Table.builder()
+                .cloning(tableV1)
+                .valueFormat(Table.VALUE_FORMAT_V2)
+                .build();
+        Record recordV2 = RecordSerializer.makeRecord(tableV2, "pk", "k2", "a", "y", "b", 3, "c", 4L);
+        assertTrue(RecordSerializer.isValueFormatV2(recordV2.value));
+
+        // records of both formats live together in the same table
+        assertEquals(RawString.of("x"), RecordSerializer.buildRawDataAccessor(recordV1, tableV2).get("a"));
+        assertEquals(2L, RecordSerializer.buildRawDataAccessor(recordV1, tableV2).get("c"));
+        assertEquals(RawString.of("y"), RecordSerializer.buildRawDataAccessor(recordV2, tableV2).get("a"));
+        assertEquals(4L, RecordSerializer.buildRawDataAccessor(recordV2, tableV2).get("c"));
+
+        AlterTableStatement dropB = new AlterTableStatement(Collections.emptyList(), Collections.emptyList(),
+                Arrays.asList("b"), null, "t1", tableV2.tablespace, null);
+        Table altered = tableV2.applyAlterTable(dropB);
+        assertEquals(Table.VALUE_FORMAT_V2, altered.valueFormat);
+        Map<String, Object> bean = RecordSerializer.toBean(recordV2, altered);
+        assertEquals(3, bean.size());
+        assertEquals(4L, bean.get("c"));
+        assertEquals(4L, RecordSerializer.buildRawDataAccessor(recordV2, altered).get(2));
+
+        // value format is persisted
+        Table deserialized = Table.deserialize(altered.serialize());
+        assertEquals(altered, deserialized);
+        assertEquals(Table.VALUE_FORMAT_V2, deserialized.valueFormat);
+        assertEquals(Table.VALUE_FORMAT_V1, Table.deserialize(tableV1.serialize()).valueFormat);
+    }
+
+    @Test
+    public void testValueFormatV2WithLargeValues() {
+        Table table = Table.builder()
+                .name("t1")
+                .valueFormat(Table.VALUE_FORMAT_V2)
+                .column("pk", ColumnTypes.STRING)
+                .column("a", ColumnTypes.BYTEARRAY)
+                .column("b", ColumnTypes.LONG)
+                .primaryKey("pk")
+                .build();
+        byte[] large = new byte[100000];
+        large[large.length - 1] = 8;
+        Record record = RecordSerializer.makeRecord(table, "pk", "k1", "a", large, "b", 5L);
+        DataAccessor accessor = RecordSerializer.buildRawDataAccessor(record, table);
+        assertEquals(5L, accessor.get("b"));
+        assertArrayEquals(large, (byte[]) accessor.get("a"));
+
+        Record onlyKey = RecordSerializer.makeRecord(table, "pk", "k1");
+        assertEquals(0, onlyKey.value.getLength());
+        assertNull(RecordSerializer.buildRawDataAccessor(onlyKey, table).get("b"));
+    }
+
     @Test
     public void testConvert() {
         testTimestamp("2015-03-29 01:00:00", "UTC", 1427590800000L);
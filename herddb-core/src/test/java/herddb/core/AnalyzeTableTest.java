@@ -0,0 +1,173 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.core;
+
+import static herddb.core.TestUtils.execute;
+import static herddb.core.TestUtils.executeUpdate;
+import static herddb.core.TestUtils.scan;
+import static herddb.model.TransactionContext.NO_TRANSACTION;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import herddb.file.FileCommitLogManager;
+import herddb.file.FileDataStorageManager;
+import herddb.file.FileMetadataStorageManager;
+import herddb.model.ColumnStatistics;
+import herddb.model.DataScanner;
+import herddb.model.StatementEvaluationContext;
+import herddb.model.TableDoesNotExistException;
+import herddb.model.TableStatistics;
+import herddb.model.commands.CreateTableSpaceStatement;
+import herddb.utils.DataAccessor;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests about ANALYZE TABLE and column statistics
+ */
+public class AnalyzeTableTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void analyzeTableTest() throws Exception {
+        Path dataPath = folder.newFolder("data").toPath();
+        Path logsPath = folder.newFolder("logs").toPath();
+        Path metadataPath = folder.newFolder("metadata").toPath();
+        Path tmpDir = folder.newFolder("tmpDir").toPath();
+        String nodeId = "localhost";
+        int testSize = 1000;
+        TableStatistics statistics;
+        try (DBManager manager = new DBManager(nodeId,
+                new FileMetadataStorageManager(metadataPath),
+                new FileDataStorageManager(dataPath),
+                new FileCommitLogManager(logsPath),
+                tmpDir, null)) {
+            manager.start();
+            CreateTableSpaceStatement st1 = new CreateTableSpaceStatement("tblspace1", Collections.singleton(nodeId), nodeId, 1, 0, 0);
+            manager.executeStatement(st1, StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT(), NO_TRANSACTION);
+            manager.waitForTablespace("tblspace1", 10000);
+
+            execute(manager, "CREATE TABLE tblspace1.tsql (k1 int primary key,n1 int,s1 string,b1 blob)", Collections.emptyList());
+            for (int i = 0; i < testSize; i++) {
+                Integer n1 = i % 10 == 0 ? null : i % 20;
+                executeUpdate(manager, "INSERT INTO tblspace1.tsql(k1,n1,s1,b1) values(?,?,?,?)",
+                        Arrays.asList(i, n1, "s" + (i % 100), new byte[]{(byte) i}));
+            }
+            AbstractTableManager tableManager = manager.getTableSpaceManager("tblspace1").getTableManager("tsql");
+            assertNull(tableManager.getStatistics());
+
+            execute(manager, "ANALYZE TABLE tblspace1.tsql", Collections.emptyList());
+            statistics = tableManager.getStatistics();
+            assertNotNull(statistics);
+            assertEquals(testSize, statistics.getRowCount());
+
+            ColumnStatistics k1 = statistics.getColumn("k1");
+            assertEquals(0, k1.getNullCount());
+            assertEquals(0, k1.getMin());
+            assertEquals(testSize - 1, k1.getMax());
+            assertTrue(k1.getDistinctValues() + "", Math.abs(k1.getDistinctValues() - testSize) < testSize / 20);
+            assertEquals(0.5, k1.estimateFractionLowerThan(testSize / 2), 0.05);
+            assertEquals(0, k1.estimateFractionLowerThan(-1), 0);
+            assertEquals(1, k1.estimateFractionLowerThan(testSize * 2), 0);
+
+            ColumnStatistics n1 = statistics.getColumn("n1");
+            assertEquals(testSize / 10, n1.getNullCount());
+            // 0 and 10 are only used with null
+            assertEquals(18, n1.getDistinctValues());
+            assertEquals(1, n1.getMin());
+            assertEquals(19, n1.getMax());
+
+            ColumnStatistics s1 = statistics.getColumn("s1");
+            assertEquals(100, s1.getDistinctValues());
+            assertEquals("s0", s1.getMin().toString());
+            assertEquals("s99", s1.getMax().toString());
+
+            ColumnStatistics b1 = statistics.getColumn("b1");
+            assertEquals(256, b1.getDistinctValues(), 10);
+            assertNull(b1.getMin());
+            assertNull(b1.getHistogram());
+
+            try (DataScanner scan = scan(manager, "SELECT * FROM tblspace1.systablecolumnstats WHERE table_name='tsql'", Collections.emptyList())) {
+                List<DataAccessor> records = scan.consume();
+                assertEquals(4, records.size());
+                for (DataAccessor record : records) {
+                    assertEquals(Long.valueOf(testSize), record.get("row_count"));
+                    if (record.get("column_name").toString().equals("n1")) {
+                        assertEquals(Long.valueOf(18), record.get("distinct_values"));
+                        assertEquals(Long.valueOf(testSize / 10), record.get("null_count"));
+                        assertEquals("1", record.get("min_value").toString());
+                        assertEquals("19", record.get("max_value").toString());
+                    }
+                }
+            }
+
+            // selectivity of predicates uses the statistics: 1 / 18 of the non null values
+            assertEquals(testSize * 0.9 / 18, estimatedRowCount(manager, "SELECT k1 FROM tblspace1.tsql WHERE n1 = 5"), 1);
+            assertEquals(testSize / 10, estimatedRowCount(manager, "SELECT k1 FROM tblspace1.tsql WHERE n1 IS NULL"), 1);
+            assertEquals(testSize / 2, estimatedRowCount(manager, "SELECT k1 FROM tblspace1.tsql WHERE k1 < 500"), testSize / 20);
+
+            try {
+                execute(manager, "ANALYZE TABLE tblspace1.notexists", Collections.emptyList());
+                fail();
+            } catch (TableDoesNotExistException expected) {
+            }
+
+            manager.checkpoint();
+        }
+
+        // statistics are persisted with the checkpoint
+        try (DBManager manager = new DBManager(nodeId,
+                new FileMetadataStorageManager(metadataPath),
+                new FileDataStorageManager(dataPath),
+                new FileCommitLogManager(logsPath),
+                tmpDir, null)) {
+            manager.start();
+            manager.waitForTablespace("tblspace1", 10000);
+            AbstractTableManager tableManager = manager.getTableSpaceManager("tblspace1").getTableManager("tsql");
+            assertEquals(statistics, tableManager.getStatistics());
+        }
+    }
+
+    private static double estimatedRowCount(DBManager manager, String query) throws Exception {
+        try (DataScanner scan = scan(manager, "EXPLAIN " + query, Collections.emptyList())) {
+            for (DataAccessor row : scan.consume()) {
+                if (row.get("name").toString().equals("plan")) {
+                    String plan = row.get("value").toString();
+                    Matcher matcher = Pattern.compile("rowcount = ([0-9.E]+)").matcher(plan);
+                    assertTrue(plan, matcher.find());
+                    return Double.parseDouble(matcher.group(1));
+                }
+            }
+        }
+        throw new AssertionError("no plan");
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.core;
+
+import static herddb.core.TestUtils.beginTransaction;
+import static herddb.core.TestUtils.commitTransaction;
+import static herddb.core.TestUtils.execute;
+import static herddb.core.TestUtils.scan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import herddb.mem.MemoryCommitLogManager;
+import herddb.mem.MemoryDataStorageManager;
+import herddb.mem.MemoryMetadataStorageManager;
+import herddb.model.DMLStatementExecutionResult;
+import herddb.model.DataScanner;
+import herddb.model.DuplicatePrimaryKeyException;
+import herddb.model.StatementEvaluationContext;
+import herddb.model.TableSpace;
+import herddb.model.TransactionContext;
+import herddb.model.commands.CreateTableSpaceStatement;
+import herddb.sql.SQLStatementEvaluationContext;
+import herddb.sql.TranslatedQuery;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+/**
+ * Bulk execution of the same DML statement with many sets of parameters
+ */
+public class BulkDMLExecutionTest {
+
+    private static List<DMLStatementExecutionResult> executeBulk(
+            DBManager manager, String query, List<List<Object>> batch, TransactionContext transactionContext
+    ) throws Exception {
+        TranslatedQuery translated = manager.getPlanner().translate(TableSpace.DEFAULT, query,
+                new ArrayList<>(batch.get(0)), false, true, false, -1);
+        List<SQLStatementEvaluationContext> contexts = new ArrayList<>();
+        contexts.add(translated.context);
+        for (int i = 1; i < batch.size(); i++) {
+            contexts.add(new SQLStatementEvaluationContext(translated.context.query, new ArrayList<>(batch.get(i)), false, false));
+        }
+        try {
+            return manager.executeBulkPlanAsync(translated.plan, contexts, transactionContext).get();
+        } catch (ExecutionException err) {
+            throw (Exception) err.getCause();
+        }
+    }
+
+    private static DBManager startManager() throws Exception {
+        String nodeId = "localhost";
+        DBManager manager = new DBManager(nodeId, new MemoryMetadataStorageManager(), new MemoryDataStorageManager(), new MemoryCommitLogManager(), null, null);
+        manager.start();
+        CreateTableSpaceStatement st1 = new CreateTableSpaceStatement("tblspace1", Collections.singleton(nodeId), nodeId, 1, 0, 0);
+        manager.executeStatement(st1, StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT(), TransactionContext.NO_TRANSACTION);
+        assertTrue(manager.waitForTablespace("tblspace1", 10000));
+        execute(manager, "CREATE TABLE tblspace1.tsql (k1 int primary key, n1 int)", Collections.emptyList());
+        return manager;
+    }
+
+    private static int count(DBManager manager) throws Exception {
+        try (DataScanner scan = scan(manager, "SELECT * FROM tblspace1.tsql", Collections.emptyList())) {
+            return scan.consume().size();
+        }
+    }
+
+    @Test
+    public void testAutoCommit() throws Exception {
+        try (DBManager manager = startManager()) {
+            List<List<Object>> batch = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                batch.add(Arrays.asList(i, i));
+            }
+            List<DMLStatementExecutionResult> results = executeBulk(manager,
+                    "INSERT INTO tblspace1.tsql(k1,n1) values(?,?)", batch, TransactionContext.NO_TRANSACTION);
+            assertEquals(100, results.size());
+            for (DMLStatementExecutionResult result : results) {
+                assertEquals(1, result.getUpdateCount());
+                assertEquals(0, result.transactionId);
+            }
+            assertEquals(100, count(manager));
+            assertTrue(manager.getTableSpaceManager("tblspace1").getOpenTransactions().isEmpty());
+
+            // update counts follow the order of the batch
+            results = executeBulk(manager, "UPDATE tblspace1.tsql SET n1=? WHERE k1=?",
+                    Arrays.asList(Arrays.asList(-1, 50), Arrays.asList(-1, 1000), Arrays.asList(-1, 3)),
+                    TransactionContext.NO_TRANSACTION);
+            assertEquals(1, results.get(0).getUpdateCount());
+            assertEquals(0, results.get(1).getUpdateCount());
+            assertEquals(1, results.get(2).getUpdateCount());
+
+            results = executeBulk(manager, "DELETE FROM tblspace1.tsql WHERE k1=?",
+                    Arrays.asList(Arrays.asList(99), Arrays.asList(98), Arrays.asList(98)),
+                    TransactionContext.NO_TRANSACTION);
+            assertEquals(1, results.get(0).getUpdateCount());
+            assertEquals(1, results.get(1).getUpdateCount());
+            assertEquals(0, results.get(2).getUpdateCount());
+            assertEquals(98, count(manager));
+            try (DataScanner scan = scan(manager, "SELECT * FROM tblspace1.tsql WHERE n1=-1", Collections.emptyList())) {
+                assertEquals(2, scan.consume().size());
+            }
+        }
+    }
+
+    @Test
+    public void testAutoCommitIsAtomic() throws Exception {
+        try (DBManager manager = startManager()) {
+            try {
+                executeBulk(manager, "INSERT INTO tblspace1.tsql(k1,n1) values(?,?)",
+                        Arrays.asList(Arrays.asList(1, 1), Arrays.asList(2, 2), Arrays.asList(1, 3)),
+                        TransactionContext.NO_TRANSACTION);
+                fail();
+            } catch (DuplicatePrimaryKeyException expected) {
+            }
+            assertEquals(0, count(manager));
+            assertTrue(manager.getTableSpaceManager("tblspace1").getOpenTransactions().isEmpty());
+        }
+    }
+
+    @Test
+    public void testTransactions() throws Exception {
+        try (DBManager manager = startManager()) {
+            long tx = beginTransaction(manager, "tblspace1");
+            List<DMLStatementExecutionResult> results = executeBulk(manager,
+                    "INSERT INTO tblspace1.tsql(k1,n1) values(?,?)",
+                    Arrays.asList(Arrays.asList(1, 1), Arrays.asList(2, 2)), new TransactionContext(tx));
+            assertEquals(tx, results.get(0).transactionId);
+            assertEquals(tx, results.get(1).transactionId);
+            commitTransaction(manager, "tblspace1", tx);
+            assertEquals(2, count(manager));
+
+            // a new transaction is started and left open
+            results = executeBulk(manager, "INSERT INTO tblspace1.tsql(k1,n1) values(?,?)",
+                    Arrays.asList(Arrays.asList(3, 3), Arrays.asList(4, 4)), TransactionContext.AUTOTRANSACTION_TRANSACTION);
+            long newTx = results.get(0).transactionId;
+            assertTrue(newTx > 0);
+            assertEquals(newTx, results.get(1).transactionId);
+            assertEquals(Collections.singletonList(newTx), new ArrayList<>(manager.getTableSpaceManager("tblspace1").getOpenTransactions()));
+            commitTransaction(manager, "tblspace1", newTx);
+            assertEquals(4, count(manager));
+        }
+    }
+
+    @Test
+    public void testLocksInKeyOrder() throws Exception {
+        try (DBManager manager = startManager()) {
+            List<List<Object>> batch = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                batch.add(Arrays.asList(i, i));
+            }
+            executeBulk(manager, "INSERT INTO tblspace1.tsql(k1,n1) values(?,?)", batch, TransactionContext.NO_TRANSACTION);
+
+            // concurrent batches touching the same keys in opposite order
+            // would deadlock if locks were acquired while executing the statements
+            List<List<Object>> ascending = new ArrayList<>();
+            List<List<Object>> descending = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                ascending.add(Arrays.asList(1, i));
+                descending.add(Arrays.asList(2, 49 - i));
+            }
+            ExecutorService threadPool = Executors.newFixedThreadPool(2);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (List<List<Object>> updates : Arrays.asList(ascending, descending)) {
+                    futures.add(threadPool.submit(() -> {
+                        for (int i = 0; i < 50; i++) {
+                            executeBulk(manager, "UPDATE tblspace1.tsql SET n1=n1+? WHERE k1=?", updates, TransactionContext.NO_TRANSACTION);
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get(60, TimeUnit.SECONDS);
+                }
+            } finally {
+                threadPool.shutdown();
+            }
+            try (DataScanner scan = scan(manager, "SELECT n1 FROM tblspace1.tsql WHERE k1=?", Arrays.asList(10))) {
+                assertEquals(10 + 50 * 3, scan.consume().get(0).get("n1"));
+            }
+        }
+    }
+}
@@ -31,6 +31,7 @@ import herddb.core.stats.TableManagerStats;
 import herddb.file.FileCommitLogManager;
 import herddb.file.FileDataStorageManager;
 import herddb.file.FileMetadataStorageManager;
+import herddb.log.LogSequenceNumber;
 import herddb.mem.MemoryCommitLogManager;
 import herddb.mem.MemoryDataStorageManager;
 import herddb.mem.MemoryMetadataStorageManager;
@@ -53,6 +54,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -814,4 +816,131 @@ public class CheckpointTest {
 
         }
     }
+
+    /**
+     * Concurrent checkpoint does not block DML on the tablespace while tables are flushed
+     */
+    @Test
+    public void concurrentCheckpointTest() throws Exception {
+        Path dataPath = folder.newFolder("data").toPath();
+        Path logsPath = folder.newFolder("logs").toPath();
+        Path metadataPath = folder.newFolder("metadata").toPath();
+        Path tmpDir = folder.newFolder("tmpDir").toPath();
+        String nodeId = "localhost";
+
+        ServerConfiguration config1 = new ServerConfiguration();
+        config1.set(ServerConfiguration.PROPERTY_CHECKPOINT_CONCURRENT_THREADS, 2);
+
+        int tables = 4;
+        AtomicInteger concurrentWrites = new AtomicInteger();
+        try (DBManager manager = new DBManager("localhost",
+                new FileMetadataStorageManager(metadataPath),
+                new FileDataStorageManager(dataPath),
+                new FileCommitLogManager(logsPath),
+                tmpDir, null, config1, null)) {
+            manager.start();
+            CreateTableSpaceStatement st1 = new CreateTableSpaceStatement("tblspace1", Collections.singleton(nodeId), nodeId, 1, 0, 0);
+            manager.executeStatement(st1, StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT(), NO_TRANSACTION);
+            manager.waitForTablespace("tblspace1", 10000);
+            assertNotNull(manager.getCheckpointExecutor());
+
+            for (int t = 0; t < tables; t++) {
+                execute(manager, "CREATE TABLE tblspace1.t" + t + " (k1 string ,n1 int, primary key(k1))",
+                        Collections.emptyList());
+                for (int i = 0; i < 100; i++) {
+                    executeUpdate(manager, "INSERT INTO tblspace1.t" + t + "(k1,n1) values(?,?)",
+                            Arrays.asList("key" + i, i));
+                }
+            }
+
+            // with a stop-the-world checkpoint this hook would deadlock, as it runs a DML statement
+            // on the tablespace while the checkpoint is still running
+            manager.getTableSpaceManager("tblspace1").setAfterTableCheckPointAction(() -> {
+                int i = concurrentWrites.incrementAndGet();
+                executeUpdate(manager, "INSERT INTO tblspace1.t0(k1,n1) values(?,?)",
+                        Arrays.asList("during" + i, i));
+            });
+            manager.checkpoint();
+            manager.getTableSpaceManager("tblspace1").setAfterTableCheckPointAction(null);
+            assertEquals(tables, concurrentWrites.get());
+
+            for (int t = 0; t < tables; t++) {
+                assertEquals(0, manager.getTableSpaceManager("tblspace1")
+                        .getTableManager("t" + t).getStats().getDirtypages());
+            }
+        }
+
+        try (DBManager manager = new DBManager("localhost",
+                new FileMetadataStorageManager(metadataPath),
+                new FileDataStorageManager(dataPath),
+                new FileCommitLogManager(logsPath),
+                tmpDir, null, config1, null)) {
+            manager.start();
+            assertTrue(manager.waitForBootOfLocalTablespaces(10000));
+
+            for (int t = 0; t < tables; t++) {
+                try (DataScanner scan = TestUtils.scan(manager, "SELECT COUNT(*) FROM tblspace1.t" + t, Collections.emptyList())) {
+                    long expected = t == 0 ? 100 + tables : 100;
+                    assertEquals(expected, ((Number) scan.consume().get(0).get(0)).longValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Concurrent checkpoint writes the TableStatus of the tables only once every table has been checkpointed
+     */
+    @Test
+    public void concurrentCheckpointWritesTableStatusAtTheEndTest() throws Exception {
+        Path dataPath = folder.newFolder("data").toPath();
+        Path logsPath = folder.newFolder("logs").toPath();
+        Path metadataPath = folder.newFolder("metadata").toPath();
+        Path tmpDir = folder.newFolder("tmpDir").toPath();
+        ServerConfiguration config1 = new ServerConfiguration();
+        config1.set(ServerConfiguration.PROPERTY_CHECKPOINT_CONCURRENT_THREADS, 2);
+
+        int tables = 4;
+        try (DBManager manager = new DBManager("localhost",
+                new FileMetadataStorageManager(metadataPath),
+                new FileDataStorageManager(dataPath),
+                new FileCommitLogManager(logsPath),
+                tmpDir, null, config1, null)) {
+            manager.start();
+            CreateTableSpaceStatement st1 = new CreateTableSpaceStatement("tblspace1", Collections.singleton("localhost"), "localhost", 1, 0, 0);
+            manager.executeStatement(st1, StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT(), NO_TRANSACTION);
+            manager.waitForTablespace("tblspace1", 10000);
+
+            TableSpaceManager tableSpaceManager = manager.getTableSpaceManager("tblspace1");
+            String tableSpaceUuid = tableSpaceManager.getTableSpaceUUID();
+            for (int t = 0; t < tables; t++) {
+                execute(manager, "CREATE TABLE tblspace1.t" + t + " (k1 string ,n1 int, primary key(k1))",
+                        Collections.emptyList());
+            }
+            manager.checkpoint();
+
+            Map<String, LogSequenceNumber> before = new HashMap<>();
+            for (int t = 0; t < tables; t++) {
+                String tableUuid = tableSpaceManager.getTableManager("t" + t).getTable().uuid;
+                before.put(tableUuid, manager.getDataStorageManager().getLatestTableStatus(tableSpaceUuid, tableUuid).sequenceNumber);
+                executeUpdate(manager, "INSERT INTO tblspace1.t" + t + "(k1,n1) values(?,?)", Arrays.asList("a", 1));
+            }
+
+            AtomicInteger checkpointedTables = new AtomicInteger();
+            tableSpaceManager.setAfterTableCheckPointAction(() -> {
+                checkpointedTables.incrementAndGet();
+                for (Map.Entry<String, LogSequenceNumber> entry : before.entrySet()) {
+                    assertEquals(entry.getValue(), manager.getDataStorageManager()
+                            .getLatestTableStatus(tableSpaceUuid, entry.getKey()).sequenceNumber);
+                }
+            });
+            manager.checkpoint();
+            tableSpaceManager.setAfterTableCheckPointAction(null);
+            assertEquals(tables, checkpointedTables.get());
+
+            for (Map.Entry<String, LogSequenceNumber> entry : before.entrySet()) {
+                assertTrue(manager.getDataStorageManager().getLatestTableStatus(tableSpaceUuid, entry.getKey())
+                        .sequenceNumber.after(entry.getValue()));
+            }
+        }
+    }
 }
@@ -20,10 +20,14 @@
 
 package herddb.core;
 
+import herddb.file.FileCommitLogManager;
+import herddb.file.FileDataStorageManager;
+import herddb.file.FileMetadataStorageManager;
 import herddb.mem.MemoryCommitLogManager;
 import herddb.mem.MemoryDataStorageManager;
 import herddb.mem.MemoryMetadataStorageManager;
 import herddb.model.ColumnTypes;
+import herddb.model.DataScanner;
 import herddb.model.StatementEvaluationContext;
 import herddb.model.StatementExecutionException;
 import herddb.model.Table;
@@ -31,11 +35,17 @@ import herddb.model.TransactionContext;
 import herddb.model.commands.CreateTableSpaceStatement;
 import herddb.model.commands.CreateTableStatement;
 import herddb.sql.TranslatedQuery;
+import herddb.utils.DataAccessor;
+import herddb.utils.RawString;
+import java.nio.file.Path;
 import java.sql.Timestamp;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 
 /**
@@ -45,6 +55,9 @@ import org.junit.Test;
  */
 public class CreateTableTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Test
     public void createTable1() throws Exception {
         String nodeId = "localhost";
@@ -243,4 +256,98 @@ public class CreateTableTest {
             }
         }
     }
+
+    @Test
+    public void createTableWithValueFormatV2() throws Exception {
+        String nodeId = "localhost";
+        try (DBManager manager = new DBManager("localhost", new MemoryMetadataStorageManager(), new MemoryDataStorageManager(), new MemoryCommitLogManager(), null, null)) {
+            manager.start();
+            CreateTableSpaceStatement st1 = new CreateTableSpaceStatement("tblspace1", Collections.singleton(nodeId), nodeId, 1, 0, 0);
+            manager.executeStatement(st1, StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT(), TransactionContext.NO_TRANSACTION);
+            manager.waitForTablespace("tblspace1", 10000);
+
+            TestUtils.execute(manager, "CREATE TABLE tblspace1.t1 (k1 string primary key, n1 int, s1 string, l1 long) VALUE_FORMAT=2", Collections.emptyList());
+            Table table = manager.getTableSpaceManager("tblspace1").getTableManager("t1").getTable();
+            Assert.assertEquals(Table.VALUE_FORMAT_V2, table.valueFormat);
+
+            TestUtils.executeUpdate(manager, "INSERT INTO tblspace1.t1 (k1, n1, s1, l1) values('a', 1, 'x', 10)", Collections.emptyList());
+            TestUtils.executeUpdate(manager, "INSERT INTO tblspace1.t1 (k1, s1) values('b', 'y')", Collections.emptyList());
+            TestUtils.executeUpdate(manager, "UPDATE tblspace1.t1 SET l1 = 20 WHERE s1 = 'y'", Collections.emptyList());
+            try (DataScanner scan = TestUtils.scan(manager, "SELECT k1, n1, l1 FROM tblspace1.t1 WHERE l1 >= 10 ORDER BY k1", Collections.emptyList())) {
+                List<DataAccessor> rows = scan.consume();
+                Assert.assertEquals(2, rows.size());
+                Assert.assertEquals(1, rows.get(0).get("n1"));
+                Assert.assertNull(rows.get(1).get("n1"));
+                Assert.assertEquals(20L, rows.get(1).get("l1"));
+            }
+
+            TestUtils.execute(manager, "ALTER TABLE tblspace1.t1 DROP COLUMN n1", Collections.emptyList());
+            table = manager.getTableSpaceManager("tblspace1").getTableManager("t1").getTable();
+            Assert.assertEquals(Table.VALUE_FORMAT_V2, table.valueFormat);
+            try (DataScanner scan = TestUtils.scan(manager, "SELECT * FROM tblspace1.t1 WHERE k1 = 'a'", Collections.emptyList())) {
+                DataAccessor row = scan.consume().get(0);
+                Assert.assertEquals(RawString.of("x"), row.get("s1"));
+                Assert.assertEquals(10L, row.get("l1"));
+            }
+
+            try (DataScanner scan = TestUtils.scan(manager, "SHOW CREATE TABLE tblspace1.t1", Collections.emptyList())) {
+                String ddl = scan.consume().get(0).get("tabledef").toString();
+                Assert.assertTrue(ddl, ddl.endsWith("VALUE_FORMAT=2"));
+            }
+        }
+    }
+
+    @Test
+    public void createTableWithPageCompression() throws Exception {
+        String nodeId = "localhost";
+        Path dataPath = folder.newFolder("data").toPath();
+        Path logsPath = folder.newFolder("logs").toPath();
+        Path metadataPath = folder.newFolder("metadata").toPath();
+        Path tmoDir = folder.newFolder("tmoDir").toPath();
+        FileDataStorageManager dataStorageManager = new FileDataStorageManager(dataPath);
+        try (DBManager manager = new DBManager(nodeId, new FileMetadataStorageManager(metadataPath), dataStorageManager,
+                new FileCommitLogManager(logsPath), tmoDir, null)) {
+            manager.start();
+            CreateTableSpaceStatement st1 = new CreateTableSpaceStatement("tblspace1", Collections.singleton(nodeId), nodeId, 1, 0, 0);
+            manager.executeStatement(st1, StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT(), TransactionContext.NO_TRANSACTION);
+            manager.waitForTablespace("tblspace1", 10000);
+
+            try {
+                TestUtils.execute(manager, "CREATE TABLE tblspace1.t2 (k1 int primary key) PAGE_COMPRESSION=ZIP", Collections.emptyList());
+                Assert.fail();
+            } catch (StatementExecutionException expected) {
+                Assert.assertTrue(expected.getMessage().contains("PAGE_COMPRESSION"));
+            }
+
+            TestUtils.execute(manager, "CREATE TABLE tblspace1.t1 (k1 int primary key, s1 string) PAGE_COMPRESSION=LZ4", Collections.emptyList());
+            Table table = manager.getTableSpaceManager("tblspace1").getTableManager("t1").getTable();
+            Assert.assertEquals(Table.PAGE_COMPRESSION_LZ4, table.pageCompression);
+            for (int i = 0; i < 1000; i++) {
+                TestUtils.executeUpdate(manager, "INSERT INTO tblspace1.t1 (k1, s1) values(?, ?)", Arrays.asList(i, "some text " + (i % 10)));
+            }
+            manager.checkpoint();
+            Assert.assertTrue(dataStorageManager.getPageCompressionRatio() > 1);
+
+            try (DataScanner scan = TestUtils.scan(manager, "SHOW CREATE TABLE tblspace1.t1", Collections.emptyList())) {
+                String ddl = scan.consume().get(0).get("tabledef").toString();
+                Assert.assertTrue(ddl, ddl.endsWith("PAGE_COMPRESSION=LZ4"));
+            }
+        }
+
+        try (DBManager manager = new DBManager(nodeId, new FileMetadataStorageManager(metadataPath), new FileDataStorageManager(dataPath),
+                new FileCommitLogManager(logsPath), tmoDir, null)) {
+            manager.start();
+            Assert.assertTrue(manager.waitForBootOfLocalTablespaces(10000));
+            Table table = manager.getTableSpaceManager("tblspace1").getTableManager("t1").getTable();
+            Assert.assertEquals(Table.PAGE_COMPRESSION_LZ4, table.pageCompression);
+            try (DataScanner scan = TestUtils.scan(manager, "SELECT k1, s1 FROM tblspace1.t1 ORDER BY k1", Collections.emptyList())) {
+                List<DataAccessor> rows = scan.consume();
+                Assert.assertEquals(1000, rows.size());
+                for (int i = 0; i < 1000; i++) {
+                    Assert.assertEquals(i, rows.get(i).get("k1"));
+                    Assert.assertEquals(RawString.of("some text " + (i % 10)), rows.get(i).get("s1"));
+                }
+            }
+        }
+    }
 }
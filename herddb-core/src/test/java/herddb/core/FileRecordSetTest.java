@@ -20,8 +20,23 @@
 
 package herddb.core;
 
+import static org.junit.Assert.assertEquals;
 import herddb.file.FileRecordSetFactory;
+import herddb.model.Column;
+import herddb.model.ColumnTypes;
+import herddb.model.Projection;
+import herddb.model.ScanLimitsImpl;
+import herddb.model.StatementEvaluationContext;
+import herddb.model.Tuple;
+import herddb.model.TupleComparator;
+import herddb.utils.DataAccessor;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
 import org.junit.Rule;
+import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
 /**
@@ -37,4 +52,96 @@ public class FileRecordSetTest extends RecordSetSuite {
         return new FileRecordSetFactory(folder.getRoot().toPath(), threshold);
     }
 
+    @Test
+    public void testExternalMergeSort() throws Exception {
+        // 1000 records, sorted runs of 7 records: more runs than the max fan-in of the merge
+        RecordSetFactory factory = buildRecordSetFactory(7);
+        Column[] columns = new Column[2];
+        columns[0] = Column.column("n1", ColumnTypes.INTEGER);
+        columns[1] = Column.column("seq", ColumnTypes.INTEGER);
+        String[] fieldNames = Column.buildFieldNamesList(columns);
+        List<Integer> values = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            values.add(i % 100);
+        }
+        Collections.shuffle(values, new Random(1234));
+        TupleComparator byN1 = new TupleComparator() {
+            @Override
+            public int compare(DataAccessor o1, DataAccessor o2) {
+                return ((Integer) o1.get("n1")).compareTo((Integer) o2.get("n1"));
+            }
+        };
+
+        try (MaterializedRecordSet rs = factory.createRecordSet(fieldNames, columns)) {
+            int seq = 0;
+            for (Integer value : values) {
+                rs.add(new Tuple(fieldNames, new Object[]{value, seq++}));
+            }
+            rs.writeFinished();
+            rs.sort(byN1);
+
+            // the result can be read more than once
+            for (int round = 0; round < 2; round++) {
+                int count = 0;
+                int lastN1 = -1;
+                int lastSeq = -1;
+                for (DataAccessor t : rs) {
+                    int n1 = (Integer) t.get("n1");
+                    int s = (Integer) t.get("seq");
+                    if (n1 == lastN1) {
+                        // stable sort
+                        assertEquals(true, s > lastSeq);
+                    } else {
+                        assertEquals(true, n1 > lastN1);
+                    }
+                    lastN1 = n1;
+                    lastSeq = s;
+                    count++;
+                }
+                assertEquals(1000, count);
+            }
+
+            // limits and projection are applied while merging, no other file is written
+            int files = folder.getRoot().listFiles().length;
+            rs.applyLimits(new ScanLimitsImpl(5, 10), StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT());
+            Column[] projectedColumns = new Column[]{columns[0]};
+            String[] projectedFieldNames = Column.buildFieldNamesList(projectedColumns);
+            rs.applyProjection(new Projection() {
+                @Override
+                public Column[] getColumns() {
+                    return projectedColumns;
+                }
+
+                @Override
+                public String[] getFieldNames() {
+                    return projectedFieldNames;
+                }
+
+                @Override
+                public DataAccessor map(DataAccessor tuple, StatementEvaluationContext context) {
+                    return new Tuple(projectedFieldNames, new Object[]{tuple.get("n1")});
+                }
+            }, StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT());
+            assertEquals(files, folder.getRoot().listFiles().length);
+            List<Integer> limited = new ArrayList<>();
+            for (DataAccessor t : rs) {
+                limited.add((Integer) t.get("n1"));
+                assertEquals(1, t.getFieldNames().length);
+            }
+            assertEquals(5, limited.size());
+            // 10 records for each value of n1
+            assertEquals(Integer.valueOf(1), limited.get(0));
+
+            // sorting again works on the limited data
+            rs.sort(byN1);
+            List<Integer> sorted = new ArrayList<>();
+            for (DataAccessor t : rs) {
+                sorted.add((Integer) t.get("n1"));
+            }
+            assertEquals(limited, sorted);
+        }
+        File[] leftovers = folder.getRoot().listFiles();
+        assertEquals(0, leftovers.length);
+    }
+
 }
@@ -0,0 +1,159 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.core;
+
+import static herddb.core.TestUtils.execute;
+import static herddb.core.TestUtils.executeUpdate;
+import static herddb.core.TestUtils.scan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import herddb.file.FileCommitLogManager;
+import herddb.file.FileDataStorageManager;
+import herddb.file.FileMetadataStorageManager;
+import herddb.model.DataScanner;
+import herddb.model.StatementEvaluationContext;
+import herddb.model.TransactionContext;
+import herddb.model.commands.CreateTableSpaceStatement;
+import herddb.storage.DataStorageManagerException;
+import herddb.storage.IndexStatus;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests about incremental checkpoints of HASH indexes
+ */
+public class HashIndexIncrementalCheckpointTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final class IndexStatusCapture extends FileDataStorageManager {
+
+        private final List<IndexStatus> checkpoints = new ArrayList<>();
+
+        IndexStatusCapture(Path baseDirectory) {
+            super(baseDirectory);
+        }
+
+        @Override
+        public List<PostCheckpointAction> indexCheckpoint(String tableSpace, String indexName, IndexStatus indexStatus, boolean pin) throws DataStorageManagerException {
+            if (indexStatus.indexName.equals("ix1")) {
+                checkpoints.add(indexStatus);
+            }
+            return super.indexCheckpoint(tableSpace, indexName, indexStatus, pin);
+        }
+
+        IndexStatus last() {
+            return checkpoints.get(checkpoints.size() - 1);
+        }
+    }
+
+    @Test
+    public void test() throws Exception {
+        Path dataPath = folder.newFolder("data").toPath();
+        Path logsPath = folder.newFolder("logs").toPath();
+        Path metadataPath = folder.newFolder("metadata").toPath();
+        Path tmpDir = folder.newFolder("tmpDir").toPath();
+        String nodeId = "localhost";
+        int testSize = 5000;
+        IndexStatusCapture dataStorageManager = new IndexStatusCapture(dataPath);
+        try (DBManager manager = new DBManager(nodeId,
+                new FileMetadataStorageManager(metadataPath),
+                dataStorageManager,
+                new FileCommitLogManager(logsPath),
+                tmpDir, null)) {
+            manager.start();
+            CreateTableSpaceStatement st1 = new CreateTableSpaceStatement("tblspace1", Collections.singleton(nodeId), nodeId, 1, 0, 0);
+            manager.executeStatement(st1, StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT(), TransactionContext.NO_TRANSACTION);
+            manager.waitForTablespace("tblspace1", 10000);
+
+            execute(manager, "CREATE TABLE tblspace1.t1 (id int primary key, n1 int)", Collections.emptyList());
+            execute(manager, "CREATE HASH INDEX ix1 ON tblspace1.t1(n1)", Collections.emptyList());
+            for (int i = 0; i < testSize; i++) {
+                executeUpdate(manager, "INSERT INTO tblspace1.t1(id,n1) values(?,?)", Arrays.asList(i, i));
+            }
+
+            manager.checkpoint();
+            IndexStatus first = dataStorageManager.last();
+            assertEquals(1, first.activePages.size());
+
+            // only the modified buckets are written, the first page is still active
+            executeUpdate(manager, "UPDATE tblspace1.t1 SET n1=-1 WHERE id=0", Collections.emptyList());
+            manager.checkpoint();
+            IndexStatus second = dataStorageManager.last();
+            assertEquals(2, second.activePages.size());
+            assertTrue(second.activePages.containsAll(first.activePages));
+
+            // nothing changed, nothing to write
+            manager.checkpoint();
+            IndexStatus third = dataStorageManager.last();
+            assertEquals(second.activePages, third.activePages);
+            assertEquals(second.newPageId, third.newPageId);
+
+            // too many stale buckets on the first page, it will be compacted
+            for (int i = 1; i < testSize / 2; i++) {
+                executeUpdate(manager, "UPDATE tblspace1.t1 SET n1=? WHERE id=?", Arrays.asList(i + testSize, i));
+            }
+            manager.checkpoint();
+            IndexStatus fourth = dataStorageManager.last();
+            Set<Long> stillActive = new HashSet<>(fourth.activePages);
+            stillActive.retainAll(first.activePages);
+            assertTrue(stillActive.isEmpty());
+            assertFalse(fourth.activePages.isEmpty());
+
+            checkValues(manager, testSize);
+        }
+
+        try (DBManager manager = new DBManager(nodeId,
+                new FileMetadataStorageManager(metadataPath),
+                new FileDataStorageManager(dataPath),
+                new FileCommitLogManager(logsPath),
+                tmpDir, null)) {
+            manager.start();
+            assertTrue(manager.waitForBootOfLocalTablespaces(10000));
+            checkValues(manager, testSize);
+        }
+    }
+
+    private static void checkValues(DBManager manager, int testSize) throws Exception {
+        assertEquals(1, count(manager, -1));
+        assertEquals(0, count(manager, 0));
+        assertEquals(0, count(manager, 1));
+        assertEquals(1, count(manager, 1 + testSize));
+        assertEquals(1, count(manager, testSize / 2));
+        assertEquals(1, count(manager, testSize - 1));
+    }
+
+    private static int count(DBManager manager, int value) throws Exception {
+        try (DataScanner scan = scan(manager, "SELECT id FROM tblspace1.t1 WHERE n1=?", Arrays.asList(value))) {
+            return scan.consume().size();
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.core;
+
+import static herddb.core.TestUtils.execute;
+import static herddb.core.TestUtils.executeUpdate;
+import static herddb.core.TestUtils.scan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import herddb.file.FileCommitLogManager;
+import herddb.file.FileDataStorageManager;
+import herddb.file.FileMetadataStorageManager;
+import herddb.model.DataScanner;
+import herddb.model.Record;
+import herddb.model.StatementEvaluationContext;
+import herddb.model.TransactionContext;
+import herddb.model.commands.CreateTableSpaceStatement;
+import herddb.server.ServerConfiguration;
+import herddb.utils.Bytes;
+import herddb.utils.DataAccessor;
+import herddb.utils.RawString;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Data pages stored outside of the heap
+ */
+public class OffHeapDataPageTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRecords() throws Exception {
+        MemoryManager memoryManager = new MemoryManager(1024 * 1024, 1024 * 1024, 1024, true);
+        List<Record> records = new ArrayList<>();
+        Map<Bytes, Bytes> expected = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            Bytes key = Bytes.from_string("key" + i);
+            Bytes value = Bytes.from_string(i % 10 == 0 ? "" : "value" + i);
+            records.add(new Record(key, value));
+            expected.put(key, value);
+        }
+        // keys with a different layout on the heap
+        byte[] padded = "__key100__".getBytes("utf-8");
+        records.add(new Record(Bytes.from_array(padded, 2, 6), Bytes.from_array(padded, 0, 4)));
+        expected.put(Bytes.from_string("key100"), Bytes.from_string("__ke"));
+
+        OffHeapDataPageRecords offHeap = OffHeapDataPageRecords.build(records, memoryManager);
+        assertEquals(offHeap.getUsedMemory(), memoryManager.getOffHeapDataUsedMemory());
+        assertEquals(records.size(), offHeap.size());
+        for (Map.Entry<Bytes, Bytes> entry : expected.entrySet()) {
+            Record record = offHeap.get(entry.getKey());
+            assertEquals(entry.getKey(), record.key);
+            assertEquals(entry.getValue(), record.value);
+        }
+        assertNull(offHeap.get(Bytes.from_string("key")));
+        assertNull(offHeap.get(Bytes.from_string("nokey")));
+
+        Map<Bytes, Bytes> all = new HashMap<>();
+        for (Record record : offHeap.records()) {
+            all.put(record.key, record.value);
+        }
+        assertEquals(expected, all);
+
+        offHeap.release();
+        offHeap.release();
+        assertEquals(0, memoryManager.getOffHeapDataUsedMemory());
+
+        OffHeapDataPageRecords empty = OffHeapDataPageRecords.build(Collections.emptyList(), memoryManager);
+        assertEquals(0, empty.size());
+        assertNull(empty.get(Bytes.from_string("key")));
+        assertFalse(empty.records().iterator().hasNext());
+        empty.release();
+        assertEquals(0, memoryManager.getOffHeapDataUsedMemory());
+    }
+
+    @Test
+    public void testMemoryBudget() throws Exception {
+        MemoryManager memoryManager = new MemoryManager(1024, 1024, 1024, true);
+        List<Record> records = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            records.add(new Record(Bytes.from_int(i), Bytes.from_string("value" + i)));
+        }
+        assertNull(OffHeapDataPageRecords.build(records, memoryManager));
+        assertEquals(0, memoryManager.getOffHeapDataUsedMemory());
+    }
+
+    @Test
+    public void testLoadPagesOffHeap() throws Exception {
+        Path dataPath = folder.newFolder("data").toPath();
+        Path logsPath = folder.newFolder("logs").toPath();
+        Path metadataPath = folder.newFolder("metadata").toPath();
+        Path tmpDir = folder.newFolder("tmpDir").toPath();
+        String nodeId = "localhost";
+        ServerConfiguration config = new ServerConfiguration();
+        config.set(ServerConfiguration.PROPERTY_MEMORY_DATA_OFFHEAP, true);
+        int numRecords = 1000;
+
+        try (DBManager manager = new DBManager(nodeId,
+                new FileMetadataStorageManager(metadataPath),
+                new FileDataStorageManager(dataPath),
+                new FileCommitLogManager(logsPath),
+                tmpDir, null, config, null)) {
+            manager.setMaxLogicalPageSize(4 * 1024);
+            manager.start();
+            CreateTableSpaceStatement st1 = new CreateTableSpaceStatement("tblspace1", Collections.singleton(nodeId), nodeId, 1, 0, 0);
+            manager.executeStatement(st1, StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT(), TransactionContext.NO_TRANSACTION);
+            assertTrue(manager.waitForTablespace("tblspace1", 10000));
+
+            execute(manager, "CREATE TABLE tblspace1.tsql (k1 int primary key, n1 int, s1 string)", Collections.emptyList());
+            for (int i = 0; i < numRecords; i++) {
+                executeUpdate(manager, "INSERT INTO tblspace1.tsql(k1,n1,s1) values(?,?,?)", Arrays.asList(i, i, "value" + i));
+            }
+            manager.checkpoint();
+            // pages written by this server are kept on the heap
+            assertEquals(0, manager.getMemoryManager().getOffHeapDataUsedMemory());
+        }
+
+        try (DBManager manager = new DBManager(nodeId,
+                new FileMetadataStorageManager(metadataPath),
+                new FileDataStorageManager(dataPath),
+                new FileCommitLogManager(logsPath),
+                tmpDir, null, config, null)) {
+            manager.setMaxLogicalPageSize(4 * 1024);
+            manager.start();
+            assertTrue(manager.waitForBootOfLocalTablespaces(10000));
+            TableManager tableManager = (TableManager) manager.getTableSpaceManager("tblspace1").getTableManager("tsql");
+            MemoryManager memoryManager = manager.getMemoryManager();
+
+            try (DataScanner scan = scan(manager, "SELECT k1, n1, s1 FROM tblspace1.tsql ORDER BY k1", Collections.emptyList())) {
+                List<DataAccessor> all = scan.consume();
+                assertEquals(numRecords, all.size());
+                for (int i = 0; i < numRecords; i++) {
+                    assertEquals(i, all.get(i).get("k1"));
+                    assertEquals(i, all.get(i).get("n1"));
+                    assertEquals(RawString.of("value" + i), all.get(i).get("s1"));
+                }
+            }
+            long offHeapPages = tableManager.getLoadedPages().stream().filter(DataPage::isOffHeap).count();
+            assertTrue(offHeapPages > 1);
+            long offHeapMemory = tableManager.getLoadedPages().stream().filter(DataPage::isOffHeap)
+                    .mapToLong(DataPage::getUsedMemory).sum();
+            assertEquals(offHeapMemory, memoryManager.getOffHeapDataUsedMemory());
+
+            try (DataScanner scan = scan(manager, "SELECT s1 FROM tblspace1.tsql WHERE k1=?", Arrays.asList(500))) {
+                assertEquals(RawString.of("value500"), scan.consume().get(0).get("s1"));
+            }
+
+            // modify records of off-heap pages
+            assertEquals(1, executeUpdate(manager, "UPDATE tblspace1.tsql SET n1=-1 WHERE k1=?", Arrays.asList(10)).getUpdateCount());
+            assertEquals(1, executeUpdate(manager, "DELETE FROM tblspace1.tsql WHERE k1=?", Arrays.asList(20)).getUpdateCount());
+            manager.checkpoint();
+
+            try (DataScanner scan = scan(manager, "SELECT k1, n1 FROM tblspace1.tsql WHERE k1 IN (10, 20)", Collections.emptyList())) {
+                List<DataAccessor> all = scan.consume();
+                assertEquals(1, all.size());
+                assertEquals(-1, all.get(0).get("n1"));
+            }
+            try (DataScanner scan = scan(manager, "SELECT COUNT(*) FROM tblspace1.tsql", Collections.emptyList())) {
+                assertEquals(Long.valueOf(numRecords - 1), scan.consume().get(0).get(0));
+            }
+            offHeapMemory = tableManager.getLoadedPages().stream().filter(DataPage::isOffHeap)
+                    .mapToLong(DataPage::getUsedMemory).sum();
+            assertEquals(offHeapMemory, memoryManager.getOffHeapDataUsedMemory());
+
+            execute(manager, "TRUNCATE TABLE tblspace1.tsql", Collections.emptyList());
+            assertEquals(0, memoryManager.getOffHeapDataUsedMemory());
+        }
+    }
+}
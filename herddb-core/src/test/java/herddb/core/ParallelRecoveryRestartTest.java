@@ -0,0 +1,137 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.core;
+
+import static herddb.core.TestUtils.beginTransaction;
+import static herddb.core.TestUtils.execute;
+import static herddb.core.TestUtils.executeUpdate;
+import static herddb.core.TestUtils.scan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import herddb.file.FileCommitLogManager;
+import herddb.file.FileDataStorageManager;
+import herddb.file.FileMetadataStorageManager;
+import herddb.model.DataScanner;
+import herddb.model.StatementEvaluationContext;
+import herddb.model.TransactionContext;
+import herddb.model.commands.CommitTransactionStatement;
+import herddb.model.commands.CreateTableSpaceStatement;
+import herddb.model.commands.RollbackTransactionStatement;
+import herddb.server.ServerConfiguration;
+import herddb.utils.DataAccessor;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+/**
+ * Recovery from file, replaying the log with parallel workers
+ */
+public class ParallelRecoveryRestartTest extends RestartTestBase {
+
+    @Override
+    protected DBManager buildDBManager(String nodeId, Path metadataPath, Path dataPath, Path logsPath, Path tmoDir) {
+        ServerConfiguration configuration = new ServerConfiguration();
+        configuration.set(ServerConfiguration.PROPERTY_RECOVERY_THREADS, 4);
+        return new DBManager(nodeId,
+                new FileMetadataStorageManager(metadataPath),
+                new FileDataStorageManager(dataPath),
+                new FileCommitLogManager(logsPath),
+                tmoDir, null, configuration, null);
+    }
+
+    @Test
+    public void recoverManyTablesNoCheckpoint() throws Exception {
+        Path dataPath = folder.newFolder("data").toPath();
+        Path logsPath = folder.newFolder("logs").toPath();
+        Path metadataPath = folder.newFolder("metadata").toPath();
+        Path tmoDir = folder.newFolder("tmoDir").toPath();
+        String nodeId = "localhost";
+        int numTables = 4;
+        int numRecords = 500;
+        try (DBManager manager = buildDBManager(nodeId, metadataPath, dataPath, logsPath, tmoDir)) {
+            manager.start();
+            CreateTableSpaceStatement st1 = new CreateTableSpaceStatement("tblspace1", Collections.singleton(nodeId), nodeId, 1, 0, 0);
+            manager.executeStatement(st1, StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT(), TransactionContext.NO_TRANSACTION);
+            assertTrue(manager.waitForTablespace("tblspace1", 10000));
+
+            for (int t = 0; t < numTables; t++) {
+                execute(manager, "CREATE TABLE tblspace1.t" + t + " (id int primary key, n1 int, s1 string)", Collections.emptyList());
+                execute(manager, "CREATE INDEX ix" + t + " ON tblspace1.t" + t + "(n1)", Collections.emptyList());
+                for (int i = 0; i < numRecords; i++) {
+                    executeUpdate(manager, "INSERT INTO tblspace1.t" + t + "(id,n1,s1) values(?,?,?)", Arrays.asList(i, i, "a"));
+                }
+                // the same keys are modified many times
+                for (int i = 0; i < numRecords; i += 2) {
+                    executeUpdate(manager, "UPDATE tblspace1.t" + t + " SET n1=n1+1 WHERE id=?", Arrays.asList(i));
+                    executeUpdate(manager, "UPDATE tblspace1.t" + t + " SET n1=n1+1 WHERE id=?", Arrays.asList(i));
+                }
+                for (int i = 0; i < numRecords; i += 5) {
+                    executeUpdate(manager, "DELETE FROM tblspace1.t" + t + " WHERE id=?", Arrays.asList(i));
+                }
+            }
+
+            // transactions which span many tables
+            long tx = beginTransaction(manager, "tblspace1");
+            for (int t = 0; t < numTables; t++) {
+                executeUpdate(manager, "UPDATE tblspace1.t" + t + " SET s1='tx' WHERE id=1", Collections.emptyList(), new TransactionContext(tx));
+                executeUpdate(manager, "INSERT INTO tblspace1.t" + t + "(id,n1,s1) values(?,?,?)", Arrays.asList(numRecords, -1, "tx"), new TransactionContext(tx));
+            }
+            manager.executeStatement(new CommitTransactionStatement("tblspace1", tx), StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT(), TransactionContext.NO_TRANSACTION);
+
+            long txRolledBack = beginTransaction(manager, "tblspace1");
+            for (int t = 0; t < numTables; t++) {
+                executeUpdate(manager, "DELETE FROM tblspace1.t" + t + " WHERE id=3", Collections.emptyList(), new TransactionContext(txRolledBack));
+            }
+            manager.executeStatement(new RollbackTransactionStatement("tblspace1", txRolledBack), StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT(), TransactionContext.NO_TRANSACTION);
+        }
+
+        try (DBManager manager = buildDBManager(nodeId, metadataPath, dataPath, logsPath, tmoDir)) {
+            manager.start();
+            assertTrue(manager.waitForBootOfLocalTablespaces(10000));
+            for (int t = 0; t < numTables; t++) {
+                try (DataScanner scan = scan(manager, "SELECT id, n1, s1 FROM tblspace1.t" + t + " ORDER BY id", Collections.emptyList())) {
+                    List<DataAccessor> records = scan.consume();
+                    assertEquals(numRecords - numRecords / 5 + 1, records.size());
+                    for (DataAccessor record : records) {
+                        int id = (Integer) record.get("id");
+                        int n1 = (Integer) record.get("n1");
+                        String s1 = record.get("s1").toString();
+                        if (id == numRecords) {
+                            assertEquals(-1, n1);
+                            assertEquals("tx", s1);
+                        } else {
+                            assertTrue(id % 5 != 0);
+                            assertEquals(id % 2 == 0 ? id + 2 : id, n1);
+                            assertEquals(id == 1 ? "tx" : "a", s1);
+                        }
+                    }
+                }
+                // secondary indexes
+                try (DataScanner scan = scan(manager, "SELECT id FROM tblspace1.t" + t + " WHERE n1=?", Arrays.asList(4))) {
+                    assertEquals(Arrays.asList(2), scan.consume().stream().map(r -> r.get("id")).collect(Collectors.toList()));
+                }
+            }
+        }
+    }
+}
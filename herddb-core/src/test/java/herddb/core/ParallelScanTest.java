@@ -0,0 +1,205 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+package herddb.core;
+
+import static herddb.core.TestUtils.beginTransaction;
+import static herddb.core.TestUtils.execute;
+import static herddb.core.TestUtils.executeUpdate;
+import static herddb.core.TestUtils.scan;
+import static herddb.model.TransactionContext.NO_TRANSACTION;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import herddb.core.stats.TableManagerStats;
+import herddb.file.FileCommitLogManager;
+import herddb.file.FileDataStorageManager;
+import herddb.file.FileMetadataStorageManager;
+import herddb.model.DataScanner;
+import herddb.model.StatementEvaluationContext;
+import herddb.model.TableSpace;
+import herddb.model.TransactionContext;
+import herddb.model.commands.CreateTableSpaceStatement;
+import herddb.model.commands.ScanStatement;
+import herddb.server.ServerConfiguration;
+import herddb.sql.SQLRecordPredicate;
+import herddb.sql.TranslatedQuery;
+import herddb.utils.DataAccessor;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests about parallel scans of large tables
+ */
+public class ParallelScanTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void parallelScansReturnTheSameResults() throws Exception {
+        Path dataPath = folder.newFolder("data").toPath();
+        Path logsPath = folder.newFolder("logs").toPath();
+        Path metadataPath = folder.newFolder("metadata").toPath();
+        Path tmpDir = folder.newFolder("tmpDir").toPath();
+        String nodeId = "localhost";
+        int testSize = 5000;
+
+        ServerConfiguration config = new ServerConfiguration();
+        config.set(ServerConfiguration.PROPERTY_SCAN_PARALLEL_THREADS, 4);
+        config.set(ServerConfiguration.PROPERTY_SCAN_PARALLEL_THRESHOLD, 1000);
+
+        try (DBManager manager = new DBManager(nodeId,
+                new FileMetadataStorageManager(metadataPath),
+                new FileDataStorageManager(dataPath),
+                new FileCommitLogManager(logsPath),
+                tmpDir, null, config, null)) {
+            manager.setMaxLogicalPageSize(4 * 1024);
+            manager.start();
+            CreateTableSpaceStatement st1 = new CreateTableSpaceStatement("tblspace1", Collections.singleton(nodeId), nodeId, 1, 0, 0);
+            manager.executeStatement(st1, StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT(), NO_TRANSACTION);
+            manager.waitForTablespace("tblspace1", 10000);
+
+            execute(manager, "CREATE TABLE tblspace1.tsql (k1 int primary key,n1 int,s1 string)", Collections.emptyList());
+            for (int i = 0; i < testSize / 2; i++) {
+                executeUpdate(manager, "INSERT INTO tblspace1.tsql(k1,n1,s1) values(?,?,?)", Arrays.asList(i, i % 7, "value" + i));
+            }
+            // some pages on disk, some pages only in memory
+            manager.checkpoint();
+            for (int i = testSize / 2; i < testSize; i++) {
+                executeUpdate(manager, "INSERT INTO tblspace1.tsql(k1,n1,s1) values(?,?,?)", Arrays.asList(i, i % 7, "value" + i));
+            }
+            executeUpdate(manager, "DELETE FROM tblspace1.tsql WHERE k1 < 10", Collections.emptyList());
+
+            TableManager tableManager = (TableManager) manager.getTableSpaceManager("tblspace1").getTableManager("tsql");
+            assertEquals(1000, tableManager.getParallelScanThreshold());
+            TableManagerStats stats = tableManager.getStats();
+
+            List<String> queries = Arrays.asList(
+                    "SELECT * FROM tblspace1.tsql",
+                    "SELECT k1, n1 * 2 + 1 as c FROM tblspace1.tsql WHERE n1 = 3 OR s1 = 'value12'",
+                    "SELECT k1 FROM tblspace1.tsql WHERE n1 >= 2 AND s1 <> 'value50'",
+                    "SELECT k1, s1 FROM tblspace1.tsql ORDER BY n1 DESC, k1 LIMIT 10",
+                    "SELECT COUNT(*), SUM(n1) FROM tblspace1.tsql WHERE n1 > 2",
+                    "SELECT n1, COUNT(*) FROM tblspace1.tsql GROUP BY n1");
+            for (String query : queries) {
+                tableManager.setParallelScanThreshold(Long.MAX_VALUE);
+                long parallelScans = stats.getParallelScansCount();
+                List<String> expected = query(manager, query, TransactionContext.NO_TRANSACTION);
+                assertEquals(parallelScans, stats.getParallelScansCount());
+
+                tableManager.setParallelScanThreshold(1000);
+                List<String> actual = query(manager, query, TransactionContext.NO_TRANSACTION);
+                assertEquals(query, parallelScans + 1, stats.getParallelScansCount());
+                assertEquals(query, expected, actual);
+            }
+
+            // results are streamed, the consumer can stop before the end of the scan
+            try (DataScanner scan = scan(manager, "SELECT * FROM tblspace1.tsql", Collections.emptyList())) {
+                for (int i = 0; i < 10; i++) {
+                    scan.next();
+                }
+            }
+            assertEquals(10, query(manager, "SELECT * FROM tblspace1.tsql LIMIT 10", NO_TRANSACTION).size());
+
+            // no parallel scan for index accesses and inside transactions
+            long parallelScans = stats.getParallelScansCount();
+            assertEquals(1, query(manager, "SELECT * FROM tblspace1.tsql WHERE k1 = 100", NO_TRANSACTION).size());
+            assertEquals(1900, query(manager, "SELECT k1 FROM tblspace1.tsql WHERE k1 >= 100 AND k1 < 2000", NO_TRANSACTION).size());
+            long tx = beginTransaction(manager, "tblspace1");
+            executeUpdate(manager, "INSERT INTO tblspace1.tsql(k1,n1,s1) values(?,?,?)", Arrays.asList(testSize, 0, "new"), new TransactionContext(tx));
+            assertEquals(testSize - 10 + 1, query(manager, "SELECT * FROM tblspace1.tsql", new TransactionContext(tx)).size());
+            assertEquals(testSize - 10, query(manager, "SELECT * FROM tblspace1.tsql", NO_TRANSACTION).size());
+            assertEquals(parallelScans + 1, stats.getParallelScansCount());
+        }
+    }
+
+    @Test
+    public void parallelScansWithFilterOnPrimaryKey() throws Exception {
+        Path dataPath = folder.newFolder("data").toPath();
+        Path logsPath = folder.newFolder("logs").toPath();
+        Path metadataPath = folder.newFolder("metadata").toPath();
+        Path tmpDir = folder.newFolder("tmpDir").toPath();
+        String nodeId = "localhost";
+        int testSize = 5000;
+
+        ServerConfiguration config = new ServerConfiguration();
+        config.set(ServerConfiguration.PROPERTY_SCAN_PARALLEL_THREADS, 4);
+        config.set(ServerConfiguration.PROPERTY_SCAN_PARALLEL_THRESHOLD, 1000);
+
+        try (DBManager manager = new DBManager(nodeId,
+                new FileMetadataStorageManager(metadataPath),
+                new FileDataStorageManager(dataPath),
+                new FileCommitLogManager(logsPath),
+                tmpDir, null, config, null)) {
+            manager.setMaxLogicalPageSize(4 * 1024);
+            manager.start();
+            CreateTableSpaceStatement st1 = new CreateTableSpaceStatement("tblspace1", Collections.singleton(nodeId), nodeId, 1, 0, 0);
+            manager.executeStatement(st1, StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT(), NO_TRANSACTION);
+            manager.waitForTablespace("tblspace1", 10000);
+
+            execute(manager, "CREATE TABLE tblspace1.tsql (k1 string,k2 int,n1 int,primary key (k1,k2))", Collections.emptyList());
+            for (int i = 0; i < testSize; i++) {
+                executeUpdate(manager, "INSERT INTO tblspace1.tsql(k1,k2,n1) values(?,?,?)", Arrays.asList("k" + (i % 10), i, i % 7));
+            }
+
+            TableManager tableManager = (TableManager) manager.getTableSpaceManager("tblspace1").getTableManager("tsql");
+            TableManagerStats stats = tableManager.getStats();
+
+            // the primary key filter is evaluated by the workers of the pool, without an index access
+            String query = "SELECT k2 FROM tblspace1.tsql WHERE k1 <> 'k3' AND k2 <> 100 AND n1 = 3";
+            TranslatedQuery translated = manager.getPlanner().translate(TableSpace.DEFAULT, query,
+                    Collections.emptyList(), true, true, false, -1);
+            SQLRecordPredicate predicate = (SQLRecordPredicate) translated.plan.mainStatement.unwrap(ScanStatement.class).getPredicate();
+            assertNull(predicate.getIndexOperation());
+            assertNotNull(predicate.getPrimaryKeyFilter());
+
+            int expected = 0;
+            for (int i = 0; i < testSize; i++) {
+                if (i % 10 != 3 && i != 100 && i % 7 == 3) {
+                    expected++;
+                }
+            }
+            for (int i = 0; i < 10; i++) {
+                long parallelScans = stats.getParallelScansCount();
+                assertEquals(expected, query(manager, query, NO_TRANSACTION).size());
+                assertEquals(parallelScans + 1, stats.getParallelScansCount());
+            }
+        }
+    }
+
+    private static List<String> query(DBManager manager, String query, TransactionContext transactionContext) throws Exception {
+        try (DataScanner scan = scan(manager, query, Collections.emptyList(), transactionContext)) {
+            List<String> result = scan.consume().stream()
+                    .map(DataAccessor::getValues)
+                    .map(Arrays::toString)
+                    .collect(Collectors.toList());
+            if (!query.contains("ORDER BY")) {
+                Collections.sort(result);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.core;
+
+import static herddb.core.TestUtils.execute;
+import static herddb.core.TestUtils.executeUpdate;
+import static herddb.core.TestUtils.scan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import herddb.file.FileCommitLogManager;
+import herddb.file.FileDataStorageManager;
+import herddb.file.FileMetadataStorageManager;
+import herddb.index.LongKeyToPageIndex;
+import herddb.index.blink.BLinkKeyToPageIndex;
+import herddb.model.DataScanner;
+import herddb.model.StatementEvaluationContext;
+import herddb.model.TransactionContext;
+import herddb.model.commands.CreateTableSpaceStatement;
+import herddb.server.ServerConfiguration;
+import herddb.utils.DataAccessor;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tables with a {@link LongKeyToPageIndex} as primary key index
+ */
+public class PrimitiveKeyToPageIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path dataPath;
+    private Path logsPath;
+    private Path metadataPath;
+    private Path tmpDir;
+
+    private DBManager buildDBManager(boolean primitive) {
+        ServerConfiguration config = new ServerConfiguration();
+        config.set(ServerConfiguration.PROPERTY_KEYTOPAGE_PRIMITIVE, primitive);
+        DBManager manager = new DBManager("localhost",
+                new FileMetadataStorageManager(metadataPath),
+                new FileDataStorageManager(dataPath),
+                new FileCommitLogManager(logsPath),
+                tmpDir, null, config, null);
+        manager.setMaxLogicalPageSize(4 * 1024);
+        return manager;
+    }
+
+    private static TableManager tableManager(DBManager manager, String table) {
+        return (TableManager) manager.getTableSpaceManager("tblspace1").getTableManager(table);
+    }
+
+    private static void checkData(DBManager manager, int numRecords) throws Exception {
+        try (DataScanner scan = scan(manager, "SELECT id, n1 FROM tblspace1.t1 ORDER BY id", Collections.emptyList())) {
+            List<DataAccessor> all = scan.consume();
+            assertEquals(numRecords - numRecords / 10, all.size());
+            for (DataAccessor record : all) {
+                int id = (Integer) record.get("id");
+                assertTrue(id % 10 != 0);
+                assertEquals(id % 3 == 0 ? -id : id, record.get("n1"));
+            }
+        }
+        try (DataScanner scan = scan(manager, "SELECT n1 FROM tblspace1.t1 WHERE id=?", Arrays.asList(3))) {
+            assertEquals(Arrays.asList(-3), scan.consume().stream().map(r -> r.get("n1")).collect(Collectors.toList()));
+        }
+        try (DataScanner scan = scan(manager, "SELECT n1 FROM tblspace1.t1 WHERE id=?", Arrays.asList(10))) {
+            assertTrue(scan.consume().isEmpty());
+        }
+        try (DataScanner scan = scan(manager, "SELECT id FROM tblspace1.t1 WHERE id>=? and id<=?", Arrays.asList(1, 5))) {
+            assertEquals(5, scan.consume().size());
+        }
+    }
+
+    @Test
+    public void testRestart() throws Exception {
+        dataPath = folder.newFolder("data").toPath();
+        logsPath = folder.newFolder("logs").toPath();
+        metadataPath = folder.newFolder("metadata").toPath();
+        tmpDir = folder.newFolder("tmpDir").toPath();
+        String nodeId = "localhost";
+        int numRecords = 1000;
+
+        try (DBManager manager = buildDBManager(true)) {
+            manager.start();
+            CreateTableSpaceStatement st1 = new CreateTableSpaceStatement("tblspace1", Collections.singleton(nodeId), nodeId, 1, 0, 0);
+            manager.executeStatement(st1, StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT(), TransactionContext.NO_TRANSACTION);
+            assertTrue(manager.waitForTablespace("tblspace1", 10000));
+
+            execute(manager, "CREATE TABLE tblspace1.t1 (id int primary key, n1 int)", Collections.emptyList());
+            execute(manager, "CREATE TABLE tblspace1.t2 (id string primary key, n1 int)", Collections.emptyList());
+            assertTrue(tableManager(manager, "t1").getKeyToPageIndex() instanceof LongKeyToPageIndex);
+            assertTrue(tableManager(manager, "t2").getKeyToPageIndex() instanceof BLinkKeyToPageIndex);
+
+            for (int i = 0; i < numRecords; i++) {
+                executeUpdate(manager, "INSERT INTO tblspace1.t1(id,n1) values(?,?)", Arrays.asList(i, i));
+            }
+            manager.checkpoint();
+            // changes after the checkpoint are recovered from the log
+            for (int i = 0; i < numRecords; i += 3) {
+                executeUpdate(manager, "UPDATE tblspace1.t1 SET n1=? WHERE id=?", Arrays.asList(-i, i));
+            }
+            for (int i = 0; i < numRecords; i += 10) {
+                executeUpdate(manager, "DELETE FROM tblspace1.t1 WHERE id=?", Arrays.asList(i));
+            }
+            checkData(manager, numRecords);
+        }
+
+        try (DBManager manager = buildDBManager(true)) {
+            manager.start();
+            assertTrue(manager.waitForBootOfLocalTablespaces(10000));
+            assertTrue(tableManager(manager, "t1").getKeyToPageIndex() instanceof LongKeyToPageIndex);
+            assertEquals(numRecords - numRecords / 10, tableManager(manager, "t1").getKeyToPageIndex().size());
+            checkData(manager, numRecords);
+            manager.checkpoint();
+        }
+
+        try (DBManager manager = buildDBManager(true)) {
+            manager.start();
+            assertTrue(manager.waitForBootOfLocalTablespaces(10000));
+            checkData(manager, numRecords);
+        }
+    }
+
+    @Test
+    public void testSettingOnlyAffectsNewTables() throws Exception {
+        dataPath = folder.newFolder("data").toPath();
+        logsPath = folder.newFolder("logs").toPath();
+        metadataPath = folder.newFolder("metadata").toPath();
+        tmpDir = folder.newFolder("tmpDir").toPath();
+        String nodeId = "localhost";
+        int numRecords = 1000;
+
+        try (DBManager manager = buildDBManager(false)) {
+            manager.start();
+            CreateTableSpaceStatement st1 = new CreateTableSpaceStatement("tblspace1", Collections.singleton(nodeId), nodeId, 1, 0, 0);
+            manager.executeStatement(st1, StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT(), TransactionContext.NO_TRANSACTION);
+            assertTrue(manager.waitForTablespace("tblspace1", 10000));
+
+            execute(manager, "CREATE TABLE tblspace1.t1 (id int primary key, n1 int)", Collections.emptyList());
+            assertTrue(tableManager(manager, "t1").getKeyToPageIndex() instanceof BLinkKeyToPageIndex);
+            for (int i = 0; i < numRecords; i++) {
+                executeUpdate(manager, "INSERT INTO tblspace1.t1(id,n1) values(?,?)", Arrays.asList(i, i % 3 == 0 ? -i : i));
+            }
+            manager.checkpoint();
+            for (int i = 0; i < numRecords; i += 10) {
+                executeUpdate(manager, "DELETE FROM tblspace1.t1 WHERE id=?", Arrays.asList(i));
+            }
+        }
+
+        // existing tables keep their index, new tables use the primitive one
+        try (DBManager manager = buildDBManager(true)) {
+            manager.start();
+            assertTrue(manager.waitForBootOfLocalTablespaces(10000));
+            assertTrue(tableManager(manager, "t1").getKeyToPageIndex() instanceof BLinkKeyToPageIndex);
+            checkData(manager, numRecords);
+
+            execute(manager, "CREATE TABLE tblspace1.t3 (id long primary key, n1 int)", Collections.emptyList());
+            assertTrue(tableManager(manager, "t3").getKeyToPageIndex() instanceof LongKeyToPageIndex);
+            for (int i = 0; i < numRecords; i++) {
+                executeUpdate(manager, "INSERT INTO tblspace1.t3(id,n1) values(?,?)", Arrays.asList(i, i));
+            }
+            manager.checkpoint();
+        }
+
+        // the setting can be disabled, the index of t3 follows the table
+        try (DBManager manager = buildDBManager(false)) {
+            manager.start();
+            assertTrue(manager.waitForBootOfLocalTablespaces(10000));
+            assertTrue(tableManager(manager, "t1").getKeyToPageIndex() instanceof BLinkKeyToPageIndex);
+            assertTrue(tableManager(manager, "t3").getKeyToPageIndex() instanceof LongKeyToPageIndex);
+            assertEquals(numRecords, tableManager(manager, "t3").getKeyToPageIndex().size());
+            checkData(manager, numRecords);
+            try (DataScanner scan = scan(manager, "SELECT n1 FROM tblspace1.t3 WHERE id=?", Arrays.asList(7L))) {
+                assertEquals(Arrays.asList(7), scan.consume().stream().map(r -> r.get("n1")).collect(Collectors.toList()));
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.core;
+
+import static herddb.core.TestUtils.execute;
+import static herddb.core.TestUtils.executeUpdate;
+import static herddb.core.TestUtils.scan;
+import static herddb.model.TransactionContext.NO_TRANSACTION;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import herddb.core.stats.TableManagerStats;
+import herddb.file.FileCommitLogManager;
+import herddb.file.FileDataStorageManager;
+import herddb.file.FileMetadataStorageManager;
+import herddb.model.DataScanner;
+import herddb.model.StatementEvaluationContext;
+import herddb.model.commands.CreateTableSpaceStatement;
+import herddb.server.ServerConfiguration;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests about read-ahead of data pages during table scans
+ */
+public class ScanPrefetchTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void prefetchPagesDuringFullScan() throws Exception {
+        Path dataPath = folder.newFolder("data").toPath();
+        Path logsPath = folder.newFolder("logs").toPath();
+        Path metadataPath = folder.newFolder("metadata").toPath();
+        Path tmpDir = folder.newFolder("tmpDir").toPath();
+        String nodeId = "localhost";
+        int testSize = 2000;
+
+        ServerConfiguration config = new ServerConfiguration();
+        config.set(ServerConfiguration.PROPERTY_SCAN_PREFETCH_THREADS, 2);
+        config.set(ServerConfiguration.PROPERTY_SCAN_PREFETCH_DEPTH, 3);
+
+        try (DBManager manager = new DBManager(nodeId,
+                new FileMetadataStorageManager(metadataPath),
+                new FileDataStorageManager(dataPath),
+                new FileCommitLogManager(logsPath),
+                tmpDir, null, config, null)) {
+            manager.setMaxLogicalPageSize(4 * 1024);
+            manager.start();
+            CreateTableSpaceStatement st1 = new CreateTableSpaceStatement("tblspace1", Collections.singleton(nodeId), nodeId, 1, 0, 0);
+            manager.executeStatement(st1, StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT(), NO_TRANSACTION);
+            manager.waitForTablespace("tblspace1", 10000);
+
+            execute(manager, "CREATE TABLE tblspace1.tsql (k1 int primary key,n1 int,s1 string)", Collections.emptyList());
+            for (int i = 0; i < testSize; i++) {
+                executeUpdate(manager, "INSERT INTO tblspace1.tsql(k1,n1,s1) values(?,?,?)", Arrays.asList(i, 0, "value" + i));
+            }
+            manager.checkpoint();
+        }
+
+        try (DBManager manager = new DBManager(nodeId,
+                new FileMetadataStorageManager(metadataPath),
+                new FileDataStorageManager(dataPath),
+                new FileCommitLogManager(logsPath),
+                tmpDir, null, config, null)) {
+            manager.setMaxLogicalPageSize(4 * 1024);
+            manager.start();
+            manager.waitForTablespace("tblspace1", 10000);
+
+            TableManager tableManager = (TableManager) manager.getTableSpaceManager("tblspace1").getTableManager("tsql");
+            assertEquals(3, tableManager.getScanPrefetchDepth());
+            TableManagerStats stats = tableManager.getStats();
+
+            // full table scan, pages are read ahead
+            assertEquals(testSize, executeUpdate(manager, "UPDATE tblspace1.tsql set n1=n1+1", Collections.emptyList()).getUpdateCount());
+
+            long prefetched = stats.getPrefetchedPagesCount();
+            assertTrue("prefetched " + prefetched, prefetched > 0);
+            assertTrue(stats.getPrefetchHitsCount() + stats.getPrefetchWastedCount() <= prefetched);
+
+            try (DataScanner scan1 = scan(manager, "SELECT COUNT(*) FROM tblspace1.tsql WHERE n1=1", Collections.emptyList())) {
+                assertEquals(Long.valueOf(testSize), scan1.consume().get(0).get(0));
+            }
+
+            // filter on the primary key, evaluated once per key while reading ahead
+            assertEquals(testSize / 2, executeUpdate(manager, "UPDATE tblspace1.tsql set n1=n1+1 WHERE k1<?",
+                    Arrays.asList(testSize / 2)).getUpdateCount());
+            try (DataScanner scan1 = scan(manager, "SELECT COUNT(*) FROM tblspace1.tsql WHERE n1=2", Collections.emptyList())) {
+                assertEquals(Long.valueOf(testSize / 2), scan1.consume().get(0).get(0));
+            }
+
+            // disable read-ahead for this table
+            tableManager.setScanPrefetchDepth(0);
+            manager.checkpoint();
+            assertEquals(testSize, executeUpdate(manager, "UPDATE tblspace1.tsql set n1=n1+1", Collections.emptyList()).getUpdateCount());
+            assertEquals(prefetched, stats.getPrefetchedPagesCount());
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.core;
+
+import static herddb.core.TestUtils.beginTransaction;
+import static herddb.core.TestUtils.execute;
+import static herddb.core.TestUtils.executeUpdate;
+import static herddb.core.TestUtils.scan;
+import static herddb.model.TransactionContext.NO_TRANSACTION;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import herddb.core.stats.TableManagerStats;
+import herddb.mem.MemoryCommitLogManager;
+import herddb.mem.MemoryDataStorageManager;
+import herddb.mem.MemoryMetadataStorageManager;
+import herddb.model.DataScanner;
+import herddb.model.StatementEvaluationContext;
+import herddb.model.StatementExecutionException;
+import herddb.model.TransactionContext;
+import herddb.model.commands.CommitTransactionStatement;
+import herddb.model.commands.CreateTableSpaceStatement;
+import herddb.server.ServerConfiguration;
+import herddb.utils.LockAcquireTimeoutException;
+import herddb.utils.RawString;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+/**
+ * Row level locks with {@link herddb.utils.StripedLocalLockManager}
+ */
+public class StripedRowLevelLocksTest {
+
+    @Test
+    public void testLocksOnTheSameStripe() throws Exception {
+        String nodeId = "localhost";
+        ServerConfiguration config = new ServerConfiguration();
+        config.set(ServerConfiguration.PROPERTY_TABLEMANAGER_STRIPED_ROWLEVELLOCKS, true);
+        // every key goes to the same stripe
+        config.set(ServerConfiguration.PROPERTY_TABLEMANAGER_LOCK_STRIPES, 1);
+        config.set(ServerConfiguration.PROPERTY_WRITELOCK_TIMEOUT, 1);
+        config.set(ServerConfiguration.PROPERTY_READLOCK_TIMEOUT, 1);
+
+        try (DBManager manager = new DBManager(nodeId,
+                new MemoryMetadataStorageManager(),
+                new MemoryDataStorageManager(),
+                new MemoryCommitLogManager(),
+                null, null, config, null)) {
+            manager.start();
+            CreateTableSpaceStatement st1 = new CreateTableSpaceStatement("tblspace1", Collections.singleton(nodeId), nodeId, 1, 0, 0);
+            manager.executeStatement(st1, StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT(), NO_TRANSACTION);
+            assertTrue(manager.waitForTablespace("tblspace1", 10000));
+
+            execute(manager, "CREATE TABLE tblspace1.tsql (k1 string primary key, n1 int)", Collections.emptyList());
+            for (int i = 0; i < 3; i++) {
+                executeUpdate(manager, "INSERT INTO tblspace1.tsql(k1,n1) values(?,?)", Arrays.asList("k" + i, i));
+            }
+            TableManagerStats stats = manager.getTableSpaceManager("tblspace1").getTableManager("tsql").getStats();
+
+            // the same transaction locks many keys on the same stripe
+            long tx1 = beginTransaction(manager, "tblspace1");
+            executeUpdate(manager, "UPDATE tblspace1.tsql set n1=10 where k1=?", Arrays.asList("k0"), new TransactionContext(tx1));
+            executeUpdate(manager, "UPDATE tblspace1.tsql set n1=11 where k1=?", Arrays.asList("k1"), new TransactionContext(tx1));
+            assertEquals(0, stats.getLockWaitsCount());
+
+            long tx2 = beginTransaction(manager, "tblspace1");
+            // other keys on the same stripe are not locked
+            executeUpdate(manager, "UPDATE tblspace1.tsql set n1=12 where k1=?", Arrays.asList("k2"), new TransactionContext(tx2));
+            try {
+                executeUpdate(manager, "UPDATE tblspace1.tsql set n1=20 where k1=?", Arrays.asList("k0"), new TransactionContext(tx2));
+                throw new AssertionError("expected a lock timeout");
+            } catch (StatementExecutionException err) {
+                assertTrue(err.getCause() instanceof LockAcquireTimeoutException);
+            }
+            assertEquals(1, stats.getLockWaitsCount());
+            assertEquals(1, stats.getLockTimeoutsCount());
+            assertTrue(stats.getLockWaitTime() >= 500);
+
+            manager.executeStatement(new CommitTransactionStatement("tblspace1", tx1), StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT(), NO_TRANSACTION);
+            manager.executeStatement(new CommitTransactionStatement("tblspace1", tx2), StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT(), NO_TRANSACTION);
+
+            try (DataScanner scan = scan(manager, "SELECT n1 FROM tblspace1.tsql ORDER BY k1", Collections.emptyList())) {
+                List<Object> values = scan.consume().stream().map(r -> r.get("n1")).collect(Collectors.toList());
+                assertEquals(Arrays.asList(10, 11, 12), values);
+            }
+            // locks have been released
+            executeUpdate(manager, "UPDATE tblspace1.tsql set n1=n1+1", Collections.emptyList());
+            try (DataScanner scan = scan(manager, "SELECT k1 FROM tblspace1.tsql WHERE n1=13", Collections.emptyList())) {
+                assertEquals(RawString.of("k2"), scan.consume().get(0).get("k1"));
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.core.indexes;
+
+import static herddb.core.TestUtils.execute;
+import static herddb.core.TestUtils.executeUpdate;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import herddb.core.AbstractIndexManager;
+import herddb.core.DBManager;
+import herddb.file.FileCommitLogManager;
+import herddb.file.FileDataStorageManager;
+import herddb.file.FileMetadataStorageManager;
+import herddb.index.IndexOperation;
+import herddb.index.SecondaryIndexRangeScan;
+import herddb.index.SecondaryIndexSeek;
+import herddb.index.blink.BLinkIndexManager;
+import herddb.model.DataScanner;
+import herddb.model.StatementEvaluationContext;
+import herddb.model.TableSpace;
+import herddb.model.TransactionContext;
+import herddb.model.commands.CreateTableSpaceStatement;
+import herddb.model.commands.ScanStatement;
+import herddb.sql.TranslatedQuery;
+import herddb.utils.DataAccessor;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests on BLINK indexes, with ordered range scans and recovery
+ */
+public class BLinkIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void rangeScanAndRecovery() throws Exception {
+        Path dataPath = folder.newFolder("data").toPath();
+        Path logsPath = folder.newFolder("logs").toPath();
+        Path metadataPath = folder.newFolder("metadata").toPath();
+        Path tmpDir = folder.newFolder("tmpDir").toPath();
+        String nodeId = "localhost";
+        try (DBManager manager = new DBManager(nodeId,
+                new FileMetadataStorageManager(metadataPath),
+                new FileDataStorageManager(dataPath),
+                new FileCommitLogManager(logsPath),
+                tmpDir, null)) {
+            manager.start();
+            CreateTableSpaceStatement st1 = new CreateTableSpaceStatement("tblspace1", Collections.singleton(nodeId), nodeId, 1, 0, 0);
+            manager.executeStatement(st1, StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT(), TransactionContext.NO_TRANSACTION);
+            manager.waitForTablespace("tblspace1", 10000);
+
+            execute(manager, "CREATE TABLE tblspace1.t1 (id int primary key, name string)", Collections.emptyList());
+            execute(manager, "CREATE BLINK INDEX ix1 ON tblspace1.t1(name)", Collections.emptyList());
+            AbstractIndexManager index = manager.getTableSpaceManager("tblspace1").getIndexesOnTable("t1").get("ix1");
+            assertTrue(index instanceof BLinkIndexManager);
+
+            for (int i = 0; i < 1000; i++) {
+                executeUpdate(manager, "INSERT INTO tblspace1.t1(id,name) values(?,?)",
+                        Arrays.asList(i, String.format("n%03d", i % 100)));
+            }
+            // values which are a prefix of others and contain the escape character
+            executeUpdate(manager, "INSERT INTO tblspace1.t1(id,name) values(?,?)", Arrays.asList(2000, "n010\u0000"));
+            executeUpdate(manager, "INSERT INTO tblspace1.t1(id,name) values(?,?)", Arrays.asList(2001, "n010\u0000\u0000"));
+            executeUpdate(manager, "INSERT INTO tblspace1.t1(id,name) values(?,?)", Arrays.asList(2002, "n010a"));
+            executeUpdate(manager, "INSERT INTO tblspace1.t1(id,name) values(?,?)", Arrays.asList(2003, null));
+
+            checkIndex(manager);
+
+            // move records around the index
+            assertEquals(10, executeUpdate(manager, "UPDATE tblspace1.t1 SET name='n999' WHERE name='n011'", Collections.emptyList()).getUpdateCount());
+            assertEquals(10, executeUpdate(manager, "DELETE FROM tblspace1.t1 WHERE name='n012'", Collections.emptyList()).getUpdateCount());
+            assertEquals(0, count(manager, "SELECT * FROM tblspace1.t1 WHERE name='n011'", SecondaryIndexSeek.class));
+            assertEquals(0, count(manager, "SELECT * FROM tblspace1.t1 WHERE name='n012'", SecondaryIndexSeek.class));
+            assertEquals(10, count(manager, "SELECT * FROM tblspace1.t1 WHERE name='n999'", SecondaryIndexSeek.class));
+
+            manager.checkpoint();
+        }
+
+        try (DBManager manager = new DBManager(nodeId,
+                new FileMetadataStorageManager(metadataPath),
+                new FileDataStorageManager(dataPath),
+                new FileCommitLogManager(logsPath),
+                tmpDir, null)) {
+            manager.start();
+            assertTrue(manager.waitForBootOfLocalTablespaces(10000));
+
+            assertEquals(0, count(manager, "SELECT * FROM tblspace1.t1 WHERE name='n011'", SecondaryIndexSeek.class));
+            assertEquals(10, count(manager, "SELECT * FROM tblspace1.t1 WHERE name='n999'", SecondaryIndexSeek.class));
+            assertEquals(10, count(manager, "SELECT * FROM tblspace1.t1 WHERE name='n050'", SecondaryIndexSeek.class));
+            assertEquals(3 + 10 + 70, count(manager, "SELECT * FROM tblspace1.t1 WHERE name>='n010' and name<='n019'", SecondaryIndexRangeScan.class));
+        }
+    }
+
+    private static void checkIndex(DBManager manager) throws Exception {
+        assertEquals(10, count(manager, "SELECT * FROM tblspace1.t1 WHERE name='n050'", SecondaryIndexSeek.class));
+        assertEquals(1, count(manager, "SELECT * FROM tblspace1.t1 WHERE name='n010\u0000'", SecondaryIndexSeek.class));
+        assertEquals(0, count(manager, "SELECT * FROM tblspace1.t1 WHERE name='n10'", SecondaryIndexSeek.class));
+        assertEquals(3 + 100, count(manager, "SELECT * FROM tblspace1.t1 WHERE name>='n010' and name<='n019'", SecondaryIndexRangeScan.class));
+        assertEquals(90, count(manager, "SELECT * FROM tblspace1.t1 WHERE name<='n008'", SecondaryIndexRangeScan.class));
+        assertEquals(100, count(manager, "SELECT * FROM tblspace1.t1 WHERE name>='n090'", SecondaryIndexRangeScan.class));
+
+        // entries are returned in the order of the index
+        TranslatedQuery translated = manager.getPlanner().translate(TableSpace.DEFAULT,
+                "SELECT name FROM tblspace1.t1 WHERE name>='n010' and name<='n020'", Collections.emptyList(), true, true, false, -1);
+        try (DataScanner scan = manager.scan(translated.plan.mainStatement.unwrap(ScanStatement.class), translated.context, TransactionContext.NO_TRANSACTION)) {
+            List<String> names = new ArrayList<>();
+            for (DataAccessor record : scan.consume()) {
+                names.add(record.get("name").toString());
+            }
+            List<String> sorted = new ArrayList<>(names);
+            Collections.sort(sorted);
+            assertEquals(sorted, names);
+        }
+    }
+
+    private static int count(DBManager manager, String query, Class<? extends IndexOperation> expectedIndexOperation) throws Exception {
+        TranslatedQuery translated = manager.getPlanner().translate(TableSpace.DEFAULT, query, Collections.emptyList(), true, true, false, -1);
+        ScanStatement scan = translated.plan.mainStatement.unwrap(ScanStatement.class);
+        assertTrue(scan.getPredicate().getIndexOperation() + "", expectedIndexOperation.isInstance(scan.getPredicate().getIndexOperation()));
+        try (DataScanner scan1 = manager.scan(scan, translated.context, TransactionContext.NO_TRANSACTION)) {
+            return scan1.consume().size();
+        }
+    }
+}
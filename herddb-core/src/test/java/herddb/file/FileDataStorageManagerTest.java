@@ -22,10 +22,20 @@ package herddb.file;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import herddb.model.Record;
+import herddb.model.Table;
+import herddb.storage.DataPageDoesNotExistException;
+import herddb.storage.DataStorageManagerException;
 import herddb.utils.Bytes;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Stream;
+import org.apache.bookkeeper.stats.NullStatsLogger;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -50,6 +60,96 @@ public class FileDataStorageManagerTest {
         }
     }
 
+    @Test
+    public void testReadWriteDataPageWithMemoryMappedReads() throws Exception {
+        Path baseDirectory = folder.newFolder().toPath();
+        try (FileDataStorageManager man = new FileDataStorageManager(baseDirectory, baseDirectory.resolve("tmp"),
+                0, false, false, true, false, true, true, NullStatsLogger.INSTANCE)) {
+            List<Record> page = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                page.add(new Record(Bytes.from_int(i), i % 10 == 0 ? Bytes.EMPTY_ARRAY : Bytes.from_string("value" + i)));
+            }
+            man.initTable("test1", "table1");
+            man.writePage("test1", "table1", 1L, page);
+            List<Record> result = man.readPage("test1", "table1", 1L);
+            assertEquals(page, result);
+            for (int i = 0; i < page.size(); i++) {
+                assertEquals(page.get(i).value, result.get(i).value);
+            }
+
+            // corrupt the page, the hash does not match anymore
+            Path pageFile;
+            try (Stream<Path> files = Files.walk(baseDirectory)) {
+                pageFile = files.filter(p -> p.getFileName().toString().equals("1" + FileDataStorageManager.FILEEXTENSION_PAGE))
+                        .findFirst().get();
+            }
+            byte[] content = Files.readAllBytes(pageFile);
+            content[content.length / 2]++;
+            Files.write(pageFile, content);
+            try {
+                man.readPage("test1", "table1", 1L);
+                fail();
+            } catch (DataStorageManagerException expected) {
+                assertTrue(expected.getMessage().contains("Bad hash"));
+            }
+
+            try {
+                man.readPage("test1", "table1", 2L);
+                fail();
+            } catch (DataPageDoesNotExistException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void testReadWriteCompressedDataPage() throws Exception {
+        Path baseDirectory = folder.newFolder().toPath();
+        List<Record> page = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            page.add(new Record(Bytes.from_int(i), i % 10 == 0 ? Bytes.EMPTY_ARRAY : Bytes.from_string("value value value " + i)));
+        }
+        try (FileDataStorageManager man = new FileDataStorageManager(baseDirectory)) {
+            man.initTable("test1", "table1");
+            man.writePage("test1", "table1", 1L, page);
+            assertEquals(0, man.getCompressedPagesBytes());
+            assertEquals(1, man.getPageCompressionRatio(), 0);
+            man.writePage("test1", "table1", 2L, page, Table.PAGE_COMPRESSION_LZ4);
+            assertEquals(page, man.readPage("test1", "table1", 1L));
+            assertEquals(page, man.readPage("test1", "table1", 2L));
+            assertTrue(man.getCompressedPagesBytes() > 0);
+            assertTrue(man.getCompressedPagesRawBytes() > man.getCompressedPagesBytes());
+            assertTrue(man.getPageCompressionRatio() > 1);
+        }
+        Path page1 = findPageFile(baseDirectory, 1L);
+        Path page2 = findPageFile(baseDirectory, 2L);
+        assertTrue(Files.size(page2) < Files.size(page1));
+        assertEquals(page, FileDataStorageManager.rawReadDataPage(page1));
+        assertEquals(page, FileDataStorageManager.rawReadDataPage(page2));
+
+        // both formats are readable with memory mapped reads
+        try (FileDataStorageManager man = new FileDataStorageManager(baseDirectory, baseDirectory.resolve("tmp"),
+                0, false, false, true, false, true, true, NullStatsLogger.INSTANCE)) {
+            assertEquals(page, man.readPage("test1", "table1", 1L));
+            assertEquals(page, man.readPage("test1", "table1", 2L));
+
+            byte[] content = Files.readAllBytes(page2);
+            content[content.length / 2]++;
+            Files.write(page2, content);
+            try {
+                man.readPage("test1", "table1", 2L);
+                fail();
+            } catch (DataStorageManagerException expected) {
+            }
+        }
+    }
+
+    private static Path findPageFile(Path baseDirectory, long pageId) throws Exception {
+        try (Stream<Path> files = Files.walk(baseDirectory)) {
+            return files.filter(p -> p.getFileName().toString().equals(pageId + FileDataStorageManager.FILEEXTENSION_PAGE))
+                    .findFirst().get();
+        }
+    }
+
     @Test
     public void testReadWriteIndexPage() throws Exception {
         try (FileDataStorageManager man = new FileDataStorageManager(folder.newFolder().toPath())) {
@@ -0,0 +1,147 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import herddb.log.LogSequenceNumber;
+import herddb.mem.MemoryDataStorageManager;
+import herddb.model.ColumnTypes;
+import herddb.model.Table;
+import herddb.storage.DataStorageManagerException;
+import herddb.storage.IndexStatus;
+import herddb.utils.Bytes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+/**
+ * Base test suite for {@link LongKeyToPageIndex}, plus checkpoints
+ */
+public class LongKeyToPageIndexTest extends KeyToPageIndexTest {
+
+    private static Table table(int pkType) {
+        return Table.builder()
+                .tablespace("tblspace1")
+                .name("t1")
+                .column("id", pkType)
+                .column("name", ColumnTypes.STRING)
+                .primaryKey("id")
+                .build();
+    }
+
+    @Override
+    KeyToPageIndex createIndex() {
+        return new LongKeyToPageIndex("tblspace1", table(ColumnTypes.INTEGER), null);
+    }
+
+    @Test
+    public void testSupportedTables() {
+        assertTrue(LongKeyToPageIndex.isSupported(table(ColumnTypes.INTEGER)));
+        assertTrue(LongKeyToPageIndex.isSupported(table(ColumnTypes.NOTNULL_LONG)));
+        assertFalse(LongKeyToPageIndex.isSupported(table(ColumnTypes.STRING)));
+        assertFalse(LongKeyToPageIndex.isSupported(Table.builder()
+                .tablespace("tblspace1")
+                .name("t1")
+                .column("id", ColumnTypes.INTEGER)
+                .column("id2", ColumnTypes.INTEGER)
+                .primaryKey("id")
+                .primaryKey("id2")
+                .build()));
+    }
+
+    @Test
+    public void testFullScan() throws Exception {
+        try (KeyToPageIndex index = new LongKeyToPageIndex("tblspace1", table(ColumnTypes.LONG), null)) {
+            index.start(LogSequenceNumber.START_OF_TIME, true);
+            Map<Bytes, Long> expected = new HashMap<>();
+            for (long i = -500; i < 500; i++) {
+                Bytes key = Bytes.from_long(i * 1000000000L);
+                index.put(key, i + 500);
+                expected.put(key, i + 500);
+            }
+            Map<Bytes, Long> all = index.scanner(null, null, null, null)
+                    .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+            assertEquals(expected, all);
+        }
+    }
+
+    @Test
+    public void testCheckpoint() throws Exception {
+        MemoryDataStorageManager dataStorageManager = new MemoryDataStorageManager();
+        Table table = table(ColumnTypes.INTEGER);
+        String indexName = LongKeyToPageIndex.deriveIndexName(table.uuid);
+        LogSequenceNumber first = new LogSequenceNumber(1, 1);
+        LogSequenceNumber second = new LogSequenceNumber(1, 2);
+        int numKeys = 10000;
+        try (KeyToPageIndex index = new LongKeyToPageIndex("tblspace1", table, dataStorageManager)) {
+            index.init();
+            assertFalse(index.requireLoadAtStartup());
+            index.start(LogSequenceNumber.START_OF_TIME, true);
+            for (int i = 0; i < numKeys; i++) {
+                index.put(Bytes.from_int(i), (long) i % 10);
+            }
+            index.checkpoint(first, false);
+            long newPageIdAfterFirst = dataStorageManager.getIndexStatus("tblspace1", indexName, first).newPageId;
+
+            // a single key changes, only one section is written
+            index.put(Bytes.from_int(5), 100L);
+            index.remove(Bytes.from_int(6));
+            index.checkpoint(second, false);
+            long newPageIdAfterSecond = dataStorageManager.getIndexStatus("tblspace1", indexName, second).newPageId;
+            assertTrue(newPageIdAfterSecond - newPageIdAfterFirst <= 2);
+        }
+
+        try (KeyToPageIndex index = new LongKeyToPageIndex("tblspace1", table, dataStorageManager)) {
+            index.init();
+            index.start(second, false);
+            assertEquals(numKeys - 1, index.size());
+            assertEquals(Long.valueOf(100), index.get(Bytes.from_int(5)));
+            assertNull(index.get(Bytes.from_int(6)));
+            for (int i = 7; i < numKeys; i++) {
+                assertEquals(Long.valueOf(i % 10), index.get(Bytes.from_int(i)));
+            }
+        }
+    }
+
+    @Test
+    public void testCheckpointReadError() throws Exception {
+        MemoryDataStorageManager dataStorageManager = new MemoryDataStorageManager() {
+            @Override
+            public IndexStatus getIndexStatus(String tableSpace, String indexName, LogSequenceNumber sequenceNumber)
+                    throws DataStorageManagerException {
+                throw new DataStorageManagerException("corrupted checkpoint");
+            }
+        };
+        try (KeyToPageIndex index = new LongKeyToPageIndex("tblspace1", table(ColumnTypes.INTEGER), dataStorageManager)) {
+            index.init();
+            // errors other than a missing checkpoint do not fall back to a rebuild
+            index.start(new LogSequenceNumber(1, 1), false);
+            fail();
+        } catch (DataStorageManagerException err) {
+            assertEquals("corrupted checkpoint", err.getMessage());
+        }
+    }
+}
@@ -75,4 +75,20 @@ public class TableTest {
         assertEquals(deserialize, instance);
     }
 
+    @Test
+    public void testSerializeKeyToPageIndex() {
+        Table instance = Table
+                .builder()
+                .name("tt")
+                .primaryKey("n1")
+                .column("n1", ColumnTypes.LONG)
+                .column("k1", ColumnTypes.STRING)
+                .keyToPageIndex(Table.KEYTOPAGE_INDEX_LONG)
+                .build();
+        Table deserialize = Table.deserialize(instance.serialize());
+        assertEquals(Table.KEYTOPAGE_INDEX_LONG, deserialize.keyToPageIndex);
+        assertEquals(deserialize, instance);
+        assertEquals(Table.KEYTOPAGE_INDEX_LONG, Table.builder().cloning(instance).build().keyToPageIndex);
+    }
+
 }
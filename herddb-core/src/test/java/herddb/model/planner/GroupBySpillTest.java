@@ -0,0 +1,147 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.model.planner;
+
+import static herddb.core.TestUtils.execute;
+import static herddb.core.TestUtils.executeUpdate;
+import static herddb.model.TransactionContext.NO_TRANSACTION;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import herddb.core.DBManager;
+import herddb.file.FileCommitLogManager;
+import herddb.file.FileDataStorageManager;
+import herddb.file.FileMetadataStorageManager;
+import herddb.model.DataScanner;
+import herddb.model.ScanResult;
+import herddb.model.StatementEvaluationContext;
+import herddb.model.TableSpace;
+import herddb.model.TransactionContext;
+import herddb.model.commands.CreateTableSpaceStatement;
+import herddb.sql.TranslatedQuery;
+import herddb.utils.DataAccessor;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests about GROUP BY queries with more groups than the in memory budget
+ */
+public class GroupBySpillTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final int MAX_GROUPS_IN_MEMORY = 7;
+
+    @Test
+    public void groupBySpillToDiskTest() throws Exception {
+        Path dataPath = folder.newFolder("data").toPath();
+        Path logsPath = folder.newFolder("logs").toPath();
+        Path metadataPath = folder.newFolder("metadata").toPath();
+        Path tmpDir = folder.newFolder("tmpDir").toPath();
+        Path swapDir = folder.newFolder("swapDir").toPath();
+        String nodeId = "localhost";
+        try (DBManager manager = new DBManager(nodeId,
+                new FileMetadataStorageManager(metadataPath),
+                new FileDataStorageManager(dataPath, swapDir, 10, false, false, false, false, false, NullStatsLogger.INSTANCE),
+                new FileCommitLogManager(logsPath),
+                tmpDir, null)) {
+            manager.start();
+            CreateTableSpaceStatement st1 = new CreateTableSpaceStatement("tblspace1", Collections.singleton(nodeId), nodeId, 1, 0, 0);
+            manager.executeStatement(st1, StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT(), NO_TRANSACTION);
+            manager.waitForTablespace("tblspace1", 10000);
+
+            execute(manager, "CREATE TABLE tblspace1.tsql (k1 int primary key,n1 int,s1 string)", Collections.emptyList());
+
+            Map<Integer, Long> expectedByN1 = new HashMap<>();
+            Map<String, Long> expectedByS1 = new HashMap<>();
+            for (int i = 0; i < 2000; i++) {
+                Integer n1 = i % 10 == 0 ? null : i % 300;
+                String s1 = "s" + (i % 150);
+                executeUpdate(manager, "INSERT INTO tblspace1.tsql(k1,n1,s1) values(?,?,?)", Arrays.asList(i, n1, s1));
+                expectedByN1.merge(n1, 1L, Long::sum);
+                expectedByS1.merge(s1, 1L, Long::sum);
+            }
+
+            // single integral grouping column
+            try (DataScanner scan1 = scanWithSpill(manager, "SELECT n1, COUNT(*) as cc FROM tblspace1.tsql GROUP BY n1", Collections.emptyList())) {
+                List<DataAccessor> result = scan1.consume();
+                assertEquals(expectedByN1.size(), result.size());
+                Map<Integer, Long> actual = new HashMap<>();
+                for (DataAccessor row : result) {
+                    assertNull(actual.put((Integer) row.get(0), (Long) row.get(1)));
+                }
+                assertEquals(expectedByN1, actual);
+            }
+
+            // generic grouping column
+            try (DataScanner scan1 = scanWithSpill(manager, "SELECT s1, COUNT(*) as cc, SUM(k1) as sk FROM tblspace1.tsql GROUP BY s1", Collections.emptyList())) {
+                List<DataAccessor> result = scan1.consume();
+                assertEquals(expectedByS1.size(), result.size());
+                Map<String, Long> actual = new HashMap<>();
+                for (DataAccessor row : result) {
+                    assertNull(actual.put(row.get(0).toString(), (Long) row.get(1)));
+                }
+                assertEquals(expectedByS1, actual);
+            }
+
+            // multiple grouping columns
+            try (DataScanner scan1 = scanWithSpill(manager, "SELECT s1, n1, COUNT(*) as cc FROM tblspace1.tsql GROUP BY s1, n1", Collections.emptyList())) {
+                List<DataAccessor> result = scan1.consume();
+                long total = 0;
+                for (DataAccessor row : result) {
+                    total += (Long) row.get(2);
+                }
+                assertEquals(2000, total);
+            }
+
+            // spilled partitions are released
+            File[] swapFiles = swapDir.toFile().listFiles();
+            assertTrue(Arrays.toString(swapFiles), swapFiles == null || swapFiles.length == 0);
+        }
+    }
+
+    /**
+     * Executes the aggregation of the query with a budget of
+     * {@link #MAX_GROUPS_IN_MEMORY} groups, the projection on top of it is
+     * not applied
+     */
+    private static DataScanner scanWithSpill(DBManager manager, String query, List<Object> parameters) throws Exception {
+        TranslatedQuery translated = manager.getPlanner().translate(TableSpace.DEFAULT, query, parameters, true, true, false, -1);
+        PlannerOp op = translated.plan.originalRoot;
+        while (op instanceof ProjectOp) {
+            op = ((ProjectOp) op).getInput();
+        }
+        assertTrue(String.valueOf(op), op instanceof AggregateOp);
+        translated.context.setManager(manager);
+        return ((ScanResult) ((AggregateOp) op).execute(manager.getTableSpaceManager("tblspace1"),
+                TransactionContext.NO_TRANSACTION, translated.context, false, false, MAX_GROUPS_IN_MEMORY)).dataScanner;
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.model.planner;
+
+import static herddb.core.TestUtils.execute;
+import static herddb.core.TestUtils.executeUpdate;
+import static herddb.core.TestUtils.scan;
+import static herddb.model.TransactionContext.NO_TRANSACTION;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import herddb.core.DBManager;
+import herddb.file.FileCommitLogManager;
+import herddb.file.FileDataStorageManager;
+import herddb.file.FileMetadataStorageManager;
+import herddb.model.DataScanner;
+import herddb.model.ScanResult;
+import herddb.model.StatementEvaluationContext;
+import herddb.model.TableSpace;
+import herddb.model.TransactionContext;
+import herddb.model.commands.CreateTableSpaceStatement;
+import herddb.sql.TranslatedQuery;
+import herddb.utils.DataAccessor;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests about hash joins with a build side larger than the in memory budget
+ */
+public class HashJoinSpillTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final int MAX_BUILD_ROWS_IN_MEMORY = 5;
+
+    @Test
+    public void hashJoinSpillToDiskTest() throws Exception {
+        Path dataPath = folder.newFolder("data").toPath();
+        Path logsPath = folder.newFolder("logs").toPath();
+        Path metadataPath = folder.newFolder("metadata").toPath();
+        Path tmpDir = folder.newFolder("tmpDir").toPath();
+        Path swapDir = folder.newFolder("swapDir").toPath();
+        String nodeId = "localhost";
+        try (DBManager manager = new DBManager(nodeId,
+                new FileMetadataStorageManager(metadataPath),
+                new FileDataStorageManager(dataPath, swapDir, 10, false, false, false, false, false, NullStatsLogger.INSTANCE),
+                new FileCommitLogManager(logsPath),
+                tmpDir, null)) {
+            manager.start();
+            CreateTableSpaceStatement st1 = new CreateTableSpaceStatement("tblspace1", Collections.singleton(nodeId), nodeId, 1, 0, 0);
+            manager.executeStatement(st1, StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT(), NO_TRANSACTION);
+            manager.waitForTablespace("tblspace1", 10000);
+
+            execute(manager, "CREATE TABLE tblspace1.ta (ka int primary key,na int)", Collections.emptyList());
+            execute(manager, "CREATE TABLE tblspace1.tb (kb int primary key,nb int)", Collections.emptyList());
+
+            // na in 0..99 (and nulls), nb in 50..149 (and nulls)
+            for (int i = 0; i < 200; i++) {
+                Integer na = i % 20 == 0 ? null : i % 100;
+                Integer nb = i % 25 == 0 ? null : 50 + i % 100;
+                executeUpdate(manager, "INSERT INTO tblspace1.ta(ka,na) values(?,?)", Arrays.asList(i, na));
+                executeUpdate(manager, "INSERT INTO tblspace1.tb(kb,nb) values(?,?)", Arrays.asList(i, nb));
+            }
+            int expectedInner = 0;
+            int unmatchedA = 0;
+            int unmatchedB = 0;
+            for (int i = 0; i < 200; i++) {
+                Integer na = i % 20 == 0 ? null : i % 100;
+                Integer nb = i % 25 == 0 ? null : 50 + i % 100;
+                int matchesA = 0;
+                int matchesB = 0;
+                for (int j = 0; j < 200; j++) {
+                    Integer otherNb = j % 25 == 0 ? null : 50 + j % 100;
+                    Integer otherNa = j % 20 == 0 ? null : j % 100;
+                    if (na != null && na.equals(otherNb)) {
+                        matchesA++;
+                    }
+                    if (nb != null && nb.equals(otherNa)) {
+                        matchesB++;
+                    }
+                }
+                expectedInner += matchesA;
+                if (matchesA == 0) {
+                    unmatchedA++;
+                }
+                if (matchesB == 0) {
+                    unmatchedB++;
+                }
+            }
+
+            try (DataScanner scan1 = scan(manager, "SELECT ka, kb FROM tblspace1.ta JOIN tblspace1.tb ON na = nb WHERE na IS NOT NULL", Collections.emptyList())) {
+                List<DataAccessor> result = scan1.consume();
+                assertEquals(expectedInner, result.size());
+                Set<String> pairs = new HashSet<>();
+                for (DataAccessor row : result) {
+                    assertTrue(pairs.add(row.get("ka") + "-" + row.get("kb")));
+                }
+            }
+
+            try (DataScanner scan1 = scanWithSpill(manager, "SELECT ka, kb FROM tblspace1.ta LEFT JOIN tblspace1.tb ON na = nb", Collections.emptyList())) {
+                List<DataAccessor> result = scan1.consume();
+                assertEquals(values(sqlResult(manager, "SELECT ka, kb FROM tblspace1.ta LEFT JOIN tblspace1.tb ON na = nb"), "ka", "kb"), values(result, "ka", "kb"));
+                assertEquals(expectedInner + unmatchedA, result.size());
+                assertEquals(unmatchedA, result.stream().filter(r -> r.get("kb") == null).count());
+            }
+
+            try (DataScanner scan1 = scanWithSpill(manager, "SELECT ka, kb FROM tblspace1.ta RIGHT JOIN tblspace1.tb ON na = nb", Collections.emptyList())) {
+                List<DataAccessor> result = scan1.consume();
+                assertEquals(values(sqlResult(manager, "SELECT ka, kb FROM tblspace1.ta RIGHT JOIN tblspace1.tb ON na = nb"), "ka", "kb"), values(result, "ka", "kb"));
+                assertEquals(expectedInner + unmatchedB, result.size());
+                assertEquals(unmatchedB, result.stream().filter(r -> r.get("ka") == null).count());
+            }
+
+            try (DataScanner scan1 = scanWithSpill(manager, "SELECT ka FROM tblspace1.ta WHERE na IN (SELECT nb FROM tblspace1.tb)", Collections.emptyList())) {
+                List<DataAccessor> result = scan1.consume();
+                assertEquals(values(sqlResult(manager, "SELECT ka FROM tblspace1.ta WHERE na IN (SELECT nb FROM tblspace1.tb)"), "ka"), values(result, "ka"));
+                assertEquals(200 - unmatchedA, result.size());
+                Set<Integer> keys = new HashSet<>();
+                for (DataAccessor row : result) {
+                    assertTrue(keys.add((Integer) row.get("ka")));
+                }
+            }
+
+            // spilled partitions are released
+            File[] swapFiles = swapDir.toFile().listFiles();
+            assertTrue(Arrays.toString(swapFiles), swapFiles == null || swapFiles.length == 0);
+        }
+    }
+
+    /**
+     * Executes the hash join of the query with a budget of
+     * {@link #MAX_BUILD_ROWS_IN_MEMORY} rows, the projection on top of it is
+     * not applied
+     */
+    private static DataScanner scanWithSpill(DBManager manager, String query, List<Object> parameters) throws Exception {
+        TranslatedQuery translated = manager.getPlanner().translate(TableSpace.DEFAULT, query, parameters, true, true, false, -1);
+        PlannerOp op = translated.plan.originalRoot;
+        while (op instanceof ProjectOp || op instanceof FilterOp) {
+            op = op instanceof ProjectOp ? ((ProjectOp) op).getInput() : ((FilterOp) op).getInput();
+        }
+        assertTrue(String.valueOf(op), op instanceof HashJoinOp);
+        translated.context.setManager(manager);
+        return ((ScanResult) ((HashJoinOp) op).execute(manager.getTableSpaceManager("tblspace1"),
+                TransactionContext.NO_TRANSACTION, translated.context, false, false, MAX_BUILD_ROWS_IN_MEMORY)).dataScanner;
+    }
+
+    /**
+     * Executes the whole query through the planner, the hash join uses its
+     * default budget
+     */
+    private static List<DataAccessor> sqlResult(DBManager manager, String query) throws Exception {
+        try (DataScanner scan1 = scan(manager, query, Collections.emptyList())) {
+            return scan1.consume();
+        }
+    }
+
+    private static List<String> values(List<DataAccessor> rows, String... fields) {
+        return rows.stream()
+                .map(row -> Arrays.stream(fields).map(f -> String.valueOf(row.get(f))).collect(Collectors.joining(",")))
+                .sorted()
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Licensed to Diennea S.r.l. under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Diennea S.r.l. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package herddb.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import herddb.backup.DumpedTableMetadata;
+import herddb.client.ClientConfiguration;
+import herddb.client.HDBClient;
+import herddb.client.HDBConnection;
+import herddb.client.TableSpaceDumpReceiver;
+import herddb.log.LogSequenceNumber;
+import herddb.model.Record;
+import herddb.model.TableSpace;
+import herddb.proto.PduCodec;
+import herddb.storage.DataStorageManagerException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Dump of a TableSpace streaming many tables at the same time
+ */
+public class ParallelDumpTableSpaceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testParallel() throws Exception {
+        testDump(new PduCodec.DumpOptions(4, 8, false));
+    }
+
+    @Test
+    public void testParallelCompressed() throws Exception {
+        testDump(new PduCodec.DumpOptions(4, 8, true));
+    }
+
+    @Test
+    public void testSequential() throws Exception {
+        testDump(null);
+    }
+
+    private void testDump(PduCodec.DumpOptions options) throws Exception {
+        int numTables = 6;
+        int numRecords = 1000;
+        try (Server server = new Server(new ServerConfiguration(folder.newFolder().toPath()))) {
+            server.start();
+            server.waitForStandaloneBoot();
+            try (HDBClient client = new HDBClient(new ClientConfiguration(folder.newFolder().toPath()));
+                    HDBConnection connection = client.openConnection()) {
+                client.setClientSideMetadataProvider(new StaticClientSideMetadataProvider(server));
+                for (int t = 0; t < numTables; t++) {
+                    connection.executeUpdate(TableSpace.DEFAULT,
+                            "CREATE TABLE t" + t + " (id int primary key, s1 string)", 0, false, true,
+                            Collections.emptyList());
+                    for (int i = 0; i < numRecords; i++) {
+                        connection.executeUpdate(TableSpace.DEFAULT,
+                                "INSERT INTO t" + t + " (id,s1) values(?,?)", 0, false, true,
+                                Arrays.asList(i, "value" + i));
+                    }
+                }
+
+                Map<String, Set<Object>> receivedKeys = new ConcurrentHashMap<>();
+                Set<String> endedTables = ConcurrentHashMap.newKeySet();
+                AtomicReference<Throwable> error = new AtomicReference<>();
+                CountDownLatch finished = new CountDownLatch(1);
+                TableSpaceDumpReceiver receiver = new TableSpaceDumpReceiver() {
+                    private volatile String currentTable;
+
+                    @Override
+                    public void beginTable(DumpedTableMetadata table, Map<String, Object> stats) throws DataStorageManagerException {
+                        currentTable = table.table.name;
+                        receivedKeys.put(table.table.name, ConcurrentHashMap.newKeySet());
+                    }
+
+                    @Override
+                    public void receiveTableDataChunk(String table, List<Record> records) throws DataStorageManagerException {
+                        Set<Object> keys = receivedKeys.get(table != null ? table : currentTable);
+                        for (Record record : records) {
+                            assertTrue(keys.add(record.key));
+                        }
+                    }
+
+                    @Override
+                    public void endTable(String table) throws DataStorageManagerException {
+                        endedTables.add(table != null ? table : currentTable);
+                    }
+
+                    @Override
+                    public void finish(LogSequenceNumber logSequenceNumber) throws DataStorageManagerException {
+                        finished.countDown();
+                    }
+
+                    @Override
+                    public void onError(Throwable err) throws DataStorageManagerException {
+                        error.set(err);
+                        finished.countDown();
+                    }
+                };
+                connection.dumpTableSpace(TableSpace.DEFAULT, receiver, 50, false, options);
+                assertTrue(finished.await(1, TimeUnit.MINUTES));
+                assertNull(error.get());
+
+                Set<String> expectedTables = new HashSet<>();
+                for (int t = 0; t < numTables; t++) {
+                    expectedTables.add("t" + t);
+                }
+                assertTrue(receivedKeys.keySet().containsAll(expectedTables));
+                assertTrue(endedTables.containsAll(expectedTables));
+                for (String table : expectedTables) {
+                    assertEquals(numRecords, receivedKeys.get(table).size());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Licensed to Diennea S.r.l. under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Diennea S.r.l. licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package herddb.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import herddb.client.ClientConfiguration;
+import herddb.client.HDBClient;
+import herddb.client.HDBConnection;
+import herddb.model.TableSpace;
+import herddb.sql.AbstractSQLPlanner;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Prepared statements reuse their plans
+ */
+public class PreparedStatementPlansTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String SELECT = "SELECT * FROM mytable WHERE id=?";
+
+    @Test
+    public void test() throws Exception {
+        try (Server server = new Server(new ServerConfiguration(folder.newFolder().toPath()))) {
+            server.start();
+            server.waitForStandaloneBoot();
+            try (HDBClient client = new HDBClient(new ClientConfiguration(folder.newFolder().toPath()));
+                    HDBConnection connection = client.openConnection()) {
+                client.setClientSideMetadataProvider(new StaticClientSideMetadataProvider(server));
+                AbstractSQLPlanner planner = server.getManager().getPlanner();
+
+                connection.executeUpdate(TableSpace.DEFAULT,
+                        "CREATE TABLE mytable (id string primary key, n1 long)", 0, false, true,
+                        Collections.emptyList());
+                for (int i = 0; i < 10; i++) {
+                    assertEquals(1, connection.executeUpdate(TableSpace.DEFAULT,
+                            "INSERT INTO mytable (id,n1) values(?,?)", 0, false, true,
+                            Arrays.asList("k" + i, i)).updateCount);
+                }
+
+                // first execution translates the query and pins the plan
+                assertEquals(1, connection.executeScan(TableSpace.DEFAULT, SELECT, true,
+                        Arrays.asList("k0"), 0, 0, 10, true).consume().size());
+                long hits = planner.getCacheHits();
+                long misses = planner.getCacheMisses();
+                for (int i = 0; i < 10; i++) {
+                    List<Map<String, Object>> records = connection.executeScan(TableSpace.DEFAULT, SELECT, true,
+                            Arrays.asList("k" + i), 0, 0, 10, true).consume();
+                    assertEquals(1, records.size());
+                    assertEquals(Long.valueOf(i), records.get(0).get("n1"));
+                }
+                // no lookup in the cache of plans
+                assertEquals(hits, planner.getCacheHits());
+                assertEquals(misses, planner.getCacheMisses());
+
+                Map<String, Object> stats = statementStats(connection, SELECT);
+                assertEquals(Boolean.TRUE, stats.get("planpinned"));
+                assertEquals(11L, stats.get("executions"));
+                assertTrue((Long) stats.get("maxlatency") >= (Long) stats.get("p50latency"));
+                assertTrue((Long) stats.get("totallatency") >= (Long) stats.get("maxlatency"));
+
+                // a DDL invalidates the pinned plan
+                connection.executeUpdate(TableSpace.DEFAULT,
+                        "ALTER TABLE mytable ADD COLUMN n2 int", 0, false, true,
+                        Collections.emptyList());
+                List<Map<String, Object>> records = connection.executeScan(TableSpace.DEFAULT, SELECT, true,
+                        Arrays.asList("k1"), 0, 0, 10, true).consume();
+                assertEquals(1, records.size());
+                assertTrue(records.get(0).containsKey("n2"));
+
+                // updates through prepared statements
+                for (int i = 0; i < 10; i++) {
+                    assertEquals(1, connection.executeUpdate(TableSpace.DEFAULT,
+                            "UPDATE mytable SET n2=? WHERE id=?", 0, false, true,
+                            Arrays.asList(i, "k" + i)).updateCount);
+                }
+                assertEquals(10L, statementStats(connection, "UPDATE mytable SET n2=? WHERE id=?").get("executions"));
+                assertEquals(1, connection.executeScan(TableSpace.DEFAULT, "SELECT * FROM mytable WHERE n2=7", false,
+                        Collections.emptyList(), 0, 0, 10, true).consume().size());
+
+                // statements which are not prepared are not listed
+                assertFalse(connection.executeScan(TableSpace.DEFAULT,
+                        "SELECT * FROM syspreparedstatements WHERE query='SELECT * FROM mytable WHERE n2=7'", false,
+                        Collections.emptyList(), 0, 0, 10, true).consume().size() > 0);
+            }
+        }
+    }
+
+    private static Map<String, Object> statementStats(HDBConnection connection, String query) throws Exception {
+        List<Map<String, Object>> records = connection.executeScan(TableSpace.DEFAULT,
+                "SELECT * FROM syspreparedstatements WHERE query=?", false,
+                Arrays.asList(query), 0, 0, 10, true).consume();
+        assertEquals(1, records.size());
+        return records.get(0);
+    }
+}
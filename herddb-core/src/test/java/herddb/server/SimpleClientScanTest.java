@@ -33,6 +33,8 @@ import herddb.model.TableSpace;
 import herddb.utils.TestUtils;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
@@ -154,6 +156,59 @@ public class SimpleClientScanTest {
         }
     }
 
+    @Test
+    public void scanWithPrefetch() throws Exception {
+        try (Server server = new Server(new ServerConfiguration(folder.newFolder().toPath()))) {
+            server.start();
+            server.waitForStandaloneBoot();
+            for (int prefetchDepth : new int[]{0, 1, 4}) {
+                ClientConfiguration clientConfiguration = new ClientConfiguration(folder.newFolder().toPath());
+                clientConfiguration.set(ClientConfiguration.PROPERTY_SCANNER_PREFETCH_DEPTH, prefetchDepth);
+                try (HDBClient client = new HDBClient(clientConfiguration);
+                        HDBConnection connection = client.openConnection()) {
+                    client.setClientSideMetadataProvider(new StaticClientSideMetadataProvider(server));
+
+                    connection.executeUpdate(TableSpace.DEFAULT,
+                            "DROP TABLE IF EXISTS mytable", 0, false, true, Collections.emptyList());
+                    connection.executeUpdate(TableSpace.DEFAULT,
+                            "CREATE TABLE mytable (id int primary key, n1 long)", 0, false, true, Collections.emptyList());
+                    for (int i = 0; i < 100; i++) {
+                        Assert.assertEquals(1, connection.executeUpdate(TableSpace.DEFAULT,
+                                "INSERT INTO mytable (id,n1) values(?,?)", 0, false, true, Arrays.asList(i, i * 2L)).updateCount);
+                    }
+
+                    // chunks must be received in order
+                    try (ScanResultSet scan = connection.executeScan(TableSpace.DEFAULT, "SELECT id FROM mytable ORDER BY id", true,
+                            Collections.emptyList(), 0, 0, 3, true)) {
+                        int expected = 0;
+                        while (scan.hasNext()) {
+                            assertEquals(expected++, ((Number) scan.next().get("id")).intValue());
+                        }
+                        assertEquals(100, expected);
+                    }
+                    checkNoScannersOnTheServer(server);
+
+                    // close while other chunks are being fetched
+                    try (ScanResultSet scan = connection.executeScan(TableSpace.DEFAULT, "SELECT id FROM mytable", true,
+                            Collections.emptyList(), 0, 0, 3, true)) {
+                        for (int i = 0; i < 10; i++) {
+                            assertTrue(scan.hasNext());
+                            scan.next();
+                        }
+                    }
+                    checkNoScannersOnTheServer(server);
+
+                    // scan in a transaction, without prefetch
+                    long tx = connection.beginTransaction(TableSpace.DEFAULT);
+                    assertEquals(50, connection.executeScan(TableSpace.DEFAULT, "SELECT * FROM mytable WHERE id >= ?", true,
+                            Arrays.asList(50), tx, 0, 7, true).consume().size());
+                    connection.commitTransaction(TableSpace.DEFAULT, tx);
+                    checkNoScannersOnTheServer(server);
+                }
+            }
+        }
+    }
+
     private void checkNoScannersOnTheServer(final Server server) throws Exception {
         TestUtils.waitForCondition(() -> {
             for (ServerSideConnectionPeer peer : server.getConnections().values()) {
@@ -166,6 +221,46 @@ public class SimpleClientScanTest {
 
     }
 
+    @Test
+    public void scanColumnarResults() throws Exception {
+        try (Server server = new Server(new ServerConfiguration(folder.newFolder().toPath()))) {
+            server.start();
+            server.waitForStandaloneBoot();
+
+            ClientConfiguration columnarConfiguration = new ClientConfiguration(folder.newFolder().toPath());
+            ClientConfiguration rowsConfiguration = new ClientConfiguration(folder.newFolder().toPath());
+            rowsConfiguration.set(ClientConfiguration.PROPERTY_SCANNER_COLUMNAR_RESULTS, false);
+            try (HDBClient columnarClient = new HDBClient(columnarConfiguration);
+                    HDBConnection columnar = columnarClient.openConnection();
+                    HDBClient rowsClient = new HDBClient(rowsConfiguration);
+                    HDBConnection rows = rowsClient.openConnection()) {
+                columnarClient.setClientSideMetadataProvider(new StaticClientSideMetadataProvider(server));
+                rowsClient.setClientSideMetadataProvider(new StaticClientSideMetadataProvider(server));
+
+                columnar.executeUpdate(TableSpace.DEFAULT,
+                        "CREATE TABLE mytable (id string primary key, n1 long, n2 integer, t1 timestamp, d1 double)", 0, false, true,
+                        Collections.emptyList());
+                for (int i = 0; i < 99; i++) {
+                    columnar.executeUpdate(TableSpace.DEFAULT,
+                            "INSERT INTO mytable (id,n1,n2,t1,d1) values(?,?,?,?,?)", 0, false, true, Arrays.
+                                    asList("test_" + i, i * 1000L, i % 3 == 0 ? null : -i,
+                                            new java.sql.Timestamp(System.currentTimeMillis() + i), i / 3.0));
+                }
+
+                for (String query : Arrays.asList("SELECT * FROM mytable ORDER BY id",
+                        "SELECT id, n2 FROM mytable WHERE n2 IS NULL ORDER BY id",
+                        "SELECT count(*), sum(n1) FROM mytable")) {
+                    List<Map<String, Object>> expected = rows.executeScan(TableSpace.DEFAULT, query, true,
+                            Collections.emptyList(), 0, 0, 10, true).consume();
+                    List<Map<String, Object>> actual = columnar.executeScan(TableSpace.DEFAULT, query, true,
+                            Collections.emptyList(), 0, 0, 10, true).consume();
+                    assertTrue(!expected.isEmpty());
+                    assertEquals(expected, actual);
+                }
+            }
+        }
+    }
+
     private void checkCloseScannerOnConnectionClose(
             final HDBClient client, HDBConnection primary,
             final Server server, boolean withTransaction
@@ -54,6 +54,7 @@ import herddb.model.commands.SQLPlannedOperationStatement;
 import herddb.model.commands.ScanStatement;
 import herddb.model.planner.BindableTableScanOp;
 import herddb.model.planner.DeleteOp;
+import herddb.model.planner.HashJoinOp;
 import herddb.model.planner.InsertOp;
 import herddb.model.planner.LimitedSortedBindableTableScanOp;
 import herddb.model.planner.PlannerOp;
@@ -61,7 +62,6 @@ import herddb.model.planner.ProjectOp;
 import herddb.model.planner.ProjectOp.IdentityProjection;
 import herddb.model.planner.ProjectOp.ZeroCopyProjection;
 import herddb.model.planner.ProjectOp.ZeroCopyProjection.RuntimeProjectedDataAccessor;
-import herddb.model.planner.SemiJoinOp;
 import herddb.model.planner.SimpleDeleteOp;
 import herddb.model.planner.SimpleInsertOp;
 import herddb.model.planner.SimpleScanOp;
@@ -471,7 +471,7 @@ public class CalcitePlannerTest {
                 ProjectOp plan = assertInstanceOf(plan(manager, "select k2,n2 from tblspace1.tsql2"
                         + "                     where n2 in (select n1 from tblspace1.tsql"
                         + "                                     order by n1 asc limit 1)"), ProjectOp.class);
-                assertThat(plan.getInput(), instanceOf(SemiJoinOp.class));
+                assertThat(plan.getInput(), instanceOf(HashJoinOp.class));
                 List<DataAccessor> tuples = scan(manager, "select k2,n2 from tblspace1.tsql2"
                         + "                     where n2 in (select n1 from tblspace1.tsql"
                         + "                                     order by n1 asc limit 1)"
@@ -498,7 +498,7 @@ public class CalcitePlannerTest {
             if (manager.isFullSQLSupportEnabled()) {
                 ProjectOp plan = assertInstanceOf(plan(manager, "select k2,n2 from tblspace1.tsql2"
                         + "                     where exists (select 1 from tblspace1.tsql a where a.n1=n2)"), ProjectOp.class);
-                assertThat(plan.getInput(), instanceOf(SemiJoinOp.class));
+                assertThat(plan.getInput(), instanceOf(HashJoinOp.class));
                 List<DataAccessor> tuples = scan(manager, "select k2,n2 from tblspace1.tsql2"
                         + "                     where exists (select 1 from tblspace1.tsql a where a.n1=n2)"
                         + " ", Collections.emptyList()).consumeAndClose();
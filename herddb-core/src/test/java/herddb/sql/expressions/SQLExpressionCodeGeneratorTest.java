@@ -0,0 +1,225 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.sql.expressions;
+
+import static herddb.core.TestUtils.execute;
+import static herddb.core.TestUtils.executeUpdate;
+import static herddb.core.TestUtils.scan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import herddb.core.DBManager;
+import herddb.mem.MemoryCommitLogManager;
+import herddb.mem.MemoryDataStorageManager;
+import herddb.mem.MemoryMetadataStorageManager;
+import herddb.model.ColumnTypes;
+import herddb.model.DataScanner;
+import herddb.model.StatementEvaluationContext;
+import herddb.model.TableSpace;
+import herddb.sql.SQLStatementEvaluationContext;
+import herddb.utils.DataAccessor;
+import herddb.utils.MapDataAccessor;
+import herddb.utils.RawString;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+/**
+ * Generated expressions must behave exactly like the interpreter
+ */
+public class SQLExpressionCodeGeneratorTest {
+
+    private static final String[] FIELDS = {"n1", "n2", "s1", "b1"};
+
+    private static List<DataAccessor> rows() {
+        List<DataAccessor> rows = new ArrayList<>();
+        Object[] numbers = {null, -1, 0, 1, 5, 10L};
+        Object[] strings = {null, "a", RawString.of("b")};
+        Object[] booleans = {null, true, false};
+        for (Object n1 : numbers) {
+            for (Object n2 : numbers) {
+                for (Object s1 : strings) {
+                    for (Object b1 : booleans) {
+                        Map<String, Object> map = new HashMap<>();
+                        map.put("n1", n1);
+                        map.put("n2", n2);
+                        map.put("s1", s1);
+                        map.put("b1", b1);
+                        rows.add(new MapDataAccessor(map, FIELDS));
+                    }
+                }
+            }
+        }
+        return rows;
+    }
+
+    private static CompiledSQLExpression n1() {
+        return new AccessCurrentRowExpression(0, ColumnTypes.INTEGER);
+    }
+
+    private static CompiledSQLExpression n2() {
+        return new AccessCurrentRowExpression(1, ColumnTypes.INTEGER);
+    }
+
+    private static CompiledSQLExpression s1() {
+        return new AccessCurrentRowExpression(2, ColumnTypes.STRING);
+    }
+
+    private static CompiledSQLExpression b1() {
+        return new AccessCurrentRowExpression(3, ColumnTypes.BOOLEAN);
+    }
+
+    private static CompiledSQLExpression constant(Object value) {
+        return new ConstantExpression(value, ColumnTypes.ANYTYPE);
+    }
+
+    private static void checkSameResults(CompiledSQLExpression expression) {
+        CompiledSQLExpression generated = SQLExpressionCodeGenerator.generate(expression);
+        assertTrue(generated instanceof GeneratedSQLExpression);
+        assertSame(expression, ((GeneratedSQLExpression) generated).getOriginal());
+        assertEquals(expression.toString(), generated.toString());
+        StatementEvaluationContext context = new SQLStatementEvaluationContext("test", Arrays.asList(5, "a"), false, false);
+        for (DataAccessor row : rows()) {
+            assertEquals(expression + " on " + row.toMap(), expression.evaluate(row, context), generated.evaluate(row, context));
+        }
+    }
+
+    @Test
+    public void testBooleanOperators() throws Exception {
+        checkSameResults(new CompiledAndExpression(
+                new CompiledEqualsExpression(n1(), constant(1)),
+                new CompiledNotEqualsExpression(s1(), constant("a"))));
+        checkSameResults(new CompiledOrExpression(
+                new CompiledGreaterThanExpression(n1(), n2()),
+                new CompiledIsNullExpression(false, s1())));
+        checkSameResults(new CompiledMultiAndExpression(new CompiledSQLExpression[]{
+            new CompiledGreaterThanEqualsExpression(n1(), new JdbcParameterExpression(0)),
+            new CompiledMinorThanEqualsExpression(n2(), constant(10)),
+            new CompiledIsNullExpression(true, b1())}));
+        checkSameResults(new CompiledMultiOrExpression(new CompiledSQLExpression[]{
+            new CompiledMinorThanExpression(n1(), n2()),
+            new CompiledEqualsExpression(s1(), new JdbcParameterExpression(1)),
+            b1()}));
+        checkSameResults(new CompiledNotExpression(new CompiledAndExpression(b1(), b1())));
+        checkSameResults(new CompiledAndExpression(new CompiledNotExpression(b1()), new CompiledIsNotTrueExpression(false, b1())));
+        checkSameResults(new CompiledOrExpression(new CompiledParenthesisExpression(true, b1()), new CompiledIsNotTrueExpression(true, b1())));
+    }
+
+    @Test
+    public void testComparisonsNotOnColumns() throws Exception {
+        checkSameResults(new CompiledEqualsExpression(new CompiledAddExpression(n1(), n2()), constant(10)));
+        checkSameResults(new CompiledNotEqualsExpression(new CompiledSubtractExpression(n1(), n2()), constant(0)));
+        checkSameResults(new CompiledGreaterThanExpression(new CompiledMultiplyExpression(n1(), constant(2)), n2()));
+        checkSameResults(new CompiledMinorThanExpression(constant(3), new CompiledAddExpression(n1(), constant(1L))));
+        checkSameResults(new CompiledAndExpression(
+                new CompiledEqualsExpression(new CompiledModuloExpression(n1(), constant(2)), constant(1)),
+                new CompiledGreaterThanEqualsExpression(new CompiledDivideExpression(n2(), constant(2)), constant(0))));
+    }
+
+    @Test
+    public void testUnsupportedNodesUseTheInterpreter() throws Exception {
+        checkSameResults(new CompiledOrExpression(
+                new CompiledAndExpression(
+                        new CompiledLikeExpression(s1(), constant("a%")),
+                        new CompiledInExpression(n1(), new CompiledSQLExpression[]{constant(1), constant(5)})),
+                new CompiledIsNullExpression(false, n2())));
+        checkSameResults(new CompiledEqualsExpression(new CompiledAddExpression(n1().cast(ColumnTypes.LONG), n2()), constant(0)));
+    }
+
+    @Test
+    public void testSimpleExpressionsAreNotGenerated() throws Exception {
+        CompiledSQLExpression leaf = n1();
+        assertSame(leaf, SQLExpressionCodeGenerator.generate(leaf));
+        CompiledSQLExpression equals = new CompiledEqualsExpression(n1(), constant(1));
+        assertSame(equals, SQLExpressionCodeGenerator.generate(equals));
+        assertSame(null, SQLExpressionCodeGenerator.generate(null));
+    }
+
+    @Test
+    public void testGeneratedClassesAreSharedByShape() throws Exception {
+        CompiledSQLExpression first = SQLExpressionCodeGenerator.generate(new CompiledAndExpression(
+                new CompiledEqualsExpression(n1(), constant(1)),
+                new CompiledLikeExpression(s1(), constant("a%"))));
+        CompiledSQLExpression second = SQLExpressionCodeGenerator.generate(new CompiledAndExpression(
+                new CompiledEqualsExpression(n1(), constant(5)),
+                new CompiledLikeExpression(s1(), constant("b%"))));
+        CompiledSQLExpression otherColumn = SQLExpressionCodeGenerator.generate(new CompiledAndExpression(
+                new CompiledEqualsExpression(n2(), constant(1)),
+                new CompiledLikeExpression(s1(), constant("a%"))));
+        assertSame(first.getClass(), second.getClass());
+        assertNotSame(first.getClass(), otherColumn.getClass());
+
+        // each instance keeps its own constants
+        StatementEvaluationContext context = new SQLStatementEvaluationContext("test", Collections.emptyList(), false, false);
+        for (DataAccessor row : rows()) {
+            Object n1 = row.get("n1");
+            Object s1 = row.get("s1");
+            boolean matchesFirst = n1 != null && ((Number) n1).intValue() == 1 && "a".equals(String.valueOf(s1));
+            boolean matchesSecond = n1 != null && ((Number) n1).intValue() == 5 && "b".equals(String.valueOf(s1));
+            assertEquals(matchesFirst, first.evaluate(row, context));
+            assertEquals(matchesSecond, second.evaluate(row, context));
+        }
+    }
+
+    @Test
+    public void testQueries() throws Exception {
+        try (DBManager manager = new DBManager("localhost", new MemoryMetadataStorageManager(), new MemoryDataStorageManager(), new MemoryCommitLogManager(), null, null)) {
+            manager.start();
+            assertTrue(manager.waitForTablespace(TableSpace.DEFAULT, 10000));
+            execute(manager, "CREATE TABLE t1 (k1 int primary key, n1 int, s1 string)", Collections.emptyList());
+            for (int i = 0; i < 100; i++) {
+                executeUpdate(manager, "INSERT INTO t1(k1,n1,s1) values(?,?,?)", Arrays.asList(i, i % 10 == 0 ? null : i % 7, "s" + (i % 3)));
+            }
+            assertEquals(countExpected("s1"), count(manager,
+                    "SELECT k1 FROM t1 WHERE (n1 > ? AND n1 + 1 <= ?) OR s1 = ?", Arrays.asList(2, 5, "s1")));
+            assertEquals(10, count(manager,
+                    "SELECT k1 FROM t1 WHERE n1 IS NULL AND (k1 >= ? OR s1 <> ?)", Arrays.asList(0, "s0")));
+            assertEquals(90, count(manager,
+                    "SELECT k1 FROM t1 WHERE NOT (n1 IS NULL) AND k1 < ?", Arrays.asList(1000)));
+            try (DataScanner scan = scan(manager, "SELECT k1, n1 * 2 + k1 as c FROM t1 WHERE k1 = ?", Arrays.asList(15))) {
+                assertEquals(1 * 2 + 15, ((Number) scan.consume().get(0).get("c")).intValue());
+            }
+        }
+    }
+
+    private static int countExpected(String s1) {
+        int res = 0;
+        for (int i = 0; i < 100; i++) {
+            Integer n1 = i % 10 == 0 ? null : i % 7;
+            boolean matches = (n1 != null && n1 > 2 && n1 + 1 <= 5) || ("s" + (i % 3)).equals(s1);
+            if (matches) {
+                res++;
+            }
+        }
+        return res;
+    }
+
+    private static int count(DBManager manager, String query, List<Object> params) throws Exception {
+        try (DataScanner scan = scan(manager, query, params)) {
+            return scan.consume().size();
+        }
+    }
+}
@@ -83,4 +83,14 @@ public abstract class Page<O extends Page.Owner> {
         this.pageId = pageId;
     }
 
+    /**
+     * Memory used by the page, for {@link PageReplacementPolicy policies} which account the memory of the pages
+     * instead of their number.
+     *
+     * @return memory used by the page in bytes, 0 if not known
+     */
+    public long getUsedMemory() {
+        return 0;
+    }
+
 }
@@ -52,6 +52,20 @@ public interface PageReplacementPolicy {
      */
     Page.Metadata add(Page<?> page);
 
+    /**
+     * Selects another page to be unloaded, if the pages in memory still exceed the budget of the policy.
+     * <p>
+     * Policies which account the memory of the pages may need to unload more than one page to make room for a new
+     * one: after the unload of the page returned by {@link #add(Page)} the caller should unload every page returned
+     * by this method, until it returns {@code null}.
+     * </p>
+     *
+     * @return selected page to be unloaded or {@code null}
+     */
+    default Page.Metadata pollExceeding() {
+        return null;
+    }
+
     /**
      * Remove a {@code Page} from memory.
      *
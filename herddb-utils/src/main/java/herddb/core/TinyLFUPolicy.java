@@ -0,0 +1,538 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.core;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Window TinyLFU implementation of {@link PageReplacementPolicy} with a memory budget.
+ *
+ * <p>Based on the original work:
+ *
+ * <pre>
+ * TinyLFU: A Highly Efficient Cache Admission Policy
+ *
+ * Gil Einziger, Roy Friedman, Ben Manes
+ * </pre>
+ *
+ * <p>See https://arxiv.org/abs/1512.00727
+ *
+ * <p>
+ * Pages are accounted by their real used memory ({@link Page#getUsedMemory()}), pages which do not report it are
+ * accounted as pages of the default size. New pages enter a small LRU window, pages leaving the window are admitted
+ * in the main area (a segmented LRU) only if they have been accessed more frequently than the page which would be
+ * evicted in their place: pages read only once by a big scan do not evict the hot pages. Frequencies are estimated
+ * with a count-min sketch of 4 bits counters, halved periodically in order to forget old accesses.
+ * </p>
+ *
+ * <p>
+ * Page hits do not take the lock of the policy: they are recorded into striped lossy buffers which are drained in
+ * batches by the first thread which finds the lock free.
+ * </p>
+ */
+public class TinyLFUPolicy implements PageReplacementPolicy {
+
+    private static final byte NONE = 0;
+    private static final byte WINDOW = 1;
+    private static final byte PROBATION = 2;
+    private static final byte PROTECTED = 3;
+
+    private static final int WINDOW_PERCENT = 1;
+    private static final int PROTECTED_PERCENT = 80;
+
+    private static final int HIT_BUFFER_SIZE = 32;
+    private static final int HIT_BUFFER_MASK = HIT_BUFFER_SIZE - 1;
+    private static final int HIT_BUFFER_DRAIN_THRESHOLD = HIT_BUFFER_SIZE / 2;
+
+    private final long maximum;
+    private final long defaultPageSize;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+
+    private final NodeList window = new NodeList();
+    private final NodeList probation = new NodeList();
+    private final NodeList protectedList = new NodeList();
+
+    private final FrequencySketch sketch;
+
+    private final HitBuffer[] hitBuffers;
+    private final int hitBuffersMask;
+
+    /**
+     * Modification lock
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private volatile int size;
+    private volatile long usedMemory;
+
+    /**
+     * Last added page, it is never selected for replacement as it is still being used by the caller of
+     * {@link #add(Page)}
+     */
+    private Node youngest;
+
+    /**
+     * @param maxMemory       memory budget for the pages
+     * @param defaultPageSize size of the pages which do not report their memory
+     */
+    public TinyLFUPolicy(long maxMemory, long defaultPageSize) {
+        if (defaultPageSize <= 0 || maxMemory < defaultPageSize) {
+            throw new IllegalArgumentException("Max memory (" + maxMemory
+                    + ") must be greater or equal than page size (" + defaultPageSize + ")");
+        }
+        this.maximum = maxMemory;
+        this.defaultPageSize = defaultPageSize;
+        this.windowMaximum = Math.max(maxMemory * WINDOW_PERCENT / 100, defaultPageSize);
+        this.protectedMaximum = (maxMemory - Math.min(windowMaximum, maxMemory)) * PROTECTED_PERCENT / 100;
+        this.sketch = new FrequencySketch(capacity());
+
+        int stripes = ceilingPowerOfTwo(Runtime.getRuntime().availableProcessors());
+        this.hitBuffers = new HitBuffer[stripes];
+        for (int i = 0; i < stripes; i++) {
+            hitBuffers[i] = new HitBuffer();
+        }
+        this.hitBuffersMask = stripes - 1;
+    }
+
+    @Override
+    public Page.Metadata add(Page<?> page) {
+        long weight = page.getUsedMemory();
+        final Node node = new Node(page, weight > 0 ? weight : defaultPageSize);
+        lock.lock();
+        try {
+            drainHitBuffers();
+
+            page.metadata = node;
+            youngest = node;
+            sketch.increment(node.hash);
+            window.addLast(node);
+            node.segment = WINDOW;
+            size++;
+            usedMemory += node.weight;
+
+            /* Pages leaving the window become candidates for the admission in the main area */
+            while (window.weight > windowMaximum && window.first != node) {
+                Node candidate = window.first;
+                window.remove(candidate);
+                probation.addLast(candidate);
+                candidate.segment = PROBATION;
+            }
+
+            return usedMemory > maximum ? evict() : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Page.Metadata pollExceeding() {
+        lock.lock();
+        try {
+            return usedMemory > maximum ? evict() : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void pageHit(Page<?> page) {
+        final Page.Metadata metadata = page.metadata;
+        if (!(metadata instanceof Node)) {
+            return;
+        }
+        final HitBuffer buffer = hitBuffers[stripe()];
+        final int pending = buffer.offer((Node) metadata);
+        if (pending < 0 || pending >= HIT_BUFFER_DRAIN_THRESHOLD) {
+            if (lock.tryLock()) {
+                try {
+                    drainHitBuffers();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean remove(Page<?> page) {
+        lock.lock();
+        try {
+            return removeNoLock(page);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public <P extends Page<?>> void remove(Collection<P> pages) {
+        lock.lock();
+        try {
+            for (Page<?> page : pages) {
+                removeNoLock(page);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean removeNoLock(Page<?> page) {
+        final Page.Metadata metadata = page.metadata;
+        if (!(metadata instanceof Node)) {
+            return false;
+        }
+        final Node node = (Node) metadata;
+        if (node.segment == NONE) {
+            return false;
+        }
+        unlink(node);
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int capacity() {
+        return (int) Math.min(Integer.MAX_VALUE, maximum / defaultPageSize);
+    }
+
+    /**
+     * Returns the memory currently accounted for the pages in memory.
+     *
+     * @return used memory in bytes
+     */
+    public long getUsedMemory() {
+        return usedMemory;
+    }
+
+    /**
+     * Returns the memory budget of the policy.
+     *
+     * @return max memory in bytes
+     */
+    public long getMaxMemory() {
+        return maximum;
+    }
+
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            drainHitBuffers();
+            for (NodeList list : new NodeList[]{window, probation, protectedList}) {
+                while (list.first != null) {
+                    unlink(list.first);
+                }
+            }
+            youngest = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Selects and removes a page. The newest candidate for admission (the tail of the probation segment) competes
+     * with the oldest page of the main area: the one less frequently accessed is evicted, on a tie the candidate
+     * loses.
+     */
+    private Node evict() {
+        Node candidate = probation.last;
+        Node victim = probation.first;
+        if (victim == candidate) {
+            victim = protectedList.first;
+        }
+
+        final Node evicted;
+        if (candidate == null && victim == null) {
+            evicted = window.first != youngest ? window.first : null;
+        } else if (candidate == null) {
+            evicted = victim;
+        } else if (victim == null) {
+            evicted = candidate;
+        } else {
+            evicted = sketch.frequency(candidate.hash) > sketch.frequency(victim.hash) ? victim : candidate;
+        }
+
+        if (evicted != null) {
+            unlink(evicted);
+        }
+        return evicted;
+    }
+
+    private void unlink(Node node) {
+        list(node.segment).remove(node);
+        node.segment = NONE;
+        size--;
+        usedMemory -= node.weight;
+    }
+
+    private NodeList list(byte segment) {
+        switch (segment) {
+            case WINDOW:
+                return window;
+            case PROBATION:
+                return probation;
+            case PROTECTED:
+                return protectedList;
+            default:
+                throw new IllegalStateException("page not in memory");
+        }
+    }
+
+    private void drainHitBuffers() {
+        for (HitBuffer buffer : hitBuffers) {
+            buffer.drain(this);
+        }
+    }
+
+    private void onHit(Node node) {
+        switch (node.segment) {
+            case WINDOW:
+                window.moveToBack(node);
+                break;
+            case PROBATION:
+                probation.remove(node);
+                protectedList.addLast(node);
+                node.segment = PROTECTED;
+                while (protectedList.weight > protectedMaximum && protectedList.first != node) {
+                    Node demoted = protectedList.first;
+                    protectedList.remove(demoted);
+                    probation.addLast(demoted);
+                    demoted.segment = PROBATION;
+                }
+                break;
+            case PROTECTED:
+                protectedList.moveToBack(node);
+                break;
+            default:
+                /* Page removed after the hit */
+                return;
+        }
+        sketch.increment(node.hash);
+    }
+
+    private int stripe() {
+        return spread((int) Thread.currentThread().getId()) & hitBuffersMask;
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+
+    private static int ceilingPowerOfTwo(int x) {
+        return x <= 1 ? 1 : Integer.highestOneBit(x - 1) << 1;
+    }
+
+    /**
+     * Implementation of {@link Page.Metadata} with all data needed for {@link TinyLFUPolicy}.
+     */
+    private static final class Node extends Page.Metadata {
+
+        private final int hash;
+        private final long weight;
+
+        private byte segment;
+        private Node prev;
+        private Node next;
+
+        Node(Page<?> page, long weight) {
+            super(page.owner, page.pageId);
+            this.hash = spread(31 * page.owner.hashCode() + Long.hashCode(page.pageId));
+            this.weight = weight;
+        }
+
+        @Override
+        public String toString() {
+            return "Node{" + "pageId=" + pageId + ", weight=" + weight + ", segment=" + segment + '}';
+        }
+    }
+
+    /**
+     * LRU ordered list of pages, from the least recently used
+     */
+    private static final class NodeList {
+
+        private Node first;
+        private Node last;
+        private long weight;
+
+        void addLast(Node node) {
+            node.prev = last;
+            node.next = null;
+            if (last == null) {
+                first = node;
+            } else {
+                last.next = node;
+            }
+            last = node;
+            weight += node.weight;
+        }
+
+        void remove(Node node) {
+            if (node.prev == null) {
+                first = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                last = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            weight -= node.weight;
+        }
+
+        void moveToBack(Node node) {
+            if (node != last) {
+                remove(node);
+                addLast(node);
+            }
+        }
+    }
+
+    /**
+     * Bounded buffer of page hits, written without locks and read under the lock of the policy. Hits are dropped
+     * when the buffer is full or on contention: a lost hit only makes the policy a little less precise.
+     */
+    private static final class HitBuffer {
+
+        private final AtomicReferenceArray<Node> slots = new AtomicReferenceArray<>(HIT_BUFFER_SIZE);
+        private final AtomicLong writes = new AtomicLong();
+        private volatile long reads;
+
+        /**
+         * @return number of pending hits, -1 if the hit has been dropped
+         */
+        int offer(Node node) {
+            final long head = reads;
+            final long tail = writes.get();
+            final long pending = tail - head;
+            if (pending >= HIT_BUFFER_SIZE) {
+                return -1;
+            }
+            if (writes.compareAndSet(tail, tail + 1)) {
+                slots.lazySet((int) (tail & HIT_BUFFER_MASK), node);
+                return (int) pending + 1;
+            }
+            return -1;
+        }
+
+        void drain(TinyLFUPolicy policy) {
+            long head = reads;
+            final long tail = writes.get();
+            for (; head < tail; head++) {
+                final int index = (int) (head & HIT_BUFFER_MASK);
+                final Node node = slots.get(index);
+                if (node == null) {
+                    /* Slot reserved but not yet written, it will be read by the next drain */
+                    break;
+                }
+                slots.lazySet(index, null);
+                policy.onHit(node);
+            }
+            reads = head;
+        }
+    }
+
+    /**
+     * Count-min sketch of 4 bits counters, see the original work for details.
+     */
+    private static final class FrequencySketch {
+
+        private static final long[] SEEDS = {
+                0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+        };
+        private static final long RESET_MASK = 0x7777777777777777L;
+        private static final long ONE_MASK = 0x1111111111111111L;
+
+        private final long[] table;
+        private final int tableMask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int expectedPages) {
+            int length = ceilingPowerOfTwo(Math.max(expectedPages, 16));
+            this.table = new long[length];
+            this.tableMask = length - 1;
+            this.sampleSize = 10 * length;
+        }
+
+        int frequency(int hash) {
+            final int start = (hash & 3) << 2;
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i < 4; i++) {
+                final int index = indexOf(hash, i);
+                final int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+                frequency = Math.min(frequency, count);
+            }
+            return frequency;
+        }
+
+        void increment(int hash) {
+            final int start = (hash & 3) << 2;
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                added |= incrementAt(indexOf(hash, i), start + i);
+            }
+            if (added && ++additions == sampleSize) {
+                reset();
+            }
+        }
+
+        private boolean incrementAt(int index, int counter) {
+            final int offset = counter << 2;
+            final long mask = 0xfL << offset;
+            if ((table[index] & mask) != mask) {
+                table[index] += 1L << offset;
+                return true;
+            }
+            return false;
+        }
+
+        private int indexOf(int hash, int i) {
+            long h = (hash + SEEDS[i]) * SEEDS[i];
+            h += h >>> 32;
+            return ((int) h) & tableMask;
+        }
+
+        /**
+         * Halves every counter, the oldest accesses are progressively forgotten
+         */
+        private void reset() {
+            int odd = 0;
+            for (int i = 0; i < table.length; i++) {
+                odd += Long.bitCount(table[i] & ONE_MASK);
+                table[i] = (table[i] >>> 1) & RESET_MASK;
+            }
+            additions = (additions >>> 1) - (odd >>> 2);
+        }
+    }
+}
@@ -277,10 +277,7 @@ public class BLink<K extends Comparable<K>, V> implements AutoCloseable, Page.Ow
         this.anchor = new Anchor<>(root);
 
         /* Nothing to load locked now (we are creating a new tree) */
-        final Metadata meta = policy.add(root);
-        if (meta != null) {
-            meta.owner.unload(meta.pageId);
-        }
+        unloadPages(policy.add(root));
     }
 
     public BLink(
@@ -424,10 +421,7 @@ public class BLink<K extends Comparable<K>, V> implements AutoCloseable, Page.Ow
         this.anchor.reset(root);
 
         /* Nothing to load locked now */
-        final Metadata meta = policy.add(root);
-        if (meta != null) {
-            meta.owner.unload(meta.pageId);
-        }
+        unloadPages(policy.add(root));
 
     }
 
@@ -466,6 +460,19 @@ public class BLink<K extends Comparable<K>, V> implements AutoCloseable, Page.Ow
         nodes.get(pageId).unload(true, false);
     }
 
+    /**
+     * Unloads the page selected by the page replacement policy, then any other page selected by the policy in order
+     * to stay within its memory budget.
+     *
+     * @param unload page selected by {@link PageReplacementPolicy#add(Page)}, may be {@code null}
+     */
+    private void unloadPages(Metadata unload) {
+        while (unload != null) {
+            unload.owner.unload(unload.pageId);
+            unload = policy.pollExceeding();
+        }
+    }
+
     /**
      * Handles page unloading, using special try & unload if given metadata
      * represent a page owned by current BLink tree.
@@ -1031,10 +1038,7 @@ public class BLink<K extends Comparable<K>, V> implements AutoCloseable, Page.Ow
             newsep = n.half_split(newsib);
 
             /* Nothing to load locked now */
-            final Metadata meta = policy.add(newsib);
-            if (meta != null) {
-                meta.owner.unload(meta.pageId);
-            }
+            unloadPages(policy.add(newsib));
 
             spawn(() -> ascend(ADD_TASK, newsep, newsib, atheight + 1, clone(descent), maintenance), maintenance);
         }
@@ -1247,10 +1251,7 @@ public class BLink<K extends Comparable<K>, V> implements AutoCloseable, Page.Ow
                     newroot = allocate_node(false);
                     grow(newroot);
                     /* Nothing to load locked now */
-                    final Metadata meta = policy.add(newroot);
-                    if (meta != null) {
-                        meta.owner.unload(meta.pageId);
-                    }
+                    unloadPages(policy.add(newroot));
                     spawn(() -> run_critic(), maintenance);
                 }
                 unlock_anchor(WRITE_LOCK);
@@ -1615,9 +1616,7 @@ public class BLink<K extends Comparable<K>, V> implements AutoCloseable, Page.Ow
 
                         } finally {
                             loadLock.unlock();
-                            if (loadLock.unload != null) {
-                                loadLock.unload();
-                            }
+                            loadLock.unload();
                         }
 
                         while (!cstack.isEmpty()) {
@@ -1640,9 +1639,7 @@ public class BLink<K extends Comparable<K>, V> implements AutoCloseable, Page.Ow
                             builder.setLength(builder.length() - 3);
                         } finally {
                             loadLock.unlock();
-                            if (loadLock.unload != null) {
-                                loadLock.unload();
-                            }
+                            loadLock.unload();
                         }
 
                         while (!cstack.isEmpty()) {
@@ -1938,9 +1935,6 @@ public class BLink<K extends Comparable<K>, V> implements AutoCloseable, Page.Ow
             LockAndUnload<X, Y> thisLoadLock = null;
             LockAndUnload<X, Y> rightLoadLock = null;
 
-            boolean thisUnloaded = false;
-            boolean rightUnloaded = false;
-
             try {
                 try {
 
@@ -1948,13 +1942,13 @@ public class BLink<K extends Comparable<K>, V> implements AutoCloseable, Page.Ow
                     thisLoadLock = this.loadAndLock(false);
 
                     /* Not unloaded if needed or if we can't acquire a lock */
-                    thisUnloaded = thisLoadLock.unloadIfNot(right, owner);
+                    thisLoadLock.unloadIfNot(right, owner);
 
                     /* Could require to unload this but we need the data */
                     rightLoadLock = right.loadAndLock(false);
 
                     /* Not unloaded if needed or if we can't acquire a lock */
-                    rightUnloaded = rightLoadLock.unloadIfNot(this, owner);
+                    rightLoadLock.unloadIfNot(this, owner);
 
                     // the sequence in r is transferred to the end of the sequence in l
                     map.putAll(right.map);
@@ -1992,11 +1986,11 @@ public class BLink<K extends Comparable<K>, V> implements AutoCloseable, Page.Ow
                     }
 
                     /* Unload pages outside locks */
-                    if (thisLoadLock != null && !thisUnloaded) {
+                    if (thisLoadLock != null) {
                         thisLoadLock.unload();
                     }
 
-                    if (rightLoadLock != null && !rightUnloaded) {
+                    if (rightLoadLock != null) {
                         rightLoadLock.unload();
                     }
                 }
@@ -2096,9 +2090,7 @@ public class BLink<K extends Comparable<K>, V> implements AutoCloseable, Page.Ow
                 loadLock.unlock();
             }
 
-            if (loadLock.unload != null) {
-                loadLock.unload();
-            }
+            loadLock.unload();
 
             right.keys = keys - count;
             keys = count;
@@ -2194,9 +2186,7 @@ public class BLink<K extends Comparable<K>, V> implements AutoCloseable, Page.Ow
             } finally {
                 loadLock.unlock();
 
-                if (loadLock.unload != null) {
-                    loadLock.unload();
-                }
+                loadLock.unload();
             }
         }
 
@@ -2213,9 +2203,7 @@ public class BLink<K extends Comparable<K>, V> implements AutoCloseable, Page.Ow
             } finally {
                 loadLock.unlock();
 
-                if (loadLock.unload != null) {
-                    loadLock.unload();
-                }
+                loadLock.unload();
             }
         }
 
@@ -2237,9 +2225,7 @@ public class BLink<K extends Comparable<K>, V> implements AutoCloseable, Page.Ow
             } finally {
                 loadLock.unlock();
 
-                if (loadLock.unload != null) {
-                    loadLock.unload();
-                }
+                loadLock.unload();
             }
 
             if (old == null) {
@@ -2311,9 +2297,7 @@ public class BLink<K extends Comparable<K>, V> implements AutoCloseable, Page.Ow
             } finally {
                 loadLock.unlock();
 
-                if (loadLock.unload != null) {
-                    loadLock.unload();
-                }
+                loadLock.unload();
             }
 
             if (old == null) {
@@ -2357,9 +2341,7 @@ public class BLink<K extends Comparable<K>, V> implements AutoCloseable, Page.Ow
             } finally {
                 loadLock.unlock();
 
-                if (loadLock.unload != null) {
-                    loadLock.unload();
-                }
+                loadLock.unload();
             }
 
             if (old == null) {
@@ -2392,9 +2374,7 @@ public class BLink<K extends Comparable<K>, V> implements AutoCloseable, Page.Ow
             } finally {
                 loadLock.unlock();
 
-                if (loadLock.unload != null) {
-                    loadLock.unload();
-                }
+                loadLock.unload();
             }
         }
 
@@ -2448,9 +2428,7 @@ public class BLink<K extends Comparable<K>, V> implements AutoCloseable, Page.Ow
             } finally {
                 loadLock.unlock();
 
-                if (loadLock.unload != null) {
-                    loadLock.unload();
-                }
+                loadLock.unload();
             }
 
         }
@@ -2481,9 +2459,7 @@ public class BLink<K extends Comparable<K>, V> implements AutoCloseable, Page.Ow
             } finally {
                 loadLock.unlock();
 
-                if (loadLock.unload != null) {
-                    loadLock.unload();
-                }
+                loadLock.unload();
             }
 
             ++keys;
@@ -2553,9 +2529,7 @@ public class BLink<K extends Comparable<K>, V> implements AutoCloseable, Page.Ow
             } finally {
                 loadLock.unlock();
 
-                if (loadLock.unload != null) {
-                    loadLock.unload();
-                }
+                loadLock.unload();
             }
         }
 
@@ -2571,6 +2545,7 @@ public class BLink<K extends Comparable<K>, V> implements AutoCloseable, Page.Ow
         LockAndUnload<X, Y> loadAndLock(boolean doUnload) throws IOException {
 
             Metadata unload = null;
+            boolean added = false;
             final Lock read = loadLock.readLock();
 
             if (DEBUG) {
@@ -2616,6 +2591,7 @@ public class BLink<K extends Comparable<K>, V> implements AutoCloseable, Page.Ow
                         loaded = true;
 
                         unload = owner.policy.add(this);
+                        added = true;
 
                     } else {
 
@@ -2656,7 +2632,7 @@ public class BLink<K extends Comparable<K>, V> implements AutoCloseable, Page.Ow
                 owner.policy.pageHit(this);
             }
 
-            return new LockAndUnload<>(read, unload, pageId);
+            return new LockAndUnload<>(read, unload, added ? owner.policy : null, pageId);
         }
 
         boolean unload(boolean flush, boolean justTry) {
@@ -2984,12 +2960,18 @@ public class BLink<K extends Comparable<K>, V> implements AutoCloseable, Page.Ow
 
         final Lock lock;
         final Metadata unload;
+        /**
+         * Policy to ask for other pages to unload, {@code null} if no page has been added to the policy
+         */
+        final PageReplacementPolicy policy;
         final long pageId;
+        boolean unloaded;
 
-        public LockAndUnload(Lock lock, Metadata unload, long pageId) {
+        public LockAndUnload(Lock lock, Metadata unload, PageReplacementPolicy policy, long pageId) {
             super();
             this.lock = lock;
             this.unload = unload;
+            this.policy = policy;
             this.pageId = pageId;
         }
 
@@ -3006,14 +2988,27 @@ public class BLink<K extends Comparable<K>, V> implements AutoCloseable, Page.Ow
             }
 
             /* Do real unload */
-            return tree.attemptUnload(unload);
+            unloaded = tree.attemptUnload(unload);
+            return unloaded;
         }
 
+        /**
+         * Unloads the page selected by the policy (if not already unloaded), then any other page selected by the
+         * policy in order to stay within its memory budget. Must be invoked without holding the lock.
+         */
         public void unload() throws IOException {
-            try {
-                unload.owner.unload(unload.pageId);
-            } catch (RuntimeException e) {
-                throw new IOException("failed to unload " + unload.pageId, e);
+            Metadata current = unloaded ? null : unload;
+            unloaded = true;
+            if (current == null && policy != null) {
+                current = policy.pollExceeding();
+            }
+            while (current != null) {
+                try {
+                    current.owner.unload(current.pageId);
+                } catch (RuntimeException e) {
+                    throw new IOException("failed to unload " + current.pageId, e);
+                }
+                current = policy == null ? null : policy.pollExceeding();
             }
         }
 
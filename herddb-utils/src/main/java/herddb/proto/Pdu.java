@@ -63,6 +63,11 @@ public class Pdu implements AutoCloseable {
     public static final byte FLAGS_ISREQUEST = 1;
     public static final byte FLAGS_ISRESPONSE = 2;
     public static final byte FLAGS_OPENSCANNER_DONTKEEP_READ_LOCKS = 4;
+    /**
+     * On OPENSCANNER the client declares that it is able to decode columnar
+     * RESULTSET_CHUNKs, on RESULTSET_CHUNK the data is laid out by column.
+     */
+    public static final byte FLAGS_COLUMNAR_RESULTS = 8;
 
 
     private static final Recycler<Pdu> RECYCLER = new Recycler<Pdu>() {
@@ -104,7 +104,7 @@ public abstract class PduCodec {
             for (Long updateCount : updateCounts) {
                 byteBuf.writeLong(updateCount);
             }
-            byteBuf.writeInt(otherdata.size());
+            ByteBufUtils.writeVInt(byteBuf, otherdata.size());
             for (Map<String, Object> record : otherdata) {
                 // the Map is serialized as a list of objects (k1,v1,k2,v2...)
                 int size = record != null ? record.size() : 0;
@@ -604,6 +604,15 @@ public abstract class PduCodec {
                 long scannerId, long tx, List<Object> params, long statementId, int fetchSize, int maxRows,
                 boolean keepReadLocks
         ) {
+            return write(messageId, tableSpace, query, scannerId, tx, params, statementId, fetchSize, maxRows,
+                    keepReadLocks, false);
+        }
+
+        public static ByteBuf write(
+                long messageId, String tableSpace, String query,
+                long scannerId, long tx, List<Object> params, long statementId, int fetchSize, int maxRows,
+                boolean keepReadLocks, boolean columnarResults
+        ) {
 
             ByteBuf byteBuf = PooledByteBufAllocator.DEFAULT
                     .directBuffer(
@@ -625,6 +634,9 @@ public abstract class PduCodec {
             if (!keepReadLocks) {
                 flags = flags | Pdu.FLAGS_OPENSCANNER_DONTKEEP_READ_LOCKS;
             }
+            if (columnarResults) {
+                flags = flags | Pdu.FLAGS_COLUMNAR_RESULTS;
+            }
             byteBuf.writeByte(flags);
             byteBuf.writeByte(Pdu.TYPE_OPENSCANNER);
             byteBuf.writeLong(messageId);
@@ -660,6 +672,12 @@ public abstract class PduCodec {
                     == Pdu.FLAGS_OPENSCANNER_DONTKEEP_READ_LOCKS;
         }
 
+        public static boolean readColumnarResults(Pdu pdu) {
+            ByteBuf buffer = pdu.buffer;
+            byte flags = buffer.getByte(VERSION_SIZE);
+            return (flags & Pdu.FLAGS_COLUMNAR_RESULTS) == Pdu.FLAGS_COLUMNAR_RESULTS;
+        }
+
         public static long readStatementId(Pdu pdu) {
             ByteBuf buffer = pdu.buffer;
             return buffer.getLong(VERSION_SIZE
@@ -754,12 +772,42 @@ public abstract class PduCodec {
 
     public static class ResultSetChunk {
 
+        /**
+         * Type of a column of a columnar chunk whose values have different
+         * types, every value is written with its own type.
+         */
+        private static final byte COLUMN_TYPE_MIXED = 127;
+
+        private static final byte NO_NULLS = 0;
+        private static final byte HAS_NULLS = 1;
+
         private static int estimateTupleListSize(TuplesList data) {
             return data.tuples.size() * 1024 + data.columnNames.length * 64;
         }
 
+        private static int estimateColumnarTupleListSize(TuplesList data) {
+            int numColumns = data.columnNames.length;
+            return data.tuples.size() * numColumns * 8 + numColumns * 64;
+        }
+
         public static ByteBuf write(long messageId, TuplesList tuplesList, boolean last, long tx) {
-            int dataSize = estimateTupleListSize(tuplesList);
+            return write(messageId, tuplesList, last, tx, false);
+        }
+
+        /**
+         * Writes a chunk of a ResultSet.
+         * <p>
+         * In columnar layout each column is written as a whole: the type of
+         * the column, the length of the column data, an optional bitmap of
+         * nulls and then the non null values. Integral values and timestamps
+         * are written as zig-zag varints of the difference from the previous
+         * value of the column.
+         *
+         * @param columnar use the columnar layout, only if the client declared
+         * to support it, see {@link Pdu#FLAGS_COLUMNAR_RESULTS}
+         */
+        public static ByteBuf write(long messageId, TuplesList tuplesList, boolean last, long tx, boolean columnar) {
+            int dataSize = columnar ? estimateColumnarTupleListSize(tuplesList) : estimateTupleListSize(tuplesList);
             ByteBuf byteBuf = PooledByteBufAllocator.DEFAULT
                     .directBuffer(
                             VERSION_SIZE
@@ -771,7 +819,7 @@ public abstract class PduCodec {
                                     + dataSize);
 
             byteBuf.writeByte(VERSION_3);
-            byteBuf.writeByte(Pdu.FLAGS_ISRESPONSE);
+            byteBuf.writeByte(columnar ? Pdu.FLAGS_ISRESPONSE | Pdu.FLAGS_COLUMNAR_RESULTS : Pdu.FLAGS_ISRESPONSE);
             byteBuf.writeByte(Pdu.TYPE_RESULTSET_CHUNK);
             byteBuf.writeLong(messageId);
             byteBuf.writeLong(tx);
@@ -785,6 +833,10 @@ public abstract class PduCodec {
 
             // num records
             byteBuf.writeInt(tuplesList.tuples.size());
+            if (columnar) {
+                writeColumns(byteBuf, tuplesList);
+                return byteBuf;
+            }
             for (DataAccessor da : tuplesList.tuples) {
                 IntHolder currentColumn = new IntHolder();
                 da.forEach((String key, Object value) -> {
@@ -810,6 +862,233 @@ public abstract class PduCodec {
             return byteBuf;
         }
 
+        private static void writeColumns(ByteBuf byteBuf, TuplesList tuplesList) {
+            String[] columnNames = tuplesList.columnNames;
+            Object[][] columns = new Object[columnNames.length][tuplesList.tuples.size()];
+            ColumnsCollector collector = new ColumnsCollector(columnNames, columns);
+            for (DataAccessor da : tuplesList.tuples) {
+                collector.collect(da);
+            }
+            for (Object[] column : columns) {
+                writeColumn(byteBuf, column);
+            }
+        }
+
+        private static void writeColumn(ByteBuf byteBuf, Object[] column) {
+            byte type = columnType(column);
+            byteBuf.writeByte(type);
+            int lengthIndex = byteBuf.writerIndex();
+            byteBuf.writeInt(0);
+            if (type != TYPE_NULL) {
+                writeNulls(byteBuf, column);
+                long previous = 0;
+                for (Object v : column) {
+                    if (v == null) {
+                        continue;
+                    }
+                    switch (type) {
+                        case TYPE_LONG:
+                        case TYPE_INTEGER:
+                        case TYPE_SHORT:
+                        case TYPE_BYTE: {
+                            long value = ((Number) v).longValue();
+                            ByteBufUtils.writeZLong(byteBuf, value - previous);
+                            previous = value;
+                            break;
+                        }
+                        case TYPE_TIMESTAMP: {
+                            long value = ((java.util.Date) v).getTime();
+                            ByteBufUtils.writeZLong(byteBuf, value - previous);
+                            previous = value;
+                            break;
+                        }
+                        case TYPE_STRING:
+                            if (v instanceof RawString) {
+                                ByteBufUtils.writeRawString(byteBuf, (RawString) v);
+                            } else {
+                                ByteBufUtils.writeString(byteBuf, (String) v);
+                            }
+                            break;
+                        case TYPE_DOUBLE:
+                            byteBuf.writeDouble(((Number) v).doubleValue());
+                            break;
+                        case TYPE_BOOLEAN:
+                            byteBuf.writeBoolean((Boolean) v);
+                            break;
+                        case TYPE_BYTEARRAY:
+                            ByteBufUtils.writeArray(byteBuf, (byte[]) v);
+                            break;
+                        default:
+                            writeObject(byteBuf, v);
+                            break;
+                    }
+                }
+            }
+            byteBuf.setInt(lengthIndex, byteBuf.writerIndex() - lengthIndex - ONE_INT);
+        }
+
+        private static void writeNulls(ByteBuf byteBuf, Object[] column) {
+            boolean hasNulls = false;
+            for (Object v : column) {
+                if (v == null) {
+                    hasNulls = true;
+                    break;
+                }
+            }
+            if (!hasNulls) {
+                byteBuf.writeByte(NO_NULLS);
+                return;
+            }
+            byteBuf.writeByte(HAS_NULLS);
+            for (int i = 0; i < column.length; i += 8) {
+                int bits = 0;
+                for (int j = i; j < i + 8 && j < column.length; j++) {
+                    if (column[j] == null) {
+                        bits |= 1 << (j - i);
+                    }
+                }
+                byteBuf.writeByte(bits);
+            }
+        }
+
+        private static byte columnType(Object[] column) {
+            byte type = TYPE_NULL;
+            for (Object v : column) {
+                if (v == null) {
+                    continue;
+                }
+                byte valueType = valueType(v);
+                if (type == TYPE_NULL) {
+                    type = valueType;
+                } else if (type != valueType) {
+                    return COLUMN_TYPE_MIXED;
+                }
+            }
+            return type;
+        }
+
+        private static byte valueType(Object v) {
+            if (v instanceof RawString || v instanceof String) {
+                return TYPE_STRING;
+            } else if (v instanceof Long) {
+                return TYPE_LONG;
+            } else if (v instanceof Integer) {
+                return TYPE_INTEGER;
+            } else if (v instanceof Boolean) {
+                return TYPE_BOOLEAN;
+            } else if (v instanceof java.util.Date) {
+                return TYPE_TIMESTAMP;
+            } else if (v instanceof Double || v instanceof Float) {
+                return TYPE_DOUBLE;
+            } else if (v instanceof Short) {
+                return TYPE_SHORT;
+            } else if (v instanceof byte[]) {
+                return TYPE_BYTEARRAY;
+            } else if (v instanceof Byte) {
+                return TYPE_BYTE;
+            } else {
+                throw new IllegalArgumentException("bad data type " + v.getClass());
+            }
+        }
+
+        /**
+         * Reads a column of a columnar chunk, the buffer must be positioned at
+         * the beginning of the data of the column.
+         */
+        public static Object[] readColumn(ByteBuf buffer, byte type, int numRecords) {
+            Object[] values = new Object[numRecords];
+            if (type == TYPE_NULL) {
+                return values;
+            }
+            boolean hasNulls = buffer.readByte() == HAS_NULLS;
+            int nullsIndex = buffer.readerIndex();
+            if (hasNulls) {
+                buffer.skipBytes((numRecords + 7) / 8);
+            }
+            long previous = 0;
+            for (int i = 0; i < numRecords; i++) {
+                if (hasNulls && (buffer.getByte(nullsIndex + (i >> 3)) & (1 << (i & 7))) != 0) {
+                    continue;
+                }
+                switch (type) {
+                    case TYPE_LONG:
+                        previous += ByteBufUtils.readZLong(buffer);
+                        values[i] = previous;
+                        break;
+                    case TYPE_INTEGER:
+                        previous += ByteBufUtils.readZLong(buffer);
+                        values[i] = (int) previous;
+                        break;
+                    case TYPE_SHORT:
+                        previous += ByteBufUtils.readZLong(buffer);
+                        values[i] = (short) previous;
+                        break;
+                    case TYPE_BYTE:
+                        previous += ByteBufUtils.readZLong(buffer);
+                        values[i] = (byte) previous;
+                        break;
+                    case TYPE_TIMESTAMP:
+                        previous += ByteBufUtils.readZLong(buffer);
+                        values[i] = new java.sql.Timestamp(previous);
+                        break;
+                    case TYPE_STRING:
+                        values[i] = ByteBufUtils.readUnpooledRawString(buffer);
+                        break;
+                    case TYPE_DOUBLE:
+                        values[i] = buffer.readDouble();
+                        break;
+                    case TYPE_BOOLEAN:
+                        values[i] = buffer.readBoolean();
+                        break;
+                    case TYPE_BYTEARRAY:
+                        values[i] = ByteBufUtils.readArray(buffer);
+                        break;
+                    case COLUMN_TYPE_MIXED:
+                        values[i] = readObject(buffer);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("bad column type " + type);
+                }
+            }
+            return values;
+        }
+
+        /**
+         * Copies the values of the records to the columns, a single instance
+         * is reused for all of the records of the chunk.
+         */
+        private static final class ColumnsCollector implements BiConsumer<String, Object> {
+
+            private final String[] columnNames;
+            private final Object[][] columns;
+            private int record = -1;
+            private int column;
+
+            ColumnsCollector(String[] columnNames, Object[][] columns) {
+                this.columnNames = columnNames;
+                this.columns = columns;
+            }
+
+            void collect(DataAccessor da) {
+                record++;
+                column = 0;
+                da.forEach(this);
+                if (column > columnNames.length) {
+                    throw new RuntimeException("unexpected number of columns " + column + " > " + columnNames.length);
+                }
+            }
+
+            @Override
+            public void accept(String key, Object value) {
+                // nulls are not returned for some special accessors, like DataAccessorForFullRecord
+                while (!key.equals(columnNames[column])) {
+                    column++;
+                }
+                columns[column][record] = value;
+                column++;
+            }
+        }
+
         public static long readTx(Pdu pdu) {
             ByteBuf buffer = pdu.buffer;
             return buffer.getLong(VERSION_SIZE
@@ -1177,6 +1456,20 @@ public abstract class PduCodec {
     public static class RequestTablespaceDump {
 
         public static ByteBuf write(long messageId, String tableSpace, String dumpId, int fetchSize, boolean includeTransactionLog) {
+            return write(messageId, tableSpace, dumpId, fetchSize, includeTransactionLog, null);
+        }
+
+        /**
+         * Requests a dump.
+         *
+         * @param options options for the "parallel" dump, servers older than
+         * 0.20.0 ignore them and send tables one at a time; null means a
+         * sequential dump
+         */
+        public static ByteBuf write(
+                long messageId, String tableSpace, String dumpId, int fetchSize, boolean includeTransactionLog,
+                DumpOptions options
+        ) {
             ByteBuf byteBuf = PooledByteBufAllocator.DEFAULT
                     .directBuffer(
                             VERSION_SIZE
@@ -1195,6 +1488,11 @@ public abstract class PduCodec {
             byteBuf.writeInt(fetchSize);
             ByteBufUtils.writeString(byteBuf, tableSpace);
             ByteBufUtils.writeString(byteBuf, dumpId);
+            if (options != null) {
+                byteBuf.writeInt(options.parallelTables);
+                byteBuf.writeInt(options.maxPendingChunks);
+                byteBuf.writeByte(options.compress ? 1 : 0);
+            }
 
             return byteBuf;
 
@@ -1241,6 +1539,60 @@ public abstract class PduCodec {
             ByteBufUtils.skipArray(buffer); // tablespace
             return ByteBufUtils.readString(buffer);
         }
+
+        /**
+         * Reads the options of the dump, null if the client requested a
+         * sequential dump.
+         */
+        public static DumpOptions readOptions(Pdu pdu) {
+            ByteBuf buffer = pdu.buffer;
+            buffer.readerIndex(VERSION_SIZE
+                    + FLAGS_SIZE
+                    + TYPE_SIZE
+                    + MSGID_SIZE
+                    + ONE_BYTE
+                    + ONE_INT
+            );
+            ByteBufUtils.skipArray(buffer); // tablespace
+            ByteBufUtils.skipArray(buffer); // dumpId
+            if (!buffer.isReadable()) {
+                return null;
+            }
+            int parallelTables = buffer.readInt();
+            int maxPendingChunks = buffer.readInt();
+            boolean compress = buffer.readByte() == 1;
+            return new DumpOptions(parallelTables, maxPendingChunks, compress);
+        }
+    }
+
+    /**
+     * Options of a tablespace dump which streams many tables at the same time.
+     */
+    public static final class DumpOptions {
+
+        /**
+         * Max number of tables dumped at the same time
+         */
+        public final int parallelTables;
+        /**
+         * Max number of chunks of data sent and still not acknowledged
+         */
+        public final int maxPendingChunks;
+        /**
+         * Compress chunks of data
+         */
+        public final boolean compress;
+
+        public DumpOptions(int parallelTables, int maxPendingChunks, boolean compress) {
+            this.parallelTables = parallelTables;
+            this.maxPendingChunks = maxPendingChunks;
+            this.compress = compress;
+        }
+
+        @Override
+        public String toString() {
+            return "DumpOptions{" + "parallelTables=" + parallelTables + ", maxPendingChunks=" + maxPendingChunks + ", compress=" + compress + '}';
+        }
     }
 
     public static class TablespaceDumpData {
@@ -1250,6 +1602,23 @@ public abstract class PduCodec {
                 String command, byte[] tableDefinition, long estimatedSize,
                 long dumpLedgerid, long dumpOffset, List<byte[]> indexesDefinition,
                 List<KeyValue> records
+        ) {
+            return write(messageId, tableSpace, dumpId, command, tableDefinition, estimatedSize,
+                    dumpLedgerid, dumpOffset, indexesDefinition, records, null);
+        }
+
+        /**
+         * Writes a message of a dump.
+         *
+         * @param tableName the table the message refers to, only used by
+         * dumps which stream many tables at the same time, see
+         * {@link DumpOptions}
+         */
+        public static ByteBuf write(
+                long messageId, String tableSpace, String dumpId,
+                String command, byte[] tableDefinition, long estimatedSize,
+                long dumpLedgerid, long dumpOffset, List<byte[]> indexesDefinition,
+                List<KeyValue> records, String tableName
         ) {
             if (tableDefinition == null) {
                 tableDefinition = new byte[0];
@@ -1295,6 +1664,9 @@ public abstract class PduCodec {
                     ByteBufUtils.writeArray(byteBuf, kv.value);
                 }
             }
+            if (tableName != null) {
+                ByteBufUtils.writeString(byteBuf, tableName);
+            }
 
             return byteBuf;
 
@@ -1434,6 +1806,39 @@ public abstract class PduCodec {
                 consumer.accept(key, value);
             }
         }
+
+        /**
+         * Reads the name of the table, null if the message does not refer to
+         * a specific table.
+         */
+        public static String readTableName(Pdu pdu) {
+            ByteBuf buffer = pdu.buffer;
+            buffer.readerIndex(VERSION_SIZE
+                    + FLAGS_SIZE
+                    + TYPE_SIZE
+                    + MSGID_SIZE
+                    + ONE_LONG
+                    + ONE_LONG
+                    + ONE_LONG
+            );
+            ByteBufUtils.skipArray(buffer); // tablespace
+            ByteBufUtils.skipArray(buffer); // dumpId
+            ByteBufUtils.skipArray(buffer); // command
+            ByteBufUtils.skipArray(buffer); // tableDefinition
+            int num = buffer.readInt();
+            for (int i = 0; i < num; i++) {
+                ByteBufUtils.skipArray(buffer);
+            }
+            int numRecords = buffer.readInt();
+            for (int i = 0; i < numRecords; i++) {
+                ByteBufUtils.skipArray(buffer); // key
+                ByteBufUtils.skipArray(buffer); // value
+            }
+            if (!buffer.isReadable()) {
+                return null;
+            }
+            return ByteBufUtils.readString(buffer);
+        }
     }
 
     public static class RequestTableRestore {
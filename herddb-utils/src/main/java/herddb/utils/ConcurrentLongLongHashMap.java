@@ -0,0 +1,451 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.utils;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Concurrent hash map from primitive long keys to primitive long values, it
+ * does not allocate objects for entries.
+ * <p>
+ * The map is split in a fixed number of sections, chosen by the hash of the
+ * key, each section is an open-addressing table (linear probing, keys and
+ * values interleaved in a single long array) guarded by a {@link StampedLock}.
+ * Reads are optimistic. Any long is a valid key, values must be non negative:
+ * {@link #NO_VALUE} is returned for missing keys.
+ */
+public final class ConcurrentLongLongHashMap {
+
+    public static final long NO_VALUE = -1;
+
+    private static final int DEFAULT_SECTIONS = 64;
+    private static final float FILL_FACTOR = 0.66f;
+
+    /**
+     * Marks an empty slot, the key {@code EMPTY_KEY} is stored apart
+     */
+    private static final long EMPTY_KEY = Long.MIN_VALUE;
+
+    private static final int PUT = 0;
+    private static final int PUT_IF_ABSENT = 1;
+    private static final int REPLACE = 2;
+
+    private final Section[] sections;
+    private final int sectionsMask;
+
+    public ConcurrentLongLongHashMap() {
+        this(16, DEFAULT_SECTIONS);
+    }
+
+    /**
+     * @param expectedItems expected number of entries
+     * @param numSections number of sections, rounded up to a power of two
+     */
+    public ConcurrentLongLongHashMap(int expectedItems, int numSections) {
+        if (numSections <= 0) {
+            throw new IllegalArgumentException("invalid number of sections " + numSections);
+        }
+        int size = Integer.highestOneBit(numSections);
+        if (size < numSections) {
+            size = size << 1;
+        }
+        this.sections = new Section[size];
+        this.sectionsMask = size - 1;
+        int perSection = Math.max(2, expectedItems / size);
+        for (int i = 0; i < size; i++) {
+            sections[i] = new Section(perSection);
+        }
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private Section sectionFor(int hash) {
+        return sections[(hash >>> 24) & sectionsMask];
+    }
+
+    private static void checkValue(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("invalid value " + value);
+        }
+    }
+
+    public long get(long key) {
+        int h = hash(key);
+        return sectionFor(h).get(key, h);
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != NO_VALUE;
+    }
+
+    /**
+     * @return the previous value or {@link #NO_VALUE}
+     */
+    public long put(long key, long value) {
+        checkValue(value);
+        int h = hash(key);
+        return sectionFor(h).put(key, value, h, PUT, NO_VALUE);
+    }
+
+    /**
+     * @return {@link #NO_VALUE} if the entry has been added, otherwise the
+     * current value (which is left untouched)
+     */
+    public long putIfAbsent(long key, long value) {
+        checkValue(value);
+        int h = hash(key);
+        return sectionFor(h).put(key, value, h, PUT_IF_ABSENT, NO_VALUE);
+    }
+
+    /**
+     * Replaces the value of a key only if it is currently mapped to the
+     * expected value.
+     *
+     * @return true if the value has been replaced
+     */
+    public boolean replace(long key, long expectedValue, long newValue) {
+        checkValue(expectedValue);
+        checkValue(newValue);
+        int h = hash(key);
+        return sectionFor(h).put(key, newValue, h, REPLACE, expectedValue) == expectedValue;
+    }
+
+    /**
+     * @return the removed value or {@link #NO_VALUE}
+     */
+    public long remove(long key) {
+        int h = hash(key);
+        return sectionFor(h).remove(key, h);
+    }
+
+    public long size() {
+        long result = 0;
+        for (Section s : sections) {
+            result += s.size;
+        }
+        return result;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Memory used by the tables of the sections, in bytes
+     */
+    public long getUsedMemory() {
+        long result = 0;
+        for (Section s : sections) {
+            result += s.capacity * 16L;
+        }
+        return result;
+    }
+
+    public void clear() {
+        for (Section s : sections) {
+            s.clear();
+        }
+    }
+
+    public int getNumSections() {
+        return sections.length;
+    }
+
+    /**
+     * Counter of the modifications of a section, it changes every time an
+     * entry of the section is added, modified or removed.
+     */
+    public long getModCount(int section) {
+        return sections[section].modCount;
+    }
+
+    /**
+     * Copies the entries of a section
+     *
+     * @return the entries, key and value of each entry in adjacent positions
+     */
+    public long[] snapshot(int section) {
+        return sections[section].snapshot();
+    }
+
+    /**
+     * Calls the consumer for each entry. The map is not locked while the
+     * consumer is running, entries changed during the iteration may be seen or
+     * not.
+     */
+    public void forEach(LongLongConsumer consumer) {
+        for (int i = 0; i < sections.length; i++) {
+            long[] entries = snapshot(i);
+            for (int j = 0; j < entries.length; j += 2) {
+                consumer.accept(entries[j], entries[j + 1]);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface LongLongConsumer {
+
+        void accept(long key, long value);
+    }
+
+    @SuppressWarnings("serial")
+    private static final class Section extends StampedLock {
+
+        private volatile long[] table;
+        private volatile int capacity;
+        private volatile int size;
+        private volatile long modCount;
+        private int resizeThreshold;
+
+        // entry with key EMPTY_KEY
+        private volatile long emptyKeyValue = NO_VALUE;
+
+        Section(int expectedItems) {
+            int cap = Integer.highestOneBit(Math.max(2, (int) (expectedItems / FILL_FACTOR)));
+            cap = cap << 1;
+            this.capacity = cap;
+            this.table = newTable(cap);
+            this.resizeThreshold = (int) (cap * FILL_FACTOR);
+        }
+
+        private static long[] newTable(int capacity) {
+            long[] result = new long[capacity * 2];
+            for (int i = 0; i < result.length; i += 2) {
+                result[i] = EMPTY_KEY;
+            }
+            return result;
+        }
+
+        long get(long key, int hash) {
+            long stamp = tryOptimisticRead();
+            long result = doGet(key, hash);
+            if (!validate(stamp)) {
+                stamp = readLock();
+                try {
+                    result = doGet(key, hash);
+                } finally {
+                    unlockRead(stamp);
+                }
+            }
+            return result;
+        }
+
+        private long doGet(long key, int hash) {
+            if (key == EMPTY_KEY) {
+                return emptyKeyValue;
+            }
+            long[] t = table;
+            int mask = (t.length >> 1) - 1;
+            int slot = hash & mask;
+            // bounded, the table may change under an optimistic read
+            for (int i = 0; i <= mask; i++) {
+                long k = t[slot << 1];
+                if (k == key) {
+                    return t[(slot << 1) + 1];
+                }
+                if (k == EMPTY_KEY) {
+                    return NO_VALUE;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return NO_VALUE;
+        }
+
+        long put(long key, long value, int hash, int mode, long expectedValue) {
+            long stamp = writeLock();
+            try {
+                if (key == EMPTY_KEY) {
+                    long prev = emptyKeyValue;
+                    if (canWrite(mode, prev, expectedValue)) {
+                        emptyKeyValue = value;
+                        if (prev == NO_VALUE) {
+                            size++;
+                        }
+                        modCount++;
+                    }
+                    return prev;
+                }
+                long[] t = table;
+                int mask = capacity - 1;
+                int slot = hash & mask;
+                while (true) {
+                    long k = t[slot << 1];
+                    if (k == key) {
+                        long prev = t[(slot << 1) + 1];
+                        if (canWrite(mode, prev, expectedValue)) {
+                            t[(slot << 1) + 1] = value;
+                            modCount++;
+                        }
+                        return prev;
+                    }
+                    if (k == EMPTY_KEY) {
+                        if (mode == REPLACE) {
+                            return NO_VALUE;
+                        }
+                        t[(slot << 1) + 1] = value;
+                        t[slot << 1] = key;
+                        size++;
+                        modCount++;
+                        if (size > resizeThreshold) {
+                            rehash();
+                        }
+                        return NO_VALUE;
+                    }
+                    slot = (slot + 1) & mask;
+                }
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
+        private static boolean canWrite(int mode, long current, long expectedValue) {
+            switch (mode) {
+                case PUT:
+                    return true;
+                case PUT_IF_ABSENT:
+                    return current == NO_VALUE;
+                default:
+                    return current == expectedValue;
+            }
+        }
+
+        long remove(long key, int hash) {
+            long stamp = writeLock();
+            try {
+                if (key == EMPTY_KEY) {
+                    long prev = emptyKeyValue;
+                    if (prev != NO_VALUE) {
+                        emptyKeyValue = NO_VALUE;
+                        size--;
+                        modCount++;
+                    }
+                    return prev;
+                }
+                long[] t = table;
+                int mask = capacity - 1;
+                int slot = hash & mask;
+                while (true) {
+                    long k = t[slot << 1];
+                    if (k == key) {
+                        long prev = t[(slot << 1) + 1];
+                        deleteSlot(t, slot, mask);
+                        size--;
+                        modCount++;
+                        return prev;
+                    }
+                    if (k == EMPTY_KEY) {
+                        return NO_VALUE;
+                    }
+                    slot = (slot + 1) & mask;
+                }
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
+        /**
+         * Backward shift deletion, keeps every probe sequence without holes
+         */
+        private static void deleteSlot(long[] t, int slot, int mask) {
+            int hole = slot;
+            int next = (hole + 1) & mask;
+            while (t[next << 1] != EMPTY_KEY) {
+                int ideal = hash(t[next << 1]) & mask;
+                // move the entry only if the hole is between its ideal slot and its current slot
+                boolean move = hole <= next
+                        ? (ideal <= hole || ideal > next)
+                        : (ideal <= hole && ideal > next);
+                if (move) {
+                    t[hole << 1] = t[next << 1];
+                    t[(hole << 1) + 1] = t[(next << 1) + 1];
+                    hole = next;
+                }
+                next = (next + 1) & mask;
+            }
+            t[hole << 1] = EMPTY_KEY;
+            t[(hole << 1) + 1] = 0;
+        }
+
+        private void rehash() {
+            int newCapacity = capacity * 2;
+            long[] newTable = newTable(newCapacity);
+            long[] t = table;
+            int mask = newCapacity - 1;
+            for (int i = 0; i < t.length; i += 2) {
+                long k = t[i];
+                if (k != EMPTY_KEY) {
+                    int slot = hash(k) & mask;
+                    while (newTable[slot << 1] != EMPTY_KEY) {
+                        slot = (slot + 1) & mask;
+                    }
+                    newTable[slot << 1] = k;
+                    newTable[(slot << 1) + 1] = t[i + 1];
+                }
+            }
+            table = newTable;
+            capacity = newCapacity;
+            resizeThreshold = (int) (newCapacity * FILL_FACTOR);
+        }
+
+        long[] snapshot() {
+            long stamp = readLock();
+            try {
+                long[] result = new long[size * 2];
+                int pos = 0;
+                if (emptyKeyValue != NO_VALUE) {
+                    result[pos++] = EMPTY_KEY;
+                    result[pos++] = emptyKeyValue;
+                }
+                long[] t = table;
+                for (int i = 0; i < t.length; i += 2) {
+                    if (t[i] != EMPTY_KEY) {
+                        result[pos++] = t[i];
+                        result[pos++] = t[i + 1];
+                    }
+                }
+                return result;
+            } finally {
+                unlockRead(stamp);
+            }
+        }
+
+        void clear() {
+            long stamp = writeLock();
+            try {
+                if (size > 0) {
+                    Arrays.fill(table, 0);
+                    for (int i = 0; i < table.length; i += 2) {
+                        table[i] = EMPTY_KEY;
+                    }
+                    emptyKeyValue = NO_VALUE;
+                    size = 0;
+                    modCount++;
+                }
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+    }
+}
@@ -41,4 +41,25 @@ public interface ILocalLockManager {
 
     int getNumKeys();
 
+    /**
+     * Number of acquisitions which did not get the lock immediately
+     */
+    default long getLockWaitsCount() {
+        return 0;
+    }
+
+    /**
+     * Total time spent waiting for locks, in milliseconds
+     */
+    default long getLockWaitTime() {
+        return 0;
+    }
+
+    /**
+     * Number of acquisitions which failed due to the lock timeout
+     */
+    default long getLockTimeoutsCount() {
+        return 0;
+    }
+
 }
@@ -23,6 +23,7 @@ package herddb.utils;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.StampedLock;
 
 /**
@@ -43,6 +44,10 @@ public class LocalLockManager implements ILocalLockManager {
 
     private final ConcurrentMap<Bytes, LockInstance> locks = new ConcurrentHashMap<>();
 
+    private final LongAdder lockWaits = new LongAdder();
+    private final LongAdder lockWaitTime = new LongAdder();
+    private final LongAdder lockTimeouts = new LongAdder();
+
     private static class LockInstance {
 
         private final StampedLock lock;
@@ -107,8 +112,18 @@ public class LocalLockManager implements ILocalLockManager {
     public LockHandle acquireWriteLockForKey(Bytes key) {
         LockInstance lock = makeLockForKey(key);
         try {
-            long tryWriteLock = lock.lock.tryWriteLock(writeLockTimeout, TimeUnit.SECONDS);
+            long tryWriteLock = lock.lock.tryWriteLock();
+            if (tryWriteLock == 0) {
+                long start = System.nanoTime();
+                try {
+                    tryWriteLock = lock.lock.tryWriteLock(writeLockTimeout, TimeUnit.SECONDS);
+                } finally {
+                    lockWaits.increment();
+                    lockWaitTime.add(System.nanoTime() - start);
+                }
+            }
             if (tryWriteLock == 0) {
+                lockTimeouts.increment();
                 throw new LockAcquireTimeoutException("timed out acquiring lock for write");
             }
             return new LockHandle(tryWriteLock, key, true, lock);
@@ -130,8 +145,18 @@ public class LocalLockManager implements ILocalLockManager {
     public LockHandle acquireReadLockForKey(Bytes key) {
         LockInstance lock = makeLockForKey(key);
         try {
-            long tryReadLock = lock.lock.tryReadLock(readLockTimeout, TimeUnit.SECONDS);
+            long tryReadLock = lock.lock.tryReadLock();
             if (tryReadLock == 0) {
+                long start = System.nanoTime();
+                try {
+                    tryReadLock = lock.lock.tryReadLock(readLockTimeout, TimeUnit.SECONDS);
+                } finally {
+                    lockWaits.increment();
+                    lockWaitTime.add(System.nanoTime() - start);
+                }
+            }
+            if (tryReadLock == 0) {
+                lockTimeouts.increment();
                 throw new LockAcquireTimeoutException("timedout trying to read lock");
             }
             return new LockHandle(tryReadLock, key, false, lock);
@@ -170,4 +195,19 @@ public class LocalLockManager implements ILocalLockManager {
         return locks.size();
     }
 
+    @Override
+    public long getLockWaitsCount() {
+        return lockWaits.sum();
+    }
+
+    @Override
+    public long getLockWaitTime() {
+        return TimeUnit.NANOSECONDS.toMillis(lockWaitTime.sum());
+    }
+
+    @Override
+    public long getLockTimeoutsCount() {
+        return lockTimeouts.sum();
+    }
+
 }
@@ -44,6 +44,11 @@ public class RecordsBatch {
     private boolean finished;
     public Map<String, Integer> columnNameToPosition;
 
+    // columnar layout, columns are decoded at the first access
+    private final byte[] columnTypes;
+    private final int[] columnOffsets;
+    private final Object[][] columns;
+
     public RecordsBatch(Pdu message) {
         this.buffer = message.buffer;
         this.message = message;
@@ -58,6 +63,31 @@ public class RecordsBatch {
         if (numRecords == 0) {
             finished = true;
         }
+        if ((message.flags & Pdu.FLAGS_COLUMNAR_RESULTS) == Pdu.FLAGS_COLUMNAR_RESULTS) {
+            this.columnTypes = new byte[numColumns];
+            this.columnOffsets = new int[numColumns];
+            this.columns = new Object[numColumns][];
+            for (int i = 0; i < numColumns; i++) {
+                columnTypes[i] = buffer.readByte();
+                int length = buffer.readInt();
+                columnOffsets[i] = buffer.readerIndex();
+                buffer.skipBytes(length);
+            }
+        } else {
+            this.columnTypes = null;
+            this.columnOffsets = null;
+            this.columns = null;
+        }
+    }
+
+    private Object[] column(int index) {
+        Object[] column = columns[index];
+        if (column == null) {
+            buffer.readerIndex(columnOffsets[index]);
+            column = PduCodec.ResultSetChunk.readColumn(buffer, columnTypes[index], numRecords);
+            columns[index] = column;
+        }
+        return column;
     }
 
     private void ensureColumnNameToPosition() {
@@ -109,7 +139,45 @@ public class RecordsBatch {
 
     }
 
+    private final class ColumnarRowDataAccessor implements DataAccessor {
+
+        private final int record;
+
+        public ColumnarRowDataAccessor(int record) {
+            this.record = record;
+        }
+
+        @Override
+        public Object get(int index) {
+            return column(index)[record];
+        }
+
+        @Override
+        public int getNumFields() {
+            return columnNames.length;
+        }
+
+        @Override
+        public Object get(String property) {
+            ensureColumnNameToPosition();
+            Integer i = columnNameToPosition.get(property);
+            if (i == null) {
+                return null;
+            }
+            return get(i);
+        }
+
+        @Override
+        public String[] getFieldNames() {
+            return columnNames;
+        }
+
+    }
+
     private DataAccessor readRecordAtCurrentPosition() {
+        if (columns != null) {
+            return new ColumnarRowDataAccessor(currentRecordIndex);
+        }
         Object[] values = new Object[columnNames.length];
         for (int i = 0; i < columnNames.length; i++) {
             values[i] = PduCodec.readObject(buffer);
@@ -150,6 +218,12 @@ public class RecordsBatch {
     }
 
     public void release() {
+        if (columns != null && currentRecordIndex >= 0) {
+            // records returned to the caller outlive the buffer
+            for (int i = 0; i < columns.length; i++) {
+                column(i);
+            }
+        }
         message.close();
         message = null;
         next = null;
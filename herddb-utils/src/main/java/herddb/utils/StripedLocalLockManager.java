@@ -0,0 +1,309 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Handle locks by key, using a fixed table of stripes.
+ * <p>
+ * The stripe of a key is chosen by its hash, every stripe keeps the lock
+ * instances of the keys currently locked in a short linked list and recycles
+ * released instances, so acquiring and releasing a lock does not allocate
+ * anything but the {@link LockHandle}. Keys which share a stripe only share
+ * the (short) critical section needed to find the instance, locks are still
+ * per key: a transaction can hold locks on different keys of the same stripe.
+ */
+public class StripedLocalLockManager implements ILocalLockManager {
+
+    public static final int DEFAULT_NUM_STRIPES = 256;
+
+    /**
+     * Max number of released instances retained by each stripe
+     */
+    private static final int MAX_POOLED_INSTANCES_PER_STRIPE = 8;
+
+    private int writeLockTimeout = 60 * 30;
+
+    private int readLockTimeout = 60 * 30;
+
+    private final Stripe[] stripes;
+    private final int mask;
+
+    private final LongAdder lockWaits = new LongAdder();
+    private final LongAdder lockWaitTime = new LongAdder();
+    private final LongAdder lockTimeouts = new LongAdder();
+
+    private static final class LockInstance {
+
+        private final StampedLock lock = new StampedLock();
+        private Bytes key;
+        private int count;
+        private LockInstance next;
+
+        @Override
+        public String toString() {
+            return "LockInstance{" + "lock=" + lock + ", key=" + key + ", count=" + count + '}';
+        }
+    }
+
+    private static final class Stripe {
+
+        private LockInstance active;
+        private LockInstance pooled;
+        private int numPooled;
+        private int numActive;
+
+        LockInstance acquire(Bytes key) {
+            for (LockInstance instance = active; instance != null; instance = instance.next) {
+                if (instance.key.equals(key)) {
+                    instance.count++;
+                    return instance;
+                }
+            }
+            LockInstance instance = pooled;
+            if (instance != null) {
+                pooled = instance.next;
+                numPooled--;
+            } else {
+                instance = new LockInstance();
+            }
+            instance.key = key;
+            instance.count = 1;
+            instance.next = active;
+            active = instance;
+            numActive++;
+            return instance;
+        }
+
+        void release(LockInstance instance, Bytes key) {
+            if (instance.count <= 0 || !instance.key.equals(key)) {
+                throw new IllegalStateException("trying to release un-owned lock");
+            }
+            if (--instance.count > 0) {
+                return;
+            }
+            if (active == instance) {
+                active = instance.next;
+            } else {
+                LockInstance prev = active;
+                while (prev != null && prev.next != instance) {
+                    prev = prev.next;
+                }
+                if (prev == null) {
+                    throw new IllegalStateException("trying to release un-owned lock");
+                }
+                prev.next = instance.next;
+            }
+            numActive--;
+            instance.key = null;
+            if (numPooled < MAX_POOLED_INSTANCES_PER_STRIPE) {
+                instance.next = pooled;
+                pooled = instance;
+                numPooled++;
+            } else {
+                instance.next = null;
+            }
+        }
+
+        void clear() {
+            active = null;
+            numActive = 0;
+            pooled = null;
+            numPooled = 0;
+        }
+    }
+
+    public StripedLocalLockManager() {
+        this(DEFAULT_NUM_STRIPES);
+    }
+
+    /**
+     * @param numStripes number of stripes, rounded up to a power of two
+     */
+    public StripedLocalLockManager(int numStripes) {
+        if (numStripes <= 0) {
+            throw new IllegalArgumentException("invalid number of stripes " + numStripes);
+        }
+        int size = Integer.highestOneBit(numStripes);
+        if (size < numStripes) {
+            size = size << 1;
+        }
+        this.stripes = new Stripe[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.mask = size - 1;
+    }
+
+    public int getNumStripes() {
+        return stripes.length;
+    }
+
+    public int getWriteLockTimeout() {
+        return writeLockTimeout;
+    }
+
+    public void setWriteLockTimeout(int writeLockTimeout) {
+        this.writeLockTimeout = writeLockTimeout;
+    }
+
+    public int getReadLockTimeout() {
+        return readLockTimeout;
+    }
+
+    public void setReadLockTimeout(int readLockTimeout) {
+        this.readLockTimeout = readLockTimeout;
+    }
+
+    private Stripe stripeFor(Bytes key) {
+        int h = key.hashCode();
+        return stripes[(h ^ (h >>> 16)) & mask];
+    }
+
+    private LockInstance makeLockForKey(Stripe stripe, Bytes key) {
+        synchronized (stripe) {
+            return stripe.acquire(key);
+        }
+    }
+
+    private void returnLockForKey(Stripe stripe, LockInstance instance, Bytes key) {
+        synchronized (stripe) {
+            stripe.release(instance, key);
+        }
+    }
+
+    @Override
+    public LockHandle acquireWriteLockForKey(Bytes key) {
+        Stripe stripe = stripeFor(key);
+        LockInstance instance = makeLockForKey(stripe, key);
+        long stamp = instance.lock.tryWriteLock();
+        if (stamp == 0) {
+            long start = System.nanoTime();
+            try {
+                stamp = instance.lock.tryWriteLock(writeLockTimeout, TimeUnit.SECONDS);
+            } catch (InterruptedException err) {
+                returnLockForKey(stripe, instance, key);
+                Thread.currentThread().interrupt();
+                throw new LockAcquireTimeoutException(err);
+            } finally {
+                lockWaits.increment();
+                lockWaitTime.add(System.nanoTime() - start);
+            }
+            if (stamp == 0) {
+                lockTimeouts.increment();
+                returnLockForKey(stripe, instance, key);
+                throw new LockAcquireTimeoutException("timed out acquiring lock for write");
+            }
+        }
+        return new LockHandle(stamp, key, true, instance);
+    }
+
+    @Override
+    public void releaseWriteLock(LockHandle handle) {
+        LockInstance instance = (LockInstance) handle.handle;
+        instance.lock.unlockWrite(handle.stamp);
+        returnLockForKey(stripeFor(handle.key), instance, handle.key);
+    }
+
+    @Override
+    public LockHandle acquireReadLockForKey(Bytes key) {
+        Stripe stripe = stripeFor(key);
+        LockInstance instance = makeLockForKey(stripe, key);
+        long stamp = instance.lock.tryReadLock();
+        if (stamp == 0) {
+            long start = System.nanoTime();
+            try {
+                stamp = instance.lock.tryReadLock(readLockTimeout, TimeUnit.SECONDS);
+            } catch (InterruptedException err) {
+                returnLockForKey(stripe, instance, key);
+                Thread.currentThread().interrupt();
+                throw new LockAcquireTimeoutException(err);
+            } finally {
+                lockWaits.increment();
+                lockWaitTime.add(System.nanoTime() - start);
+            }
+            if (stamp == 0) {
+                lockTimeouts.increment();
+                returnLockForKey(stripe, instance, key);
+                throw new LockAcquireTimeoutException("timedout trying to read lock");
+            }
+        }
+        return new LockHandle(stamp, key, false, instance);
+    }
+
+    @Override
+    public void releaseReadLock(LockHandle handle) {
+        LockInstance instance = (LockInstance) handle.handle;
+        instance.lock.unlockRead(handle.stamp);
+        returnLockForKey(stripeFor(handle.key), instance, handle.key);
+    }
+
+    @Override
+    public void releaseLock(LockHandle handle) {
+        if (handle == null) {
+            return;
+        }
+        if (handle.write) {
+            releaseWriteLock(handle);
+        } else {
+            releaseReadLock(handle);
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.clear();
+            }
+        }
+    }
+
+    @Override
+    public int getNumKeys() {
+        int result = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                result += stripe.numActive;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public long getLockWaitsCount() {
+        return lockWaits.sum();
+    }
+
+    @Override
+    public long getLockWaitTime() {
+        return TimeUnit.NANOSECONDS.toMillis(lockWaitTime.sum());
+    }
+
+    @Override
+    public long getLockTimeoutsCount() {
+        return lockTimeouts.sum();
+    }
+
+}
@@ -44,7 +44,8 @@ public class PageReplacementPolicyTest {
         return Arrays.asList(new Object[][]{
                 {new ClockProPolicy(DEFAULT_CAPACITY), DEFAULT_PAGES, DEFAULT_ITERATIONS, false},
                 {new ClockAdaptiveReplacement(DEFAULT_CAPACITY), DEFAULT_PAGES, DEFAULT_ITERATIONS, false},
-                {new RandomPageReplacementPolicy(DEFAULT_CAPACITY), DEFAULT_PAGES, DEFAULT_ITERATIONS, false}
+                {new RandomPageReplacementPolicy(DEFAULT_CAPACITY), DEFAULT_PAGES, DEFAULT_ITERATIONS, false},
+                {new TinyLFUPolicy(DEFAULT_CAPACITY * 1024L, 1024L), DEFAULT_PAGES, DEFAULT_ITERATIONS, false}
         });
     }
 
@@ -0,0 +1,195 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+
+public class TinyLFUPolicyTest {
+
+    private static final long PAGE_SIZE = 1024;
+
+    /**
+     * Tracks the pages in memory, unloading the pages selected by the policy
+     */
+    private static final class MyOwner implements Page.Owner {
+
+        private final TinyLFUPolicy policy;
+        private final Map<Long, MyPage> loaded = new HashMap<>();
+
+        MyOwner(TinyLFUPolicy policy) {
+            this.policy = policy;
+        }
+
+        MyPage load(long pageId, long size) {
+            MyPage page = loaded.get(pageId);
+            if (page != null) {
+                policy.pageHit(page);
+                return page;
+            }
+            page = new MyPage(this, pageId, size);
+            loaded.put(pageId, page);
+            Page.Metadata unload = policy.add(page);
+            while (unload != null) {
+                assertNotEquals(pageId, unload.pageId);
+                unload.owner.unload(unload.pageId);
+                unload = policy.pollExceeding();
+            }
+            return page;
+        }
+
+        @Override
+        public void unload(long pageId) {
+            assertTrue(loaded.remove(pageId) != null);
+        }
+
+        long loadedMemory() {
+            return loaded.values().stream().mapToLong(MyPage::getUsedMemory).sum();
+        }
+    }
+
+    private static final class MyPage extends Page<MyOwner> {
+
+        private final long size;
+
+        MyPage(MyOwner owner, long pageId, long size) {
+            super(owner, pageId);
+            this.size = size;
+        }
+
+        @Override
+        public long getUsedMemory() {
+            return size;
+        }
+    }
+
+    @Test
+    public void testMemoryBudget() {
+        TinyLFUPolicy policy = new TinyLFUPolicy(100 * PAGE_SIZE, PAGE_SIZE);
+        MyOwner owner = new MyOwner(policy);
+
+        /* Small pages: many more pages than the capacity in number of default pages */
+        for (long i = 0; i < 400; i++) {
+            owner.load(i, PAGE_SIZE / 4);
+        }
+        assertEquals(400, policy.size());
+        assertEquals(100 * PAGE_SIZE, policy.getUsedMemory());
+
+        /* Big pages: more than one page is unloaded for each new page */
+        for (long i = 1000; i < 1100; i++) {
+            owner.load(i, PAGE_SIZE * 3);
+            assertTrue(policy.getUsedMemory() <= policy.getMaxMemory());
+            assertEquals(owner.loadedMemory(), policy.getUsedMemory());
+            assertEquals(owner.loaded.size(), policy.size());
+        }
+        assertTrue(policy.size() < 400);
+
+        /* Pages without size are accounted as default pages */
+        MyPage unsized = new MyPage(owner, 5000, 0);
+        Page.Metadata unload = policy.add(unsized);
+        while (unload != null) {
+            owner.unload(unload.pageId);
+            unload = policy.pollExceeding();
+        }
+        owner.loaded.put(unsized.pageId, unsized);
+        assertEquals(owner.loadedMemory() + PAGE_SIZE, policy.getUsedMemory());
+
+        assertTrue(policy.remove(unsized));
+        assertFalse(policy.remove(unsized));
+        policy.clear();
+        assertEquals(0, policy.size());
+        assertEquals(0, policy.getUsedMemory());
+        assertNull(policy.pollExceeding());
+    }
+
+    @Test
+    public void testScanResistance() {
+        TinyLFUPolicy policy = new TinyLFUPolicy(100 * PAGE_SIZE, PAGE_SIZE);
+        MyOwner owner = new MyOwner(policy);
+
+        /* Hot set, accessed many times */
+        for (int round = 0; round < 5; round++) {
+            for (long i = 0; i < 50; i++) {
+                owner.load(i, PAGE_SIZE);
+            }
+        }
+
+        /* A big scan, each page is read only once */
+        for (long i = 1000; i < 5000; i++) {
+            owner.load(i, PAGE_SIZE);
+        }
+
+        int hot = 0;
+        for (long i = 0; i < 50; i++) {
+            if (owner.loaded.containsKey(i)) {
+                hot++;
+            }
+        }
+        assertTrue("only " + hot + " hot pages survived the scan", hot >= 45);
+        assertTrue(policy.getUsedMemory() <= policy.getMaxMemory());
+    }
+
+    @Test
+    public void testConcurrentHits() throws Exception {
+        TinyLFUPolicy policy = new TinyLFUPolicy(100 * PAGE_SIZE, PAGE_SIZE);
+        MyOwner owner = new MyOwner(policy);
+        List<MyPage> pages = new ArrayList<>();
+        for (long i = 0; i < 100; i++) {
+            pages.add(owner.load(i, PAGE_SIZE));
+        }
+
+        ExecutorService threads = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                results.add(threads.submit(() -> {
+                    for (int i = 0; i < 100_000; i++) {
+                        policy.pageHit(pages.get(i % pages.size()));
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            threads.shutdown();
+        }
+
+        /* Hits never change the set of pages in memory */
+        assertEquals(100, policy.size());
+        assertEquals(100 * PAGE_SIZE, policy.getUsedMemory());
+        for (MyPage page : pages) {
+            assertTrue(policy.remove(page));
+        }
+        assertEquals(0, policy.size());
+    }
+}
@@ -24,8 +24,10 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import herddb.core.Page;
 import herddb.core.PageReplacementPolicy;
 import herddb.core.RandomPageReplacementPolicy;
+import herddb.core.TinyLFUPolicy;
 import herddb.index.blink.BLink.SizeEvaluator;
 import herddb.index.blink.BLinkMetadata.BLinkNodeMetadata;
 import herddb.utils.Holder;
@@ -375,6 +377,44 @@ public class BLinkTest {
         }
     }
 
+    @Test
+    public void testMemoryBudgetedPolicy() throws Exception {
+
+        final long pageSize = 1024L;
+        final long inserts = 10000;
+
+        TinyLFUPolicy policy = new TinyLFUPolicy(20 * pageSize, pageSize);
+
+        /* Small pages of another owner: more than one of them must be unloaded to make room for a node */
+        Page.Owner other = pageId -> {
+        };
+        for (long i = 0; i < 80; i++) {
+            policy.add(new Page<Page.Owner>(other, i) {
+                @Override
+                public long getUsedMemory() {
+                    return pageSize / 4;
+                }
+            });
+        }
+        assertEquals(20 * pageSize, policy.getUsedMemory());
+
+        BLinkIndexDataStorage<Sized<Long>, Long> storage = new DummyBLinkIndexDataStorage<>();
+
+        try (BLink<Sized<Long>, Long> blink = new BLink<>(2048L, new LongSizeEvaluator(), policy, storage)) {
+
+            for (long l = 0; l < inserts; l++) {
+                blink.insert(Sized.valueOf(l), l);
+                assertTrue(policy.getUsedMemory() + " > " + policy.getMaxMemory(),
+                        policy.getUsedMemory() <= policy.getMaxMemory());
+            }
+
+            for (long l = 0; l < inserts; l++) {
+                assertEquals(l, (long) blink.search(Sized.valueOf(l)));
+                assertTrue(policy.getUsedMemory() <= policy.getMaxMemory());
+            }
+        }
+    }
+
     @Test
     public void testScan() throws Exception {
 
@@ -0,0 +1,175 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.utils;
+
+import static herddb.utils.ConcurrentLongLongHashMap.NO_VALUE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+
+public class ConcurrentLongLongHashMapTest {
+
+    @Test
+    public void testSimple() {
+        ConcurrentLongLongHashMap map = new ConcurrentLongLongHashMap(4, 2);
+        assertTrue(map.isEmpty());
+        assertEquals(NO_VALUE, map.get(1));
+        assertEquals(NO_VALUE, map.put(1, 10));
+        assertEquals(10, map.put(1, 11));
+        assertEquals(11, map.get(1));
+        assertEquals(11, map.putIfAbsent(1, 12));
+        assertEquals(11, map.get(1));
+        assertEquals(NO_VALUE, map.putIfAbsent(2, 20));
+        assertFalse(map.replace(2, 21, 22));
+        assertTrue(map.replace(2, 20, 22));
+        assertFalse(map.replace(3, 0, 30));
+        assertFalse(map.containsKey(3));
+        assertEquals(2, map.size());
+        assertEquals(22, map.remove(2));
+        assertEquals(NO_VALUE, map.remove(2));
+        assertEquals(1, map.size());
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertEquals(NO_VALUE, map.get(1));
+    }
+
+    @Test
+    public void testSpecialKeys() {
+        ConcurrentLongLongHashMap map = new ConcurrentLongLongHashMap(4, 2);
+        long[] keys = {Long.MIN_VALUE, Long.MAX_VALUE, 0, -1, Integer.MIN_VALUE};
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(NO_VALUE, map.put(keys[i], i));
+        }
+        assertEquals(keys.length, map.size());
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(i, map.get(keys[i]));
+        }
+        Map<Long, Long> all = new HashMap<>();
+        map.forEach((k, v) -> all.put(k, v));
+        assertEquals(keys.length, all.size());
+        assertEquals(0, map.remove(Long.MIN_VALUE));
+        assertFalse(map.containsKey(Long.MIN_VALUE));
+        assertEquals(keys.length - 1, map.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeValue() {
+        new ConcurrentLongLongHashMap().put(1, -1);
+    }
+
+    @Test
+    public void testRandomOperations() {
+        ConcurrentLongLongHashMap map = new ConcurrentLongLongHashMap(4, 4);
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(1234);
+        for (int i = 0; i < 200000; i++) {
+            // small key space, to have many collisions and removals
+            long key = random.nextInt(5000) - 2500;
+            long value = random.nextInt(100);
+            switch (random.nextInt(4)) {
+                case 0:
+                case 1: {
+                    Long prev = expected.put(key, value);
+                    assertEquals(prev == null ? NO_VALUE : prev, map.put(key, value));
+                    break;
+                }
+                case 2: {
+                    Long prev = expected.remove(key);
+                    assertEquals(prev == null ? NO_VALUE : prev, map.remove(key));
+                    break;
+                }
+                default: {
+                    Long prev = expected.get(key);
+                    assertEquals(prev == null ? NO_VALUE : prev, map.get(key));
+                    break;
+                }
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        Map<Long, Long> all = new HashMap<>();
+        for (int s = 0; s < map.getNumSections(); s++) {
+            long[] entries = map.snapshot(s);
+            for (int j = 0; j < entries.length; j += 2) {
+                all.put(entries[j], entries[j + 1]);
+            }
+        }
+        assertEquals(expected, all);
+        assertTrue(map.getUsedMemory() >= map.size() * 16);
+    }
+
+    @Test
+    public void testModCount() {
+        ConcurrentLongLongHashMap map = new ConcurrentLongLongHashMap(4, 1);
+        long modCount = map.getModCount(0);
+        map.put(1, 1);
+        assertNotEquals(modCount, map.getModCount(0));
+        modCount = map.getModCount(0);
+        map.putIfAbsent(1, 2);
+        map.replace(1, 5, 6);
+        map.remove(2);
+        assertEquals(modCount, map.getModCount(0));
+        map.remove(1);
+        assertNotEquals(modCount, map.getModCount(0));
+    }
+
+    @Test
+    public void testConcurrentUpdates() throws Exception {
+        ConcurrentLongLongHashMap map = new ConcurrentLongLongHashMap();
+        int numThreads = 4;
+        int keysPerThread = 20000;
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < numThreads; t++) {
+                long base = t * (long) keysPerThread;
+                futures.add(executor.submit(() -> {
+                    for (long k = base; k < base + keysPerThread; k++) {
+                        map.put(k, k);
+                        assertEquals(k, map.get(k));
+                        assertTrue(map.replace(k, k, k + 1));
+                    }
+                    for (long k = base; k < base + keysPerThread; k += 2) {
+                        assertEquals(k + 1, map.remove(k));
+                    }
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(numThreads * keysPerThread / 2, map.size());
+        for (long k = 1; k < numThreads * keysPerThread; k += 2) {
+            assertEquals(k + 1, map.get(k));
+        }
+    }
+}
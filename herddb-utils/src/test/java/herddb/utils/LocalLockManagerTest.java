@@ -245,7 +245,7 @@ public class LocalLockManagerTest {
 
     }
 
-    private ILocalLockManager makeLockManager() {
+    protected ILocalLockManager makeLockManager() {
         LocalLockManager res = new LocalLockManager();
         res.setWriteLockTimeout(1);
         res.setReadLockTimeout(1);
@@ -0,0 +1,161 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import herddb.proto.Pdu;
+import herddb.proto.PduCodec;
+import io.netty.buffer.ByteBuf;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import org.junit.Test;
+
+/**
+ * Encoding and decoding of chunks of ResultSets
+ */
+public class RecordsBatchTest {
+
+    private static final String[] COLUMNS = {"id", "l", "s", "ts", "d", "b", "ba", "sh", "by", "allnulls", "mixed"};
+
+    private static TuplesList buildTuples(int numRecords) {
+        List<DataAccessor> records = new ArrayList<>(numRecords);
+        for (int i = 0; i < numRecords; i++) {
+            Map<String, Object> record = new HashMap<>();
+            record.put("id", i);
+            record.put("l", i % 3 == 0 ? Long.MIN_VALUE + i : Long.MAX_VALUE - i);
+            record.put("s", i % 2 == 0 ? "s" + i : RawString.of("r" + i));
+            record.put("ts", i % 5 == 0 ? null : new Timestamp(1_500_000_000_000L + i * 1000));
+            record.put("d", i / 2.0);
+            record.put("b", i % 2 == 0);
+            record.put("ba", new byte[]{(byte) i, 1});
+            record.put("sh", (short) -i);
+            record.put("by", (byte) i);
+            record.put("allnulls", null);
+            record.put("mixed", i % 2 == 0 ? Integer.valueOf(i) : "m" + i);
+            records.add(new MapDataAccessor(record, COLUMNS));
+        }
+        return new TuplesList(COLUMNS, records);
+    }
+
+    private static RecordsBatch read(ByteBuf buffer) throws Exception {
+        Pdu pdu = PduCodec.decodePdu(buffer);
+        return PduCodec.ResultSetChunk.startReadingData(pdu);
+    }
+
+    private static void assertRecord(int i, DataAccessor record) {
+        assertEquals(i, record.get("id"));
+        assertEquals(i % 3 == 0 ? Long.MIN_VALUE + i : Long.MAX_VALUE - i, record.get("l"));
+        assertEquals(RawString.of(i % 2 == 0 ? "s" + i : "r" + i), record.get("s"));
+        assertEquals(i % 5 == 0 ? null : new Timestamp(1_500_000_000_000L + i * 1000), record.get("ts"));
+        assertEquals(i / 2.0, record.get("d"));
+        assertEquals(i % 2 == 0, record.get("b"));
+        assertArrayEquals(new byte[]{(byte) i, 1}, (byte[]) record.get("ba"));
+        assertEquals((short) -i, record.get("sh"));
+        assertEquals((byte) i, record.get("by"));
+        assertNull(record.get("allnulls"));
+        assertEquals(i % 2 == 0 ? Integer.valueOf(i) : RawString.of("m" + i), record.get("mixed"));
+    }
+
+    @Test
+    public void testColumnar() throws Exception {
+        int numRecords = 1000;
+        TuplesList tuples = buildTuples(numRecords);
+        ByteBuf columnar = PduCodec.ResultSetChunk.write(1, tuples, true, 5, true);
+        ByteBuf rows = PduCodec.ResultSetChunk.write(1, tuples, true, 5, false);
+        try {
+            assertTrue(columnar.readableBytes() + " >= " + rows.readableBytes(),
+                    columnar.readableBytes() < rows.readableBytes());
+        } finally {
+            rows.release();
+        }
+        RecordsBatch batch = read(columnar);
+        assertArrayEquals(COLUMNS, batch.columnNames);
+        assertEquals(numRecords, batch.numRecords);
+        List<DataAccessor> records = new ArrayList<>();
+        while (batch.hasNext()) {
+            records.add(batch.next());
+        }
+        // the records are still readable after the release of the buffer
+        batch.release();
+        assertEquals(numRecords, records.size());
+        for (int i = 0; i < numRecords; i++) {
+            assertRecord(i, records.get(i));
+        }
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        TuplesList tuples = new TuplesList(COLUMNS, new ArrayList<>());
+        RecordsBatch batch = read(PduCodec.ResultSetChunk.write(1, tuples, true, 0, true));
+        assertTrue(batch.isEmpty());
+        assertFalse(batch.hasNext());
+        batch.release();
+    }
+
+    @Test
+    public void testAccessorWithoutNulls() throws Exception {
+        // some accessors do not report null values
+        String[] columns = {"a", "b", "c"};
+        List<DataAccessor> records = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            int index = i;
+            records.add(new AbstractDataAccessor() {
+                @Override
+                public Object get(String property) {
+                    return "b".equals(property) && index % 2 == 0 ? null : property + index;
+                }
+
+                @Override
+                public String[] getFieldNames() {
+                    return columns;
+                }
+
+                @Override
+                public void forEach(BiConsumer<String, Object> consumer) {
+                    for (String column : columns) {
+                        Object value = get(column);
+                        if (value != null) {
+                            consumer.accept(column, value);
+                        }
+                    }
+                }
+            });
+        }
+        RecordsBatch batch = read(PduCodec.ResultSetChunk.write(1, new TuplesList(columns, records), true, 0, true));
+        for (int i = 0; i < 10; i++) {
+            assertTrue(batch.hasNext());
+            DataAccessor record = batch.next();
+            assertEquals(RawString.of("a" + i), record.get(0));
+            assertEquals(i % 2 == 0 ? null : RawString.of("b" + i), record.get(1));
+            assertEquals(RawString.of("c" + i), record.get(2));
+        }
+        assertFalse(batch.hasNext());
+        batch.release();
+    }
+}
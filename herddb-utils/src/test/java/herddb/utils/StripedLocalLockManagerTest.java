@@ -0,0 +1,113 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.util.concurrent.CountDownLatch;
+import org.junit.Test;
+
+/**
+ * Tests on StripedLocalLockManager, runs the same tests of
+ * {@link LocalLockManagerTest}
+ */
+public class StripedLocalLockManagerTest extends LocalLockManagerTest {
+
+    @Override
+    protected ILocalLockManager makeLockManager() {
+        StripedLocalLockManager res = new StripedLocalLockManager(16);
+        res.setWriteLockTimeout(1);
+        res.setReadLockTimeout(1);
+        return res;
+    }
+
+    @Test
+    public void testNumStripes() {
+        assertEquals(1, new StripedLocalLockManager(1).getNumStripes());
+        assertEquals(8, new StripedLocalLockManager(5).getNumStripes());
+        assertEquals(256, new StripedLocalLockManager().getNumStripes());
+    }
+
+    @Test
+    public void testKeysOnTheSameStripe() {
+        // a single stripe, every key collides
+        StripedLocalLockManager manager = new StripedLocalLockManager(1);
+        manager.setWriteLockTimeout(1);
+        manager.setReadLockTimeout(1);
+        LockHandle h1 = manager.acquireWriteLockForKey(Bytes.from_int(1));
+        LockHandle h2 = manager.acquireWriteLockForKey(Bytes.from_int(2));
+        LockHandle h3 = manager.acquireReadLockForKey(Bytes.from_int(3));
+        assertNotSame(h1.handle, h2.handle);
+        assertEquals(3, manager.getNumKeys());
+
+        manager.releaseLock(h2);
+        assertEquals(2, manager.getNumKeys());
+        try {
+            manager.acquireReadLockForKey(Bytes.from_int(1));
+            fail();
+        } catch (LockAcquireTimeoutException ok) {
+        }
+        // the failed acquisition does not leak the instance
+        assertEquals(2, manager.getNumKeys());
+        assertEquals(1, manager.getLockWaitsCount());
+        assertEquals(1, manager.getLockTimeoutsCount());
+
+        manager.releaseLock(h1);
+        manager.releaseLock(h3);
+        assertEquals(0, manager.getNumKeys());
+    }
+
+    @Test
+    public void testInstancesAreRecycled() {
+        StripedLocalLockManager manager = new StripedLocalLockManager(1);
+        LockHandle h1 = manager.acquireWriteLockForKey(Bytes.from_int(1));
+        manager.releaseLock(h1);
+        LockHandle h2 = manager.acquireReadLockForKey(Bytes.from_int(2));
+        assertSame(h1.handle, h2.handle);
+        manager.releaseLock(h2);
+        assertEquals(0, manager.getNumKeys());
+    }
+
+    @Test
+    public void testLockWaitMetrics() throws Exception {
+        StripedLocalLockManager manager = new StripedLocalLockManager(4);
+        Bytes key = Bytes.from_int(1);
+        LockHandle h1 = manager.acquireWriteLockForKey(key);
+        assertEquals(0, manager.getLockWaitsCount());
+        CountDownLatch started = new CountDownLatch(1);
+        Thread reader = new Thread(() -> {
+            started.countDown();
+            manager.releaseLock(manager.acquireReadLockForKey(key));
+        });
+        reader.start();
+        started.await();
+        Thread.sleep(100);
+        manager.releaseLock(h1);
+        reader.join();
+        assertEquals(1, manager.getLockWaitsCount());
+        assertEquals(0, manager.getLockTimeoutsCount());
+        assertTrue(manager.getLockWaitTime() >= 0);
+        assertEquals(0, manager.getNumKeys());
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.codec;
+
+import herddb.model.ColumnTypes;
+import herddb.model.Record;
+import herddb.model.Table;
+import herddb.utils.Bytes;
+import herddb.utils.DataAccessor;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Map;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Encoding and decoding of records, and access to single columns of a
+ * serialized record
+ */
+@Fork(1)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+public class RecordSerializerBenchmark {
+
+    @Param({"10", "1000"})
+    public int stringSize;
+
+    Table table;
+    Map<String, Object> bean;
+    Record record;
+
+    @Setup
+    public void setup() {
+        table = Table.builder()
+                .tablespace("tblspace1")
+                .name("t1")
+                .column("id", ColumnTypes.NOTNULL_LONG)
+                .column("n1", ColumnTypes.INTEGER)
+                .column("s1", ColumnTypes.STRING)
+                .column("l1", ColumnTypes.LONG)
+                .column("t1", ColumnTypes.TIMESTAMP)
+                .column("s2", ColumnTypes.STRING)
+                .primaryKey("id")
+                .build();
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < stringSize; i++) {
+            value.append((char) ('a' + i % 26));
+        }
+        bean = new HashMap<>();
+        bean.put("id", 1234L);
+        bean.put("n1", 1);
+        bean.put("s1", value.toString());
+        bean.put("l1", 5678L);
+        bean.put("t1", new Timestamp(System.currentTimeMillis()));
+        bean.put("s2", value.toString());
+        record = RecordSerializer.toRecord(bean, table);
+    }
+
+    @Benchmark
+    public Record encode() {
+        return RecordSerializer.toRecord(bean, table);
+    }
+
+    @Benchmark
+    public Map<String, Object> decode() {
+        return RecordSerializer.toBean(record, table);
+    }
+
+    @Benchmark
+    public Bytes encodePrimaryKey() {
+        return RecordSerializer.serializePrimaryKey(bean, table, table.primaryKey);
+    }
+
+    @Benchmark
+    public Object accessFirstColumn() {
+        DataAccessor accessor = RecordSerializer.buildRawDataAccessor(record, table);
+        return accessor.get("n1");
+    }
+
+    @Benchmark
+    public Object accessLastColumn() {
+        DataAccessor accessor = RecordSerializer.buildRawDataAccessor(record, table);
+        return accessor.get("s2");
+    }
+
+    @Benchmark
+    public Object accessPrimaryKey() {
+        DataAccessor accessor = RecordSerializer.buildRawDataAccessor(record, table);
+        return accessor.get("id");
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.core;
+
+import static herddb.core.TestUtils.execute;
+import static herddb.core.TestUtils.executeUpdate;
+import static herddb.core.TestUtils.scan;
+import herddb.mem.MemoryCommitLogManager;
+import herddb.mem.MemoryDataStorageManager;
+import herddb.mem.MemoryMetadataStorageManager;
+import herddb.model.DataScanner;
+import herddb.model.StatementEvaluationContext;
+import herddb.model.TransactionContext;
+import herddb.model.commands.CreateTableSpaceStatement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Insert, update and lookup by primary key on an in-memory {@link DBManager},
+ * statements are executed through the planner and its cache of plans
+ */
+@Fork(1)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+public class TableManagerBenchmark {
+
+    @Param({"100000"})
+    public int numRecords;
+
+    DBManager manager;
+    AtomicInteger nextId;
+
+    @Setup
+    public void setup() throws Exception {
+        String nodeId = "localhost";
+        manager = new DBManager(nodeId, new MemoryMetadataStorageManager(), new MemoryDataStorageManager(), new MemoryCommitLogManager(), null, null);
+        manager.start();
+        CreateTableSpaceStatement st1 = new CreateTableSpaceStatement("tblspace1", Collections.singleton(nodeId), nodeId, 1, 0, 0);
+        manager.executeStatement(st1, StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT(), TransactionContext.NO_TRANSACTION);
+        manager.waitForTablespace("tblspace1", 10000);
+
+        execute(manager, "CREATE TABLE tblspace1.tsql (k1 int primary key,n1 int,s1 string)", Collections.emptyList());
+        for (int i = 0; i < numRecords; i++) {
+            executeUpdate(manager, "INSERT INTO tblspace1.tsql(k1,n1,s1) values(?,?,?)", Arrays.asList(i, i, "value" + i));
+        }
+        nextId = new AtomicInteger(numRecords);
+    }
+
+    @TearDown
+    public void tearDown() {
+        manager.close();
+    }
+
+    @Benchmark
+    public long insert() throws Exception {
+        int id = nextId.getAndIncrement();
+        return executeUpdate(manager, "INSERT INTO tblspace1.tsql(k1,n1,s1) values(?,?,?)", Arrays.asList(id, id, "value")).getUpdateCount();
+    }
+
+    @Benchmark
+    public long updateByPrimaryKey() throws Exception {
+        int id = ThreadLocalRandom.current().nextInt(numRecords);
+        return executeUpdate(manager, "UPDATE tblspace1.tsql SET n1=? WHERE k1=?", Arrays.asList(id + 1, id)).getUpdateCount();
+    }
+
+    @Benchmark
+    public int getByPrimaryKey() throws Exception {
+        int id = ThreadLocalRandom.current().nextInt(numRecords);
+        try (DataScanner scan = scan(manager, "SELECT * FROM tblspace1.tsql WHERE k1=?", Arrays.asList(id))) {
+            int size = scan.consume().size();
+            if (size != 1) {
+                throw new IllegalStateException("record " + id + " not found");
+            }
+            return size;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.file;
+
+import herddb.log.CommitLog;
+import herddb.log.LogEntry;
+import herddb.log.LogEntryType;
+import herddb.log.LogSequenceNumber;
+import herddb.server.ServerConfiguration;
+import herddb.utils.Bytes;
+import herddb.utils.FileUtils;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Throughput of appends to the local transaction log, with and without fsync
+ */
+@Fork(1)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+public class FileCommitLogBenchmark {
+
+    @Param({"false", "true"})
+    public boolean fsync;
+
+    @Param({"100", "1000"})
+    public int entrySize;
+
+    Path directory;
+    FileCommitLogManager manager;
+    CommitLog log;
+    LogEntry entry;
+
+    @Setup
+    public void setup() throws Exception {
+        directory = Files.createTempDirectory("herddb-jmh-txlog");
+        manager = new FileCommitLogManager(directory,
+                ServerConfiguration.PROPERTY_MAX_LOG_FILE_SIZE_DEFAULT,
+                ServerConfiguration.PROPERTY_MAX_UNSYNCHED_BATCH_DEFAULT,
+                ServerConfiguration.PROPERTY_MAX_UNSYNCHED_BATCH_BYTES_DEFAULT,
+                ServerConfiguration.PROPERTY_MAX_SYNC_TIME_DEFAULT,
+                fsync,
+                false,
+                ServerConfiguration.PROPERTY_DEFERRED_SYNC_PERIOD_DEFAULT,
+                NullStatsLogger.INSTANCE);
+        manager.start();
+        log = manager.createCommitLog("tblspace1", "tblspace1", "localhost");
+        log.startWriting(1);
+        entry = new LogEntry(System.currentTimeMillis(), LogEntryType.INSERT, 0, "t1",
+                Bytes.from_long(1), Bytes.from_array(new byte[entrySize]));
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        log.close();
+        manager.close();
+        FileUtils.cleanDirectory(directory);
+    }
+
+    @Benchmark
+    public LogSequenceNumber append() throws Exception {
+        return log.log(entry, true).getLogSequenceNumber();
+    }
+
+    /**
+     * Many writers, so entries are grouped in the same write/fsync
+     */
+    @Benchmark
+    @Threads(8)
+    public LogSequenceNumber appendConcurrent() throws Exception {
+        return log.log(entry, true).getLogSequenceNumber();
+    }
+}
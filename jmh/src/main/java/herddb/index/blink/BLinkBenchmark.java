@@ -0,0 +1,157 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.index.blink;
+
+import herddb.core.RandomPageReplacementPolicy;
+import herddb.index.blink.BLink.SizeEvaluator;
+import herddb.utils.Bytes;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Get, put and range scans on the {@link BLink} used as primary key index,
+ * with keys encoded as {@link Bytes} like primary keys of numeric columns.
+ * Pages are never unloaded.
+ */
+@Fork(1)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+public class BLinkBenchmark {
+
+    private static final long PAGE_SIZE = 128L * 1024;
+    private static final int MAX_LOADED_PAGES = 100_000;
+
+    @Param({"100000", "1000000"})
+    public int numKeys;
+
+    @Param({"100"})
+    public int scanSize;
+
+    BLink<Bytes, Long> tree;
+    Bytes[] keys;
+
+    @Setup
+    public void setup() {
+        tree = new BLink<>(PAGE_SIZE, new BytesSizeEvaluator(),
+                new RandomPageReplacementPolicy(MAX_LOADED_PAGES), new HeapStorage());
+        keys = new Bytes[numKeys];
+        for (int i = 0; i < numKeys; i++) {
+            keys[i] = Bytes.from_long(i);
+            tree.insert(keys[i], (long) i);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        tree.close();
+    }
+
+    @Benchmark
+    public Long get() {
+        return tree.search(keys[ThreadLocalRandom.current().nextInt(numKeys)]);
+    }
+
+    @Benchmark
+    public Long put() {
+        int i = ThreadLocalRandom.current().nextInt(numKeys);
+        return tree.insert(keys[i], (long) i);
+    }
+
+    @Benchmark
+    public long scan() {
+        int from = ThreadLocalRandom.current().nextInt(numKeys - scanSize);
+        return tree.scan(keys[from], keys[from + scanSize]).count();
+    }
+
+    private static final class BytesSizeEvaluator implements SizeEvaluator<Bytes, Long> {
+
+        @Override
+        public long evaluateKey(Bytes key) {
+            return key.getEstimatedSize();
+        }
+
+        @Override
+        public long evaluateValue(Long value) {
+            return 24L;
+        }
+
+        @Override
+        public long evaluateAll(Bytes key, Long value) {
+            return key.getEstimatedSize() + 24L;
+        }
+
+        @Override
+        public Bytes getPosiviveInfinityKey() {
+            return Bytes.POSITIVE_INFINITY;
+        }
+    }
+
+    private static final class HeapStorage implements BLinkIndexDataStorage<Bytes, Long> {
+
+        private final AtomicLong newPageId = new AtomicLong();
+        private final Map<Long, Map<Bytes, Long>> pages = new ConcurrentHashMap<>();
+
+        @Override
+        public void loadNodePage(long pageId, Map<Bytes, Long> data) throws IOException {
+            data.putAll(pages.get(pageId));
+        }
+
+        @Override
+        public void loadLeafPage(long pageId, Map<Bytes, Long> data) throws IOException {
+            data.putAll(pages.get(pageId));
+        }
+
+        @Override
+        public long createNodePage(Map<Bytes, Long> data) throws IOException {
+            long id = newPageId.incrementAndGet();
+            pages.put(id, new HashMap<>(data));
+            return id;
+        }
+
+        @Override
+        public long createLeafPage(Map<Bytes, Long> data) throws IOException {
+            return createNodePage(data);
+        }
+
+        @Override
+        public void overwriteNodePage(long pageId, Map<Bytes, Long> data) throws IOException {
+            pages.put(pageId, new HashMap<>(data));
+        }
+
+        @Override
+        public void overwriteLeafPage(long pageId, Map<Bytes, Long> data) throws IOException {
+            pages.put(pageId, new HashMap<>(data));
+        }
+    }
+}
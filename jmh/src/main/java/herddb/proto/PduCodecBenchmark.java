@@ -0,0 +1,131 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.proto;
+
+import herddb.utils.DataAccessor;
+import herddb.utils.MapDataAccessor;
+import herddb.utils.RecordsBatch;
+import herddb.utils.TuplesList;
+import io.netty.buffer.ByteBuf;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Encoding and decoding of the most frequent messages of the network protocol
+ */
+@Fork(1)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+public class PduCodecBenchmark {
+
+    private static final String[] COLUMNS = {"id", "n1", "s1", "l1"};
+
+    @Param({"10", "1000"})
+    public int numRecords;
+
+    @Param({"false", "true"})
+    public boolean columnar;
+
+    List<Object> params;
+    TuplesList tuples;
+    ByteBuf executeStatement;
+    ByteBuf resultSetChunk;
+
+    @Setup
+    public void setup() {
+        params = Arrays.asList(1, "value", 2L, 3.5d);
+        List<DataAccessor> records = new ArrayList<>(numRecords);
+        for (int i = 0; i < numRecords; i++) {
+            Map<String, Object> record = new HashMap<>();
+            record.put("id", i);
+            record.put("n1", i * 2);
+            record.put("s1", "value" + i);
+            record.put("l1", (long) i);
+            records.add(new MapDataAccessor(record, COLUMNS));
+        }
+        tuples = new TuplesList(COLUMNS, records);
+        executeStatement = PduCodec.ExecuteStatement.write(1, "tblspace1",
+                "UPDATE tblspace1.t1 SET s1=?,l1=?,d1=? WHERE id=?", 0, false, 0, params);
+        resultSetChunk = PduCodec.ResultSetChunk.write(1, tuples, true, 0, columnar);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executeStatement.release();
+        resultSetChunk.release();
+    }
+
+    @Benchmark
+    public void encodeExecuteStatement() {
+        ByteBuf buffer = PduCodec.ExecuteStatement.write(1, "tblspace1",
+                "UPDATE tblspace1.t1 SET s1=?,l1=?,d1=? WHERE id=?", 0, false, 0, params);
+        buffer.release();
+    }
+
+    @Benchmark
+    public void decodeExecuteStatement(Blackhole bh) throws Exception {
+        Pdu pdu = PduCodec.decodePdu(executeStatement.retainedDuplicate());
+        try {
+            bh.consume(PduCodec.ExecuteStatement.readQuery(pdu));
+            PduCodec.ObjectListReader reader = PduCodec.ExecuteStatement.startReadParameters(pdu);
+            for (int i = 0; i < reader.getNumParams(); i++) {
+                bh.consume(reader.nextObject());
+            }
+        } finally {
+            pdu.close();
+        }
+    }
+
+    @Benchmark
+    public void encodeResultSetChunk() {
+        ByteBuf buffer = PduCodec.ResultSetChunk.write(1, tuples, true, 0, columnar);
+        buffer.release();
+    }
+
+    @Benchmark
+    public void decodeResultSetChunk(Blackhole bh) throws Exception {
+        Pdu pdu = PduCodec.decodePdu(resultSetChunk.retainedDuplicate());
+        try {
+            RecordsBatch batch = PduCodec.ResultSetChunk.startReadingData(pdu);
+            while (batch.hasNext()) {
+                DataAccessor record = batch.next();
+                for (int i = 0; i < COLUMNS.length; i++) {
+                    bh.consume(record.get(i));
+                }
+            }
+        } finally {
+            pdu.close();
+        }
+    }
+}
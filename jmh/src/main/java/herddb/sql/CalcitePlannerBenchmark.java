@@ -0,0 +1,96 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.sql;
+
+import static herddb.core.TestUtils.execute;
+import herddb.core.DBManager;
+import herddb.mem.MemoryCommitLogManager;
+import herddb.mem.MemoryDataStorageManager;
+import herddb.mem.MemoryMetadataStorageManager;
+import herddb.model.StatementEvaluationContext;
+import herddb.model.TransactionContext;
+import herddb.model.commands.CreateTableSpaceStatement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Planning of typical statements with {@link CalcitePlanner}, with and
+ * without the {@link PlansCache}
+ */
+@Fork(1)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+public class CalcitePlannerBenchmark {
+
+    @Param({"true", "false"})
+    public boolean useCache;
+
+    @Param({
+            "SELECT * FROM tblspace1.tsql WHERE k1=?",
+            "SELECT n1, count(*) FROM tblspace1.tsql WHERE s1=? GROUP BY n1 ORDER BY n1",
+            "UPDATE tblspace1.tsql SET n1=? WHERE k1=?"
+    })
+    public String query;
+
+    DBManager manager;
+    CalcitePlanner planner;
+    List<Object> parameters;
+
+    @Setup
+    public void setup() throws Exception {
+        String nodeId = "localhost";
+        manager = new DBManager(nodeId, new MemoryMetadataStorageManager(), new MemoryDataStorageManager(), new MemoryCommitLogManager(), null, null);
+        manager.start();
+        CreateTableSpaceStatement st1 = new CreateTableSpaceStatement("tblspace1", Collections.singleton(nodeId), nodeId, 1, 0, 0);
+        manager.executeStatement(st1, StatementEvaluationContext.DEFAULT_EVALUATION_CONTEXT(), TransactionContext.NO_TRANSACTION);
+        manager.waitForTablespace("tblspace1", 10000);
+        execute(manager, "CREATE TABLE tblspace1.tsql (k1 int primary key,n1 int,s1 string)", Collections.emptyList());
+
+        planner = new CalcitePlanner(manager, new PlansCache(10 * 1024 * 1024));
+        parameters = new ArrayList<>();
+        for (int i = 0; i < query.length(); i++) {
+            if (query.charAt(i) == '?') {
+                parameters.add(i);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        manager.close();
+    }
+
+    @Benchmark
+    public TranslatedQuery translate() throws Exception {
+        boolean scan = query.startsWith("SELECT");
+        return planner.translate("tblspace1", query, parameters, scan, useCache, false, -1);
+    }
+}
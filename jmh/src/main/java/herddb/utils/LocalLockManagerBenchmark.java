@@ -0,0 +1,99 @@
+/*
+ Licensed to Diennea S.r.l. under one
+ or more contributor license agreements. See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership. Diennea S.r.l. licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+
+ */
+
+package herddb.utils;
+
+import java.util.concurrent.ThreadLocalRandom;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Acquisition and release of row level locks, on a single thread and with
+ * many threads working on a shared set of keys
+ */
+@Fork(1)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+public class LocalLockManagerBenchmark {
+
+    @Param({"default", "striped"})
+    public String implementation;
+
+    @Param({"1000"})
+    public int numKeys;
+
+    ILocalLockManager lockManager;
+    Bytes[] keys;
+
+    @Setup
+    public void setup() {
+        switch (implementation) {
+            case "default":
+                lockManager = new LocalLockManager();
+                break;
+            case "striped":
+                lockManager = new StripedLocalLockManager();
+                break;
+            default:
+                throw new IllegalArgumentException(implementation);
+        }
+        keys = new Bytes[numKeys];
+        for (int i = 0; i < numKeys; i++) {
+            keys[i] = Bytes.from_int(i);
+        }
+    }
+
+    private Bytes randomKey() {
+        return keys[ThreadLocalRandom.current().nextInt(numKeys)];
+    }
+
+    @Benchmark
+    public void writeLock() {
+        LockHandle lock = lockManager.acquireWriteLockForKey(randomKey());
+        lockManager.releaseWriteLock(lock);
+    }
+
+    @Benchmark
+    public void readLock() {
+        LockHandle lock = lockManager.acquireReadLockForKey(randomKey());
+        lockManager.releaseReadLock(lock);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void writeLockConcurrent() {
+        LockHandle lock = lockManager.acquireWriteLockForKey(randomKey());
+        lockManager.releaseWriteLock(lock);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void readLockConcurrent() {
+        LockHandle lock = lockManager.acquireReadLockForKey(randomKey());
+        lockManager.releaseReadLock(lock);
+    }
+}